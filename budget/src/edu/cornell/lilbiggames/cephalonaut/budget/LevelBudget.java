@@ -0,0 +1,432 @@
+/*
+ * LevelBudget.java
+ *
+ * Reads every Tiled level under the assets directory and reports what each
+ * checkpoint will cost the engine: bodies, fixtures, draw calls and so on.  With
+ * a budget file, it fails (exit status 1) if any checkpoint goes over, so that a
+ * level that is too heavy is caught when it is made rather than when it is played.
+ * This runs at build time (gradle checkLevels), with the assets directory as the
+ * working directory, and needs no OpenGL or Box2D natives.
+ */
+package edu.cornell.lilbiggames.cephalonaut.budget;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import edu.cornell.lilbiggames.cephalonaut.assets.AtlasParser;
+import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.LevelElement;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.TileBand;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.ColliderCache;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.GidTable;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelLoader;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.Properties;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.TiledLevel;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.Tileset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports the cost of every level checkpoint, and checks it against a budget.
+ */
+public class LevelBudget {
+    /** The statistics of a checkpoint, in the order they are printed */
+    private static final String[] STATS = {
+            "tiles", "objects", "bodies", "fixtures", "triangles",
+            "drawCalls", "textureSwitches", "blackHoles", "heapKB"
+    };
+    private static final String[] HEADERS = {
+            "TILES", "OBJECTS", "BODIES", "FIXTURES", "TRIANGLES",
+            "DRAWS", "SWITCHES", "BH", "HEAP KB"
+    };
+
+    /** Rough heap cost of a LevelElement and its definitions, in bytes */
+    private static final int ELEMENT_BYTES = 700;
+    /** Rough cost of a Box2D body and its Java wrapper, in bytes */
+    private static final int BODY_BYTES = 400;
+    /** Rough cost of a Box2D fixture, its broad-phase proxy and its Java wrapper, in bytes */
+    private static final int FIXTURE_BYTES = 250;
+    /** Sparkles the loader scatters around each finish line */
+    private static final int FINISH_SPARKLES = 5;
+
+    /**
+     * Counts the draw calls and texture switches of drawing a level.
+     *
+     * Textures are named by what is bound to draw them: the atlas page of a packed
+     * sprite, or the sprite's own file.  The sprite batch flushes whenever the
+     * texture changes, and whenever something is drawn with a shape renderer, a
+     * mesh or a sprite cache in between.
+     */
+    private static class DrawCounter {
+        /** The texture of the sprite batch, or null if the next sprite starts a batch */
+        private String batch;
+        /** The texture last bound, or null */
+        private String bound;
+        int drawCalls, textureSwitches;
+
+        void sprite(String texture) {
+            if (texture.equals(batch)) return;
+            bind(texture);
+            batch = texture;
+            drawCalls++;
+        }
+
+        void shape() {
+            drawCalls++;
+            // The next sprite starts a new batch, even with the same texture
+            batch = null;
+        }
+
+        /**
+         * Counts drawing a tile chunk from its sprite cache.
+         *
+         * A cache is drawn with a call per run of sprites of the same texture.
+         *
+         * @param textures The texture of each sprite of the chunk, in order
+         */
+        void cache(Array<String> textures) {
+            batch = null;
+            String run = null;
+            for (int i = 0; i < textures.size; i++) {
+                String texture = textures.get(i);
+                if (texture.equals(run)) continue;
+                run = texture;
+                bind(texture);
+                drawCalls++;
+            }
+        }
+
+        private void bind(String texture) {
+            if (bound != null && !texture.equals(bound)) textureSwitches++;
+            bound = texture;
+        }
+    }
+
+    private final JsonReader reader = new JsonReader();
+    private final Map<LevelLoader.TiledFile, Tileset> tilesets = new HashMap<>();
+    /** Fixtures and triangles of each collider, by tile and size */
+    private final Map<String, int[]> colliders = new HashMap<>();
+    /** Checkpoint names by level file, from assets.json */
+    private final Map<File, String> names = new HashMap<>();
+    /** The texture each texture key is drawn from: its atlas page if packed, or its file */
+    private final Map<String, String> textures = new HashMap<>();
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "assets.json");
+        Map<String, Long> budget = args.length > 1 ? readBudget(new File(args[1])) : new HashMap<String, Long>();
+        if (!budget.containsKey("blackHoles")) {
+            // More than this throws when the level is drawn
+            budget.put("blackHoles", (long) GameCanvas.MAX_BLACK_HOLES);
+        }
+        int over = new LevelBudget().check(directory, budget);
+        if (over > 0) {
+            System.out.printf("%d checkpoints are over budget\n", over);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads a budget file: a JSON object of limits, keyed by statistic name.
+     *
+     * Statistics that are not in the file have no limit.
+     */
+    private static Map<String, Long> readBudget(File file) {
+        Map<String, Long> budget = new HashMap<>();
+        for (JsonValue limit : new JsonReader().parse(new FileHandle(file))) {
+            if (!Arrays.asList(STATS).contains(limit.name)) {
+                System.out.printf("WARNING: %s: unknown statistic '%s'\n", file.getPath(), limit.name);
+                continue;
+            }
+            budget.put(limit.name, limit.asLong());
+        }
+        return budget;
+    }
+
+    /**
+     * Reports every level of an asset directory, and checks it against a budget.
+     *
+     * @param directory The asset directory file (assets.json)
+     * @param budget    The most of each statistic a checkpoint may have
+     *
+     * @return the number of checkpoints over budget
+     */
+    public int check(File directory, Map<String, Long> budget) {
+        File root = directory.getAbsoluteFile().getParentFile();
+        JsonValue assets = reader.parse(new FileHandle(directory));
+        JsonValue jsons = assets.get("jsons");
+        for (LevelLoader.TiledFile tiledFile : LevelLoader.TiledFile.values()) {
+            File file = new File(root, jsons.getString(tiledFile.asset));
+            tilesets.put(tiledFile, new Tileset(reader.parse(new FileHandle(file))));
+        }
+        for (JsonValue level : assets.get("levels")) {
+            names.put(new File(root, level.asString()).getAbsoluteFile(), level.name);
+        }
+        readTextures(root, assets);
+
+        Array<File> files = new Array<>();
+        findLevels(new File(root, "levels"), files);
+
+        System.out.printf("%-40s", "CHECKPOINT");
+        for (String header : HEADERS) {
+            System.out.printf(" %9s", header);
+        }
+        System.out.println();
+
+        int over = 0;
+        StringBuilder problems = new StringBuilder();
+        for (File file : files) {
+            String name = names.get(file.getAbsoluteFile());
+            if (name == null) {
+                name = root.toURI().relativize(file.toURI()).getPath();
+            }
+            Map<String, Long> stats = measure(file);
+
+            boolean overBudget = false;
+            System.out.printf("%-40s", name);
+            for (String stat : STATS) {
+                long value = stats.get(stat);
+                Long limit = budget.get(stat);
+                boolean overLimit = limit != null && value > limit;
+                System.out.printf(" %8d%s", value, overLimit ? "!" : " ");
+                if (overLimit) {
+                    problems.append(String.format("OVER BUDGET: %s has %d %s, the budget is %d\n",
+                            name, value, stat, limit));
+                    overBudget = true;
+                }
+            }
+            System.out.println();
+            if (overBudget) over++;
+        }
+        System.out.print(problems);
+        return over;
+    }
+
+    /**
+     * Works out which texture each texture key is drawn from.
+     *
+     * Keys packed into an atlas are drawn from the page their region is on, as
+     * AssetDirectory finds them.  The rest are drawn from their own file.
+     */
+    private void readTextures(File root, JsonValue assets) {
+        JsonValue entries = assets.get("textures");
+        for (JsonValue texture : entries) {
+            textures.put(texture.name, AtlasParser.getRegionName(texture));
+        }
+
+        JsonValue atlases = assets.get("atlases");
+        if (atlases == null) return;
+        for (JsonValue atlas : atlases) {
+            File file = new File(root, atlas.getString("file"));
+            if (!file.exists()) {
+                System.out.printf("WARNING: %s is not packed, counting its textures one by one\n", file.getPath());
+                continue;
+            }
+            TextureAtlas.TextureAtlasData data = new TextureAtlas.TextureAtlasData(new FileHandle(file),
+                    new FileHandle(file.getParentFile()), false);
+            Map<String, String> pages = new HashMap<>();
+            for (TextureAtlas.TextureAtlasData.Region region : data.getRegions()) {
+                pages.put(region.name, region.page.textureFile.path());
+            }
+            for (JsonValue key : atlas.get("textures")) {
+                JsonValue texture = entries.get(key.asString());
+                String page = texture == null ? null : pages.get(AtlasParser.getRegionName(texture));
+                if (page != null) textures.put(key.asString(), page);
+            }
+        }
+    }
+
+    /** Returns the texture a texture key is drawn from */
+    private String texture(String key) {
+        String texture = textures.get(key);
+        return texture != null ? texture : key;
+    }
+
+    /** Adds every .tmj file under a directory, in a stable order */
+    private static void findLevels(File directory, Array<File> files) {
+        File[] children = directory.listFiles();
+        if (children == null) return;
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                findLevels(child, files);
+            } else if (child.getName().endsWith(".tmj")) {
+                files.add(child);
+            }
+        }
+    }
+
+    /**
+     * Works out what a checkpoint costs, the way LevelLoader would build it.
+     *
+     * Everything is counted as if it were on screen, and every chunk loaded.  Plain
+     * static tiles of layers without parallax are drawn from the sprite cache of
+     * their chunk, under the rest of the tiles of their rows.
+     *
+     * @param file The checkpoint's .tmj file
+     *
+     * @return the checkpoint's statistics, by name
+     */
+    private Map<String, Long> measure(File file) {
+        TiledLevel level = TiledLevel.read(new FileHandle(file));
+        GidTable table = new GidTable(level, tilesets);
+        int tileSize = level.tileWidth;
+        long tiles = 0, objects = 0, bodies = 0, fixtures = 0, triangles = 0, blackHoles = 0;
+        DrawCounter draws = new DrawCounter();
+        // The textures of each chunk of a band of rows, and the gids of the tiles drawn after them
+        Array<Array<String>> chunks = new Array<>();
+        IntArray unstreamed = new IntArray();
+
+        for (TiledLevel.Layer layer : level.layers) {
+            switch (layer.type) {
+                case "tilelayer":
+                    boolean parallax = layer.parallaxX != 1 || layer.parallaxY != 1;
+                    int columns = (layer.width + TileBand.CHUNK_SIZE - 1) / TileBand.CHUNK_SIZE;
+                    while (chunks.size < columns) {
+                        chunks.add(new Array<String>());
+                    }
+                    for (int start = 0; start < layer.height; start += TileBand.CHUNK_SIZE) {
+                        int end = Math.min(start + TileBand.CHUNK_SIZE, layer.height);
+                        for (int i = start * layer.width; i < end * layer.width; i++) {
+                            int gid = layer.data.get(i);
+                            if (!table.contains(gid) || table.tiles[gid] == null) continue;
+                            LevelLoader.TiledFile tiledFile = table.files[gid];
+                            int id = table.ids[gid];
+                            Tileset tileset = tilesets.get(tiledFile);
+
+                            Properties properties = tileset.getProperties(id);
+                            LevelElement.Element element = element(properties);
+                            int[] collider = collider(tiledFile, id, 1, 1, LevelLoader.getCollider(table.tiles[gid]));
+                            tiles++;
+                            bodies++;
+                            fixtures += collider[0];
+                            triangles += collider[1];
+                            if (element == LevelElement.Element.BLACK_HOLE) blackHoles++;
+                            String image = tileset.getImage(id);
+                            if (!parallax && image != null && isPlain(element, properties)) {
+                                chunks.get(i % layer.width / TileBand.CHUNK_SIZE).add(texture(image));
+                            } else {
+                                unstreamed.add(gid);
+                            }
+                        }
+
+                        for (int i = 0; i < columns; i++) {
+                            if (chunks.get(i).size > 0) draws.cache(chunks.get(i));
+                            chunks.get(i).clear();
+                        }
+                        for (int i = 0; i < unstreamed.size; i++) {
+                            int gid = unstreamed.get(i);
+                            Tileset tileset = tilesets.get(table.files[gid]);
+                            int id = table.ids[gid];
+                            Properties properties = tileset.getProperties(id);
+                            drawElement(draws, element(properties), properties, tileset.getImage(id));
+                        }
+                        unstreamed.clear();
+                    }
+                    break;
+                case "objectgroup":
+                    for (JsonValue object : layer.objects) {
+                        int gid = object.getInt("gid");
+                        if (!table.contains(gid) || table.tiles[gid] == null) continue;
+                        LevelLoader.TiledFile tiledFile = table.files[gid];
+                        int id = table.ids[gid];
+                        JsonValue tile = table.tiles[gid];
+                        Tileset tileset = tilesets.get(tiledFile);
+
+                        Properties properties = new Properties(object.get("properties"), tileset.getProperties(id));
+                        LevelElement.Element element = element(properties);
+                        int[] collider = collider(tiledFile, id, object.getFloat("width") / tileSize,
+                                object.getFloat("height") / tileSize, LevelLoader.objectCollider(object, tile));
+                        objects++;
+                        bodies++;
+                        fixtures += collider[0];
+                        triangles += collider[1];
+                        if (element == LevelElement.Element.BLACK_HOLE) blackHoles++;
+                        drawElement(draws, element, properties, tileset.getImage(id));
+                        if (element == LevelElement.Element.FINISH) {
+                            bodies += FINISH_SPARKLES;
+                            draws.sprite(texture(LevelElement.getFilmStrip(LevelElement.Element.SPARKLE, properties)));
+                        }
+                    }
+                    break;
+                case "imagelayer":
+                    // The background pass is a quad of its own, with a star field mesh over it
+                    draws.shape();
+                    draws.shape();
+                    break;
+            }
+        }
+
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("tiles", tiles);
+        stats.put("objects", objects);
+        stats.put("bodies", bodies);
+        stats.put("fixtures", fixtures);
+        stats.put("triangles", triangles);
+        stats.put("drawCalls", (long) draws.drawCalls);
+        stats.put("textureSwitches", (long) draws.textureSwitches);
+        stats.put("blackHoles", blackHoles);
+        stats.put("heapKB", ((tiles + objects) * ELEMENT_BYTES + bodies * BODY_BYTES
+                + fixtures * FIXTURE_BYTES) / 1024);
+        return stats;
+    }
+
+    /** Counts drawing an element, which is drawn from its film strip if it has one */
+    private void drawElement(DrawCounter draws, LevelElement.Element element,
+                             Properties properties, String tileTexture) {
+        String filmStrip = LevelElement.getFilmStrip(element, properties);
+        if (filmStrip != null) {
+            draws.sprite(texture(filmStrip));
+        } else if (tileTexture != null) {
+            draws.sprite(texture(tileTexture));
+        }
+        if (element == LevelElement.Element.BLACK_HOLE) {
+            // PlayMode outlines every black hole with the shape renderer
+            draws.shape();
+        }
+    }
+
+    private static LevelElement.Element element(Properties properties) {
+        return LevelLoader.stringToElementType(properties.getString("body", "type", null));
+    }
+
+    /** Returns whether a tile is plain and static, so that its tile layer streams it */
+    private static boolean isPlain(LevelElement.Element element, Properties properties) {
+        BodyDef.BodyType bodyType = LevelLoader.stringToBodyType(properties.getString("body", "bodyType", null));
+        return bodyType == BodyDef.BodyType.StaticBody && LevelElement.isPlain(element, properties);
+    }
+
+    /**
+     * Returns the fixtures and plain triangles of a tile's collider at a size.
+     *
+     * @param collider The collider object, or null if the tile has none
+     *
+     * @return the number of convex pieces and of triangles
+     */
+    private int[] collider(LevelLoader.TiledFile tiledFile, int id, float width, float height,
+                           JsonValue collider) {
+        if (collider == null) return new int[2];
+        String key = tiledFile + ":" + id + ":" + width + ":" + height;
+        int[] counts = colliders.get(key);
+        if (counts != null) return counts;
+
+        float[] region = tilesets.get(tiledFile).getSize(id);
+        if (region == null) {
+            counts = new int[2];
+        } else {
+            float[] vertices = LevelLoader.colliderVertices(collider, width, height, region[0], region[1]);
+            counts = new int[] {ColliderCache.decomposeVertices(vertices).length,
+                    ColliderCache.countTriangles(vertices)};
+        }
+        colliders.put(key, counts);
+        return counts;
+    }
+}
@@ -0,0 +1,42 @@
+#ifdef GL_ES
+#ifdef GL_FRAGMENT_PRECISION_HIGH
+    precision highp float;
+#else
+    precision mediump float;
+#endif
+#endif
+
+varying vec2 v_position;
+
+// Per layer, back to front: the texture coordinates at the bottom left of the view,
+// and one over the size of a copy of the image.  The layer count is MAX_BACKGROUND_LAYERS.
+uniform vec4 u_tiles[4];
+uniform sampler2D u_layer0;
+uniform sampler2D u_layer1;
+uniform sampler2D u_layer2;
+uniform sampler2D u_layer3;
+uniform int u_count;
+
+vec4 sampleLayer(sampler2D layer, vec4 tile) {
+    // v runs down the image, and every layer repeats forever
+    return texture2D(layer, fract(vec2(tile.x + v_position.x * tile.z, tile.y - v_position.y * tile.w)));
+}
+
+// Lays a layer over the colour so far, as the sprite batch's alpha blending would
+void over(vec4 layer, inout vec3 color, inout float through) {
+    color = layer.rgb * layer.a + color * (1.0 - layer.a);
+    through *= 1.0 - layer.a;
+}
+
+void main() {
+    vec3 color = vec3(0.0);
+    // How much of whatever is behind the layers still shows
+    float through = 1.0;
+    over(sampleLayer(u_layer0, u_tiles[0]), color, through);
+    if (u_count > 1) over(sampleLayer(u_layer1, u_tiles[1]), color, through);
+    if (u_count > 2) over(sampleLayer(u_layer2, u_tiles[2]), color, through);
+    if (u_count > 3) over(sampleLayer(u_layer3, u_tiles[3]), color, through);
+
+    float alpha = 1.0 - through;
+    gl_FragColor = alpha > 0.0 ? vec4(color / alpha, alpha) : vec4(0.0);
+}
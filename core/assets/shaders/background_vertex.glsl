@@ -0,0 +1,12 @@
+// Background layers: one quad over the whole viewport, given in clip coordinates
+attribute vec2 a_position;
+
+uniform vec2 u_size;
+
+varying vec2 v_position;
+
+void main() {
+    // World units from the bottom left of the view
+    v_position = (a_position * 0.5 + 0.5) * u_size;
+    gl_Position = vec4(a_position, 0.0, 1.0);
+}
@@ -0,0 +1,22 @@
+// Star field: a quad per star, whose film strip frame comes from the time
+attribute vec2 a_position;
+attribute vec2 a_corner;
+attribute vec2 a_texCoord0;
+attribute vec2 a_strip;
+
+uniform mat4 u_projTrans;
+uniform vec2 u_scale;
+uniform vec2 u_offset;
+uniform vec2 u_size;
+uniform float u_frame;
+uniform float u_frames;
+
+varying vec2 v_texCoords;
+
+void main() {
+    // a_strip is the width of a frame in texture coordinates, and the star's first frame
+    float frame = mod(floor(u_frame + a_strip.y), u_frames);
+    v_texCoords = a_texCoord0 + vec2(frame * a_strip.x, 0.0);
+    vec2 position = a_position * u_scale + u_offset + a_corner * u_size;
+    gl_Position = u_projTrans * vec4(position, 0.0, 1.0);
+}
@@ -66,6 +66,8 @@ public class AssetDirectory extends AssetManager {
     protected Index contents;
     /** The dedicated loader for the {@link Index} class */
     protected DirectoryLoader topLoader;
+    /** Texture regions already looked up by texture key (see {@link #getRegion}) */
+    protected ObjectMap<String, TextureRegion> regions = new ObjectMap<String, TextureRegion>();
 
     /**
      * This class represents the top level index of an asset directory.
@@ -160,6 +162,7 @@ public class AssetDirectory extends AssetManager {
 
         // And now the default parsers
         topLoader.addParser( new JsonValueParser() );
+        topLoader.addParser( new AtlasParser() );
         topLoader.addParser( new TextureParser() );
         topLoader.addParser( new TextureRegionParser() );
         topLoader.addParser( new FilmStripParser() );
@@ -219,6 +222,7 @@ public class AssetDirectory extends AssetManager {
                 unload( filename );
             }
         }
+        regions.clear();
         contents = null;
     }
     
@@ -286,6 +290,9 @@ public class AssetDirectory extends AssetManager {
      * The method {@link #loadAssets} must have been called for this method to
      * return a value.
      *
+     * A texture key may also be looked up as a {@link TextureRegion}.  This is the
+     * only way to get a texture that has been packed into an atlas.
+     *
      * @param key  the asset directory key
      * @param type the asset type
      *
@@ -293,16 +300,50 @@ public class AssetDirectory extends AssetManager {
      */
     public <T> T getEntry(String key, Class<T> type) {
         ObjectMap<String, String> keys = contents.keymap.get( type, null );
-        if (keys == null) {
-            return null;
-        }
-        String filename = keys.get( key, null );
+        String filename = keys == null ? null : keys.get( key, null );
         if (filename == null) {
-            return null;
+            return type == TextureRegion.class ? type.cast( getRegion( key ) ) : null;
         }
         return get( filename, type );
     }
 
+    /**
+     * Returns the texture region for a texture key
+     *
+     * If the texture was packed into an atlas, this is its region of the atlas page.
+     * Otherwise it is the whole texture.  Either way, the same region is returned
+     * every time for the same key.
+     *
+     * @param key  the texture key
+     *
+     * @return the texture region for a texture key, or null if there is none
+     */
+    protected TextureRegion getRegion(String key) {
+        TextureRegion region = regions.get( key );
+        if (region != null) {
+            return region;
+        }
+
+        String atlas = AtlasParser.getPackedTextures( this, contents.directory ).get( key );
+        if (atlas != null) {
+            JsonValue texture = contents.directory.get( "textures" ).get( key );
+            String name = texture == null ? null : AtlasParser.getRegionName( texture );
+            region = name == null ? null : get( atlas, TextureAtlas.class ).findRegion( name );
+            if (region == null) {
+                System.out.printf("WARNING: %s has no region for texture '%s', pack the atlases again\n", atlas, key);
+                return null;
+            }
+        } else {
+            Texture texture = getEntry( key, Texture.class );
+            if (texture == null) {
+                return null;
+            }
+            region = new TextureRegion( texture );
+        }
+        regions.put( key, region );
+        return region;
+    }
+
     /**
      * Returns true if there is an asset associated with the given directory key
      * 
@@ -316,12 +357,9 @@ public class AssetDirectory extends AssetManager {
      */
     public <T> boolean hasEntry(String key, Class<T> type) {
         ObjectMap<String, String> keys = contents.keymap.get( type, null );
-        if (keys == null) {
-            return false;
-        }
-        String filename = keys.get( key, null );
+        String filename = keys == null ? null : keys.get( key, null );
         if (filename == null) {
-            return false;
+            return type == TextureRegion.class && getRegion( key ) != null;
         }
         return contains( filename, type );
     }
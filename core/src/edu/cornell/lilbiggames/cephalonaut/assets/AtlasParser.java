@@ -0,0 +1,123 @@
+/*
+ * AtlasParser.java
+ *
+ * This is an interface for parsing a JSON entry into a TextureAtlas asset.  The
+ * atlases are packed from entries of the "textures" section at build time (see
+ * the tools project), so each atlas entry lists the texture keys it packs.
+ */
+package edu.cornell.lilbiggames.cephalonaut.assets;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * This class parses a JSON entry into a {@link TextureAtlas}.
+ *
+ * An entry has the atlas file and the keys of the textures packed into it:
+ *
+ *     "game": { "file": "atlas/game.atlas", "textures": [ "a:blackhole", ... ] }
+ *
+ * Each texture is a region named after its image file.  If the atlas has not been
+ * packed, it is skipped and its textures are loaded one by one as before.  Either
+ * way, {@link AssetDirectory#getEntry} finds a packed texture as a TextureRegion.
+ */
+public class AtlasParser implements AssetParser<TextureAtlas> {
+    /** The current atlas entry in the JSON directory */
+    private JsonValue root;
+
+    /**
+     * Returns the asset type generated by this parser
+     *
+     * @return the asset type generated by this parser
+     */
+    public Class<TextureAtlas> getType() {
+        return TextureAtlas.class;
+    }
+
+    /**
+     * Resets the parser iterator for the given directory.
+     *
+     * @param directory    The JSON representation of the asset directory
+     */
+    public void reset(JsonValue directory) {
+        root = directory;
+        root = root.getChild( "atlases" );
+    }
+
+    /**
+     * Returns true if there are still assets left to generate
+     *
+     * @return true if there are still assets left to generate
+     */
+    public boolean hasNext() {
+        return root != null;
+    }
+
+    /**
+     * Processes the next available atlas, loading it into the asset manager
+     *
+     * The key will be the name of the atlas object.  Atlases that have not been
+     * packed are skipped.
+     *
+     * @param manager	The asset manager to load an asset
+     * @param keymap    The mapping of JSON keys to asset file names
+     */
+    public void processNext(AssetManager manager, ObjectMap<String,String> keymap) {
+        String file = root.getString( "file", null );
+        if (file != null && isPacked( manager, file )) {
+            keymap.put(root.name(),file);
+            manager.load( file,TextureAtlas.class );
+        }
+        root = root.next();
+    }
+
+    /**
+     * Returns the atlas file of each packed texture key in a directory.
+     *
+     * @param manager   The asset manager, to find the atlas files
+     * @param directory The JSON representation of the asset directory
+     *
+     * @return the atlas file of each texture key whose atlas has been packed
+     */
+    public static ObjectMap<String,String> getPackedTextures(AssetManager manager, JsonValue directory) {
+        ObjectMap<String,String> packed = new ObjectMap<String,String>();
+        JsonValue atlas = directory.getChild( "atlases" );
+        for (; atlas != null; atlas = atlas.next()) {
+            String file = atlas.getString( "file", null );
+            if (file == null || !isPacked( manager, file )) {
+                continue;
+            }
+            for (JsonValue key = atlas.getChild( "textures" ); key != null; key = key.next()) {
+                packed.put( key.asString(), file );
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the image file of a texture entry, which names its atlas region
+     *
+     * @param texture   The texture entry in the "textures" section
+     *
+     * @return the image file of a texture entry
+     */
+    public static String getRegionName(JsonValue texture) {
+        return texture.isString() ? texture.asString() : texture.getString( "file", null );
+    }
+
+    private static boolean isPacked(AssetManager manager, String file) {
+        return manager.getFileHandleResolver().resolve( file ).exists();
+    }
+
+    /**
+     * Returns true if o is another AtlasParser
+     *
+     * @return true if o is another AtlasParser
+     */
+    public boolean equals(Object o) {
+        return o instanceof AtlasParser;
+    }
+
+}
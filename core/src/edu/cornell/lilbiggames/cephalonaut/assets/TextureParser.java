@@ -27,10 +27,17 @@ import com.badlogic.gdx.utils.ObjectMap;
  * used on loading.
  * 
  * all properties) are stored in the file.
+ *
+ * Textures packed into an atlas that has been built are not loaded on their own.
+ * See {@link AtlasParser}.
  */
 public class TextureParser implements AssetParser<Texture> {
     /** The current font entry in the JSON directory */
     private JsonValue root;
+    /** The directory being parsed */
+    private JsonValue directory;
+    /** The atlas file of each packed texture key, found on the first entry */
+    private ObjectMap<String,String> packed;
 
     /**
      * Returns the asset type generated by this parser
@@ -50,6 +57,8 @@ public class TextureParser implements AssetParser<Texture> {
      * @param directory    The JSON representation of the asset directory
      */
     public void reset(JsonValue directory) {
+        this.directory = directory;
+        packed = null;
         root = directory;
         root = root.getChild( "textures" );
     }
@@ -79,6 +88,13 @@ public class TextureParser implements AssetParser<Texture> {
      * @param keymap    The mapping of JSON keys to asset file names
      */
     public void processNext(AssetManager manager, ObjectMap<String,String> keymap) {
+        if (packed == null) {
+            packed = AtlasParser.getPackedTextures( manager, directory );
+        }
+        if (packed.containsKey( root.name() )) {
+            root = root.next();
+            return;
+        }
         TextureLoader.TextureParameter params = new TextureLoader.TextureParameter();
         if (root.isString()) {
             params.genMipMaps = false;
@@ -0,0 +1,344 @@
+/*
+ * DrawBenchmark.java
+ *
+ * Times how long a level checkpoint takes to draw on the CPU, with and without
+ * culling the objects off screen.
+ *
+ * The camera sweeps over the whole level, row by row, so that busy and empty
+ * parts are both measured.  Only PlayMode.draw is timed.  The GPU is waited on
+ * after every frame, so that its work does not show up in the next frame's time.
+ * Texture binds and draw calls are counted with a GLProfiler, in both modes,
+ * where the backend lets it wrap the GL; otherwise they are shown as unknown.
+ * The bytes PlayMode.draw allocates are counted too, where the JVM can, since the
+ * HUD and the rest of a frame should make no garbage once the level is warm.
+ * Streaming chunks in as the camera moves makes bodies, so it is left out.
+ * A last run with culling and debug mode on checks the debug overlay as well.
+ * The level select, checkpoint select and level complete menus are then drawn
+ * on their own and checked the same way.  The benchmark fails if any frame of a
+ * culled run or a menu allocates.
+ *
+ * Given a size, the level's tiles are repeated to fill a level that big, to
+ * check that drawing a level bigger than any that ship costs no more per frame.
+ * The draw calls are then shown for each row of the sweep, and the benchmark
+ * fails if they grow from the first row to the last, or if any chunk is drawn
+ * tile by tile because the sprite caches ran out of room.
+ */
+package edu.cornell.lilbiggames.cephalonaut.engine;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.profiling.GLInterceptor;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.math.Rectangle;
+import edu.cornell.lilbiggames.cephalonaut.engine.controller.ChunkStreamer;
+import edu.cornell.lilbiggames.cephalonaut.engine.controller.DrawCuller;
+import edu.cornell.lilbiggames.cephalonaut.engine.controller.MenuMode;
+import edu.cornell.lilbiggames.cephalonaut.engine.controller.PlayMode;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelLoader;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * A draw benchmark for a single level checkpoint.
+ */
+public class DrawBenchmark {
+	/** Frames drawn before timing each mode, so the JIT and sprite caches are warm */
+	private static final int WARMUP_FRAMES = 60;
+	/** Number of rows the camera sweeps over the level in */
+	private static final int ROWS = 4;
+	/** How much more the last row of a repeated level may draw than the first */
+	private static final double FLAT_TOLERANCE = 1.5;
+	/** Counts the bytes each thread allocates; looking it up allocates, so it is kept */
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	/** Level to draw */
+	private final String level;
+	/** Checkpoint to draw */
+	private final String checkpoint;
+	/** Number of timed frames per mode */
+	private final int frames;
+	/** Width and height to repeat the level's tiles to, or 0 to draw it as it is */
+	private final int size;
+	/** Bytes drawing has allocated so far in a run, or -1 if the JVM cannot count them */
+	private long allocated;
+	/** Frames of a run that allocated anything */
+	private int allocatingFrames;
+	/** Draw calls and frames of each row of the sweep, for the run being timed */
+	private final long[] rowCalls = new long[ROWS];
+	private final int[] rowFrames = new int[ROWS];
+
+	/**
+	 * Creates a new benchmark.
+	 *
+	 * @param level      The level to draw, e.g. "level_2"
+	 * @param checkpoint The checkpoint to draw, e.g. "checkpoint_5"
+	 * @param frames     The number of timed frames with and without culling
+	 */
+	public DrawBenchmark(String level, String checkpoint, int frames) {
+		this(level, checkpoint, frames, 0);
+	}
+
+	/**
+	 * Creates a new benchmark of a level repeated to a bigger size.
+	 *
+	 * @param level      The level to draw, e.g. "level_2"
+	 * @param checkpoint The checkpoint to draw, e.g. "checkpoint_5"
+	 * @param frames     The number of timed frames with and without culling
+	 * @param size       The width and height to repeat the tiles to, or 0 to draw the level as it is
+	 */
+	public DrawBenchmark(String level, String checkpoint, int frames, int size) {
+		this.level = level;
+		this.checkpoint = checkpoint;
+		this.frames = frames;
+		this.size = size;
+	}
+
+	public String getLevel() {
+		return level;
+	}
+
+	public String getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * Draws the level with culling off, on, and on in debug mode, and prints the times.
+	 *
+	 * @param playMode A play mode for this benchmark's level, with its canvas set
+	 * @param loader   The loader of the play mode, to repeat the level with
+	 *
+	 * @return true if the culled runs allocated nothing once warm, and a repeated
+	 *         level drew no more per frame at the end of the sweep than at the start
+	 */
+	public boolean run(PlayMode playMode, LevelLoader loader) {
+		if (size > 0) {
+			playMode.reset(loader.loadRepeatedLevel(level, checkpoint, size, size));
+			System.out.printf("Draw benchmark: %s:%s repeated to %dx%d, %d frames per mode\n",
+					level, checkpoint, size, size, frames);
+		} else {
+			playMode.reset();
+			System.out.printf("Draw benchmark: %s:%s, %d frames per mode\n", level, checkpoint, frames);
+		}
+		GLProfiler profiler = new GLProfiler(Gdx.graphics);
+		profiler.enable();
+		// Backends without a GL of their own, such as the headless one, cannot be wrapped
+		boolean profiled = Gdx.graphics.getGL20() instanceof GLInterceptor;
+		double baseline = 0;
+		boolean passed = true;
+		for (int run = 0; run < 3; run++) {
+			boolean culling = run > 0;
+			boolean debug = run == 2;
+			playMode.setCulling(culling);
+			playMode.setDebug(debug);
+			for (int i = 0; i < WARMUP_FRAMES; i++) {
+				drawFrame(playMode, i, WARMUP_FRAMES);
+			}
+
+			long worst = 0;
+			long total = 0;
+			long drawn = 0;
+			long culled = 0;
+			long binds = 0;
+			long calls = 0;
+			long uncached = 0;
+			DrawCuller culler = playMode.getCuller();
+			ChunkStreamer streamer = playMode.getStreamer();
+			for (int row = 0; row < ROWS; row++) {
+				rowCalls[row] = 0;
+				rowFrames[row] = 0;
+			}
+			startCounting();
+			for (int i = 0; i < frames; i++) {
+				profiler.reset();
+				long elapsed = drawFrame(playMode, i, frames);
+				binds += profiler.getTextureBindings();
+				calls += profiler.getDrawCalls();
+				rowCalls[getRow(i, frames)] += profiler.getDrawCalls();
+				rowFrames[getRow(i, frames)]++;
+				uncached += streamer.getUncachedCount();
+				worst = Math.max(worst, elapsed);
+				total += elapsed;
+				drawn += culler.getDrawnCount();
+				culled += culler.getCulledCount();
+			}
+
+			double mean = total / (double) frames / 1e6;
+			if (!culling) baseline = mean;
+			System.out.printf("  culling %-3s%s: %7.3fms mean, %7.3fms worst, %6.1f drawn, %6.1f culled, "
+							+ "%5s binds, %5s draw calls, %s bytes allocated, %.2fx\n",
+					culling ? "on" : "off", debug ? " (debug)" : "", mean, worst / 1e6,
+					drawn / (double) frames, culled / (double) frames,
+					profiled ? String.format("%.1f", binds / (double) frames) : "?",
+					profiled ? String.format("%.1f", calls / (double) frames) : "?",
+					allocated < 0 ? "?" : String.format("%.0f", allocated / (double) frames), baseline / mean);
+			if (culling) {
+				passed &= checkAllocated(debug ? "drawing in debug mode" : "drawing");
+			}
+			if (culling && !debug && size > 0) {
+				passed &= checkFlat(profiled, uncached);
+			}
+		}
+		if (profiled) {
+			profiler.disable();
+		}
+		playMode.setCulling(true);
+		playMode.setDebug(false);
+		return passed;
+	}
+
+	/**
+	 * Draws a menu over and over, and prints the time and the bytes it allocates.
+	 *
+	 * Menus only animate in their update, so the same frame is drawn each time.
+	 *
+	 * @param menu A menu, set up as it is when it is shown
+	 *
+	 * @return true if drawing the menu allocated nothing once warm
+	 */
+	public boolean runMenu(MenuMode menu) {
+		String name = menu.getClass().getSimpleName();
+		for (int i = 0; i < WARMUP_FRAMES; i++) {
+			menu.draw();
+			Gdx.gl.glFinish();
+		}
+
+		long worst = 0;
+		long total = 0;
+		startCounting();
+		for (int i = 0; i < frames; i++) {
+			long allocatedBefore = allocated < 0 ? 0 : allocatedBytes();
+			long start = System.nanoTime();
+			menu.draw();
+			long elapsed = System.nanoTime() - start;
+			countAllocated(allocatedBefore);
+			Gdx.gl.glFinish();
+			worst = Math.max(worst, elapsed);
+			total += elapsed;
+		}
+		System.out.printf("  %-18s: %7.3fms mean, %7.3fms worst, %s bytes allocated\n", name,
+				total / (double) frames / 1e6, worst / 1e6,
+				allocated < 0 ? "?" : String.format("%.0f", allocated / (double) frames));
+		return checkAllocated("drawing " + name);
+	}
+
+	/**
+	 * Prints the draw calls of each row of the sweep over a repeated level, and a
+	 * failure if they grew or any chunk was drawn tile by tile.
+	 *
+	 * @param profiled Whether the draw calls were counted
+	 * @param uncached The chunks drawn tile by tile, summed over the run's frames
+	 *
+	 * @return true if drawing cost no more at the end of the sweep than at the start
+	 */
+	private boolean checkFlat(boolean profiled, long uncached) {
+		boolean passed = true;
+		if (uncached > 0) {
+			System.out.printf("FAILED: %.1f chunks per frame drawn tile by tile, the sprite caches are full\n",
+					uncached / (double) frames);
+			passed = false;
+		}
+		if (!profiled) {
+			return passed;
+		}
+		System.out.print("  draw calls by row:");
+		for (int row = 0; row < ROWS; row++) {
+			System.out.printf(" %.1f", rowCalls[row] / (double) Math.max(rowFrames[row], 1));
+		}
+		System.out.println();
+		double first = rowCalls[0] / (double) Math.max(rowFrames[0], 1);
+		double last = rowCalls[ROWS - 1] / (double) Math.max(rowFrames[ROWS - 1], 1);
+		// The rows see different copies of the same tiles, so only steady growth is a failure
+		if (last > first * FLAT_TOLERANCE) {
+			System.out.printf("FAILED: draw calls grew from %.1f to %.1f per frame over the sweep\n", first, last);
+			passed = false;
+		}
+		return passed;
+	}
+
+	/** Clears the allocation counts for a new run */
+	private void startCounting() {
+		allocated = allocatedBytes() < 0 ? -1 : 0;
+		allocatingFrames = 0;
+	}
+
+	/**
+	 * Adds what a frame allocated to the run's counts.
+	 *
+	 * @param allocatedBefore The allocated bytes just before the frame was drawn
+	 */
+	private void countAllocated(long allocatedBefore) {
+		if (allocated < 0) {
+			return;
+		}
+		long bytes = allocatedBytes() - allocatedBefore;
+		allocated += bytes;
+		// The smallest object is 16 bytes, so less than that is the counting itself
+		if (bytes >= 16) {
+			allocatingFrames++;
+		}
+	}
+
+	/**
+	 * Prints a failure if any frame of the run allocated.
+	 *
+	 * @param what What was drawn, for the message
+	 *
+	 * @return true if no frame allocated, or the JVM cannot tell
+	 */
+	private boolean checkAllocated(String what) {
+		if (allocatingFrames == 0) {
+			return true;
+		}
+		System.out.printf("FAILED: %s allocates in %d of %d frames, %.0f bytes per frame\n",
+				what, allocatingFrames, frames, allocated / (double) frames);
+		return false;
+	}
+
+	/**
+	 * Returns the bytes this thread has allocated so far, or -1 if the JVM cannot
+	 * count them.
+	 *
+	 * Only the difference between two calls means anything.  The call itself
+	 * may allocate a little until the JIT has compiled it, which the warm-up frames
+	 * take care of.
+	 */
+	private static long allocatedBytes() {
+		if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/** Returns the row of the sweep the camera is on in a frame */
+	private static int getRow(int frame, int count) {
+		return Math.min((int) (frame / (float) count * ROWS), ROWS - 1);
+	}
+
+	/**
+	 * Moves the camera to its place for a frame, and draws the frame.
+	 *
+	 * @param playMode The play mode to draw
+	 * @param frame    The frame number
+	 * @param count    The number of frames in the sweep
+	 *
+	 * @return the time spent drawing, in nanoseconds
+	 */
+	private long drawFrame(PlayMode playMode, int frame, int count) {
+		Rectangle bounds = playMode.getBounds();
+		float t = frame / (float) count * ROWS;
+		int row = getRow(frame, count);
+		float across = t - row;
+		// Back and forth, so the camera never jumps
+		float x = bounds.x + bounds.width * (row % 2 == 0 ? across : 1 - across);
+		float y = bounds.y + bounds.height * (row + 0.5f) / ROWS;
+		playMode.lookAt(x, y);
+
+		long allocatedBefore = allocated < 0 ? 0 : allocatedBytes();
+		long start = System.nanoTime();
+		playMode.draw(0);
+		long elapsed = System.nanoTime() - start;
+		countAllocated(allocatedBefore);
+		Gdx.gl.glFinish();
+		return elapsed;
+	}
+}
@@ -26,6 +26,8 @@ import java.util.*;
 import edu.cornell.lilbiggames.cephalonaut.util.FilmStrip;
 import edu.cornell.lilbiggames.cephalonaut.util.ScreenListener;
 import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelLoader;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelPrefetcher;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelWatcher;
 
 /**
  * Root class for a LibGDX.  
@@ -57,6 +59,8 @@ public class GDXRoot extends Game implements ScreenListener {
 	private SettingsMode settings;
 	private CreditsScreen credits;
 	private LevelLoader levelLoader;
+	/** Builds the next checkpoint while the level complete and loading screens are up */
+	private LevelPrefetcher prefetcher;
 	private DialogueMode dialogueMode;
 
 	private float alpha;
@@ -75,6 +79,19 @@ public class GDXRoot extends Game implements ScreenListener {
 
 	private GameState state;
 
+	/** Restart soak to run once the assets are loaded (null to play normally) */
+	private ResourceSoak soak;
+	/** Level load benchmark to run once the assets are loaded (null to play normally) */
+	private LoadBenchmark benchmark;
+	/** Level draw benchmark to run once the assets are loaded (null to play normally) */
+	private DrawBenchmark drawBenchmark;
+	/** Number of local players racing in each level (1 for a normal game) */
+	private int racePlayers = 1;
+	/** Whether to patch the level being played when Tiled saves it */
+	private boolean hotReload;
+	/** Watches the level files when hot reloading (null otherwise) */
+	private LevelWatcher levelWatcher;
+
 	/**
 	 * Creates a new game from the configuration settings.
 	 *
@@ -85,6 +102,57 @@ public class GDXRoot extends Game implements ScreenListener {
 
 	}
 
+	/**
+	 * Creates a new game that runs a restart soak instead of the menus.
+	 *
+	 * @param soak The soak to run once the assets are loaded
+	 */
+	public GDXRoot(ResourceSoak soak) {
+		this.soak = soak;
+	}
+
+	/**
+	 * Creates a new game that runs a level load benchmark instead of the menus.
+	 *
+	 * @param benchmark The benchmark to run once the assets are loaded
+	 */
+	public GDXRoot(LoadBenchmark benchmark) {
+		this.benchmark = benchmark;
+	}
+
+	/**
+	 * Creates a new game that runs a level draw benchmark instead of the menus.
+	 *
+	 * @param benchmark The benchmark to run once the assets are loaded
+	 */
+	public GDXRoot(DrawBenchmark benchmark) {
+		this.drawBenchmark = benchmark;
+	}
+
+	/**
+	 * Sets the number of local players racing in every level started from the menus.
+	 *
+	 * Player 1 uses the keyboard and mouse, every other player needs an X-Box
+	 * controller.
+	 *
+	 * @param count The number of local players (1 to InputController.MAX_PLAYERS)
+	 */
+	public void setRacePlayers(int count) {
+		racePlayers = count;
+	}
+
+	/**
+	 * Sets whether the level being played is patched when its Tiled file is saved.
+	 *
+	 * This only works when the assets are plain files, as when running from the
+	 * project's assets directory.
+	 *
+	 * @param value Whether to hot reload levels
+	 */
+	public void setHotReload(boolean value) {
+		hotReload = value;
+	}
+
 	private void initializeGameState() {
 		JsonValue gameState = directory.getEntry("gamestate", JsonValue.class);
 		state = new GameState();
@@ -123,6 +191,7 @@ public class GDXRoot extends Game implements ScreenListener {
 			}
 			levelWinTextures.put(i, (ArrayList<TextureRegion>) textures);
 		}
+		levelLoader.saveLevelIndex();
 	}
 
 	/**
@@ -177,13 +246,37 @@ public class GDXRoot extends Game implements ScreenListener {
 	public void selectLevel(){
 		String levelName = mainMenu.getCurLevel();
 		String checkpointName = "checkpoint_" + mainMenuNestedMode.getNumCompletedCheckpoints();
+		// The old level still owns a world full of bodies
+		if (playMode != null) {
+			playMode.dispose();
+		}
 		playMode = new PlayMode(this, levelLoader, levelName, checkpointName, keyBindings, dialogueMode);
 		playMode.gatherAssets(directory);
 		playMode.setCanvas(canvas);
-		playMode.reset();
+		playMode.setPlayerCount(racePlayers);
+		playMode.setLevelWatcher(levelWatcher);
+		LevelLoader.LevelDef prefetched = prefetcher.take(levelName, checkpointName);
+		if (prefetched != null) {
+			playMode.reset(prefetched);
+		} else {
+			playMode.reset();
+		}
 		startScreenTransition(playMode);
 	}
 
+	/**
+	 * Starts building the checkpoint that NEXT_LEVEL_CODE will select.
+	 */
+	private void prefetchNextCheckpoint() {
+		int curLevel = mainMenu.getCurLevelNumber();
+		int completed = mainMenuNestedMode.getNumCompletedCheckpoints();
+		if (completed == numCheckpointsPerLevel.get(curLevel)-1) {
+			prefetcher.prefetch("level_" + (curLevel+1) % MainMenuMode.NUM_LEVELS, "checkpoint_0");
+		} else {
+			prefetcher.prefetch(mainMenu.getCurLevel(), "checkpoint_" + (completed+1));
+		}
+	}
+
 
 	/** 
 	 * Called when the Application is destroyed. 
@@ -197,8 +290,28 @@ public class GDXRoot extends Game implements ScreenListener {
 		if(mainMenu != null)
 			mainMenu.dispose();
 
+		if (playMode != null) {
+			playMode.dispose();
+			playMode = null;
+		}
+
 		canvas.dispose();
 		canvas = null;
+
+		if (prefetcher != null) {
+			prefetcher.dispose();
+			prefetcher = null;
+		}
+
+		if (levelWatcher != null) {
+			levelWatcher.dispose();
+			levelWatcher = null;
+		}
+
+		if (levelLoader != null) {
+			levelLoader.dispose();
+			levelLoader = null;
+		}
 	
 		// Unload all of the resources
 		if (directory != null) {
@@ -248,6 +361,10 @@ public class GDXRoot extends Game implements ScreenListener {
 		if(exitCode == MenuMode.DONE_LOADING_ASSETS){
 			directory = assetLoadingScreen.getAssetDirectory();
 			levelLoader = new LevelLoader(directory);
+			prefetcher = new LevelPrefetcher(levelLoader);
+			if (hotReload) {
+				levelWatcher = LevelWatcher.watch(Gdx.files.internal("levels").file().getAbsoluteFile());
+			}
 			SoundController.gatherSoundAssets(directory);
 
 			initializeCheckpointsMap();
@@ -278,6 +395,20 @@ public class GDXRoot extends Game implements ScreenListener {
 			}
 			loadingScreen = new LevelLoadingScreen(directory, canvas, this,200f, filmStrips, NUM_FRAMES, FILM_STRIP_SIZE);
 
+			if (soak != null) {
+				runSoak();
+				return;
+			}
+			if (benchmark != null) {
+				benchmark.run(levelLoader);
+				dispose();
+				System.exit(0);
+			}
+			if (drawBenchmark != null) {
+				runDrawBenchmark();
+				return;
+			}
+
 			SoundController.setMusicVolume(0.5f);
 			SoundController.startMenuMusic();
 			startScreenTransition(startScreenMode);
@@ -341,6 +472,7 @@ public class GDXRoot extends Game implements ScreenListener {
 			levelCompleteMode.setTimeString(playMode.getTimeString());
 			levelCompleteMode.setStars(playMode.getTwoStars(), playMode.getThreeStars());
 			levelCompleteMode.setLevelIdentifier(playMode.getLevelIdentifier());
+			prefetchNextCheckpoint();
 			if(mainMenu.getCurLevelNumber()==6 && playMode.getCheckpoint().equals(("checkpoint_6"))){
 				FilmStrip dap = new FilmStrip(directory.getEntry("game-end-animation", Texture.class), 1, 9);
 				loadingScreen.setNewFilm(new FilmStrip[]{dap}, 9, 9);
@@ -396,6 +528,42 @@ public class GDXRoot extends Game implements ScreenListener {
 		prevScreen = screen;
 	}
 
+	/**
+	 * Runs the restart soak and quits, with a failing exit status if anything leaked.
+	 */
+	private void runSoak() {
+		playMode = new PlayMode(this, levelLoader, soak.getLevel(), soak.getCheckpoint(), keyBindings, dialogueMode);
+		playMode.gatherAssets(directory);
+		playMode.setCanvas(canvas);
+		boolean passed = soak.run(playMode);
+		dispose();
+		System.exit(passed ? 0 : 1);
+	}
+
+	/**
+	 * Runs the draw benchmark and quits, with a failing exit status if drawing allocated.
+	 */
+	private void runDrawBenchmark() {
+		playMode = new PlayMode(this, levelLoader, drawBenchmark.getLevel(), drawBenchmark.getCheckpoint(), keyBindings, dialogueMode);
+		playMode.gatherAssets(directory);
+		playMode.setCanvas(canvas);
+		boolean passed = drawBenchmark.run(playMode, levelLoader);
+
+		// The menus are set up as they are shown on the way into and out of the level
+		canvas.setCameraPos(canvas.getWidth()/2, canvas.getHeight()/2);
+		initializeCheckpointSelect();
+		levelCompleteMode.setTimer(playMode.getTimer());
+		levelCompleteMode.setTimeString(playMode.getTimeString());
+		levelCompleteMode.setStars(playMode.getTwoStars(), playMode.getThreeStars());
+		levelCompleteMode.setLevelIdentifier(playMode.getLevelIdentifier());
+		levelCompleteMode.setDefault();
+		passed &= drawBenchmark.runMenu(mainMenu);
+		passed &= drawBenchmark.runMenu(mainMenuNestedMode);
+		passed &= drawBenchmark.runMenu(levelCompleteMode);
+		dispose();
+		System.exit(passed ? 0 : 1);
+	}
+
 	private void setBackScreen(Screen screen){
 		if(screen instanceof CreditsScreen){
 			backScreen = startScreenMode;
@@ -23,7 +23,11 @@ import com.badlogic.gdx.graphics.*;
 import com.badlogic.gdx.graphics.g2d.*;
 import com.badlogic.gdx.graphics.glutils.*;
 import com.badlogic.gdx.physics.box2d.*;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectMap;
 import edu.cornell.lilbiggames.cephalonaut.engine.ui.Slider;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
 
 import java.sql.Time;
 import java.util.Date;
@@ -99,14 +103,123 @@ public class GameCanvas {
 
 	private final ShaderProgram shaderProgram;
 	private final ShaderProgram accretionShader;
+	/** Draws a StarField mesh */
+	private final ShaderProgram starShader;
+	/** Fills the view with the background layers, see drawBackgrounds */
+	private final ShaderProgram backgroundShader;
+	/** A quad over the whole viewport, in clip coordinates */
+	private Mesh backgroundQuad;
 
 	private FrameBuffer bgFrame;
 	private FrameBuffer fgFrame;
 	private FrameBuffer temp;
 
-	private final float[] blackHoles = new float[60];
+	private final float[] blackHoles = new float[3 * MAX_BLACK_HOLES];
 	private int blackHoleCount;
 
+	/** The most black holes drawn in a frame, the size of u_bh in the shaders */
+	public static final int MAX_BLACK_HOLES = 20;
+	/** The most split-screen viewports we support */
+	public static final int MAX_VIEWPORTS = 4;
+	/** Colour of the ring around a black hole, parsed once rather than every frame */
+	private static final Color BLACK_HOLE_OUTLINE = Color.valueOf("ff7c21A0");
+	/** Number of split-screen viewports (1 when not split) */
+	private int viewportCount = 1;
+	/** The viewport we are currently drawing or moving the camera in */
+	private int viewportIndex;
+	/** Screen rectangle of the current viewport, in window coordinates */
+	private int viewportX, viewportY, viewportWidth, viewportHeight;
+	/** Camera position for each viewport */
+	private final Vector2[] viewportCameras = new Vector2[MAX_VIEWPORTS];
+
+	/** The most sprites all of the sprite caches can hold (the limit of a SpriteCache with indices) */
+	public static final int MAX_CACHED_SPRITES = 8191;
+	/** Sprites that never move, recorded once instead of every frame */
+	private SpriteCache spriteCache;
+	/** Translation of the sprite caches being drawn */
+	private Matrix4 cacheTransform;
+	/** The number of sprites each cache has room for */
+	private final IntArray cacheSizes = new IntArray();
+	/** The number of sprites in all of the caches */
+	private int cachedSprites;
+	/** Caches given back with releaseCache(), for new caches to record over */
+	private final IntArray freeCaches = new IntArray();
+	/** The number of sprites the released caches have room for */
+	private int freeSprites;
+	/** The cache being recorded, its room left, and the sprites added so far */
+	private int cacheRecording = -1;
+	private int cacheRoom, cacheCount;
+	/** Counts the times the caches were cleared, as cache ids are reused afterwards */
+	private int cacheGeneration;
+
+	/** The most text layouts kept, see layoutText */
+	private static final int MAX_CACHED_TEXTS = 128;
+	/** The layout of each text label, by label */
+	private final ObjectMap<String, CachedText> textCache = new ObjectMap<>();
+	/** Counts the texts drawn, to tell which label was drawn longest ago */
+	private long textUses;
+
+	/**
+	 * The layout of a label, kept until its text or font changes.
+	 */
+	private static class CachedText {
+		final GlyphLayout layout = new GlyphLayout();
+		/** What the layout was made from */
+		final StringBuilder text = new StringBuilder();
+		BitmapFont font;
+		float scaleX, scaleY;
+		final Color color = new Color();
+		/** The value of textUses when the label was last drawn */
+		long used;
+
+		/** Returns true if the layout is of this text, in the font as it is now */
+		boolean matches(CharSequence text, BitmapFont font) {
+			if (font != this.font || font.getData().scaleX != scaleX || font.getData().scaleY != scaleY
+					|| !font.getColor().equals(color) || text.length() != this.text.length()) {
+				return false;
+			}
+			for (int i = 0; i < text.length(); i++) {
+				if (text.charAt(i) != this.text.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/** Lays out the text again */
+		void set(CharSequence text, BitmapFont font) {
+			this.text.setLength(0);
+			this.text.append(text);
+			this.font = font;
+			scaleX = font.getData().scaleX;
+			scaleY = font.getData().scaleY;
+			color.set(font.getColor());
+			layout.setText(font, text);
+		}
+	}
+
+	/** The most vertices of a triangle strip, see drawStrip */
+	public static final int MAX_STRIP_VERTICES = 512;
+	/** The triangles of the longest strip, as the sprite batch takes them */
+	private static final short[] STRIP_TRIANGLES = new short[3 * (MAX_STRIP_VERTICES - 2)];
+	static {
+		for (int i = 0; i < MAX_STRIP_VERTICES - 2; i++) {
+			STRIP_TRIANGLES[3 * i] = (short) i;
+			STRIP_TRIANGLES[3 * i + 1] = (short) (i + 1);
+			STRIP_TRIANGLES[3 * i + 2] = (short) (i + 2);
+		}
+	}
+
+	/** The most background layers blended in one pass, the samplers in background_fragment.glsl */
+	public static final int MAX_BACKGROUND_LAYERS = 4;
+	/** The background layers waiting to be drawn, back to front */
+	private final Texture[] backgrounds = new Texture[MAX_BACKGROUND_LAYERS];
+	/** The sampler of each layer in the background shader */
+	private static final String[] BACKGROUND_SAMPLERS = {"u_layer0", "u_layer1", "u_layer2", "u_layer3"};
+	/** Per layer: texture coordinates at the bottom left of the view, and one over the copy size */
+	private final float[] backgroundTiles = new float[4 * MAX_BACKGROUND_LAYERS];
+	private int backgroundCount;
+
 	/**
 	 * Creates a new GameCanvas determined by the application configuration.
 	 * 
@@ -121,12 +234,17 @@ public class GameCanvas {
 		shapeRen = new ShapeRenderer();
 
 		// Set the projection matrix (for proper scaling)
+		for (int i = 0; i < MAX_VIEWPORTS; i++) {
+			viewportCameras[i] = new Vector2();
+		}
 		camera = new OrthographicCamera(getWidth(),getHeight());
 		camera.setToOrtho(false);
 		spriteBatch.setProjectionMatrix(camera.combined);
 		debugRender.setProjectionMatrix(camera.combined);
 
 		spriteBatch.enableBlending();
+		spriteCache = new SpriteCache(MAX_CACHED_SPRITES, true);
+		cacheTransform = new Matrix4();
 
 		// Initialize the cache objects
 		holder = new TextureRegion();
@@ -138,8 +256,20 @@ public class GameCanvas {
 		String fragmentShader = Gdx.files.internal("shaders/fragment.glsl").readString();
 		String fragmentAccretionShader = Gdx.files.internal("shaders/fragment_accretion.glsl").readString();
 
-		shaderProgram = new ShaderProgram(vertexShader, fragmentShader);
-		accretionShader = new ShaderProgram(vertexShader, fragmentAccretionShader);
+		shaderProgram = ResourceTracker.track(ResourceTracker.Type.SHADER_PROGRAM,
+				new ShaderProgram(vertexShader, fragmentShader));
+		accretionShader = ResourceTracker.track(ResourceTracker.Type.SHADER_PROGRAM,
+				new ShaderProgram(vertexShader, fragmentAccretionShader));
+		starShader = ResourceTracker.track(ResourceTracker.Type.SHADER_PROGRAM,
+				new ShaderProgram(Gdx.files.internal("shaders/stars_vertex.glsl").readString(),
+						Gdx.files.internal("shaders/stars_fragment.glsl").readString()));
+		backgroundShader = ResourceTracker.track(ResourceTracker.Type.SHADER_PROGRAM,
+				new ShaderProgram(Gdx.files.internal("shaders/background_vertex.glsl").readString(),
+						Gdx.files.internal("shaders/background_fragment.glsl").readString()));
+		backgroundQuad = ResourceTracker.track(ResourceTracker.Type.MESH, new Mesh(true, 4, 6,
+				new VertexAttribute(VertexAttributes.Usage.Position, 2, "a_position")));
+		backgroundQuad.setVertices(new float[] {-1, -1, 1, -1, 1, 1, -1, 1});
+		backgroundQuad.setIndices(new short[] {0, 1, 2, 2, 3, 0});
 
 		resize();
 	}
@@ -188,6 +318,163 @@ public class GameCanvas {
 	public float getCameraY() {
 		return camera.position.y;
 	}
+
+	/**
+	 * Splits the screen into the given number of viewports.
+	 *
+	 * Two viewports sit side by side, three or four are laid out in a 2x2 grid
+	 * with viewport 0 in the top left.  Each viewport has its own camera, but all
+	 * of them share the same frame buffers: a viewport is drawn into the bottom
+	 * left corner of the frame buffers and then composited into its part of the
+	 * screen, so splitting never costs more fill rate than a single full screen.
+	 *
+	 * This leaves viewport 0 current.  Setting the count to 1 restores the full
+	 * screen with the camera of viewport 0.
+	 *
+	 * @param count The number of viewports (1 to MAX_VIEWPORTS)
+	 */
+	public void setViewportCount(int count) {
+		if (active != DrawPass.INACTIVE) {
+			Gdx.app.error("GameCanvas", "Cannot alter property while drawing active", new IllegalStateException());
+			return;
+		}
+		count = Math.max(1, Math.min(MAX_VIEWPORTS, count));
+		if (count == viewportCount) {
+			return;
+		}
+		viewportCameras[viewportIndex].set(camera.position.x, camera.position.y);
+		viewportCount = count;
+		viewportIndex = 0;
+		applyViewport();
+		if (count == 1) {
+			Gdx.gl.glViewport(0, 0, Gdx.graphics.getBackBufferWidth(), Gdx.graphics.getBackBufferHeight());
+		}
+	}
+
+	/**
+	 * Returns the number of split-screen viewports.
+	 *
+	 * @return the number of split-screen viewports.
+	 */
+	public int getViewportCount() {
+		return viewportCount;
+	}
+
+	/**
+	 * Makes the given viewport current.
+	 *
+	 * The camera and the size of the canvas (getWidth() and getHeight()) are those
+	 * of the current viewport, so this may be called both to move a viewport's
+	 * camera and to draw it.
+	 *
+	 * @param index The viewport to make current
+	 */
+	public void setViewport(int index) {
+		if (active != DrawPass.INACTIVE) {
+			Gdx.app.error("GameCanvas", "Cannot alter property while drawing active", new IllegalStateException());
+			return;
+		}
+		if (index == viewportIndex || index < 0 || index >= viewportCount) {
+			return;
+		}
+		viewportCameras[viewportIndex].set(camera.position.x, camera.position.y);
+		viewportIndex = index;
+		applyViewport();
+	}
+
+	/**
+	 * Returns the x-coordinate of the current viewport on the screen.
+	 *
+	 * @return the x-coordinate of the current viewport on the screen.
+	 */
+	public int getViewportX() {
+		return viewportX;
+	}
+
+	/**
+	 * Returns the y-coordinate of the current viewport on the screen.
+	 *
+	 * @return the y-coordinate of the current viewport on the screen.
+	 */
+	public int getViewportY() {
+		return viewportY;
+	}
+
+	/**
+	 * Returns the camera x-coordinate of the given viewport.
+	 *
+	 * @param index The viewport
+	 *
+	 * @return the camera x-coordinate of the given viewport.
+	 */
+	public float getViewportCameraX(int index) {
+		return index == viewportIndex ? camera.position.x : viewportCameras[index].x;
+	}
+
+	/**
+	 * Returns the camera y-coordinate of the given viewport.
+	 *
+	 * @param index The viewport
+	 *
+	 * @return the camera y-coordinate of the given viewport.
+	 */
+	public float getViewportCameraY(int index) {
+		return index == viewportIndex ? camera.position.y : viewportCameras[index].y;
+	}
+
+	/**
+	 * Lays out the current viewport and loads its camera.
+	 */
+	private void applyViewport() {
+		int screenWidth = Gdx.graphics.getWidth();
+		int screenHeight = Gdx.graphics.getHeight();
+		if (viewportCount == 1) {
+			viewportX = 0;
+			viewportY = 0;
+			viewportWidth = screenWidth;
+			viewportHeight = screenHeight;
+		} else if (viewportCount == 2) {
+			viewportWidth = screenWidth / 2;
+			viewportHeight = screenHeight;
+			viewportX = viewportIndex * viewportWidth;
+			viewportY = 0;
+		} else {
+			viewportWidth = screenWidth / 2;
+			viewportHeight = screenHeight / 2;
+			viewportX = (viewportIndex % 2) * viewportWidth;
+			viewportY = (1 - viewportIndex / 2) * viewportHeight;
+		}
+
+		Vector2 position = viewportCameras[viewportIndex];
+		camera.setToOrtho(false, viewportWidth, viewportHeight);
+		camera.position.set(position.x, position.y, 0);
+		camera.update();
+		spriteBatch.getProjectionMatrix().setToOrtho2D(0, 0, viewportWidth, viewportHeight);
+		shapeRen.getProjectionMatrix().setToOrtho2D(0, 0, viewportWidth, viewportHeight);
+	}
+
+	/**
+	 * Binds a frame buffer, restricted to the current viewport's size.
+	 */
+	private void beginFrame(FrameBuffer frame) {
+		frame.begin();
+		if (viewportCount > 1) {
+			Gdx.gl.glViewport(0, 0, viewportWidth, viewportHeight);
+		}
+	}
+
+	/**
+	 * Unbinds a frame buffer, going back to the current viewport on the screen.
+	 */
+	private void endFrame(FrameBuffer frame) {
+		frame.end();
+		if (viewportCount > 1) {
+			float sx = Gdx.graphics.getBackBufferWidth() / (float) Gdx.graphics.getWidth();
+			float sy = Gdx.graphics.getBackBufferHeight() / (float) Gdx.graphics.getHeight();
+			Gdx.gl.glViewport(Math.round(viewportX * sx), Math.round(viewportY * sy),
+					Math.round(viewportWidth * sx), Math.round(viewportHeight * sy));
+		}
+	}
 		
     /**
      * Eliminate any resources that should be garbage collected manually.
@@ -199,6 +486,20 @@ public class GameCanvas {
 		}
 		spriteBatch.dispose();
     	spriteBatch = null;
+		spriteCache.dispose();
+		spriteCache = null;
+		disposeFrames();
+		ResourceTracker.release(shaderProgram);
+		ResourceTracker.release(accretionShader);
+		ResourceTracker.release(starShader);
+		ResourceTracker.release(backgroundShader);
+		shaderProgram.dispose();
+		accretionShader.dispose();
+		starShader.dispose();
+		backgroundShader.dispose();
+		ResourceTracker.release(backgroundQuad);
+		backgroundQuad.dispose();
+		backgroundQuad = null;
     	local  = null;
     	global = null;
     	vertex = null;
@@ -208,12 +509,13 @@ public class GameCanvas {
 	/**
 	 * Returns the width of this canvas
 	 *
-	 * This currently gets its value from Gdx.graphics.getWidth()
+	 * This currently gets its value from Gdx.graphics.getWidth(), or is the
+	 * width of the current viewport when the screen is split.
 	 *
 	 * @return the width of this canvas
 	 */
 	public int getWidth() {
-		return Gdx.graphics.getWidth();
+		return viewportCount > 1 ? viewportWidth : Gdx.graphics.getWidth();
 	}
 	
 	/**
@@ -239,12 +541,13 @@ public class GameCanvas {
 	/**
 	 * Returns the height of this canvas
 	 *
-	 * This currently gets its value from Gdx.graphics.getHeight()
+	 * This currently gets its value from Gdx.graphics.getHeight(), or is the
+	 * height of the current viewport when the screen is split.
 	 *
 	 * @return the height of this canvas
 	 */
 	public int getHeight() {
-		return Gdx.graphics.getHeight();
+		return viewportCount > 1 ? viewportHeight : Gdx.graphics.getHeight();
 	}
 	
 	/**
@@ -343,13 +646,40 @@ public class GameCanvas {
 	 public void resize() {
 //		shaderProgram.setUniformf("u_res", getWidth(), getHeight());
 		// Resizing screws up the spriteBatch projection matrix
+		if (viewportCount > 1) {
+			viewportCameras[viewportIndex].set(camera.position.x, camera.position.y);
+		}
 		spriteBatch.getProjectionMatrix().setToOrtho2D(0, 0, getWidth(), getHeight());
 		shapeRen.getProjectionMatrix().setToOrtho2D(0, 0, getWidth(), getHeight());
 		camera.setToOrtho(false, getWidth(), getHeight());
+		if (viewportCount > 1) {
+			applyViewport();
+		}
 
-		bgFrame = new FrameBuffer(Pixmap.Format.RGB888, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), false);
-		fgFrame = new FrameBuffer(Pixmap.Format.RGBA8888, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), false);
-		temp = new FrameBuffer(Pixmap.Format.RGBA8888, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), false);
+		// The old frame buffers are the wrong size now
+		disposeFrames();
+		bgFrame = ResourceTracker.track(ResourceTracker.Type.FRAME_BUFFER,
+				new FrameBuffer(Pixmap.Format.RGB888, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), false));
+		fgFrame = ResourceTracker.track(ResourceTracker.Type.FRAME_BUFFER,
+				new FrameBuffer(Pixmap.Format.RGBA8888, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), false));
+		temp = ResourceTracker.track(ResourceTracker.Type.FRAME_BUFFER,
+				new FrameBuffer(Pixmap.Format.RGBA8888, Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), false));
+	}
+
+	/**
+	 * Frees the off-screen frame buffers, if there are any.
+	 */
+	private void disposeFrames() {
+		FrameBuffer[] frames = {bgFrame, fgFrame, temp};
+		for (FrameBuffer frame : frames) {
+			if (frame != null) {
+				ResourceTracker.release(frame);
+				frame.dispose();
+			}
+		}
+		bgFrame = null;
+		fgFrame = null;
+		temp = null;
 	}
 	
 	/**
@@ -398,8 +728,8 @@ public class GameCanvas {
 	private void switchToSprite() {
 		if (!spriteBatch.isDrawing()) {
 			shapeRen.end();
-			fgFrame.end();
-			bgFrame.begin();
+			endFrame(fgFrame);
+			beginFrame(bgFrame);
 			spriteBatch.begin();
 		}
 	}
@@ -407,8 +737,8 @@ public class GameCanvas {
 	private void switchToShape() {
 		if (!shapeRen.isDrawing()) {
 			spriteBatch.end();
-			bgFrame.end();
-			fgFrame.begin();
+			endFrame(bgFrame);
+			beginFrame(fgFrame);
 		}
 	}
 	
@@ -417,15 +747,15 @@ public class GameCanvas {
 	 */
 	public void clear() {
 		Gdx.gl.glClearColor(0, 0, 0, 0);
-		bgFrame.begin();
+		beginFrame(bgFrame);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-		bgFrame.end();
-		fgFrame.begin();
+		endFrame(bgFrame);
+		beginFrame(fgFrame);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-		fgFrame.end();
-		temp.begin();
+		endFrame(fgFrame);
+		beginFrame(temp);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-		temp.end();
+		endFrame(temp);
 
 		Gdx.gl.glClearColor(0.047f, 0.086f, 0.31f, 1.0f);  // Homage to the XNA years
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
@@ -474,17 +804,17 @@ public class GameCanvas {
 		blackHoleCount = 0;
 
 		Gdx.gl.glClearColor(0, 0, 0, 0);
-		fgFrame.begin();
+		beginFrame(fgFrame);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-		fgFrame.end();
-		temp.begin();
+		endFrame(fgFrame);
+		beginFrame(temp);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-		temp.end();
-		bgFrame.begin();
+		endFrame(temp);
+		beginFrame(bgFrame);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-		bgFrame.end();
+		endFrame(bgFrame);
 
-		bgFrame.begin();
+		beginFrame(bgFrame);
 		spriteBatch.setProjectionMatrix(camera.combined);
     	spriteBatch.begin();
     	shapeRen.setProjectionMatrix(camera.combined);
@@ -503,34 +833,47 @@ public class GameCanvas {
 	 */
     public void end() {
 		spriteBatch.flush();
-		bgFrame.end();
+		endFrame(bgFrame);
 
 		float x = camera.position.x - camera.viewportWidth / 2f;
 		float y = camera.position.y - camera.viewportHeight / 2f;
 
 		int width = getWidth();
 		int height = getHeight();
+		// The shaders work in texture space, which is always the full frame buffer
+		int frameWidth = bgFrame.getWidth();
+		int frameHeight = bgFrame.getHeight();
 
 		// Draw accretion disk from bgFrame onto temp
-		temp.begin();
+		beginFrame(temp);
 		// COMMENT FOLLOWING LINE TO DISABLE ACCRETION SHADERS:
 //		spriteBatch.setShader(accretionShader);
 //		accretionShader.setUniformf("u_radius", 16 );
 		accretionShader.setUniform3fv("u_bh", blackHoles, 0, 3 * blackHoleCount);
 		accretionShader.setUniformi("u_bh_count", blackHoleCount);
-		accretionShader.setUniformf("u_res", width, height);
+		accretionShader.setUniformf("u_res", frameWidth, frameHeight);
 		accretionShader.setUniformf("u_time", (System.currentTimeMillis() % 1000000) / 1000f);
 
 		//		shaderProgram.setUniformMatrix("u_projTrans", spriteBatch.getProjectionMatrix());
 		spriteBatch.draw(bgFrame.getColorBufferTexture(), x, y, width, height, 0, 0, width, height, false, true);
 		spriteBatch.flush();
-		temp.end();
+		endFrame(temp);
+
+		// Fragment coordinates on the screen start at the viewport corner
+		if (viewportCount > 1) {
+			float sx = Gdx.graphics.getBackBufferWidth() / (float) Gdx.graphics.getWidth();
+			float sy = Gdx.graphics.getBackBufferHeight() / (float) Gdx.graphics.getHeight();
+			for (int i = 0; i < blackHoleCount; i++) {
+				blackHoles[3 * i] += viewportX * sx;
+				blackHoles[3 * i + 1] += viewportY * sy;
+			}
+		}
 
 		// Draw black hole warping from temp onto screen
 		spriteBatch.setShader(shaderProgram);
 		shaderProgram.setUniform3fv("u_bh", blackHoles, 0, 3 * blackHoleCount);
 		shaderProgram.setUniformi("u_bh_count", blackHoleCount);
-		shaderProgram.setUniformf("u_res", width, height);
+		shaderProgram.setUniformf("u_res", frameWidth, frameHeight);
 		spriteBatch.draw(temp.getColorBufferTexture(), x, y, width, height, 0, 0, width, height, false, true);
 
 		// Draw fgFrame onto screen
@@ -544,7 +887,7 @@ public class GameCanvas {
 	public void drawFade(float fadeOut) {
 		if (active == DrawPass.STANDARD) {
 			spriteBatch.end();
-			bgFrame.end();
+			endFrame(bgFrame);
 		}
 
 		Gdx.gl.glEnable(GL20.GL_BLEND);
@@ -556,7 +899,7 @@ public class GameCanvas {
 
 		if (active == DrawPass.STANDARD) {
 			spriteBatch.begin();
-			bgFrame.begin();
+			beginFrame(bgFrame);
 		}
 	}
 
@@ -739,11 +1082,11 @@ public class GameCanvas {
 
 		// Call the master drawing method (more efficient that base method)
 		spriteBatch.flush();
-		fgFrame.begin();
+		beginFrame(fgFrame);
 		holder.setRegion(image);
 		draw(holder,tint,ox,oy,x,y,angle,sx,sy);
 		spriteBatch.flush();
-		bgFrame.begin();
+		beginFrame(bgFrame);
 	}
 	
 	/**
@@ -910,8 +1253,8 @@ public class GameCanvas {
 		}
 
 		spriteBatch.flush();
-		bgFrame.end();
-		fgFrame.begin();
+		endFrame(bgFrame);
+		beginFrame(fgFrame);
 
 		// BUG: The draw command for texture regions does not work properly.
 		// There is a workaround, but it will break if the bug is fixed.
@@ -921,8 +1264,362 @@ public class GameCanvas {
 		spriteBatch.draw(region, region.getRegionWidth(), region.getRegionHeight(), local);
 
 		spriteBatch.flush();
-		fgFrame.end();
-		bgFrame.begin();
+		endFrame(fgFrame);
+		beginFrame(bgFrame);
+	}
+
+	/**
+	 * Starts recording sprites into a cache, to draw later with drawCache().
+	 *
+	 * A cache keeps its vertices on the graphics card, so drawing it costs a few
+	 * draw calls and no work on the CPU.  This suits sprites that never move, such
+	 * as the tiles of a level.  Sprites are added with addToCache(), in the order
+	 * they are to be drawn, and a cache may later be recorded over with no more
+	 * sprites than it first had.
+	 *
+	 * A new cache records over the smallest released cache it fits in.  If none
+	 * fits and there is no room left, the caches are all cleared, which starts a new
+	 * generation, so that the space of released caches can be used again.  Their
+	 * owners then record them again the next time they are drawn.
+	 *
+	 * @param cache The cache to record over, or -1 for a new cache.  It must be from
+	 *              the current generation; see getCacheGeneration().
+	 * @param count The most sprites that will be added
+	 *
+	 * @return false if there is no room for the sprites, which must then be drawn normally
+	 */
+	public boolean beginCache(int cache, int count) {
+		if (cacheRecording != -1 || spriteCache.isDrawing()) {
+			Gdx.app.error("GameCanvas", "Cannot record a cache while another is recorded or drawn", new IllegalStateException());
+			return false;
+		}
+		if (cache >= cacheSizes.size) {
+			Gdx.app.error("GameCanvas", "No cache " + cache, new IllegalArgumentException());
+			return false;
+		}
+		if (cache < 0) {
+			cache = takeFreeCache(count);
+		}
+		if (cache < 0 && count > MAX_CACHED_SPRITES - cachedSprites && count <= MAX_CACHED_SPRITES - cachedSprites + freeSprites) {
+			// Only released caches are in the way, so start over without them
+			clearCaches();
+		}
+
+		if (cache >= 0 && cache < cacheSizes.size - 1) {
+			// Only the last cache can grow
+			if (count > cacheSizes.get(cache)) {
+				return false;
+			}
+			cacheRoom = cacheSizes.get(cache);
+			spriteCache.beginCache(cache);
+		} else {
+			int room = MAX_CACHED_SPRITES - cachedSprites;
+			if (cache >= 0) {
+				room += cacheSizes.peek();
+			}
+			if (count > room) {
+				return false;
+			}
+			if (cache >= 0) {
+				// Recording over the last cache frees its space
+				cachedSprites -= cacheSizes.pop();
+				spriteCache.beginCache(cache);
+			} else {
+				spriteCache.beginCache();
+			}
+			cacheRoom = count;
+		}
+		cacheRecording = cache >= 0 ? cache : cacheSizes.size;
+		cacheCount = 0;
+		return true;
+	}
+
+	/**
+	 * Takes the smallest released cache with room for some sprites.
+	 *
+	 * @param count The number of sprites
+	 *
+	 * @return the cache, or -1 if no released cache has room
+	 */
+	private int takeFreeCache(int count) {
+		int best = -1;
+		for (int i = 0; i < freeCaches.size; i++) {
+			int size = cacheSizes.get(freeCaches.get(i));
+			if (size >= count && (best < 0 || size < cacheSizes.get(freeCaches.get(best)))) {
+				best = i;
+			}
+		}
+		if (best < 0) {
+			return -1;
+		}
+		int cache = freeCaches.removeIndex(best);
+		freeSprites -= cacheSizes.get(cache);
+		return cache;
+	}
+
+	/**
+	 * Adds a sprite to the cache being recorded.
+	 *
+	 * This takes the same arguments as draw(), so that a cached sprite ends up
+	 * exactly where it would be drawn.
+	 *
+	 * @param region The texture to draw
+	 * @param tint  The color tint
+	 * @param ox 	The x-coordinate of texture origin (in pixels)
+	 * @param oy 	The y-coordinate of texture origin (in pixels)
+	 * @param x 	The x-coordinate of the texture origin (on screen)
+	 * @param y 	The y-coordinate of the texture origin (on screen)
+	 * @param angle The rotation angle (in radians) about the origin.
+	 * @param sx 	The x-axis scaling factor
+	 * @param sy 	The y-axis scaling factor
+	 */
+	public void addToCache(TextureRegion region, Color tint, float ox, float oy,
+						   float x, float y, float angle, float sx, float sy) {
+		if (cacheCount == cacheRoom) {
+			Gdx.app.error("GameCanvas", "Cannot add more sprites than the cache has room for", new IllegalStateException());
+			return;
+		}
+		spriteCache.setColor(tint);
+		spriteCache.add(region, x - ox, y - oy, ox, oy, region.getRegionWidth(), region.getRegionHeight(),
+				sx, sy, angle * MathUtils.radiansToDegrees);
+		cacheCount++;
+	}
+
+	/**
+	 * Finishes recording a cache.
+	 *
+	 * @return the cache, to pass to drawCache()
+	 */
+	public int endCache() {
+		int cache = spriteCache.endCache();
+		if (cache == cacheSizes.size) {
+			// A new cache holds what was added, which may be less than was asked for
+			cacheSizes.add(cacheCount);
+			cachedSprites += cacheCount;
+		}
+		cacheRecording = -1;
+		return cache;
+	}
+
+	/**
+	 * Gives back a cache that is no longer drawn, such as that of a chunk streamed out.
+	 *
+	 * A new cache with no more sprites may record over it.  Releasing a cache from
+	 * an earlier generation does nothing, as it has already been deleted.
+	 *
+	 * @param cache      The cache to give back
+	 * @param generation The generation the cache is from
+	 */
+	public void releaseCache(int cache, int generation) {
+		if (generation != cacheGeneration || cache < 0 || cache >= cacheSizes.size || freeCaches.contains(cache)) {
+			return;
+		}
+		freeCaches.add(cache);
+		freeSprites += cacheSizes.get(cache);
+	}
+
+	/**
+	 * Deletes every cache, such as when a level is cleaned up.
+	 *
+	 * New caches get the ids of the deleted ones, so this starts a new generation.
+	 */
+	public void clearCaches() {
+		if (spriteCache.isDrawing() || cacheRecording != -1) {
+			Gdx.app.error("GameCanvas", "Cannot clear the caches while they are in use", new IllegalStateException());
+			return;
+		}
+		spriteCache.clear();
+		cacheSizes.clear();
+		cachedSprites = 0;
+		freeCaches.clear();
+		freeSprites = 0;
+		cacheRoom = 0;
+		cacheCount = 0;
+		cacheGeneration++;
+	}
+
+	/**
+	 * Returns the generation of the caches, which changes whenever they are cleared.
+	 *
+	 * A cache id from an earlier generation names a deleted cache, or another
+	 * cache entirely, so it must be dropped rather than drawn or recorded over.
+	 *
+	 * @return the generation of the caches
+	 */
+	public int getCacheGeneration() {
+		return cacheGeneration;
+	}
+
+	/**
+	 * Returns the number of sprites the caches in use have room for.
+	 *
+	 * Released caches are left out, as new caches record over them.
+	 *
+	 * @return the number of sprites the caches in use have room for.
+	 */
+	public int getCachedSpriteCount() {
+		return cachedSprites - freeSprites;
+	}
+
+	/**
+	 * Starts drawing caches, moved by the given offset.
+	 *
+	 * Everything drawn so far is flushed first, so the caches are drawn in order
+	 * with the other sprites.  Call drawCache() for each cache, then endCaches().
+	 *
+	 * @param offsetX	The distance to move the caches right (on screen)
+	 * @param offsetY	The distance to move the caches up (on screen)
+	 */
+	public void beginCaches(float offsetX, float offsetY) {
+		if (active != DrawPass.STANDARD || !spriteBatch.isDrawing()) {
+			Gdx.app.error("GameCanvas", "Cannot draw without active begin()", new IllegalStateException());
+			return;
+		}
+		// The sprite batch only binds its shader in begin()
+		spriteBatch.end();
+		cacheTransform.setToTranslation(offsetX, offsetY, 0);
+		spriteCache.setProjectionMatrix(spriteBatch.getProjectionMatrix());
+		spriteCache.setTransformMatrix(cacheTransform);
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFunc(spriteBatch.getBlendSrcFunc(), spriteBatch.getBlendDstFunc());
+		spriteCache.begin();
+	}
+
+	/**
+	 * Draws a cache, between beginCaches() and endCaches().
+	 *
+	 * @param cache The cache to draw
+	 */
+	public void drawCache(int cache) {
+		spriteCache.draw(cache);
+	}
+
+	/**
+	 * Stops drawing caches, and goes back to drawing sprites.
+	 */
+	public void endCaches() {
+		spriteCache.end();
+		spriteBatch.begin();
+	}
+
+	/**
+	 * Draws a star field, in order with the other sprites.
+	 *
+	 * Everything drawn so far is flushed first.  The whole field is one draw call
+	 * for each texture its stars are drawn from.
+	 *
+	 * @param stars		The star field to draw
+	 * @param offsetX	The distance to move the stars right (on screen)
+	 * @param offsetY	The distance to move the stars up (on screen)
+	 * @param scale		The drawing scale, in pixels per physics unit
+	 */
+	public void drawStars(StarField stars, float offsetX, float offsetY, Vector2 scale) {
+		if (active != DrawPass.STANDARD || !spriteBatch.isDrawing()) {
+			Gdx.app.error("GameCanvas", "Cannot draw without active begin()", new IllegalStateException());
+			return;
+		}
+		spriteBatch.end();
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFunc(spriteBatch.getBlendSrcFunc(), spriteBatch.getBlendDstFunc());
+		starShader.bind();
+		starShader.setUniformMatrix("u_projTrans", spriteBatch.getProjectionMatrix());
+		starShader.setUniformf("u_scale", scale.x, scale.y);
+		starShader.setUniformf("u_offset", offsetX, offsetY);
+		starShader.setUniformf("u_size", StarField.STAR_SCALE * scale.x, StarField.STAR_SCALE * scale.y);
+		starShader.setUniformf("u_frame", stars.getFrame());
+		starShader.setUniformf("u_frames", StarField.FRAMES);
+		starShader.setUniformi("u_texture", 0);
+		stars.render(starShader);
+		spriteBatch.begin();
+	}
+
+	/**
+	 * Draws a triangle strip, batched with the other sprites.
+	 *
+	 * Every three vertices in a row make a triangle, as with GL_TRIANGLE_STRIP.
+	 *
+	 * @param image		The texture to draw from
+	 * @param vertices	The vertices in the batch layout: x, y, packed colour, u and v
+	 * @param count		The number of vertices, from 3 to MAX_STRIP_VERTICES
+	 */
+	public void drawStrip(Texture image, float[] vertices, int count) {
+		if (active != DrawPass.STANDARD) {
+			Gdx.app.error("GameCanvas", "Cannot draw without active begin()", new IllegalStateException());
+			return;
+		}
+		if (count < 3 || count > MAX_STRIP_VERTICES) {
+			throw new GdxRuntimeException("A strip needs 3 to " + MAX_STRIP_VERTICES + " vertices, not " + count);
+		}
+		spriteBatch.draw(image, vertices, 0, 5 * count, STRIP_TRIANGLES, 0, 3 * (count - 2));
+	}
+
+	/**
+	 * Adds a background layer to be drawn by the next call to drawBackgrounds.
+	 *
+	 * The image repeats forever in every direction, so the layer always fills the
+	 * view.  Layers are drawn back to front in the order they are added.  If there
+	 * are already MAX_BACKGROUND_LAYERS waiting, those are drawn first.
+	 *
+	 * @param image		The image to repeat
+	 * @param x			The x-coordinate of the bottom left of any one copy of the image
+	 * @param y			The y-coordinate of the bottom left of any one copy of the image
+	 * @param width		The width of a copy of the image
+	 * @param height	The height of a copy of the image
+	 */
+	public void addBackground(Texture image, float x, float y, float width, float height) {
+		if (active != DrawPass.STANDARD) {
+			Gdx.app.error("GameCanvas", "Cannot draw without active begin()", new IllegalStateException());
+			return;
+		}
+		if (backgroundCount == MAX_BACKGROUND_LAYERS) {
+			drawBackgrounds();
+		}
+
+		// Worked out here in double precision, so the shader only deals in small numbers
+		double left = (camera.position.x - camera.viewportWidth / 2.0 - x) / width;
+		double top = (y + height - (camera.position.y - camera.viewportHeight / 2.0)) / height;
+		int tile = 4 * backgroundCount;
+		backgroundTiles[tile] = (float) (left - Math.floor(left));
+		backgroundTiles[tile + 1] = (float) (top - Math.floor(top));
+		backgroundTiles[tile + 2] = 1 / width;
+		backgroundTiles[tile + 3] = 1 / height;
+		backgrounds[backgroundCount++] = image;
+	}
+
+	/**
+	 * Draws the background layers added since the last call, in order with the other sprites.
+	 *
+	 * Everything drawn so far is flushed first.  All of the layers are blended in a
+	 * single quad over the view, so the screen is filled once however many there are.
+	 */
+	public void drawBackgrounds() {
+		if (backgroundCount == 0) {
+			return;
+		}
+		if (active != DrawPass.STANDARD || !spriteBatch.isDrawing()) {
+			Gdx.app.error("GameCanvas", "Cannot draw without active begin()", new IllegalStateException());
+			return;
+		}
+		spriteBatch.end();
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFunc(spriteBatch.getBlendSrcFunc(), spriteBatch.getBlendDstFunc());
+		backgroundShader.bind();
+		backgroundShader.setUniformf("u_size", camera.viewportWidth, camera.viewportHeight);
+		backgroundShader.setUniform4fv("u_tiles", backgroundTiles, 0, backgroundTiles.length);
+		backgroundShader.setUniformi("u_count", backgroundCount);
+		// Unit 0 last, as the sprite batch binds its textures to whichever unit is active
+		for (int i = MAX_BACKGROUND_LAYERS - 1; i >= 0; i--) {
+			if (i < backgroundCount) {
+				backgrounds[i].bind(i);
+			}
+			backgroundShader.setUniformi(BACKGROUND_SAMPLERS[i], i);
+		}
+		backgroundQuad.render(backgroundShader, GL20.GL_TRIANGLES);
+		for (int i = 0; i < backgroundCount; i++) {
+			backgrounds[i] = null;
+		}
+		backgroundCount = 0;
+		spriteBatch.begin();
 	}
 
 	public void drawSimpleFuelBar(float ink, float maxInk, float x, float y) {
@@ -945,7 +1642,8 @@ public class GameCanvas {
 		Color color = percent > 0.6  ? Color.PURPLE : percent > 0.3 ? Color.ORANGE : Color.RED;
 		shapeRen.setColor(color);
 		shapeRen.rect(left + 1, bottom + 1, width * percent - 2, height - 2);
-		shapeRen.setColor(color.cpy().mul(0.7f));
+		// The same as color.cpy().mul(0.7f), without a new colour every frame
+		shapeRen.setColor(color.r * 0.7f, color.g * 0.7f, color.b * 0.7f, color.a * 0.7f);
 		shapeRen.rect(left + 1, bottom + 1, width * percent - 2, (height - 2) * 0.4f);
 
 		// Draw lines
@@ -966,7 +1664,7 @@ public class GameCanvas {
 		Gdx.gl.glEnable(GL20.GL_BLEND);
 		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
 		Gdx.gl.glLineWidth(4f);
-		shapeRen.setColor(Color.valueOf("ff7c21A0"));
+		shapeRen.setColor(BLACK_HOLE_OUTLINE);
 		shapeRen.circle(x, y, radius, 200);
 
 		switchToSprite();
@@ -979,7 +1677,7 @@ public class GameCanvas {
 		Gdx.gl.glEnable(GL20.GL_BLEND);
 		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
 		Gdx.gl.glLineWidth(4f);
-		shapeRen.setColor(Color.valueOf("000000FF"));
+		shapeRen.setColor(Color.BLACK);
 		shapeRen.circle(x, y, 50f, 200);
 
 		switchToSprite();
@@ -1330,17 +2028,33 @@ public class GameCanvas {
      * @param y The y-coordinate of the lower-left corner
      */
     public void drawText(String text, BitmapFont font, float x, float y) {
+		drawText(text, text, font, x, y);
+    }
+
+	/**
+	 * Draws text that changes, such as a timer, on the screen.
+	 *
+	 * The text is laid out again only when it, or the font, differs from the last
+	 * time the label was drawn.  Pass the same StringBuilder every frame to draw
+	 * without making any garbage.
+	 *
+	 * @param label The name the layout of this text is kept under
+	 * @param text The text to draw
+	 * @param font The font to use
+	 * @param x The x-coordinate of the lower-left corner
+	 * @param y The y-coordinate of the lower-left corner
+	 */
+	public void drawText(String label, CharSequence text, BitmapFont font, float x, float y) {
 		if (active != DrawPass.STANDARD) {
 			Gdx.app.error("GameCanvas", "Cannot draw without active begin()", new IllegalStateException());
 			return;
 		}
 		spriteBatch.flush();
-		fgFrame.begin();
-		GlyphLayout layout = new GlyphLayout(font,text);
-		font.draw(spriteBatch, layout, x, y);
+		beginFrame(fgFrame);
+		font.draw(spriteBatch, layoutText(label, text, font), x, y);
 		spriteBatch.flush();
-		bgFrame.begin();
-    }
+		beginFrame(bgFrame);
+	}
 
 	/**
 	 * Draws text in top left of the screen.
@@ -1349,9 +2063,20 @@ public class GameCanvas {
 	 * @param font The font to use
 	 */
 	public void drawTextTopRight(String text, BitmapFont font, int xOffset, int yOffset) {
+		drawTextTopRight(text, text, font, xOffset, yOffset);
+	}
+
+	/**
+	 * Draws text that changes in top left of the screen.
+	 *
+	 * @param label The name the layout of this text is kept under
+	 * @param text The text to draw
+	 * @param font The font to use
+	 */
+	public void drawTextTopRight(String label, CharSequence text, BitmapFont font, int xOffset, int yOffset) {
 		float x = getWidth() * 0.40f + getCameraX() - xOffset;
 		float y = getHeight() * 0.47f + getCameraY() - yOffset;
-		drawText(text, font, x, y);
+		drawText(label, text, font, x, y);
 	}
 
 	/**
@@ -1372,21 +2097,91 @@ public class GameCanvas {
      * @param offset The y-value offset from the center of the screen.
      */
     public void drawTextCentered(String text, BitmapFont font, float offset) {
+		drawTextCentered(text, text, font, offset);
+    }
+
+	/**
+	 * Draws text that changes centered on the screen.
+	 *
+	 * @param label The name the layout of this text is kept under
+	 * @param text The text to draw
+	 * @param font The font to use
+	 * @param offset The y-value offset from the center of the screen.
+	 */
+	public void drawTextCentered(String label, CharSequence text, BitmapFont font, float offset) {
 		if (active != DrawPass.STANDARD) {
 			Gdx.app.error("GameCanvas", "Cannot draw without active begin()", new IllegalStateException());
 			return;
 		}
 
 		spriteBatch.flush();
-		fgFrame.begin();
-		GlyphLayout layout = new GlyphLayout(font,text);
+		beginFrame(fgFrame);
+		GlyphLayout layout = layoutText(label, text, font);
 		float x = (getWidth()  - layout.width) / 2.0f;
 		float y = (getHeight() + layout.height) / 2.0f;
 		font.draw(spriteBatch, layout, x, y+offset);
 		spriteBatch.flush();
-		bgFrame.begin();
-    }
-    
+		beginFrame(bgFrame);
+	}
+
+	/**
+	 * Returns the width of text, as drawText and drawTextCentered lay it out.
+	 *
+	 * The layout is kept with the ones drawn, so measuring text just drawn in
+	 * the same font does not lay it out again.
+	 *
+	 * @param text The string to measure
+	 * @param font The font to use
+	 *
+	 * @return the width of the text
+	 */
+	public float getTextWidth(String text, BitmapFont font) {
+		return layoutText(text, text, font).width;
+	}
+
+	/**
+	 * Returns the layout of a label's text, laying it out only if it has changed.
+	 *
+	 * When the cache is full, the label drawn longest ago is dropped, so labels
+	 * drawn every frame are not lost to a burst of one-off texts.
+	 *
+	 * @param label The name the layout is kept under
+	 * @param text The text to lay out
+	 * @param font The font to use, with its current scale and colour
+	 *
+	 * @return the layout of the text
+	 */
+	private GlyphLayout layoutText(String label, CharSequence text, BitmapFont font) {
+		CachedText cached = textCache.get(label);
+		if (cached == null) {
+			if (textCache.size >= MAX_CACHED_TEXTS) {
+				// The label drawn longest ago makes room, and its layout is reused
+				cached = textCache.remove(leastRecentLabel());
+			} else {
+				cached = new CachedText();
+			}
+			textCache.put(label, cached);
+		}
+		cached.used = ++textUses;
+		if (!cached.matches(text, font)) {
+			cached.set(text, font);
+		}
+		return cached.layout;
+	}
+
+	/** Returns the label in the text cache that was drawn longest ago */
+	private String leastRecentLabel() {
+		String oldest = null;
+		long used = Long.MAX_VALUE;
+		for (ObjectMap.Entry<String, CachedText> entry : textCache) {
+			if (entry.value.used < used) {
+				oldest = entry.key;
+				used = entry.value.used;
+			}
+		}
+		return oldest;
+	}
+
 	/**
 	 * Start the debug drawing sequence.
 	 *
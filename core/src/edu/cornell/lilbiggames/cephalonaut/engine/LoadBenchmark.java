@@ -0,0 +1,132 @@
+/*
+ * LoadBenchmark.java
+ *
+ * Times how long a level checkpoint takes to build with different numbers of
+ * loader worker threads.
+ *
+ * Only LevelLoader.loadLevel is timed: the part that runs on the worker pool.
+ * Adding the objects to a Box2D world happens on the GL thread either way, so
+ * it is left out.  Each worker count has its own pool for the whole run, so no
+ * sample pays for starting threads.  Every level built is disposed once timed,
+ * so its collider shapes do not pile up.  The peak heap of the first load is
+ * reported as well, as the most the heap grew above what it held before, after a
+ * full collection.
+ */
+package edu.cornell.lilbiggames.cephalonaut.engine;
+
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelLoader;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A level load benchmark for a single level checkpoint.
+ */
+public class LoadBenchmark {
+	/** Worker counts to time */
+	private static final int[] WORKERS = {1, 2, 4, 8};
+	/** Loads done with each worker count before timing, so the JIT and caches are warm */
+	private static final int WARMUP_LOADS = 20;
+
+	/** Level to load */
+	private final String level;
+	/** Checkpoint to load */
+	private final String checkpoint;
+	/** Number of timed loads per worker count */
+	private final int loads;
+
+	/**
+	 * Creates a new benchmark.
+	 *
+	 * @param level      The level to load, e.g. "level_6"
+	 * @param checkpoint The checkpoint to load, e.g. "checkpoint_3"
+	 * @param loads      The number of timed loads per worker count
+	 */
+	public LoadBenchmark(String level, String checkpoint, int loads) {
+		this.level = level;
+		this.checkpoint = checkpoint;
+		this.loads = loads;
+	}
+
+	/**
+	 * Loads the level over and over with each worker count, and prints the times.
+	 *
+	 * The worker counts take turns, one load each, so that the JIT and the garbage
+	 * collector settling down over the run do not favour whichever count goes last.
+	 * The median is reported, as a collection now and then makes the mean jumpy.
+	 *
+	 * @param loader The level loader; it is left with the default worker count
+	 */
+	public void run(LevelLoader loader) {
+		System.out.printf("Load benchmark: %s:%s, %d loads per worker count, %d cores\n",
+				level, checkpoint, loads, Runtime.getRuntime().availableProcessors());
+		loader.setWorkers(1);
+		System.out.printf("  peak heap of the first load: %d KB\n", peakHeap(loader) / 1024);
+
+		ForkJoinPool[] pools = new ForkJoinPool[WORKERS.length];
+		for (int w = 0; w < WORKERS.length; w++) {
+			pools[w] = WORKERS[w] > 1 ? new ForkJoinPool(WORKERS[w]) : null;
+			loader.setPool(pools[w]);
+			for (int i = 0; i < WARMUP_LOADS; i++) {
+				loader.loadLevel(level, checkpoint).dispose();
+			}
+		}
+
+		long[][] times = new long[WORKERS.length][loads];
+		for (int i = 0; i < loads; i++) {
+			for (int w = 0; w < WORKERS.length; w++) {
+				loader.setPool(pools[w]);
+				long start = System.nanoTime();
+				LevelLoader.LevelDef levelDef = loader.loadLevel(level, checkpoint);
+				times[w][i] = System.nanoTime() - start;
+				levelDef.dispose();
+			}
+		}
+		for (ForkJoinPool pool : pools) {
+			if (pool != null) pool.shutdown();
+		}
+
+		double baseline = 0;
+		for (int w = 0; w < WORKERS.length; w++) {
+			Arrays.sort(times[w]);
+			double median = times[w][loads / 2] / 1e6;
+			if (w == 0) baseline = median;
+			System.out.printf("  %d workers: %7.2fms median, %7.2fms best, %7.2fms worst, %.2fx\n",
+					WORKERS[w], median, times[w][0] / 1e6, times[w][loads - 1] / 1e6, baseline / median);
+		}
+		loader.setWorkers(LevelLoader.DEFAULT_WORKERS);
+	}
+
+	/**
+	 * Loads the level once, and returns how far the heap grew above where it was
+	 * before, in bytes.
+	 *
+	 * The peak of each heap pool is added up, which can only overstate the peak
+	 * of the whole heap.  Garbage counts until it is collected, so this is closest
+	 * to the live peak with a small young generation (such as -Xmn1m).
+	 *
+	 * @param loader The level loader
+	 */
+	private long peakHeap(LevelLoader loader) {
+		System.gc();
+		long before = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				before += pool.getUsage().getUsed();
+				pool.resetPeakUsage();
+			}
+		}
+		LevelLoader.LevelDef levelDef = loader.loadLevel(level, checkpoint);
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		levelDef.dispose();
+		return peak - before;
+	}
+}
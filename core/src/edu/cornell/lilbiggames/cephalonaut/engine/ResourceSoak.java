@@ -0,0 +1,233 @@
+/*
+ * ResourceSoak.java
+ *
+ * Restarts a level over and over and checks that nothing native is left behind.
+ *
+ * Each restart is played for a few frames before the next one, with the camera
+ * swept over the level, so that objects are stepped, removed and disposed, and
+ * chunks are streamed in and out, rather than only built and thrown away.
+ *
+ * Native memory is not visible from Java, so the live handle counts from the
+ * ResourceTracker, the Box2D world's bodies, fixtures and joints, and libGDX's own
+ * counts of textures, shaders and unsafe buffer bytes stand in for it.  Those must
+ * come back to exactly where they started.  Direct buffers and the Java heap are
+ * freed by the garbage collector, so they get a little slack.  The handles each
+ * half of the restarts allocated are printed as well, since a restart that makes
+ * more of them than the last one did is worth a look even when they are freed.
+ */
+package edu.cornell.lilbiggames.cephalonaut.engine;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BufferUtils;
+import edu.cornell.lilbiggames.cephalonaut.engine.controller.PlayMode;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * A restart soak for a single level checkpoint.
+ */
+public class ResourceSoak {
+	/** Number of restarts done before taking the baseline (the first load fills caches) */
+	private static final int WARMUP_RESTARTS = 3;
+	/** Frames played after each restart */
+	private static final int FRAMES_PER_RESTART = 30;
+	/** Length of a frame, in seconds */
+	private static final float FRAME_TIME = 1 / 60f;
+	/** How far the heap may grow before we call it a leak, in bytes */
+	private static final long HEAP_SLACK = 2L * 1024 * 1024;
+	/** How far direct buffers may grow before we call it a leak, in bytes */
+	private static final long DIRECT_SLACK = 256L * 1024;
+
+	/** Level to restart */
+	private final String level;
+	/** Checkpoint to restart */
+	private final String checkpoint;
+	/** Number of restarts to measure */
+	private final int restarts;
+
+	/** Resource counts at a point in time */
+	private static class Snapshot {
+		final int[] live = new int[ResourceTracker.Type.values().length];
+		final int[] allocated = new int[ResourceTracker.Type.values().length];
+		final Map<String, Integer> sites;
+		final int worldBodies, worldFixtures, worldJoints;
+		final int textures, shaders;
+		final long unsafeBuffers, directBuffers;
+		final long heap;
+
+		Snapshot(World world) {
+			for (ResourceTracker.Type type : ResourceTracker.Type.values()) {
+				live[type.ordinal()] = ResourceTracker.getLiveCount(type);
+				allocated[type.ordinal()] = ResourceTracker.getAllocatedCount(type);
+			}
+			sites = ResourceTracker.getSiteCounts();
+			worldBodies = world.getBodyCount();
+			worldFixtures = countFixtures(world);
+			worldJoints = world.getJointCount();
+			textures = Texture.getNumManagedTextures();
+			shaders = ShaderProgram.getNumManagedShaderPrograms();
+			unsafeBuffers = BufferUtils.getAllocatedBytesUnsafe();
+			// Collected first, as direct buffers are only freed once unreachable
+			heap = usedHeap();
+			directBuffers = directBufferBytes();
+		}
+	}
+
+	/**
+	 * Creates a new soak.
+	 *
+	 * @param level      The level to restart, e.g. "level_1"
+	 * @param checkpoint The checkpoint to restart, e.g. "checkpoint_0"
+	 * @param restarts   The number of restarts to measure
+	 */
+	public ResourceSoak(String level, String checkpoint, int restarts) {
+		this.level = level;
+		this.checkpoint = checkpoint;
+		this.restarts = restarts;
+	}
+
+	public String getLevel() {
+		return level;
+	}
+
+	public String getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * Restarts and plays the level, and compares resource counts before and after.
+	 *
+	 * @param playMode A play mode for this soak's level, with its canvas set
+	 *
+	 * @return true if nothing grew
+	 */
+	public boolean run(PlayMode playMode) {
+		ResourceTracker.setRecordSites(true);
+		for (int i = 0; i < WARMUP_RESTARTS; i++) {
+			restart(playMode);
+		}
+		Snapshot before = new Snapshot(playMode.getWorld());
+
+		long start = System.nanoTime();
+		int half = restarts / 2;
+		for (int i = 0; i < half; i++) {
+			restart(playMode);
+		}
+		Snapshot middle = new Snapshot(playMode.getWorld());
+		for (int i = half; i < restarts; i++) {
+			restart(playMode);
+		}
+		long elapsed = System.nanoTime() - start;
+		Snapshot after = new Snapshot(playMode.getWorld());
+
+		System.out.printf("Soak: restarted %s:%s %d times, %d frames each, in %.1fs\n", level, checkpoint,
+				restarts, FRAMES_PER_RESTART, elapsed / 1e9f);
+		boolean passed = true;
+		for (ResourceTracker.Type type : ResourceTracker.Type.values()) {
+			int was = before.live[type.ordinal()];
+			int now = after.live[type.ordinal()];
+			// Chunks stream in on another thread, so the halves may differ a little
+			int first = middle.allocated[type.ordinal()] - before.allocated[type.ordinal()];
+			int second = after.allocated[type.ordinal()] - middle.allocated[type.ordinal()];
+			System.out.printf("  %-14s %6d -> %6d live, %8d + %8d allocated\n", type, was, now, first, second);
+			passed &= now <= was;
+		}
+		System.out.printf("  %-14s %6d -> %6d\n", "WORLD BODIES", before.worldBodies, after.worldBodies);
+		System.out.printf("  %-14s %6d -> %6d\n", "WORLD FIXTURES", before.worldFixtures, after.worldFixtures);
+		System.out.printf("  %-14s %6d -> %6d\n", "WORLD JOINTS", before.worldJoints, after.worldJoints);
+		System.out.printf("  %-14s %6d -> %6d\n", "GL TEXTURES", before.textures, after.textures);
+		System.out.printf("  %-14s %6d -> %6d\n", "GL SHADERS", before.shaders, after.shaders);
+		System.out.printf("  %-14s %6dK -> %6dK\n", "UNSAFE BUFFERS", before.unsafeBuffers / 1024, after.unsafeBuffers / 1024);
+		System.out.printf("  %-14s %6dK -> %6dK\n", "DIRECT BUFFERS", before.directBuffers / 1024, after.directBuffers / 1024);
+		System.out.printf("  %-14s %6dK -> %6dK\n", "HEAP", before.heap / 1024, after.heap / 1024);
+		passed &= after.worldBodies <= before.worldBodies;
+		passed &= after.worldFixtures <= before.worldFixtures;
+		passed &= after.worldJoints <= before.worldJoints;
+		passed &= after.textures <= before.textures;
+		passed &= after.shaders <= before.shaders;
+		passed &= after.unsafeBuffers <= before.unsafeBuffers;
+		passed &= after.directBuffers - before.directBuffers <= DIRECT_SLACK;
+		passed &= after.heap - before.heap <= HEAP_SLACK;
+
+		if (!passed) {
+			System.out.println("Soak FAILED, call sites that grew:");
+			for (Map.Entry<String, Integer> site : after.sites.entrySet()) {
+				Integer was = before.sites.get(site.getKey());
+				int growth = site.getValue() - (was == null ? 0 : was);
+				if (growth > 0) {
+					System.out.printf("  +%-6d %s\n", growth, site.getKey());
+				}
+			}
+		} else {
+			System.out.println("Soak passed");
+		}
+		return passed;
+	}
+
+	/**
+	 * Restarts the level and plays it for a few frames.
+	 *
+	 * Nothing is pressed, so the players mostly stay put.  The camera is swept
+	 * across the level after each frame, so chunks stream in around it and back
+	 * out again when the next frame streams around the players.
+	 *
+	 * @param playMode The play mode to restart
+	 */
+	private static void restart(PlayMode playMode) {
+		playMode.reset();
+		Rectangle bounds = playMode.getBounds();
+		for (int i = 0; i < FRAMES_PER_RESTART; i++) {
+			if (playMode.preUpdate(FRAME_TIME)) {
+				playMode.update(FRAME_TIME);
+				playMode.postUpdate(FRAME_TIME);
+			}
+			playMode.draw(FRAME_TIME);
+			float across = (i + 0.5f) / FRAMES_PER_RESTART;
+			playMode.lookAt(bounds.x + bounds.width * across, bounds.y + bounds.height * (1 - across));
+		}
+	}
+
+	/**
+	 * Returns the number of fixtures in a world, each of which is a native shape.
+	 */
+	private static int countFixtures(World world) {
+		Array<Body> bodies = new Array<>();
+		world.getBodies(bodies);
+		int fixtures = 0;
+		for (Body body : bodies) {
+			fixtures += body.getFixtureList().size;
+		}
+		return fixtures;
+	}
+
+	/**
+	 * Returns the bytes held by direct buffers, or 0 if the JVM does not say.
+	 */
+	private static long directBufferBytes() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("direct")) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the heap in use after a full collection.
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
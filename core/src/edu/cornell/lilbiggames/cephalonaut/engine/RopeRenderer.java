@@ -0,0 +1,178 @@
+/*
+ * RopeRenderer.java
+ *
+ * Draws a wavy rope, such as the grapple tentacle, as a single triangle strip.
+ *
+ * The rope follows a fixed wave along its length, which is scaled by an amplitude
+ * and tapers off to nothing at the far end.  The wave and the taper are sampled
+ * into tables once, and the strip is written into the same vertex array every
+ * frame, so drawing a rope allocates nothing and costs no trigonometry.  The strip
+ * goes through the sprite batch, so it does not flush what is drawn around it.
+ */
+package edu.cornell.lilbiggames.cephalonaut.engine;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
+
+/**
+ * A rope drawn as a triangle strip.
+ */
+public class RopeRenderer {
+	/** Length of a segment of the strip, in physics units */
+	private static final float SEGMENT_LENGTH = 0.1f;
+	/** The most segments in a strip; longer ropes get longer segments */
+	public static final int MAX_SEGMENTS = GameCanvas.MAX_STRIP_VERTICES / 2 - 1;
+	/** Floats per vertex: position, packed colour, texture coordinates */
+	private static final int VERTEX_SIZE = 5;
+
+	/** Length of rope the wave repeats after, in physics units (sin 2.5x and cos 2x both repeat) */
+	private static final float WAVE_PERIOD = 4 * MathUtils.PI;
+	/** The wave over one period, with the first sample repeated at the end */
+	private static final int WAVE_SAMPLES = 1024;
+	private static final float[] WAVE = new float[WAVE_SAMPLES + 1];
+	/** The taper from the near end to the far end of the rope, the fourth root of what is left */
+	private static final int TAPER_SAMPLES = 256;
+	private static final float[] TAPER = new float[TAPER_SAMPLES + 1];
+
+	static {
+		for (int i = 0; i <= WAVE_SAMPLES; i++) {
+			double x = i * (double) WAVE_PERIOD / WAVE_SAMPLES;
+			WAVE[i] = (float) (-Math.sin(x * 2.5) - Math.cos(x * 2));
+		}
+		for (int i = 0; i <= TAPER_SAMPLES; i++) {
+			TAPER[i] = (float) Math.pow(1 - i / (double) TAPER_SAMPLES, 0.25);
+		}
+	}
+
+	/** A white pixel, tinted by the vertex colour */
+	private Texture texture;
+	/** Width of the rope, in physics units */
+	private float width;
+	/** Colour of the rope, packed */
+	private float color;
+
+	/** Points along the middle of the rope, in pixels */
+	private final float[] points = new float[2 * (MAX_SEGMENTS + 1)];
+	/** The strip, two vertices per point */
+	private final float[] vertices = new float[2 * (MAX_SEGMENTS + 1) * VERTEX_SIZE];
+
+	/**
+	 * Creates a new rope renderer.
+	 *
+	 * @param width The width of the rope, in physics units
+	 * @param color The colour of the rope
+	 */
+	public RopeRenderer(float width, Color color) {
+		Pixmap pixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
+		pixmap.setColor(Color.WHITE);
+		pixmap.fill();
+		texture = ResourceTracker.track(ResourceTracker.Type.TEXTURE, new Texture(pixmap));
+		pixmap.dispose();
+		setWidth(width);
+		setColor(color);
+	}
+
+	/** Returns the width of the rope, in physics units */
+	public float getWidth() {
+		return width;
+	}
+
+	/** Sets the width of the rope, in physics units */
+	public void setWidth(float width) {
+		this.width = width;
+	}
+
+	/** Sets the colour of the rope */
+	public void setColor(Color color) {
+		this.color = color.toFloatBits();
+	}
+
+	/**
+	 * Draws the rope from one point to another.
+	 *
+	 * The wave starts at the first point, and dies away at the second.  The rope is
+	 * as wide as its width times the x draw scale.
+	 *
+	 * @param canvas	Drawing context
+	 * @param x0		The x-coordinate of the start of the rope, in physics units
+	 * @param y0		The y-coordinate of the start of the rope, in physics units
+	 * @param x1		The x-coordinate of the end of the rope, in physics units
+	 * @param y1		The y-coordinate of the end of the rope, in physics units
+	 * @param amplitude	The height of the wave, negative to turn it over
+	 * @param scale		The drawing scale, in pixels per physics unit
+	 */
+	public void draw(GameCanvas canvas, float x0, float y0, float x1, float y1, float amplitude, Vector2 scale) {
+		float dx = x1 - x0;
+		float dy = y1 - y0;
+		float length = (float) Math.sqrt(dx * dx + dy * dy);
+		if (length < MathUtils.FLOAT_ROUNDING_ERROR) {
+			return;
+		}
+		float cos = dx / length;
+		float sin = dy / length;
+
+		int segments = MathUtils.clamp(MathUtils.ceilPositive(length / SEGMENT_LENGTH), 1, MAX_SEGMENTS);
+		for (int k = 0; k <= segments; k++) {
+			float along = k / (float) segments;
+			float x = length * along;
+			float y = amplitude * wave(x) * taper(along);
+			points[2 * k] = (x0 + x * cos - y * sin) * scale.x;
+			points[2 * k + 1] = (y0 + x * sin + y * cos) * scale.y;
+		}
+
+		// Each point is widened across the direction of the rope there
+		float halfWidth = width * scale.x / 2;
+		int vertex = 0;
+		for (int k = 0; k <= segments; k++) {
+			int before = 2 * Math.max(k - 1, 0);
+			int after = 2 * Math.min(k + 1, segments);
+			float tx = points[after] - points[before];
+			float ty = points[after + 1] - points[before + 1];
+			float normal = halfWidth / (float) Math.sqrt(tx * tx + ty * ty);
+			float nx = -ty * normal;
+			float ny = tx * normal;
+			vertex = putVertex(vertex, points[2 * k] + nx, points[2 * k + 1] + ny);
+			vertex = putVertex(vertex, points[2 * k] - nx, points[2 * k + 1] - ny);
+		}
+		canvas.drawStrip(texture, vertices, 2 * (segments + 1));
+	}
+
+	/** Writes a vertex of the strip, and returns where the next one goes */
+	private int putVertex(int index, float x, float y) {
+		vertices[index] = x;
+		vertices[index + 1] = y;
+		vertices[index + 2] = color;
+		vertices[index + 3] = 0.5f;
+		vertices[index + 4] = 0.5f;
+		return index + VERTEX_SIZE;
+	}
+
+	/** Returns the wave at a distance along the rope, in physics units */
+	private static float wave(float x) {
+		float sample = (x % WAVE_PERIOD) / WAVE_PERIOD * WAVE_SAMPLES;
+		int i = Math.min((int) sample, WAVE_SAMPLES - 1);
+		return MathUtils.lerp(WAVE[i], WAVE[i + 1], sample - i);
+	}
+
+	/** Returns the taper at a share of the way along the rope */
+	private static float taper(float along) {
+		float sample = along * TAPER_SAMPLES;
+		int i = Math.min((int) sample, TAPER_SAMPLES - 1);
+		return MathUtils.lerp(TAPER[i], TAPER[i + 1], sample - i);
+	}
+
+	/**
+	 * Frees the texture.
+	 */
+	public void dispose() {
+		if (texture != null) {
+			ResourceTracker.release(texture);
+			texture.dispose();
+			texture = null;
+		}
+	}
+}
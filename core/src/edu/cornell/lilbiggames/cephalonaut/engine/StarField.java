@@ -0,0 +1,163 @@
+/*
+ * StarField.java
+ *
+ * The twinkling stars drawn over every background image of a level.
+ *
+ * The stars never move against their background, so they are scattered once per
+ * level and put into a mesh.  Each star works out its film strip frame in the
+ * vertex shader from the time, so animating them costs nothing on the CPU.  A
+ * whole field is one draw call per texture, and there is only one texture once
+ * the stars are packed into the sprite atlas.  See GameCanvas.drawStars.
+ */
+package edu.cornell.lilbiggames.cephalonaut.engine;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
+
+/**
+ * A field of stars over a level, drawn as a mesh.
+ */
+public class StarField {
+	/** Frames in the film strip of a star */
+	public static final int FRAMES = 11;
+	/** Frames a star moves on per second */
+	public static final float FRAME_RATE = 5;
+	/** Size on screen of a film strip pixel, per physics unit of draw scale */
+	public static final float STAR_SCALE = 0.1f;
+	/** Share of the stars drawn from the bright film strip */
+	private static final float BRIGHT_SHARE = 2 / 3f;
+	/** Floats per vertex: position, corner, texture coordinates, and frame width and phase */
+	private static final int VERTEX_SIZE = 8;
+
+	/** The width and height of the level the stars cover, in physics units */
+	private final float width, height;
+	/** One mesh per texture the stars are drawn from */
+	private final Array<Mesh> meshes = new Array<>();
+	private final Array<Texture> textures = new Array<>();
+	/** Animation time, in frames, wrapped at the length of a film strip */
+	private float frame;
+
+	/**
+	 * Scatters stars over a level.
+	 *
+	 * Stars sit on whole physics units, anywhere from 0 to the width and height.
+	 *
+	 * @param width  The width of the level, in physics units
+	 * @param height The height of the level, in physics units
+	 * @param count  The number of stars
+	 * @param bright The film strip of the bright stars, FRAMES frames in a row
+	 * @param faint  The film strip of the faint stars, FRAMES frames in a row
+	 */
+	public StarField(float width, float height, int count, TextureRegion bright, TextureRegion faint) {
+		this.width = width;
+		this.height = height;
+
+		Array<FloatArray> vertices = new Array<>();
+		int brightCount = MathUtils.round(count * BRIGHT_SHARE);
+		for (int i = 0; i < count; i++) {
+			TextureRegion strip = i < brightCount ? bright : faint;
+			int index = textures.indexOf(strip.getTexture(), true);
+			if (index < 0) {
+				index = textures.size;
+				textures.add(strip.getTexture());
+				vertices.add(new FloatArray(4 * VERTEX_SIZE * count));
+			}
+			addStar(vertices.get(index), strip, MathUtils.random(0, (int) width), MathUtils.random(0, (int) height));
+		}
+
+		for (int i = 0; i < textures.size; i++) {
+			FloatArray data = vertices.get(i);
+			int stars = data.size / (4 * VERTEX_SIZE);
+			Mesh mesh = ResourceTracker.track(ResourceTracker.Type.MESH, new Mesh(true, 4 * stars, 6 * stars,
+					new VertexAttribute(VertexAttributes.Usage.Position, 2, "a_position"),
+					new VertexAttribute(VertexAttributes.Usage.Generic, 2, "a_corner"),
+					new VertexAttribute(VertexAttributes.Usage.TextureCoordinates, 2, "a_texCoord0"),
+					new VertexAttribute(VertexAttributes.Usage.Generic, 2, "a_strip")));
+			mesh.setVertices(data.items, 0, data.size);
+			short[] indices = new short[6 * stars];
+			for (int j = 0; j < stars; j++) {
+				short corner = (short) (4 * j);
+				indices[6 * j] = corner;
+				indices[6 * j + 1] = (short) (corner + 1);
+				indices[6 * j + 2] = (short) (corner + 2);
+				indices[6 * j + 3] = (short) (corner + 2);
+				indices[6 * j + 4] = (short) (corner + 3);
+				indices[6 * j + 5] = corner;
+			}
+			mesh.setIndices(indices);
+			meshes.add(mesh);
+		}
+	}
+
+	/** Adds the four corners of a star, counterclockwise from the bottom left */
+	private static void addStar(FloatArray vertices, TextureRegion strip, float x, float y) {
+		float halfWidth = strip.getRegionWidth() / (2f * FRAMES);
+		float halfHeight = strip.getRegionHeight() / 2f;
+		float frameWidth = (strip.getU2() - strip.getU()) / FRAMES;
+		float u = strip.getU();
+		float phase = MathUtils.random(FRAMES - 1);
+		// Texture coordinates of the first frame; v runs down the image
+		vertices.addAll(x, y, -halfWidth, -halfHeight, u, strip.getV2(), frameWidth, phase);
+		vertices.addAll(x, y, halfWidth, -halfHeight, u + frameWidth, strip.getV2(), frameWidth, phase);
+		vertices.addAll(x, y, halfWidth, halfHeight, u + frameWidth, strip.getV(), frameWidth, phase);
+		vertices.addAll(x, y, -halfWidth, halfHeight, u, strip.getV(), frameWidth, phase);
+	}
+
+	/**
+	 * Moves the stars on in their film strips.
+	 *
+	 * @param dt Number of seconds since the last animation frame
+	 */
+	public void update(float dt) {
+		// Wrapped so that the shader never loses precision on a long level
+		frame = (frame + dt * FRAME_RATE) % FRAMES;
+	}
+
+	/** Returns the animation time, in frames */
+	public float getFrame() {
+		return frame;
+	}
+
+	/** Returns the width of the level the stars cover, in physics units */
+	public float getWidth() {
+		return width;
+	}
+
+	/** Returns the height of the level the stars cover, in physics units */
+	public float getHeight() {
+		return height;
+	}
+
+	/**
+	 * Draws every mesh with a shader that is already bound.
+	 *
+	 * @param shader The star shader, with everything but its texture set
+	 */
+	public void render(ShaderProgram shader) {
+		for (int i = 0; i < meshes.size; i++) {
+			textures.get(i).bind(0);
+			meshes.get(i).render(shader, GL20.GL_TRIANGLES);
+		}
+	}
+
+	/**
+	 * Frees the meshes.
+	 */
+	public void dispose() {
+		for (Mesh mesh : meshes) {
+			ResourceTracker.release(mesh);
+			mesh.dispose();
+		}
+		meshes.clear();
+		textures.clear();
+	}
+}
@@ -3,10 +3,12 @@ package edu.cornell.lilbiggames.cephalonaut.engine.controller;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.BodyDef;
 import com.badlogic.gdx.physics.box2d.Joint;
+import com.badlogic.gdx.physics.box2d.JointDef;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.physics.box2d.joints.DistanceJointDef;
 import edu.cornell.lilbiggames.cephalonaut.engine.model.CephalonautModel;
 import edu.cornell.lilbiggames.cephalonaut.engine.model.GrappleModel;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
 
 public class CephalonautController {
     /** The box2d world **/
@@ -57,13 +59,13 @@ public class CephalonautController {
                 (grapple.isOut() && grapple.isFullyExtended() && !grapple.isAnchored()) ||
                 ungrappleButton) {
             if (grappleJoint1 != null) {
-                world.destroyJoint(grappleJoint1);
+                destroyJoint(grappleJoint1);
                 grappleJoint1 = null;
                 grappleJoint1Def = null;
-                world.destroyJoint(grappleJoint2);
+                destroyJoint(grappleJoint2);
                 grappleJoint2 = null;
                 grappleJoint2Def = null;
-                world.destroyJoint(grappleJoint3);
+                destroyJoint(grappleJoint3);
                 grappleJoint3 = null;
             }
             if(ungrappleButton && grapple.isOut()){
@@ -138,9 +140,9 @@ public class CephalonautController {
                 anchor2.frequencyHz = 3f;
                 grappleJoint1Def = anchor1;
                 grappleJoint2Def = anchor2;
-                grappleJoint1 = world.createJoint(anchor1);
-                grappleJoint2 = world.createJoint(anchor2);
-                grappleJoint3 = world.createJoint(anchor3);
+                grappleJoint1 = createJoint(anchor1);
+                grappleJoint2 = createJoint(anchor2);
+                grappleJoint3 = createJoint(anchor3);
                 grapple.setGrappling(true);
             }
         }
@@ -152,8 +154,8 @@ public class CephalonautController {
         if(cephalonaut.getGrapple().isGrappling() && grappleJoint1 != null && grappleJoint2 != null &&
                 grappleJoint1Def != null && grappleJoint2Def != null) {
             if(lastRotation == 0) {
-                world.destroyJoint(grappleJoint1);
-                world.destroyJoint(grappleJoint2);
+                destroyJoint(grappleJoint1);
+                destroyJoint(grappleJoint2);
                 grappleJoint1 = null;
                 grappleJoint2 = null;
                 Vector2 cephWBodyCenter = cephalonaut.getBody().getWorldCenter();
@@ -161,8 +163,8 @@ public class CephalonautController {
                 cephalonaut.getBody().setTransform(
                         cephWBodyCenter.add(cephLBodyCenter.setAngleRad(cephalonaut.getAngle() + (float) (Math.PI / 4))),
                         (float) (3 * Math.PI/4) + cephalonaut.getAngle());
-                grappleJoint1 = world.createJoint(grappleJoint1Def);
-                grappleJoint2 = world.createJoint(grappleJoint2Def);
+                grappleJoint1 = createJoint(grappleJoint1Def);
+                grappleJoint2 = createJoint(grappleJoint2Def);
             }
         }
     }
@@ -170,17 +172,28 @@ public class CephalonautController {
     public void removeGrapple(GrappleModel grapple) {
         if(grapple.isOut()) {
             if (grappleJoint1 != null) {
-                world.destroyJoint(grappleJoint1);
+                destroyJoint(grappleJoint1);
                 grappleJoint1 = null;
                 grappleJoint1Def = null;
-                world.destroyJoint(grappleJoint2);
+                destroyJoint(grappleJoint2);
                 grappleJoint2 = null;
                 grappleJoint2Def = null;
-                world.destroyJoint(grappleJoint3);
+                destroyJoint(grappleJoint3);
                 grappleJoint3 = null;
             }
             grapple.reset();
             grapple.setPosition(cephalonaut.getPosition().cpy());
         }
     }
-}
\ No newline at end of file
+
+    /** Creates a joint in the world, registering it with the resource tracker */
+    private Joint createJoint(JointDef def) {
+        return ResourceTracker.track(ResourceTracker.Type.JOINT, world.createJoint(def));
+    }
+
+    /** Destroys a joint in the world, unregistering it with the resource tracker */
+    private void destroyJoint(Joint joint) {
+        ResourceTracker.release(joint);
+        world.destroyJoint(joint);
+    }
+}
@@ -0,0 +1,254 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.controller;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.GameObject;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.TileBand;
+import edu.cornell.lilbiggames.cephalonaut.engine.model.CephalonautModel;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the chunks of tile layers near the cameras, players and moving objects in the world.
+ *
+ * The level loader keeps the tiles of each chunk as packed keys.  Their
+ * LevelElements are built on a worker thread once the chunk is a little past
+ * the load margin, and dropped again once it is further away than that, so the
+ * memory of a level grows with the area around the players rather than with
+ * its size.  Only the bodies are made here, on the game thread, as Box2D is not
+ * thread safe.  Chunks are only looked at again when a camera, player or awake
+ * dynamic object moves into another chunk, so a bigger level does not cost more
+ * per frame either.
+ *
+ * Only plain tiles are streamed.  Objects with a Tiled id stay in the world, so
+ * triggers and wormholes find their targets wherever they are.  Dynamic objects
+ * keep the chunks around them while they are awake, so that they do not pass
+ * through tiles no camera is near.
+ */
+public class ChunkStreamer {
+    /** Distance past the edge of the screen that chunks are loaded, in tiles */
+    private static final float LOAD_MARGIN = TileBand.CHUNK_SIZE;
+    /** Further distance before loaded chunks are unloaded, in tiles */
+    private static final float UNLOAD_MARGIN = TileBand.CHUNK_SIZE / 2f;
+    /** Distance past the load margin that chunks are built ahead of time, in tiles; more than the unload margin */
+    private static final float BUILD_MARGIN = TileBand.CHUNK_SIZE;
+
+    /** Builds the tiles of chunks before they are loaded */
+    private final ExecutorService builder;
+
+    private final Array<TileBand> bands = new Array<>();
+    /** Dynamic objects of the level, which keep the chunks around them while awake */
+    private final Array<GameObject> movers = new Array<>();
+    /** Positions the chunks are streamed around, as x, y pairs in physics units */
+    private final FloatArray focus = new FloatArray();
+    /** The chunk of each position when the chunks were last streamed, and now */
+    private final IntArray cells = new IntArray();
+    private final IntArray nextCells = new IntArray();
+    /** How many of the positions were cameras and players when the chunks were last streamed */
+    private int viewCount;
+    /** Areas to load, to keep and to build, one per position */
+    private final Array<Rectangle> near = new Array<>();
+    private final Array<Rectangle> far = new Array<>();
+    private final Array<Rectangle> ahead = new Array<>();
+    /** Whether to stream even if nothing changed chunk */
+    private boolean dirty = true;
+
+    private int chunkCount, loadedCount;
+
+    public ChunkStreamer() {
+        builder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "chunk-build");
+                // Chunks nobody is waiting for must not keep the game alive
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Adds a band of the level to stream.
+     *
+     * @param band A band that was just added to the world
+     */
+    public void add(TileBand band) {
+        bands.add(band);
+        chunkCount += band.getChunkCount();
+        dirty = true;
+    }
+
+    /**
+     * Keeps the chunks around an object loaded while it is awake, if it is dynamic.
+     *
+     * @param object An object of the level that was just added to the world
+     */
+    public void follow(GameObject object) {
+        if (object.getBodyType() == BodyDef.BodyType.DynamicBody) {
+            movers.add(object);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Stops streaming a band that is being taken out of the level.
+     *
+     * @param band A band that was added
+     */
+    public void remove(TileBand band) {
+        if (bands.removeValue(band, true)) {
+            chunkCount -= band.getChunkCount();
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forgets every band and object, once the level has been cleaned up.
+     */
+    public void clear() {
+        bands.clear();
+        movers.clear();
+        cells.clear();
+        chunkCount = 0;
+        loadedCount = 0;
+        dirty = true;
+    }
+
+    /**
+     * Makes the next update stream the chunks, such as after the screen was resized.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Loads the chunks near every camera, player and awake dynamic object, and unloads the rest.
+     *
+     * Cameras and players load a screen of chunks around them.  Objects only load
+     * the chunks within the load margin, as nobody is looking.
+     *
+     * @param world   The world of the level
+     * @param canvas  The canvas, whose viewport cameras are followed
+     * @param scale   The drawing scale, in pixels per physics unit
+     * @param players The players of the level
+     */
+    public void update(World world, GameCanvas canvas, Vector2 scale, Array<Player> players) {
+        if (bands.size == 0) return;
+
+        focus.clear();
+        for (int i = 0; i < canvas.getViewportCount(); i++) {
+            focus.add(canvas.getViewportCameraX(i) / scale.x);
+            focus.add(canvas.getViewportCameraY(i) / scale.y);
+        }
+        for (int i = 0; i < players.size; i++) {
+            CephalonautModel cephalonaut = players.get(i).getCephalonaut();
+            focus.add(cephalonaut.getX());
+            focus.add(cephalonaut.getY());
+        }
+        int nextViewCount = focus.size / 2;
+        for (int i = movers.size - 1; i >= 0; i--) {
+            GameObject mover = movers.get(i);
+            if (mover.isRemoved()) {
+                movers.removeIndex(i);
+            } else if (mover.isActive() && mover.isAwake()) {
+                focus.add(mover.getX());
+                focus.add(mover.getY());
+            }
+        }
+
+        nextCells.clear();
+        for (int i = 0; i < focus.size; i++) {
+            nextCells.add(MathUtils.floor(focus.get(i) / TileBand.CHUNK_SIZE));
+        }
+        if (!dirty && nextViewCount == viewCount && nextCells.equals(cells)) return;
+        viewCount = nextViewCount;
+        cells.clear();
+        cells.addAll(nextCells);
+        dirty = false;
+
+        // Anywhere in its chunk, a position must see a screen and a margin in each direction
+        float halfWidth = canvas.getWidth() / 2f / scale.x + LOAD_MARGIN;
+        float halfHeight = canvas.getHeight() / 2f / scale.y + LOAD_MARGIN;
+        int count = cells.size / 2;
+        while (near.size < count) {
+            near.add(new Rectangle());
+            far.add(new Rectangle());
+            ahead.add(new Rectangle());
+        }
+        for (int i = 0; i < count; i++) {
+            float x = cells.get(2 * i) * TileBand.CHUNK_SIZE;
+            float y = cells.get(2 * i + 1) * TileBand.CHUNK_SIZE;
+            float w = i < viewCount ? halfWidth : LOAD_MARGIN;
+            float h = i < viewCount ? halfHeight : LOAD_MARGIN;
+            near.get(i).set(x - w, y - h, TileBand.CHUNK_SIZE + 2 * w, TileBand.CHUNK_SIZE + 2 * h);
+            far.get(i).set(x - w - UNLOAD_MARGIN, y - h - UNLOAD_MARGIN,
+                    TileBand.CHUNK_SIZE + 2 * (w + UNLOAD_MARGIN),
+                    TileBand.CHUNK_SIZE + 2 * (h + UNLOAD_MARGIN));
+            ahead.get(i).set(x - w - BUILD_MARGIN, y - h - BUILD_MARGIN,
+                    TileBand.CHUNK_SIZE + 2 * (w + BUILD_MARGIN),
+                    TileBand.CHUNK_SIZE + 2 * (h + BUILD_MARGIN));
+        }
+
+        loadedCount = 0;
+        for (int i = 0; i < bands.size; i++) {
+            TileBand band = bands.get(i);
+            band.stream(world, near, far, ahead, count, builder);
+            loadedCount += band.getLoadedCount();
+        }
+    }
+
+    /** Returns the number of chunks in the level */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /** Returns the number of chunks in the world */
+    public int getLoadedCount() {
+        return loadedCount;
+    }
+
+    /** Returns the number of chunks drawn the last time the level was drawn */
+    public int getDrawnCount() {
+        int count = 0;
+        for (int i = 0; i < bands.size; i++) {
+            count += bands.get(i).getDrawnCount();
+        }
+        return count;
+    }
+
+    /** Returns the number of chunks drawn tile by tile the last time the level was drawn */
+    public int getUncachedCount() {
+        int count = 0;
+        for (int i = 0; i < bands.size; i++) {
+            count += bands.get(i).getUncachedCount();
+        }
+        return count;
+    }
+
+    /**
+     * Stops the worker thread, once the streamer is no longer used.
+     */
+    public void dispose() {
+        builder.shutdownNow();
+    }
+
+    /**
+     * Sets whether the bands skip loaded chunks off screen when drawing.
+     *
+     * @param value Whether to cull
+     */
+    public void setCulling(boolean value) {
+        for (int i = 0; i < bands.size; i++) {
+            bands.get(i).setCulling(value);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.controller;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.World;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.LevelElement;
+
+import java.util.Arrays;
+
+/**
+ * Per frame contact and broadphase statistics for the current level.
+ *
+ * Contact callbacks are counted by event, by who is involved (a player's body, a
+ * player's grapple, or neither) and by the element type of the thing touched.
+ * Once per physics step the counts are committed, together with the world's
+ * contact, body, fixture and proxy counts and the time the step took, into a ring
+ * buffer of the last {@link #HISTORY} frames.  Everything is allocated up front,
+ * so recording never allocates.  The callbacks of each element type over the
+ * history are kept as running totals, so that the debug overlay can ask for
+ * them every frame without going through the history.
+ */
+public class ContactStats {
+    /** Contact listener callbacks we count */
+    public enum Event {
+        BEGIN, END, PRESOLVE
+    }
+
+    /** Who is involved in a contact */
+    public enum Pair {
+        /** A player's body and something else */
+        PLAYER,
+        /** A player's grapple and something else */
+        GRAPPLE,
+        /** Two things that are neither */
+        OTHER
+    }
+
+    /** Number of frames kept */
+    public static final int HISTORY = 600;
+
+    /** Cached, as values() copies the array every call */
+    private static final Event[] EVENTS = Event.values();
+    private static final Pair[] PAIRS = Pair.values();
+    private static final LevelElement.Element[] ELEMENTS = LevelElement.Element.values();
+    /** Category for things that are not level elements (players, grapples, images) */
+    private static final int NOT_ELEMENT = ELEMENTS.length;
+    /** Number of element categories */
+    private static final int CATEGORIES = ELEMENTS.length + 1;
+    /** Number of counters per frame */
+    private static final int COUNTERS = EVENTS.length * PAIRS.length * CATEGORIES;
+
+    /** Counters for the frame in progress */
+    private final int[] current = new int[COUNTERS];
+    /** Callbacks of each event in the frame in progress */
+    private final int[] currentTotals = new int[EVENTS.length];
+    /** Callbacks of each category in the frame in progress */
+    private final int[] currentCategories = new int[CATEGORIES];
+
+    /** Committed counters, one row per frame */
+    private final int[][] counters = new int[HISTORY][COUNTERS];
+    /** Committed callbacks of each event, one row per frame */
+    private final int[][] totals = new int[HISTORY][EVENTS.length];
+    /** Committed callbacks of each category, one row per frame */
+    private final int[][] categories = new int[HISTORY][CATEGORIES];
+    /** Callbacks of each category over the rows in use */
+    private final int[] categoryTotals = new int[CATEGORIES];
+    /** Frame number of each row */
+    private final int[] frames = new int[HISTORY];
+    private final int[] contactCounts = new int[HISTORY];
+    private final int[] bodyCounts = new int[HISTORY];
+    private final int[] fixtureCounts = new int[HISTORY];
+    private final int[] proxyCounts = new int[HISTORY];
+    private final long[] stepNanos = new long[HISTORY];
+
+    /** Row the next frame is committed to */
+    private int head;
+    /** Number of rows in use */
+    private int size;
+    /** Frames committed since the last clear */
+    private int frame;
+
+    /**
+     * Forgets every recorded frame.
+     */
+    public void clear() {
+        Arrays.fill(current, 0);
+        Arrays.fill(currentTotals, 0);
+        Arrays.fill(currentCategories, 0);
+        Arrays.fill(categoryTotals, 0);
+        head = 0;
+        size = 0;
+        frame = 0;
+    }
+
+    /**
+     * Counts one contact listener callback.
+     *
+     * @param event    The callback
+     * @param fixtureA The first fixture of the contact
+     * @param fixtureB The second fixture of the contact
+     */
+    public void record(Event event, Fixture fixtureA, Fixture fixtureB) {
+        Object dataA = fixtureA.getUserData();
+        Object dataB = fixtureB.getUserData();
+        Pair pair;
+        Object other;
+        if (dataA instanceof Player) {
+            pair = Pair.PLAYER;
+            other = fixtureB.getBody().getUserData();
+        } else if (dataB instanceof Player) {
+            pair = Pair.PLAYER;
+            other = fixtureA.getBody().getUserData();
+        } else if (dataA instanceof Player.Grapple) {
+            pair = Pair.GRAPPLE;
+            other = fixtureB.getBody().getUserData();
+        } else if (dataB instanceof Player.Grapple) {
+            pair = Pair.GRAPPLE;
+            other = fixtureA.getBody().getUserData();
+        } else {
+            pair = Pair.OTHER;
+            other = fixtureA.getBody().getUserData();
+            if (!(other instanceof LevelElement)) {
+                other = fixtureB.getBody().getUserData();
+            }
+        }
+        int category = other instanceof LevelElement ? ((LevelElement) other).getElement().ordinal() : NOT_ELEMENT;
+        current[index(event.ordinal(), pair.ordinal(), category)]++;
+        currentTotals[event.ordinal()]++;
+        currentCategories[category]++;
+    }
+
+    /**
+     * Commits the counts of the frame in progress, along with the state of the world.
+     *
+     * Call this right after World.step().
+     *
+     * @param world The world that was stepped
+     * @param nanos How long the step took, in nanoseconds
+     */
+    public void endFrame(World world, long nanos) {
+        System.arraycopy(current, 0, counters[head], 0, COUNTERS);
+        System.arraycopy(currentTotals, 0, totals[head], 0, EVENTS.length);
+        // The oldest row drops out of the totals once the history is full
+        int[] row = categories[head];
+        for (int category = 0; category < CATEGORIES; category++) {
+            if (size == HISTORY) categoryTotals[category] -= row[category];
+            row[category] = currentCategories[category];
+            categoryTotals[category] += row[category];
+        }
+        frames[head] = frame++;
+        contactCounts[head] = world.getContactCount();
+        bodyCounts[head] = world.getBodyCount();
+        fixtureCounts[head] = world.getFixtureCount();
+        proxyCounts[head] = world.getProxyCount();
+        stepNanos[head] = nanos;
+        Arrays.fill(current, 0);
+        Arrays.fill(currentTotals, 0);
+        Arrays.fill(currentCategories, 0);
+
+        head = (head + 1) % HISTORY;
+        size = Math.min(size + 1, HISTORY);
+    }
+
+    /** Returns the row of the most recent frame, or -1 if there is none */
+    private int last() {
+        return size == 0 ? -1 : (head + HISTORY - 1) % HISTORY;
+    }
+
+    /** Returns the counter for an event, pair and category */
+    private static int index(int event, int pair, int category) {
+        return (event * PAIRS.length + pair) * CATEGORIES + category;
+    }
+
+    /** Returns the number of callbacks of an event in the last frame */
+    public int getLastCount(Event event) {
+        int row = last();
+        return row < 0 ? 0 : totals[row][event.ordinal()];
+    }
+
+    /** Returns the world's contact count after the last frame */
+    public int getLastContactCount() {
+        int row = last();
+        return row < 0 ? 0 : contactCounts[row];
+    }
+
+    /** Returns the world's body count after the last frame */
+    public int getLastBodyCount() {
+        int row = last();
+        return row < 0 ? 0 : bodyCounts[row];
+    }
+
+    /** Returns the world's fixture count after the last frame */
+    public int getLastFixtureCount() {
+        int row = last();
+        return row < 0 ? 0 : fixtureCounts[row];
+    }
+
+    /** Returns the world's broadphase proxy count after the last frame */
+    public int getLastProxyCount() {
+        int row = last();
+        return row < 0 ? 0 : proxyCounts[row];
+    }
+
+    /** Returns how long the last step took, in milliseconds */
+    public float getLastStepMillis() {
+        int row = last();
+        return row < 0 ? 0 : stepNanos[row] / 1e6f;
+    }
+
+    /** Returns the slowest step in the history, in milliseconds */
+    public float getMaxStepMillis() {
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, stepNanos[i]);
+        }
+        return max / 1e6f;
+    }
+
+    /** Returns the average step in the history, in milliseconds */
+    public float getAverageStepMillis() {
+        if (size == 0) return 0;
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += stepNanos[i];
+        }
+        return sum / (float) size / 1e6f;
+    }
+
+    /**
+     * Returns the element type with the most callbacks over the history, or null
+     * if no level element was touched.
+     *
+     * @return the element type with the most callbacks over the history
+     */
+    public LevelElement.Element getBusiestElement() {
+        int best = -1;
+        int bestCount = 0;
+        for (int category = 0; category < NOT_ELEMENT; category++) {
+            int count = categoryTotals[category];
+            if (count > bestCount) {
+                best = category;
+                bestCount = count;
+            }
+        }
+        return best < 0 ? null : ELEMENTS[best];
+    }
+
+    /**
+     * Returns the number of callbacks involving an element type over the history.
+     *
+     * @param element The element type
+     *
+     * @return the number of callbacks involving an element type over the history
+     */
+    public int getElementCount(LevelElement.Element element) {
+        return categoryTotals[element.ordinal()];
+    }
+
+    /**
+     * Writes the history as CSV, oldest frame first.
+     *
+     * There is one row per frame, with the step time, the world counts, the
+     * callbacks of each event, and then one column per event, pair and category
+     * (e.g. "begin_player_SPIKE").  Columns that stay zero for the whole history
+     * are left out.
+     *
+     * @param file The file to write
+     */
+    public void exportCsv(FileHandle file) {
+        boolean[] used = new boolean[COUNTERS];
+        for (int i = 0; i < size; i++) {
+            for (int c = 0; c < COUNTERS; c++) {
+                used[c] |= counters[i][c] != 0;
+            }
+        }
+
+        StringBuilder csv = new StringBuilder();
+        csv.append("frame,step_ms,contacts,bodies,fixtures,proxies");
+        for (Event event : EVENTS) {
+            csv.append(',').append(event.name().toLowerCase());
+        }
+        for (int c = 0; c < COUNTERS; c++) {
+            if (!used[c]) continue;
+            int category = c % CATEGORIES;
+            int pair = (c / CATEGORIES) % PAIRS.length;
+            int event = c / CATEGORIES / PAIRS.length;
+            csv.append(',').append(EVENTS[event].name().toLowerCase())
+               .append('_').append(PAIRS[pair].name().toLowerCase())
+               .append('_').append(category == NOT_ELEMENT ? "NONE" : ELEMENTS[category].name());
+        }
+        csv.append('\n');
+
+        int start = (head + HISTORY - size) % HISTORY;
+        for (int n = 0; n < size; n++) {
+            int row = (start + n) % HISTORY;
+            csv.append(frames[row]).append(',').append(stepNanos[row] / 1e6f)
+               .append(',').append(contactCounts[row]).append(',').append(bodyCounts[row])
+               .append(',').append(fixtureCounts[row]).append(',').append(proxyCounts[row]);
+            for (int event = 0; event < EVENTS.length; event++) {
+                csv.append(',').append(totals[row][event]);
+            }
+            for (int c = 0; c < COUNTERS; c++) {
+                if (used[c]) {
+                    csv.append(',').append(counters[row][c]);
+                }
+            }
+            csv.append('\n');
+        }
+        file.writeString(csv.toString(), false);
+    }
+}
@@ -0,0 +1,322 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.controller;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.GameObject;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.LevelElement;
+
+import java.util.Comparator;
+
+/**
+ * Finds the objects the camera may see, so that drawing skips the rest.
+ *
+ * Static level elements are put into a grid of cells when they are added, one
+ * grid per parallax factor, since SimpleObstacle.draw moves an object by the
+ * camera position times its parallax factor.  Finding what is on screen then
+ * looks at the cells under the camera, not at every object.  Level elements
+ * that move are checked one by one.  Everything else (players, backgrounds, and
+ * tile bands, which skip their own chunks) is always drawn.
+ *
+ * The objects found come back in the order they were added, which is the order
+ * they are drawn in.
+ */
+public class DrawCuller {
+    /** Width and height of a grid cell, in physics units */
+    private static final float CELL_SIZE = 8;
+
+    private static class Entry {
+        final GameObject object;
+        /** Position in the draw order */
+        int order;
+        /** The cells the entry is in, inclusive */
+        int x0, y0, x1, y1;
+        /** The last query that found the entry, so that it is only found once */
+        int query;
+
+        Entry(GameObject object, int order) {
+            this.object = object;
+            this.order = order;
+        }
+    }
+
+    private static class Grid {
+        final Vector2 parallax;
+        /** Entries by cell */
+        final IntMap<Array<Entry>> cells = new IntMap<>();
+
+        Grid(Vector2 parallax) {
+            this.parallax = new Vector2(parallax);
+        }
+    }
+
+    private static final Comparator<Entry> DRAW_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return Integer.compare(a.order, b.order);
+        }
+    };
+
+    private final Array<Grid> grids = new Array<>();
+    /** The grid entry of every static element */
+    private final ObjectMap<GameObject, Entry> placed = new ObjectMap<>();
+    /** Level elements that can move */
+    private final Array<Entry> moving = new Array<>();
+    /** Objects that are drawn wherever the camera is */
+    private final Array<Entry> always = new Array<>();
+    private final Array<Entry> found = new Array<>();
+
+    private int nextOrder;
+    private int queryCount;
+    private boolean enabled = true;
+    private int drawnCount, culledCount;
+
+    /**
+     * Adds an object after every object added so far.
+     *
+     * @param object An object that was just added to the world
+     */
+    public void add(GameObject object) {
+        add(object, null);
+    }
+
+    /**
+     * Adds an object just before another in the draw order.
+     *
+     * This is for hot reloading, and goes through every entry.
+     *
+     * @param object An object that was just added to the world
+     * @param before The object to draw it before, or null to draw it after everything
+     */
+    public void add(GameObject object, GameObject before) {
+        if (placed.containsKey(object)) return;
+
+        int order = before == null ? -1 : getOrder(before);
+        if (order < 0) {
+            order = nextOrder;
+        } else {
+            shiftOrders(placed.values().toArray(), order);
+            shiftOrders(moving, order);
+            shiftOrders(always, order);
+        }
+        nextOrder++;
+        Entry entry = new Entry(object, order);
+        if (!(object instanceof LevelElement)) {
+            always.add(entry);
+        } else if (object.getBodyType() != BodyDef.BodyType.StaticBody) {
+            moving.add(entry);
+        } else {
+            placed.put(object, entry);
+            link(getGrid(object.getParallaxFactor()), entry);
+        }
+    }
+
+    /** Returns the place of an object in the draw order, or -1 if it was not added */
+    private int getOrder(GameObject object) {
+        Entry entry = placed.get(object);
+        if (entry != null) return entry.order;
+        for (int i = 0; i < moving.size; i++) {
+            if (moving.get(i).object == object) return moving.get(i).order;
+        }
+        for (int i = 0; i < always.size; i++) {
+            if (always.get(i).object == object) return always.get(i).order;
+        }
+        return -1;
+    }
+
+    /** Moves the entries from a place in the draw order on one place later */
+    private static void shiftOrders(Array<Entry> entries, int from) {
+        for (int i = 0; i < entries.size; i++) {
+            if (entries.get(i).order >= from) entries.get(i).order++;
+        }
+    }
+
+    /**
+     * Forgets an object that was taken out of the world.
+     *
+     * A static element is unlinked from the cells it was put in, so that no
+     * query has to step over it again.
+     *
+     * @param object An object that was added
+     */
+    public void remove(GameObject object) {
+        Entry entry = placed.remove(object);
+        if (entry != null) {
+            unlink(getGrid(object.getParallaxFactor()), entry);
+            return;
+        }
+        for (int i = 0; i < moving.size; i++) {
+            if (moving.get(i).object == object) {
+                moving.removeIndex(i);
+                return;
+            }
+        }
+        for (int i = 0; i < always.size; i++) {
+            if (always.get(i).object == object) {
+                always.removeIndex(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves a static element to the cells of where it is now.
+     *
+     * @param object A static element that was moved by something other than physics
+     */
+    public void update(GameObject object) {
+        Entry entry = placed.get(object);
+        if (entry == null) return;
+
+        Grid grid = getGrid(object.getParallaxFactor());
+        unlink(grid, entry);
+        link(grid, entry);
+    }
+
+    /**
+     * Forgets every object, once the level has been cleaned up.
+     */
+    public void clear() {
+        grids.clear();
+        placed.clear();
+        moving.clear();
+        always.clear();
+        found.clear();
+        nextOrder = 0;
+        drawnCount = 0;
+        culledCount = 0;
+    }
+
+    /**
+     * Sets whether objects off screen are skipped.
+     *
+     * Only turned off to measure what culling saves.
+     *
+     * @param value Whether to cull
+     */
+    public void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Finds the objects that may be seen by the canvas's current camera.
+     *
+     * Objects that have been marked removed are skipped until they are taken out.
+     *
+     * @param canvas  The canvas, with the camera of the viewport being drawn
+     * @param scale   The drawing scale, in pixels per physics unit
+     * @param visible The array to fill, in draw order
+     */
+    public void query(GameCanvas canvas, Vector2 scale, Array<GameObject> visible) {
+        queryCount++;
+        found.clear();
+        float cameraX = canvas.getCameraX();
+        float cameraY = canvas.getCameraY();
+        float halfWidth = canvas.getWidth() / 2f;
+        float halfHeight = canvas.getHeight() / 2f;
+
+        for (int i = 0; i < grids.size; i++) {
+            Grid grid = grids.get(i);
+            if (!enabled) {
+                for (Array<Entry> entries : grid.cells.values()) {
+                    find(entries, cameraX, cameraY, halfWidth, halfHeight);
+                }
+                continue;
+            }
+            // An element at x is drawn at x * scale + camera * parallax
+            float x = cameraX * (1 - grid.parallax.x) / scale.x;
+            float y = cameraY * (1 - grid.parallax.y) / scale.y;
+            int x1 = cell(x + halfWidth / scale.x);
+            int y0 = cell(y - halfHeight / scale.y);
+            int y1 = cell(y + halfHeight / scale.y);
+            for (int cx = cell(x - halfWidth / scale.x); cx <= x1; cx++) {
+                for (int cy = y0; cy <= y1; cy++) {
+                    Array<Entry> entries = grid.cells.get(key(cx, cy));
+                    if (entries != null) find(entries, cameraX, cameraY, halfWidth, halfHeight);
+                }
+            }
+        }
+        find(moving, cameraX, cameraY, halfWidth, halfHeight);
+        find(always, cameraX, cameraY, halfWidth, halfHeight);
+
+        found.sort(DRAW_ORDER);
+        for (int i = 0; i < found.size; i++) {
+            visible.add(found.get(i).object);
+        }
+        drawnCount = found.size;
+        culledCount = placed.size + moving.size + always.size - found.size;
+    }
+
+    /** Adds the entries not yet found that are on screen, skipping removed ones */
+    private void find(Array<Entry> entries, float cameraX, float cameraY, float halfWidth, float halfHeight) {
+        for (int i = 0; i < entries.size; i++) {
+            Entry entry = entries.get(i);
+            if (entry.query == queryCount || entry.object.isRemoved()) continue;
+            if (entries == always || !enabled
+                    || UpdateScheduler.isOnScreen(entry.object, cameraX, cameraY, halfWidth, halfHeight)) {
+                entry.query = queryCount;
+                found.add(entry);
+            }
+        }
+    }
+
+    private Grid getGrid(Vector2 parallax) {
+        for (int i = 0; i < grids.size; i++) {
+            if (grids.get(i).parallax.equals(parallax)) return grids.get(i);
+        }
+        Grid grid = new Grid(parallax);
+        grids.add(grid);
+        return grid;
+    }
+
+    /** Puts an entry into every cell its bounds touch */
+    private static void link(Grid grid, Entry entry) {
+        GameObject object = entry.object;
+        float radius = object.getBoundingRadius();
+        entry.x0 = cell(object.getX() - radius);
+        entry.x1 = cell(object.getX() + radius);
+        entry.y0 = cell(object.getY() - radius);
+        entry.y1 = cell(object.getY() + radius);
+        for (int cx = entry.x0; cx <= entry.x1; cx++) {
+            for (int cy = entry.y0; cy <= entry.y1; cy++) {
+                Array<Entry> entries = grid.cells.get(key(cx, cy));
+                if (entries == null) {
+                    entries = new Array<>(false, 8);
+                    grid.cells.put(key(cx, cy), entries);
+                }
+                entries.add(entry);
+            }
+        }
+    }
+
+    private static void unlink(Grid grid, Entry entry) {
+        for (int cx = entry.x0; cx <= entry.x1; cx++) {
+            for (int cy = entry.y0; cy <= entry.y1; cy++) {
+                Array<Entry> entries = grid.cells.get(key(cx, cy));
+                if (entries != null) entries.removeValue(entry, true);
+            }
+        }
+    }
+
+    private static int cell(float position) {
+        return MathUtils.floor(position / CELL_SIZE);
+    }
+
+    private static int key(int cx, int cy) {
+        return cx << 16 | (cy & 0xffff);
+    }
+
+    /** Returns the number of objects found by the last query */
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+
+    /** Returns the number of objects the last query skipped */
+    public int getCulledCount() {
+        return culledCount;
+    }
+}
@@ -36,8 +36,13 @@ public class InputController {
 	private static final float GP_MAX_SPEED  = 10.0f;
 	private static final float GP_THRESHOLD  = 0.01f;
 
+	/** The most local players we support */
+	public static final int MAX_PLAYERS = 4;
+
 	/** The singleton instance of the input controller */
 	private static InputController theController = null;
+	/** Input for each local player; player 0 is always the singleton */
+	private static final InputController[] playerControllers = new InputController[MAX_PLAYERS];
 	
 	// Fields to manage buttons
 	/** Whether the reset button was pressed. */
@@ -75,6 +80,8 @@ public class InputController {
 	
 	/** An X-Box controller (if it is connected) */
 	XBoxController xbox;
+	/** Whether this player also reads the keyboard and mouse */
+	private final boolean keyboard;
 
 	private void setDefaultBindings(){
 		keyBindings.put("ink",Input.Keys.valueOf("W"));
@@ -96,6 +103,53 @@ public class InputController {
 		return theController;
 	}
 
+	/**
+	 * Return the input controller for a local player.
+	 *
+	 * Only valid after a call to configurePlayers() with enough players.
+	 *
+	 * @param player The player index (0 is the keyboard player)
+	 *
+	 * @return the input controller for a local player
+	 */
+	public static InputController getInstance(int player) {
+		return player == 0 ? getInstance() : playerControllers[player];
+	}
+
+	/**
+	 * Hands out the connected controllers to the given number of local players.
+	 *
+	 * With a single player, that player gets the keyboard and the first X-Box
+	 * controller as before.  With more, player 0 gets the keyboard and mouse only,
+	 * and every other player gets one X-Box controller.  The count is lowered if
+	 * there are not enough controllers connected.
+	 *
+	 * @param count The number of players wanted
+	 *
+	 * @return the number of players that actually have an input device
+	 */
+	public static int configurePlayers(int count) {
+		InputController first = getInstance();
+		Array<XBoxController> pads = Controllers.get().getXBoxControllers();
+		if (count <= 1) {
+			first.xbox = pads.size > 0 ? pads.get(0) : null;
+			return 1;
+		}
+
+		int available = Math.min(Math.min(count, MAX_PLAYERS), pads.size + 1);
+		if (available < count) {
+			System.out.printf("Only %d controllers connected, racing with %d players\n", pads.size, available);
+		}
+		first.xbox = null;
+		playerControllers[0] = first;
+		for (int i = 1; i < available; i++) {
+			if (playerControllers[i] == null || playerControllers[i].xbox != pads.get(i - 1)) {
+				playerControllers[i] = new InputController(pads.get(i - 1));
+			}
+		}
+		return available;
+	}
+
 	public void setBindings(Map<String,Integer> keyBindings){
 		this.keyBindings = keyBindings;
 	}
@@ -223,6 +277,23 @@ public class InputController {
 			xbox = null;
 		}
 
+		keyboard = true;
+		stickDirec = new Vector2();
+		keyBindings = new HashMap<>();
+		crosshair = new Vector2();
+		crosscache = new Vector2();
+	}
+
+	/**
+	 * Creates a new input controller for an extra local player
+	 *
+	 * This player only reads the given X-Box controller, never the keyboard.
+	 *
+	 * @param xbox The X-Box controller for this player
+	 */
+	public InputController(XBoxController xbox) {
+		this.xbox = xbox;
+		keyboard = false;
 		stickDirec = new Vector2();
 		keyBindings = new HashMap<>();
 		crosshair = new Vector2();
@@ -252,9 +323,16 @@ public class InputController {
 		// Check to see if a GamePad is connected
 		if (xbox != null && xbox.isConnected()) {
 			readGamepad(bounds, scale);
-			readKeyboard(bounds, scale, true); // Read as a back-up
-		} else {
+			if (keyboard) {
+				readKeyboard(bounds, scale, true); // Read as a back-up
+			}
+		} else if (keyboard) {
 			readKeyboard(bounds, scale, false);
+		} else {
+			// Our controller was unplugged
+			resetPressed = primePressed = secondaryPressed = tertiaryPressed = false;
+			debugPressed = exitPressed = thrusterApplied = false;
+			rotation = 0;
 		}
 	}
 
@@ -13,6 +13,7 @@ import edu.cornell.lilbiggames.cephalonaut.engine.GameState;
 import edu.cornell.lilbiggames.cephalonaut.util.Controllers;
 import edu.cornell.lilbiggames.cephalonaut.util.FilmStrip;
 import edu.cornell.lilbiggames.cephalonaut.util.ScreenListener;
+import edu.cornell.lilbiggames.cephalonaut.util.TextFormat;
 import edu.cornell.lilbiggames.cephalonaut.util.XBoxController;
 
 
@@ -44,6 +45,9 @@ public class LevelCompleteMode extends MenuMode {
     private int timer;
 
     private String timeString;
+    /** The times for two and three stars, as shown */
+    private final StringBuilder twoStarsText = new StringBuilder();
+    private final StringBuilder threeStarsText = new StringBuilder();
 
     XBoxController xbox;
     private boolean prevUp;
@@ -304,13 +308,8 @@ public class LevelCompleteMode extends MenuMode {
 
         canvas.drawTextCentered(timeString, displayFont, 0f);
 
-        int minutes2 = (twoStars % 3600) / 60;
-        int seconds2 = twoStars % 60;
-        String timeString2 = String.format("%02d:%02d", minutes2, seconds2);
-
-        int minutes3 = (threeStars % 3600) / 60;
-        int seconds3 = threeStars % 60;
-        String timeString3 = String.format("%02d:%02d", minutes3, seconds3);
+        TextFormat.setClock(twoStarsText, twoStars);
+        TextFormat.setClock(threeStarsText, threeStars);
 
         super.drawOptions(options, selectedOption, (int)(150*scale.y));
 
@@ -330,8 +329,8 @@ public class LevelCompleteMode extends MenuMode {
         }
 
         displayFont.getData().setScale(0.5f * Math.min(scale.x, scale.y));
-        canvas.drawTextTopRight(timeString3, displayFont, (int) (-20 * scale.x), (int) (-5 * scale.y));
-        canvas.drawTextTopRight(timeString2, displayFont, (int) (-20 * scale.x), (int) (55 * scale.y));
+        canvas.drawTextTopRight("threeStars", threeStarsText, displayFont, (int) (-20 * scale.x), (int) (-5 * scale.y));
+        canvas.drawTextTopRight("twoStars", twoStarsText, displayFont, (int) (-20 * scale.x), (int) (55 * scale.y));
         displayFont.getData().setScale(1f);
 
         canvas.end();
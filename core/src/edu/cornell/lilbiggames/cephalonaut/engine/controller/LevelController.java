@@ -3,6 +3,7 @@ package edu.cornell.lilbiggames.cephalonaut.engine.controller;
 import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
+import com.badlogic.gdx.utils.Array;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.*;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.elements.*;
 import edu.cornell.lilbiggames.cephalonaut.engine.model.CephalonautModel;
@@ -13,8 +14,8 @@ public class LevelController implements ContactListener {
     /*Exit code for completed level */
     public static int COMPLETE_LEVEL = 50;
 
-    /** Reference to player **/
-    private final CephalonautModel cephalonaut;
+    /** Every player in the level; player fixtures carry their Player as user data **/
+    private final Array<Player> players;
 
     /** Reference to the play mode **/
     private final PlayMode playMode;
@@ -22,15 +23,16 @@ public class LevelController implements ContactListener {
     /** Listener that will update the screen when we are done */
     private ScreenListener listener;
 
-    float closestBlackHole = Float.MAX_VALUE;
+    /** Where contact callbacks are counted */
+    private final ContactStats contactStats;
 
-    private boolean grappleOnBrokenGlass = false;
-    private boolean grappleOnGlass = false;
+    float closestBlackHole = Float.MAX_VALUE;
 
-    public LevelController(ScreenListener listener, CephalonautModel cephalonaut, PlayMode playMode) {
-        this.cephalonaut = cephalonaut;
+    public LevelController(ScreenListener listener, Array<Player> players, PlayMode playMode) {
+        this.players = players;
         this.playMode = playMode;
         this.listener = listener;
+        this.contactStats = playMode.getContactStats();
     }
 
     public void resetBlackHoleRange(){
@@ -41,11 +43,26 @@ public class LevelController implements ContactListener {
         return closestBlackHole<Float.MAX_VALUE-1;
     }
 
-    public void update(GameObject object, CephalonautController cephalonautController) {
+    /**
+     * Returns true if update(GameObject) does anything for this kind of object.
+     *
+     * PlayMode only keeps these, so that a frame does not visit every tile.
+     *
+     * @param object An object of the level
+     */
+    public static boolean isUpdated(GameObject object) {
+        return object instanceof LEBoostPad || object instanceof LEBlackHole || object instanceof LETriggerable
+                || object instanceof LEWormHole || object instanceof LEGlassBarrier;
+    }
+
+    public void update(GameObject object) {
         if (object instanceof LEBoostPad && ((LEBoostPad) object).getCooldown() > 0) {
             ((LEBoostPad) object).setCooldown(((LEBoostPad) object).getCooldown() - 1);
         } else if (object instanceof LEBlackHole) {
-            attract((LEBlackHole) object);
+            for (int i = 0; i < players.size; i++) {
+                Player player = players.get(i);
+                attract((LEBlackHole) object, player.getCephalonaut());
+            }
         } else if (object instanceof LETriggerable) {
             ((LETriggerable) object).checkPos();
         } else if (object instanceof LEWormHole && ((LEWormHole) object).getCooldown() > 0) {
@@ -53,22 +70,18 @@ public class LevelController implements ContactListener {
         } else if (object instanceof LEGlassBarrier) {
             willHit((LEGlassBarrier) object);
         }
+    }
 
-
-        if (object instanceof LevelElement) {
-            LevelElement levelElement = ((LevelElement) object);
-            if (levelElement.getElement() == LevelElement.Element.FINISH && levelElement.getInContact() && cephalonaut.isAlive()) {
-                finishLevel();
-            }
-        }
-
-        // TODO: Consider:
-        // Do we need to string in a CephalonautController though the update function? I think that's more for player
-        // controlled movement. I would be fine having the LevelController do all the teleporting without involving it.
-        // Maybe we should be able to 'removeGrapple' from the cephalonaut model itself, as that is the model that is
-        // storing all the cephalonaut data.
+    /**
+     * Per player upkeep, done once per frame after the objects are updated.
+     *
+     * @param player The player to update
+     */
+    public void update(Player player) {
+        CephalonautModel cephalonaut = player.getCephalonaut();
+        CephalonautController cephalonautController = player.getController();
         if (cephalonaut.getShouldTeleport()) {
-            teleport(cephalonautController);
+            teleport(cephalonaut, cephalonautController);
         }
         if (!cephalonaut.isAlive()) {
             GrappleModel grapple = cephalonaut.getGrapple();
@@ -77,15 +90,15 @@ public class LevelController implements ContactListener {
             }
         }
 
-        if(grappleOnBrokenGlass) {
+        if(player.isGrappleOnBrokenGlass()) {
             GrappleModel grapple = cephalonaut.getGrapple();
             cephalonautController.removeGrapple(grapple);
-            grappleOnBrokenGlass = false;
+            player.setGrappleOnBrokenGlass(false);
         }
     }
 
     /** Force from cephalonaut attracted to obj */
-    public void attract(LEBlackHole blackHole) {
+    public void attract(LEBlackHole blackHole, CephalonautModel cephalonaut) {
         Vector2 blackHolePos = blackHole.getBody().getWorldCenter();
         Vector2 cephalonautPos = cephalonaut.getBody().getWorldCenter();
         float dist = blackHolePos.dst(cephalonautPos);
@@ -102,7 +115,7 @@ public class LevelController implements ContactListener {
         }
     }
 
-    public void teleport(CephalonautController cephalonautController) {
+    public void teleport(CephalonautModel cephalonaut, CephalonautController cephalonautController) {
         GrappleModel grapple = cephalonaut.getGrapple();
         if (grapple.isOut()) {
             cephalonautController.removeGrapple(grapple);
@@ -111,7 +124,7 @@ public class LevelController implements ContactListener {
         cephalonaut.setShouldTeleport(false);
     }
 
-    public void setTeleport(LEWormHole wormHole) {
+    public void setTeleport(LEWormHole wormHole, CephalonautModel cephalonaut) {
         SoundController.playSound(5,1);
         cephalonaut.setTeleportLocation(wormHole.getPosition());
         cephalonaut.setShouldTeleport(true);
@@ -124,14 +137,26 @@ public class LevelController implements ContactListener {
         //cephalonaut.addForce(force);
     }
 
-    public void hit(LEGlassBarrier obj) {
+    public void hit(LEGlassBarrier obj, CephalonautModel cephalonaut) {
         obj.hit(cephalonaut.getLinearVelocity().len());
     }
 
+    /** Warns the glass about the closest player */
     public void willHit(LEGlassBarrier obj) {
         Vector2 glassBarrierPos = obj.getBody().getWorldCenter();
-        Vector2 cephalonautPos = cephalonaut.getBody().getWorldCenter();
-        obj.willBreak(cephalonaut.getLinearVelocity().len(), glassBarrierPos.dst(cephalonautPos));
+        CephalonautModel closest = null;
+        float closestDist = Float.MAX_VALUE;
+        for (int i = 0; i < players.size; i++) {
+            Player player = players.get(i);
+            float dist = glassBarrierPos.dst(player.getCephalonaut().getBody().getWorldCenter());
+            if (dist < closestDist) {
+                closest = player.getCephalonaut();
+                closestDist = dist;
+            }
+        }
+        if (closest != null) {
+            obj.willBreak(closest.getLinearVelocity().len(), closestDist);
+        }
     }
 
 
@@ -145,160 +170,197 @@ public class LevelController implements ContactListener {
         playMode.nextDialogue(part);
     }
 
-    private GameObject getOtherBody(Contact contact, GameObject object) {
-        Body body1 = contact.getFixtureA().getBody();
-        Body body2 = contact.getFixtureB().getBody();
-
-        GameObject bd1 = (GameObject) body1.getUserData();
-        GameObject bd2 = (GameObject) body2.getUserData();
-
-        if (bd1 == object) {
-            return bd2;
-        } else if (bd2 == object) {
-            return bd1;
-        } else {
-            return null;
-        }
+    /** Returns the game object that owns the given fixture */
+    private static GameObject getObject(Fixture fixture) {
+        return (GameObject) fixture.getBody().getUserData();
     }
 
     @Override
     public void beginContact(Contact contact) {
-        GrappleModel grapple = cephalonaut.getGrapple();
-        GameObject contactObject = getOtherBody(contact, cephalonaut);
+        Fixture fixtureA = contact.getFixtureA();
+        Fixture fixtureB = contact.getFixtureB();
+        Object dataA = fixtureA.getUserData();
+        Object dataB = fixtureB.getUserData();
+        contactStats.record(ContactStats.Event.BEGIN, fixtureA, fixtureB);
+
+        if (dataA instanceof Player) {
+            beginPlayerContact((Player) dataA, getObject(fixtureB));
+        } else if (dataA instanceof Player.Grapple) {
+            beginGrappleContact(((Player.Grapple) dataA).player, getObject(fixtureB));
+        }
+        if (dataB instanceof Player) {
+            beginPlayerContact((Player) dataB, getObject(fixtureA));
+        } else if (dataB instanceof Player.Grapple) {
+            beginGrappleContact(((Player.Grapple) dataB).player, getObject(fixtureA));
+        }
+    }
 
-        // TODO: These next few lines are kinda off-putting to me, can we refactor this?
-        boolean grappleContact = contactObject == null;
-        contactObject = grappleContact ? getOtherBody(contact, grapple) : contactObject;
+    /** Handles a player's body touching something */
+    private void beginPlayerContact(Player player, GameObject contactObject) {
+        if (contactObject == null) return;
+        CephalonautModel cephalonaut = player.getCephalonaut();
 
-        if (contactObject != null && (!grappleContact || contactObject instanceof LETrigger)) {
-            if (contactObject instanceof LevelElement) {
+        if (contactObject instanceof LevelElement) {
 
-                ((LevelElement) contactObject).setInContact(true);
-                if (((LevelElement) contactObject).getElement().equals(LevelElement.Element.SPIKE)||((LevelElement) contactObject).getElement().equals(LevelElement.Element.ESPIKE)||((LevelElement) contactObject).getElement().equals(LevelElement.Element.SPIKEBALL)) {
-                    if(cephalonaut.isAlive()) {
-                        if (((LevelElement) contactObject).getElement().equals(LevelElement.Element.ESPIKE))
-                            SoundController.playSound(7, 1);
-                        else
-                            SoundController.playSound(11, 1.5f);
-                    }
-                    cephalonaut.setAlive(false);
-                }
-                if (((LevelElement) contactObject).getElement().equals(LevelElement.Element.REFILL)) {
-                    if(cephalonaut.getInk()<0.9f)
-                        ((LEInkPack) contactObject).trigger();
-                    cephalonaut.refillInk();
+            ((LevelElement) contactObject).setInContact(true);
+            if (((LevelElement) contactObject).getElement().equals(LevelElement.Element.SPIKE)||((LevelElement) contactObject).getElement().equals(LevelElement.Element.ESPIKE)||((LevelElement) contactObject).getElement().equals(LevelElement.Element.SPIKEBALL)) {
+                if(cephalonaut.isAlive()) {
+                    if (((LevelElement) contactObject).getElement().equals(LevelElement.Element.ESPIKE))
+                        SoundController.playSound(7, 1);
+                    else
+                        SoundController.playSound(11, 1.5f);
                 }
+                cephalonaut.setAlive(false);
             }
-
-            if (contactObject instanceof  LEDialogueTrigger) {
-                LEDialogueTrigger dialogueTrigger = (LEDialogueTrigger) contactObject;
-                if(dialogueTrigger.isActive()) {
-                    openDialogue(dialogueTrigger.getTarget());
-                    dialogueTrigger.deactivate();
-                }
+            if (((LevelElement) contactObject).getElement().equals(LevelElement.Element.REFILL)) {
+                if(cephalonaut.getInk()<0.9f)
+                    ((LEInkPack) contactObject).trigger();
+                cephalonaut.refillInk();
+            }
+            if (((LevelElement) contactObject).getElement().equals(LevelElement.Element.FINISH)) {
+                player.setTouchingFinish(true);
             }
+        }
 
-            if (contactObject.getRestitution()>1) {
-                SoundController.playSound(1,1);
+        if (contactObject instanceof  LEDialogueTrigger) {
+            LEDialogueTrigger dialogueTrigger = (LEDialogueTrigger) contactObject;
+            if(dialogueTrigger.isActive()) {
+                openDialogue(dialogueTrigger.getTarget());
+                dialogueTrigger.deactivate();
             }
+        }
 
-            if (contactObject instanceof  LEBoostPad) {
-                LEBoostPad boostPad = (LEBoostPad) contactObject;
-                //SoundController.playSound(2,1);
-                //Vector2 force = new Vector2(0, boostPad.getBoostPadFactor()).setAngleRad(boostPad.getAngle() + boostPad.getBoostPadAngle());
+        if (contactObject.getRestitution()>1) {
+            SoundController.playSound(1,1);
+        }
 
-                if (boostPad.getCooldown() == 0) {
-                    boostPad.setCooldown(boostPad.getBOOST_COOLDOWN());
-                    Vector2 force = boostPad.boost();
-                    cephalonaut.addForce(force);
-                    cephalonaut.applyForce();
-                }
+        if (contactObject instanceof  LEBoostPad) {
+            LEBoostPad boostPad = (LEBoostPad) contactObject;
+            //SoundController.playSound(2,1);
+            //Vector2 force = new Vector2(0, boostPad.getBoostPadFactor()).setAngleRad(boostPad.getAngle() + boostPad.getBoostPadAngle());
 
-                //contact.setEnabled(false);
-                //((LevelElement) contactObject).setInContact(false);
+            if (boostPad.getCooldown() == 0) {
+                boostPad.setCooldown(boostPad.getBOOST_COOLDOWN());
+                Vector2 force = boostPad.boost();
+                cephalonaut.addForce(force);
+                cephalonaut.applyForce();
             }
 
-            if (contactObject instanceof LEBlackHole) {
-                if(cephalonaut.isAlive())
-                    SoundController.playSound(12,1);
-                cephalonaut.setAlive(false);
-            }
+            //contact.setEnabled(false);
+            //((LevelElement) contactObject).setInContact(false);
+        }
 
-            if (contactObject instanceof LETrigger) {
-                LETrigger trigger = (LETrigger) contactObject;
-                LETriggerable target = (LETriggerable) playMode.getObject(trigger.getTarget());
-                if(target!=null)
-                    target.setActivated(trigger.isActivated());
-            }
+        if (contactObject instanceof LEBlackHole) {
+            if(cephalonaut.isAlive())
+                SoundController.playSound(12,1);
+            cephalonaut.setAlive(false);
+        }
 
-            if (contactObject instanceof LEWormHole) {
-                LEWormHole hole1 = (LEWormHole) contactObject;
-                if (hole1.getCooldown() == 0 && hole1.getTarget() != -1) {
-                    LEWormHole hole2 = (LEWormHole) playMode.getObject(hole1.getTarget());
-                    setTeleport(hole2);
-                    hole1.setCooldown(hole1.getWormHoleCooldown());
-                    hole2.setCooldown(hole2.getWormHoleCooldown());
-                }
+        if (contactObject instanceof LETrigger) {
+            trigger((LETrigger) contactObject);
+        }
+
+        if (contactObject instanceof LEWormHole) {
+            LEWormHole hole1 = (LEWormHole) contactObject;
+            if (hole1.getCooldown() == 0 && hole1.getTarget() != -1) {
+                LEWormHole hole2 = (LEWormHole) playMode.getObject(hole1.getTarget());
+                setTeleport(hole2, cephalonaut);
+                hole1.setCooldown(hole1.getWormHoleCooldown());
+                hole2.setCooldown(hole2.getWormHoleCooldown());
             }
+        }
 
-            if (contactObject instanceof LEGlassBarrier) {
-                LEGlassBarrier glassBarrier = (LEGlassBarrier) contactObject;
-                hit(glassBarrier);
-                if(glassBarrier.isBroken() && grappleOnGlass) {
-                    grappleOnBrokenGlass = true;
-                    grappleOnGlass = false;
+        if (contactObject instanceof LEGlassBarrier) {
+            LEGlassBarrier glassBarrier = (LEGlassBarrier) contactObject;
+            hit(glassBarrier, cephalonaut);
+            if (glassBarrier.isBroken()) {
+                // Anyone hanging off this pane loses their grip when it shatters
+                for (int i = 0; i < players.size; i++) {
+                    Player other = players.get(i);
+                    if (other.getGrappleGlass() == glassBarrier) {
+                        other.setGrappleOnBrokenGlass(true);
+                        other.setGrappleGlass(null);
+                    }
                 }
             }
-
         }
+    }
 
-        if (!grapple.isAnchored()) {
-            contactObject = getOtherBody(contact, grapple);
-            if (contactObject != null && contactObject.canGrapple()) {
-                grapple.setAnchored(true);
-                SoundController.playSound(0, 1);
-                grapple.setExtensionLength(1 + cephalonaut.getPosition().dst(contactObject.getPosition()));
-                grapple.setAnchorLocation(contactObject.getName());
-            }
+    /** Handles a player's grapple touching something */
+    private void beginGrappleContact(Player player, GameObject contactObject) {
+        if (contactObject == null) return;
+        GrappleModel grapple = player.getGrapple();
+
+        if (contactObject instanceof LETrigger) {
+            ((LevelElement) contactObject).setInContact(true);
+            trigger((LETrigger) contactObject);
         }
-        
-        if(grapple.isAnchored()) {
-            contactObject = getOtherBody(contact, grapple);
-            if(contactObject instanceof LEGlassBarrier) {
-                grappleOnGlass = true;
-            }
+
+        if (!grapple.isAnchored() && contactObject.canGrapple()) {
+            grapple.setAnchored(true);
+            SoundController.playSound(0, 1);
+            grapple.setExtensionLength(1 + player.getCephalonaut().getPosition().dst(contactObject.getPosition()));
+            grapple.setAnchorLocation(contactObject.getName());
+            // Only the pane the grapple holds on to can make it let go
+            player.setGrappleGlass(contactObject instanceof LEGlassBarrier ? (LEGlassBarrier) contactObject : null);
         }
     }
 
+    /** Passes a trigger's state on to its target */
+    private void trigger(LETrigger trigger) {
+        LETriggerable target = (LETriggerable) playMode.getObject(trigger.getTarget());
+        if(target!=null)
+            target.setActivated(trigger.isActivated());
+    }
+
     @Override
     public void endContact(Contact contact) {
-        GrappleModel grapple = cephalonaut.getGrapple();
-        GameObject contactObject = getOtherBody(contact, cephalonaut);
+        Fixture fixtureA = contact.getFixtureA();
+        Fixture fixtureB = contact.getFixtureB();
+        contactStats.record(ContactStats.Event.END, fixtureA, fixtureB);
+        endContact(fixtureA.getUserData(), getObject(fixtureB));
+        endContact(fixtureB.getUserData(), getObject(fixtureA));
+    }
 
-        // TODO: Same comment as above in beginContact
-        boolean grappleContact = contactObject == null;
-        contactObject = grappleContact ? getOtherBody(contact, grapple) : contactObject;
+    /** Handles a player's body or grapple no longer touching something */
+    private void endContact(Object data, GameObject contactObject) {
+        boolean grappleContact = data instanceof Player.Grapple;
+        if (!(data instanceof Player) && !grappleContact) return;
 
         if (contactObject != null && (!grappleContact || contactObject instanceof LETrigger)) {
             if (contactObject instanceof LevelElement) {
                 ((LevelElement) contactObject).setInContact(false);
+                if (!grappleContact && ((LevelElement) contactObject).getElement() == LevelElement.Element.FINISH) {
+                    ((Player) data).setTouchingFinish(false);
+                }
             }
         }
     }
 
     @Override
     public void preSolve(Contact contact, Manifold oldManifold) {
-        GameObject contactObject = getOtherBody(contact, cephalonaut);
-        if (contactObject != null) {
-            if (contactObject instanceof LEGlassBarrier) {
-                LEGlassBarrier glassBarrier = (LEGlassBarrier) contactObject;
-                if(glassBarrier.isBroken()) {
-                    contact.setEnabled(false);
-                    if(!glassBarrier.isDisabled()) {
-                        cephalonaut.setVX(cephalonaut.getVX() * .5f);
-                    }
-                    glassBarrier.disable();
+        Fixture fixtureA = contact.getFixtureA();
+        Fixture fixtureB = contact.getFixtureB();
+        contactStats.record(ContactStats.Event.PRESOLVE, fixtureA, fixtureB);
+        if (fixtureA.getUserData() instanceof Player) {
+            preSolve(contact, (Player) fixtureA.getUserData(), getObject(fixtureB));
+        }
+        if (fixtureB.getUserData() instanceof Player) {
+            preSolve(contact, (Player) fixtureB.getUserData(), getObject(fixtureA));
+        }
+    }
+
+    /** Lets a player smash through broken glass */
+    private void preSolve(Contact contact, Player player, GameObject contactObject) {
+        if (contactObject instanceof LEGlassBarrier) {
+            LEGlassBarrier glassBarrier = (LEGlassBarrier) contactObject;
+            if(glassBarrier.isBroken()) {
+                contact.setEnabled(false);
+                if(!glassBarrier.isDisabled()) {
+                    CephalonautModel cephalonaut = player.getCephalonaut();
+                    cephalonaut.setVX(cephalonaut.getVX() * .5f);
                 }
+                glassBarrier.disable();
             }
         }
     }
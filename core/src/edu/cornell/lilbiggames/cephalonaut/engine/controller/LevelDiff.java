@@ -0,0 +1,194 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.controller;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongArray;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.GameObject;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.LevelElement;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.TileBand;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * What changed between the level being played and a fresh build of its file.
+ *
+ * Objects are matched by their Tiled id, and tiles by their tile key, so working
+ * out the changes is a few hash lookups per object and a merge of sorted keys
+ * per band of tiles.  Streamed tiles are never built to be compared.  Only
+ * static objects are compared by position.  Everything else may have been moved
+ * by the game since the level started.
+ */
+class LevelDiff {
+    /** Elements to take out of the world */
+    final Array<LevelElement> removed = new Array<>();
+    /** Elements of the new build to put into the world */
+    final Array<LevelElement> added = new Array<>();
+    /** Elements to move in place, and the elements of the new build whose place they take */
+    final Array<LevelElement> moved = new Array<>();
+    final Array<LevelElement> movedTo = new Array<>();
+    /** Tiled ids whose object was added or replaced, and the new object, or null if it was removed */
+    final Map<Integer, LevelElement> ids = new HashMap<>();
+    /** The live object each kept or moved object, tile and band of the new build stands for */
+    final Map<GameObject, GameObject> live = new IdentityHashMap<>();
+
+    /** Live bands whose rows are no longer in the level, and bands of the new build whose rows are new */
+    final Array<TileBand> removedBands = new Array<>();
+    final Array<TileBand> addedBands = new Array<>();
+    /** Keys of tiles to take out of live bands, and the band of each */
+    final LongArray removedKeys = new LongArray();
+    final Array<TileBand> removedFrom = new Array<>();
+    /** Keys of tiles to put into live bands, and the band of each */
+    final LongArray addedKeys = new LongArray();
+    final Array<TileBand> addedTo = new Array<>();
+
+    /**
+     * Works out the changes between a live level and a new build of it.
+     *
+     * @param liveObjects The live objects, by Tiled id
+     * @param liveBands   The live bands of streamed tiles
+     * @param liveTiles   The live tiles of tile layers that are not streamed
+     * @param newObjects  The objects of the new build, by Tiled id
+     * @param newBands    The bands of the new build
+     * @param newTiles    The tiles of the new build that are not streamed
+     */
+    LevelDiff(Map<Integer, LevelElement> liveObjects, Array<TileBand> liveBands, Array<LevelElement> liveTiles,
+              Map<Integer, LevelElement> newObjects, Array<TileBand> newBands, Array<LevelElement> newTiles) {
+        for (Map.Entry<Integer, LevelElement> entry : liveObjects.entrySet()) {
+            LevelElement live = entry.getValue();
+            LevelElement built = newObjects.get(entry.getKey());
+            if (built == null) {
+                removed.add(live);
+                ids.put(entry.getKey(), null);
+            } else if (!live.sameKind(built)) {
+                removed.add(live);
+                added.add(built);
+                ids.put(entry.getKey(), built);
+            } else if (live.getBodyType() == BodyDef.BodyType.StaticBody && !samePlace(live, built)) {
+                if (live.getClass() == LevelElement.class) {
+                    moved.add(live);
+                    movedTo.add(built);
+                    this.live.put(built, live);
+                } else {
+                    // Elements with behaviour may have worked out things from where they were
+                    removed.add(live);
+                    added.add(built);
+                    ids.put(entry.getKey(), built);
+                }
+            } else {
+                this.live.put(built, live);
+            }
+        }
+        for (Map.Entry<Integer, LevelElement> entry : newObjects.entrySet()) {
+            if (!liveObjects.containsKey(entry.getKey())) {
+                added.add(entry.getValue());
+                ids.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        diffBands(liveBands, newBands);
+
+        // The same tile can be at the same place in several layers
+        Map<Long, Array<LevelElement>> unmatched = new HashMap<>();
+        for (LevelElement tile : liveTiles) {
+            Array<LevelElement> tiles = unmatched.get(tile.getTileKey());
+            if (tiles == null) {
+                tiles = new Array<>(1);
+                unmatched.put(tile.getTileKey(), tiles);
+            }
+            tiles.add(tile);
+        }
+        for (LevelElement tile : newTiles) {
+            Array<LevelElement> tiles = unmatched.get(tile.getTileKey());
+            if (tiles == null || tiles.size == 0) {
+                added.add(tile);
+            } else {
+                live.put(tile, tiles.pop());
+            }
+        }
+        for (Array<LevelElement> tiles : unmatched.values()) {
+            removed.addAll(tiles);
+        }
+    }
+
+    /**
+     * Pairs the live bands with the new ones covering the same rows of the same
+     * layer, and works out which tiles of each pair changed.
+     *
+     * A band without a pair is removed or added whole, such as when a layer is
+     * added or the layers are put in another order.
+     */
+    private void diffBands(Array<TileBand> liveBands, Array<TileBand> newBands) {
+        Array<TileBand> unpaired = new Array<>(liveBands);
+        LongArray liveKeys = new LongArray();
+        LongArray newKeys = new LongArray();
+        for (TileBand built : newBands) {
+            TileBand live = null;
+            for (int i = 0; i < unpaired.size; i++) {
+                if (unpaired.get(i).sameRows(built)) {
+                    live = unpaired.removeIndex(i);
+                    break;
+                }
+            }
+            if (live == null) {
+                addedBands.add(built);
+                continue;
+            }
+            this.live.put(built, live);
+
+            // A band has at most one tile per cell, so its keys are distinct
+            liveKeys.clear();
+            live.getTileKeys(liveKeys);
+            liveKeys.sort();
+            newKeys.clear();
+            built.getTileKeys(newKeys);
+            newKeys.sort();
+            int i = 0, j = 0;
+            while (i < liveKeys.size || j < newKeys.size) {
+                if (j == newKeys.size || i < liveKeys.size && liveKeys.get(i) < newKeys.get(j)) {
+                    removedKeys.add(liveKeys.get(i++));
+                    removedFrom.add(live);
+                } else if (i == liveKeys.size || newKeys.get(j) < liveKeys.get(i)) {
+                    addedKeys.add(newKeys.get(j++));
+                    addedTo.add(live);
+                } else {
+                    i++;
+                    j++;
+                }
+            }
+        }
+        removedBands.addAll(unpaired);
+    }
+
+    private static boolean samePlace(LevelElement a, LevelElement b) {
+        return MathUtils.isEqual(a.getX(), b.getX()) && MathUtils.isEqual(a.getY(), b.getY())
+                && MathUtils.isEqual(a.getAngle(), b.getAngle());
+    }
+
+    /** Returns the number of elements and tiles taken out */
+    int getRemovedCount() {
+        int count = removed.size + removedKeys.size;
+        for (TileBand band : removedBands) {
+            count += band.getTileCount();
+        }
+        return count;
+    }
+
+    /** Returns the number of elements and tiles put in */
+    int getAddedCount() {
+        int count = added.size + addedKeys.size;
+        for (TileBand band : addedBands) {
+            count += band.getTileCount();
+        }
+        return count;
+    }
+
+    /** Returns whether the level is unchanged */
+    boolean isEmpty() {
+        return removed.size == 0 && added.size == 0 && moved.size == 0
+                && removedBands.size == 0 && addedBands.size == 0
+                && removedKeys.size == 0 && addedKeys.size == 0;
+    }
+}
@@ -14,6 +14,7 @@ import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
 import edu.cornell.lilbiggames.cephalonaut.util.FilmStrip;
 import edu.cornell.lilbiggames.cephalonaut.util.Controllers;
 import edu.cornell.lilbiggames.cephalonaut.util.ScreenListener;
+import edu.cornell.lilbiggames.cephalonaut.util.TextFormat;
 import edu.cornell.lilbiggames.cephalonaut.util.XBoxController;
 
 public class MainMenuMode extends MenuMode {
@@ -32,6 +33,8 @@ public class MainMenuMode extends MenuMode {
     private Texture background;
 
     private Texture levelIcon;
+    /** The level levelIcon is of, so it is only looked up when the level changes */
+    private int iconLevel;
     private Texture leftArrow;
     private Texture rightArrow;
 
@@ -41,6 +44,8 @@ public class MainMenuMode extends MenuMode {
     private AssetDirectory assets;
 
     private int curLevel;
+    /** The name of the world, as shown */
+    private final StringBuilder worldText = new StringBuilder();
 
     private boolean levelSelected;
 
@@ -141,6 +146,7 @@ public class MainMenuMode extends MenuMode {
         this.assets = assets;
 
         curLevel = DEFAULT_LEVEL;
+        iconLevel = curLevel;
         levelIcon = assets.getEntry("levelicon:level_" + curLevel, Texture.class);
         filmStrips = new FilmStrip[7];
 
@@ -211,7 +217,10 @@ public class MainMenuMode extends MenuMode {
             prevExit = xbox.getB();
             prevSelect = xbox.getA();
         }
-        levelIcon = assets.getEntry("levelicon:level_" + curLevel, Texture.class);
+        if (iconLevel != curLevel) {
+            iconLevel = curLevel;
+            levelIcon = assets.getEntry("levelicon:level_" + curLevel, Texture.class);
+        }
     }
 
     public String getCurLevel(){
@@ -285,7 +294,7 @@ public class MainMenuMode extends MenuMode {
 
         float textHeight = Math.min(1.5f*filmStrips[curLevel].getRegionHeight(), 2f*levelIcon.getWidth())*scale.y;
         displayFont.setColor(YELLOW);
-        canvas.drawTextCentered("WORLD " + (curLevel+1), displayFont, -textHeight+100f);
+        canvas.drawTextCentered("world", TextFormat.setNumbered(worldText, "WORLD ", curLevel+1), displayFont, -textHeight+100f);
 
         // left arrow
         canvas.draw(leftArrow, Color.WHITE,
@@ -298,9 +307,9 @@ public class MainMenuMode extends MenuMode {
                 rightArrow.getWidth() / 2f, rightArrow.getHeight() / 2f,
                 width - width / 5f, height/2 -textHeight+100f, 0, 0.05f * scale.x, 0.05f * scale.y);
 
-        hitBox = new Rectangle(width / 2f - scale.x*imageScale*levelIconWidth/2f, (height / 2f + 100) + scale.y*imageScale*levelIconHeight/2f, scale.x*imageScale*levelIconWidth, scale.y*imageScale*levelIconHeight);
-        left = new Rectangle(width/5f - 0.1f*leftArrow.getWidth()/2f, height/2-textHeight+100f + 0.1f*scale.x* leftArrow.getHeight()/2f, 0.1f*leftArrow.getWidth(), 0.1f*leftArrow.getHeight());
-        right = new Rectangle(width - width/5f - 0.1f*rightArrow.getWidth()/2f, height/2-textHeight+100f + 0.1f*scale.x* rightArrow.getHeight()/2f, 0.1f*rightArrow.getWidth(), 0.1f*rightArrow.getHeight());
+        hitBox = setHitBox(hitBox, width / 2f - scale.x*imageScale*levelIconWidth/2f, (height / 2f + 100) + scale.y*imageScale*levelIconHeight/2f, scale.x*imageScale*levelIconWidth, scale.y*imageScale*levelIconHeight);
+        left = setHitBox(left, width/5f - 0.1f*leftArrow.getWidth()/2f, height/2-textHeight+100f + 0.1f*scale.x* leftArrow.getHeight()/2f, 0.1f*leftArrow.getWidth(), 0.1f*leftArrow.getHeight());
+        right = setHitBox(right, width - width/5f - 0.1f*rightArrow.getWidth()/2f, height/2-textHeight+100f + 0.1f*scale.x* rightArrow.getHeight()/2f, 0.1f*rightArrow.getWidth(), 0.1f*rightArrow.getHeight());
 
         super.drawBackSettings();
         canvas.end();
@@ -16,6 +16,7 @@ import edu.cornell.lilbiggames.cephalonaut.engine.GameState;
 import edu.cornell.lilbiggames.cephalonaut.util.FilmStrip;
 import edu.cornell.lilbiggames.cephalonaut.util.Controllers;
 import edu.cornell.lilbiggames.cephalonaut.util.ScreenListener;
+import edu.cornell.lilbiggames.cephalonaut.util.TextFormat;
 import edu.cornell.lilbiggames.cephalonaut.util.XBoxController;
 
 import java.util.List;
@@ -42,6 +43,8 @@ public class MainMenuNestedMode extends MenuMode {
     private AssetDirectory assets;
 
     private int curLevel;
+    /** The name of the world, as shown */
+    private final StringBuilder worldText = new StringBuilder();
 
     private boolean levelSelected;
 
@@ -50,6 +53,9 @@ public class MainMenuNestedMode extends MenuMode {
     private Texture levelCompletedTexture_3,levelCompletedTexture_0, levelCompletedTexture_1, levelCompletedTexture_2;
 
     private Rectangle[] checkpointHitBoxes;
+    /** Tints of the checkpoint icons and their silhouettes, set as each is drawn */
+    private final Color iconTint = new Color();
+    private final Color silhouetteTint = new Color();
     private int completedCheckpoints;
 
     XBoxController xbox;
@@ -167,7 +173,7 @@ public class MainMenuNestedMode extends MenuMode {
         levelCompletedTexture_3 = assets.getEntry( "level-complete-3-star", Texture.class );
         levelCompletedTexture_3.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
 
-        filmstrip = new FilmStrip(assets.getEntry("octopus",Texture.class), 5, 9);
+        filmstrip = new FilmStrip(assets.getEntry("octopus",TextureRegion.class), 5, 9);
         frame = 0;
         maxFrame = 4;
 
@@ -325,6 +331,9 @@ public class MainMenuNestedMode extends MenuMode {
 
         float diff = scale.x * 200;
         float start = width/2 - diff * ((checkpoints-1)/2f);
+        if (checkpointHitBoxes == null || checkpointHitBoxes.length != checkpoints) {
+            checkpointHitBoxes = new Rectangle[checkpoints];
+        }
 
         for(int i = 0; i < checkpoints; i++) {
 
@@ -336,20 +345,20 @@ public class MainMenuNestedMode extends MenuMode {
                     : level_stars == 2 ? levelCompletedTexture_2
                     : levelCompletedTexture_3;
 
-            Color WHITE_SELECTED =  new Color(1,1,1, completedCheckpoints == i ? .8f : 1f);
+            Color WHITE_SELECTED = iconTint.set(1,1,1, completedCheckpoints == i ? .8f : 1f);
 
             if (level_stars > 0) {
                 canvas.draw(levelCompletedTexture, WHITE_SELECTED, levelCompletedTexture.getWidth()/2, levelCompletedTexture.getHeight()/2, i * diff + start, height/2, 0, scale.x*3f, scale.y*3f);
                 canvas.draw(winTexturesCurLevel.get(i), Color.WHITE, winTexturesCurLevel.get(i).getRegionWidth()/2, 0, i * diff + start, height/2, 0, imageScale, imageScale);
             } else if(levelIsUnlocked(i)) {
                 canvas.draw(levelTexture, WHITE_SELECTED, levelTexture.getWidth()/2, levelTexture.getHeight()/2, i * diff + start, height/2, 0, scale.x*3f, scale.y*3f);
-                canvas.draw(winTexturesCurLevel.get(i),  new Color(0,0,0, completedCheckpoints == i ? .8f : 1f), winTexturesCurLevel.get(i).getRegionWidth()/2, 0, i * diff + start, height/2, 0, imageScale, imageScale);
+                canvas.draw(winTexturesCurLevel.get(i), silhouetteTint.set(0,0,0, completedCheckpoints == i ? .8f : 1f), winTexturesCurLevel.get(i).getRegionWidth()/2, 0, i * diff + start, height/2, 0, imageScale, imageScale);
             } else {
-                canvas.draw(levelTexture, new Color(1,1,1, .5f), levelTexture.getWidth()/2, levelTexture.getHeight()/2, i * diff + start, height/2, 0, scale.x*3f, scale.y*3f);
-                canvas.draw(winTexturesCurLevel.get(i),  new Color(0,0,0, .5f), winTexturesCurLevel.get(i).getRegionWidth()/2, 0, i * diff + start, height/2, 0, imageScale, imageScale);
+                canvas.draw(levelTexture, iconTint.set(1,1,1, .5f), levelTexture.getWidth()/2, levelTexture.getHeight()/2, i * diff + start, height/2, 0, scale.x*3f, scale.y*3f);
+                canvas.draw(winTexturesCurLevel.get(i), silhouetteTint.set(0,0,0, .5f), winTexturesCurLevel.get(i).getRegionWidth()/2, 0, i * diff + start, height/2, 0, imageScale, imageScale);
             }
 
-            checkpointHitBoxes[i] = new Rectangle(i*diff+start - scale.x*3f * levelTexture.getWidth()/2f,canvas.getHeight() / 2, scale.x*3f * levelTexture.getWidth(), scale.x*3f * levelTexture.getHeight());
+            checkpointHitBoxes[i] = setHitBox(checkpointHitBoxes[i], i*diff+start - scale.x*3f * levelTexture.getWidth()/2f,canvas.getHeight() / 2, scale.x*3f * levelTexture.getWidth(), scale.x*3f * levelTexture.getHeight());
         }
 
         filmstrip.setFrame((int)frame);
@@ -362,7 +371,7 @@ public class MainMenuNestedMode extends MenuMode {
 
         displayFont.setColor(YELLOW);
         displayFont.getData().setScale(0.6f*scale.x);
-        canvas.drawText("WORLD " + (curLevel+1), displayFont, width*0.2f, height*0.9f);
+        canvas.drawText("world", TextFormat.setNumbered(worldText, "WORLD ", curLevel+1), displayFont, width*0.2f, height*0.9f);
         displayFont.setColor(Color.WHITE);
         super.drawBackSettings();
 
@@ -6,7 +6,6 @@ import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
-import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import edu.cornell.lilbiggames.cephalonaut.assets.AssetDirectory;
@@ -169,7 +168,9 @@ public class MenuMode implements Screen {
     }
 
     protected void drawOptions(String[] options, int selectedOption, int offset){
-        optionsHitBoxes = new Rectangle[options.length];
+        if (optionsHitBoxes == null || optionsHitBoxes.length != options.length) {
+            optionsHitBoxes = new Rectangle[options.length];
+        }
 
         float start = (options.length*displayFont.getLineHeight())/2 - offset;
         displayFont.setColor(Color.ORANGE);
@@ -180,10 +181,11 @@ public class MenuMode implements Screen {
                 displayFont.setColor(YELLOW);
             }
             canvas.drawTextCentered(options[i], displayFont, start - 1.2f*displayFont.getLineHeight()*i - 2*displayFont.getLineHeight());
+            // Measured before the colour changes, so the layout just drawn is reused
+            float textWidth = canvas.getTextWidth(options[i], displayFont);
             displayFont.setColor(Color.ORANGE);
-            GlyphLayout layout = new GlyphLayout(displayFont, options[i]);
-            float x = (canvas.getWidth()  - layout.width) / 2.0f;
-            optionsHitBoxes[i] = new Rectangle(x,canvas.getHeight() / 2f + start - 1.2f*displayFont.getLineHeight() * i - 2 * displayFont.getLineHeight() - .6f*displayFont.getLineHeight(), 1.2f*layout.width, 1.2f*displayFont.getLineHeight());
+            float x = (canvas.getWidth()  - textWidth) / 2.0f;
+            optionsHitBoxes[i] = setHitBox(optionsHitBoxes[i], x,canvas.getHeight() / 2f + start - 1.2f*displayFont.getLineHeight() * i - 2 * displayFont.getLineHeight() - .6f*displayFont.getLineHeight(), 1.2f*textWidth, 1.2f*displayFont.getLineHeight());
 
         }
         displayFont.setColor(Color.WHITE);
@@ -220,7 +222,7 @@ public class MenuMode implements Screen {
                 canvas.getWidth()*0.05f, canvas.getHeight()*0.9f,
                 0, scale.x*0.04f, scale.y*0.04f);
 
-        backIconHitbox = new Rectangle(canvas.getWidth()*0.05f-scale.x*backIcon.getWidth()/2*0.04f,canvas.getHeight()*0.9f+scale.y*backIcon.getHeight()/2*0.04f,scale.x*backIcon.getWidth()*0.04f,scale.y*backIcon.getHeight()*0.04f);
+        backIconHitbox = setHitBox(backIconHitbox, canvas.getWidth()*0.05f-scale.x*backIcon.getWidth()/2*0.04f,canvas.getHeight()*0.9f+scale.y*backIcon.getHeight()/2*0.04f,scale.x*backIcon.getWidth()*0.04f,scale.y*backIcon.getHeight()*0.04f);
     }
 
     public void drawBackSettings(){
@@ -235,8 +237,8 @@ public class MenuMode implements Screen {
                 settingsX, canvas.getHeight()*0.9f,
                 0, scale.x*0.1f, scale.y*0.1f);
 
-        backIconHitbox = new Rectangle(canvas.getWidth()*0.05f-scale.x*backIcon.getWidth()/2*0.04f,canvas.getHeight()*0.9f+scale.y*backIcon.getHeight()/2*0.04f,scale.x*backIcon.getWidth()*0.04f,scale.y*backIcon.getHeight()*0.04f);
-        settingsIconHitbox = new Rectangle(settingsX-scale.x*settingsIcon.getWidth()/2*0.1f,canvas.getHeight()*0.9f+scale.y*settingsIcon.getHeight()/2*0.1f,scale.x*settingsIcon.getWidth()*0.1f,scale.y*settingsIcon.getHeight()*0.1f);
+        backIconHitbox = setHitBox(backIconHitbox, canvas.getWidth()*0.05f-scale.x*backIcon.getWidth()/2*0.04f,canvas.getHeight()*0.9f+scale.y*backIcon.getHeight()/2*0.04f,scale.x*backIcon.getWidth()*0.04f,scale.y*backIcon.getHeight()*0.04f);
+        settingsIconHitbox = setHitBox(settingsIconHitbox, settingsX-scale.x*settingsIcon.getWidth()/2*0.1f,canvas.getHeight()*0.9f+scale.y*settingsIcon.getHeight()/2*0.1f,scale.x*settingsIcon.getWidth()*0.1f,scale.y*settingsIcon.getHeight()*0.1f);
     }
 
     public void drawGoToSettings(){
@@ -245,7 +247,16 @@ public class MenuMode implements Screen {
                 canvas.getWidth()*0.1f, canvas.getHeight()*0.9f,
                 0, scale.x*0.1f, scale.y*0.1f);
 
-        settingsIconHitbox = new Rectangle(canvas.getWidth()*0.1f-scale.x*settingsIcon.getWidth()/2*0.1f,canvas.getHeight()*0.9f+scale.y*settingsIcon.getHeight()/2*0.1f,scale.x*settingsIcon.getWidth()*0.1f,scale.y*settingsIcon.getHeight()*0.1f);
+        settingsIconHitbox = setHitBox(settingsIconHitbox, canvas.getWidth()*0.1f-scale.x*settingsIcon.getWidth()/2*0.1f,canvas.getHeight()*0.9f+scale.y*settingsIcon.getHeight()/2*0.1f,scale.x*settingsIcon.getWidth()*0.1f,scale.y*settingsIcon.getHeight()*0.1f);
+    }
+
+    /**
+     * Moves a hit box, making it the first time, so that drawing makes no garbage.
+     *
+     * @return the hit box
+     */
+    protected static Rectangle setHitBox(Rectangle hitBox, float x, float y, float width, float height) {
+        return hitBox == null ? new Rectangle(x, y, width, height) : hitBox.set(x, y, width, height);
     }
 
     public void setDefault(){
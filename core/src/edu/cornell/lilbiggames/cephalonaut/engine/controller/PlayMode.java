@@ -1,6 +1,8 @@
 package edu.cornell.lilbiggames.cephalonaut.engine.controller;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
@@ -8,22 +10,39 @@ import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.JsonValue;
 import com.badlogic.gdx.utils.Queue;
 import edu.cornell.lilbiggames.cephalonaut.assets.AssetDirectory;
+import edu.cornell.lilbiggames.cephalonaut.engine.StarField;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.GameObject;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.ImageObject;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.LevelElement;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.TileBand;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.elements.*;
 import edu.cornell.lilbiggames.cephalonaut.engine.model.CephalonautModel;
 import edu.cornell.lilbiggames.cephalonaut.engine.model.GrappleModel;
 import edu.cornell.lilbiggames.cephalonaut.engine.obstacle.*;
 import edu.cornell.lilbiggames.cephalonaut.util.ScreenListener;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.ColliderCache;
 import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelLoader;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelWatcher;
 import edu.cornell.lilbiggames.cephalonaut.util.FilmStrip;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
+import edu.cornell.lilbiggames.cephalonaut.util.TextFormat;
+import java.io.File;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /** Game mode for playing a level */
 public class PlayMode extends WorldController implements Screen {
@@ -31,13 +50,23 @@ public class PlayMode extends WorldController implements Screen {
     public static int EXIT_LEVEL = 20;
     public static int WON_LEVEL = 100;
 
-    /** Player model */
+    /** Labels for finishing places in a race */
+    private static final String[] PLACES = {"", "1ST", "2ND", "3RD", "4TH"};
+    /** Longest a hot reload may hold up the game thread and still feel instant, in milliseconds */
+    private static final double HOT_RELOAD_BUDGET = 50;
+
+    /** Every local player; player 0 is the keyboard player */
+    private final Array<Player> players = new Array<>();
+    /** Number of local players wanted in the next reset */
+    private int playerCount = 1;
+    /** Number of players that have crossed the finish line */
+    private int finishedCount;
+
+    /** Player model of player 0 */
     private CephalonautModel cephalonaut;
     private TextureRegion octopusTexture;
-    private Texture octopusInkStrip, octopusStrip, clock;
-
-    /** Controller that handles cephalonaut movement (grappling and inking) */
-    private CephalonautController cephalonautController;
+    private TextureRegion octopusStrip;
+    private Texture octopusInkStrip, clock;
 
     /** Sound controller */
     private SoundController soundController;
@@ -51,6 +80,11 @@ public class PlayMode extends WorldController implements Screen {
     /** Mouse selector to move the cephalonaut TODO: Can this be in CephalonautController too? */
     private ObstacleSelector selector;
 
+    /** Puts the tiles near the players into the world */
+    private final ChunkStreamer streamer = new ChunkStreamer();
+    /** Objects the level controller has per frame work for, in the order they were added */
+    private final Array<GameObject> levelUpdated = new Array<>();
+
     /** Maps from Tiled object IDs to their corresponding Java objects */
     private Map<Integer, LevelElement> objectMap;
 
@@ -59,13 +93,24 @@ public class PlayMode extends WorldController implements Screen {
 
     /** Object which loads the level data */
     private LevelLoader loader;
+    /** Reports saved level files for hot reloading, or null */
+    private LevelWatcher watcher;
+    /** Builds new copies of the level for hot reloading, off the game thread, or null */
+    private ExecutorService reloader;
+    /** The copy of the level being built, or null */
+    private Future<LevelLoader.LevelDef> reloading;
+    /** The level checkpoint the copy being built is of */
+    private String reloadingLevel, reloadingCheckpoint;
+    /** When the copy being built was asked for, from System.nanoTime() */
+    private long reloadStart;
+    /** Whether the level was saved again while a copy was being built */
+    private boolean reloadAgain;
 
     /** Current level name */
     private String level;
 
     private String checkpoint;
 
-    private float deathRotationCount;
     private float fadeInCount;
 
     boolean exiting = false;
@@ -74,7 +119,12 @@ public class PlayMode extends WorldController implements Screen {
     static private final float DEFAULT_STARTING_POS_X = 10.0f;
     static private final float DEFAULT_STARTING_POS_Y = 10.0f;
 
-    private String timeString;
+    /** The timer as shown, "MM:SS" */
+    private final StringBuilder timeText = new StringBuilder();
+    /** The labels of the debug overlay's lines, and the text of each */
+    private static final String[] DEBUG_LABELS = {"debug updates", "debug colliders", "debug fixtures",
+            "debug native", "debug step", "debug contacts", "debug drawn"};
+    private final StringBuilder[] debugText = new StringBuilder[DEBUG_LABELS.length];
     private float timeCount;
     private int timer;
 
@@ -89,11 +139,13 @@ public class PlayMode extends WorldController implements Screen {
     private float dialogueFade;
 
     private int twoStars, threeStars;
+    /** Collider fixtures in the current level, and what plain triangulation would have cost */
+    private int fixtureCount, triangleCount;
 
-    public static int NUM_SPARKLES = 12;
-    private FilmStrip [] sparkles;
-    private int [][] sparkleX;
-    private int [][] sparkleY;
+    /** Stars scattered over the background images of a level */
+    public static final int NUM_STARS = 144;
+    /** The stars of the level, built on the first reset */
+    private StarField starField;
 
     /**
      * Creates and initialize a new instance of the sandbox
@@ -105,6 +157,9 @@ public class PlayMode extends WorldController implements Screen {
         this.checkpoint = checkpoint;
         this.loader = loader;
         this.dialogueMode = dialogueMode;
+        for (int i = 0; i < debugText.length; i++) {
+            debugText[i] = new StringBuilder();
+        }
 
         InputController.getInstance().setBindings(keyBindings);
         setDebug(false);
@@ -114,7 +169,6 @@ public class PlayMode extends WorldController implements Screen {
         clock = this.loader.getAssetDirectory().getEntry("ui:clock", Texture.class);
         displayFont = this.loader.getAssetDirectory().getEntry("retro", BitmapFont.class);
         directionalGrapple = true;
-        deathRotationCount = 0;
         fadeInCount = 1;
         won = false;
         timeCount = 0;
@@ -122,16 +176,6 @@ public class PlayMode extends WorldController implements Screen {
         paused = false;
         dialogueFade = 0;
 
-        sparkles = new FilmStrip[NUM_SPARKLES];
-        for (int i = 0; i < NUM_SPARKLES; i++) {
-            if (i < 2 * (NUM_SPARKLES / 3)) {
-                sparkles[i] = new FilmStrip(this.loader.getAssetDirectory().getEntry("bg:Mstar" + levelToInt(), Texture.class), 1, 11);
-            } else {
-                sparkles[i] = new FilmStrip(this.loader.getAssetDirectory().getEntry("bg:Sstar" + levelToInt(), Texture.class), 1, 11);
-            }
-        }
-        sparkleX = new int[NUM_SPARKLES][NUM_SPARKLES];
-        sparkleY = new int[NUM_SPARKLES][NUM_SPARKLES];
 
     }
 
@@ -162,6 +206,37 @@ public class PlayMode extends WorldController implements Screen {
         return threeStars;
     }
 
+    /**
+     * Sets the number of local players racing this level, from the next reset on.
+     *
+     * With more than one player the screen is split, dying respawns just that
+     * player at the start, and the level is complete once everyone has finished.
+     *
+     * @param count The number of local players (1 to InputController.MAX_PLAYERS)
+     */
+    public void setPlayerCount(int count) {
+        playerCount = count;
+    }
+
+    /**
+     * Returns the players in the current level.
+     *
+     * @return the players in the current level.
+     */
+    public Array<Player> getPlayers() {
+        return players;
+    }
+
+    /** Returns the streamer that keeps the chunks near the players loaded */
+    public ChunkStreamer getStreamer() {
+        return streamer;
+    }
+
+    /** Returns true if several players are racing through this level */
+    private boolean isRace() {
+        return players.size > 1;
+    }
+
     public void setLevel(String level) {
         this.level = level;
     }
@@ -173,41 +248,86 @@ public class PlayMode extends WorldController implements Screen {
     public void cleanupLevel(){
         for(GameObject obj : objects) {
             obj.deactivatePhysics(world);
+            obj.dispose();
         }
         objects.clear();
         addQueue.clear();
+        removeQueue.clear();
+        levelUpdated.clear();
+        scheduler.clear();
+        streamer.clear();
+        culler.clear();
+        if (canvas != null) {
+            canvas.clearCaches();
+        }
+        ResourceTracker.releaseWorld(world);
         world.dispose();
     }
 
+    @Override
+    public void dispose() {
+        if (starField != null) {
+            starField.dispose();
+            starField = null;
+        }
+        streamer.dispose();
+        if (reloader != null) {
+            // A copy being built still uses the loader, which is disposed after us
+            if (reloading != null) {
+                LevelLoader.LevelDef levelDef = takeReload();
+                if (levelDef != null) levelDef.dispose();
+            }
+            reloader.shutdownNow();
+            try {
+                reloader.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reloader = null;
+        }
+        super.dispose();
+    }
+
     /**
      * Resets the status of the game so that we can play again.
      *
      * This method disposes of the world and creates a new one.
      */
     public void reset() {
-        LevelLoader.LevelDef levelDef = loader.loadLevel(level, checkpoint);
+        reset(loader.loadLevel(level, checkpoint));
+    }
 
+    /**
+     * Resets the game with a level that was already built, such as a prefetched one.
+     *
+     * @param levelDef A freshly built copy of this mode's level checkpoint
+     */
+    public void reset(LevelLoader.LevelDef levelDef) {
+        levelDef.prepareTextures();
         bounds.set(0, 0, levelDef.width, levelDef.height);
 
         Vector2 gravity = new Vector2(world.getGravity());
         cleanupLevel();
 
         world = new World(gravity,false);
+        contactStats.clear();
         setComplete(false);
         setFailure(false);
 
         populateLevel(levelDef.getObjects());
         objectMap = levelDef.getIdToObject();
 
-        levelController = new LevelController(listener, cephalonaut, this);
+        levelController = new LevelController(listener, players, this);
         world.setContactListener(levelController);
-        GrappleModel grapple = cephalonaut.getGrapple();
-        grapple.reset();
+        for (int i = 0; i < players.size; i++) {
+            Player player = players.get(i);
+            player.getGrapple().reset();
+            player.getCephalonaut().setDeathScale(1);
+            player.getCephalonaut().setHasMoved(false);
+        }
         // TODO: Switch track to a map property based off Tiled
         SoundController.switchTrack(levelDef.music);
-        deathRotationCount = 0;
-        cephalonaut.setDeathScale(1);
-        cephalonaut.setHasMoved(false);
+        finishedCount = 0;
         fadeInCount = 1;
         timeCount = 0;
         timer = 0;
@@ -215,17 +335,16 @@ public class PlayMode extends WorldController implements Screen {
         paused = false;
         twoStars = levelDef.twoStars;
         threeStars = levelDef.threeStars;
-
-        for (int i = 0; i < NUM_SPARKLES; i++) {
-            for (int j = 0; j < NUM_SPARKLES; j++) {
-                sparkleX[i][j] = ThreadLocalRandom.current().nextInt(0, ((int) (bounds.getWidth() + 1)));
-            }
-        }
-
-        for (int i = 0; i < NUM_SPARKLES; i++) {
-            for (int j = 0; j < NUM_SPARKLES; j++) {
-                sparkleY[i][j] = ThreadLocalRandom.current().nextInt(0, ((int) (bounds.getHeight() + 1)));
-            }
+        fixtureCount = levelDef.getFixtureCount();
+        triangleCount = levelDef.getTriangleCount();
+
+        // Restarting keeps the stars where they were; only another checkpoint's size moves them
+        if (starField == null || starField.getWidth() != bounds.width || starField.getHeight() != bounds.height) {
+            if (starField != null) starField.dispose();
+            AssetDirectory directory = loader.getAssetDirectory();
+            starField = new StarField(bounds.width, bounds.height, NUM_STARS,
+                    directory.getEntry("bg:Mstar" + levelToInt(), TextureRegion.class),
+                    directory.getEntry("bg:Sstar" + levelToInt(), TextureRegion.class));
         }
     }
 
@@ -238,17 +357,11 @@ public class PlayMode extends WorldController implements Screen {
                 startX = object.getX();
                 startY = object.getY();
                 startInk = ((LEStart) object).getInk();
+                // Only its place is used, it never goes into the world
+                object.dispose();
                 continue;
             }
-            else if (object instanceof LETrigger) {
-                ((LETrigger) object).setActivated(false);
-            } else if (object instanceof LETriggerable) {
-                ((LETriggerable) object).setActivated(false);
-            } else   if(object instanceof LEGlassBarrier) {
-                ((LEGlassBarrier)object).reset();
-            }
-            object.setDrawScale(scale);
-            addObject(object);
+            addLevelObject(object);
         }
 
 
@@ -258,22 +371,312 @@ public class PlayMode extends WorldController implements Screen {
         float dwidth = octopusTexture.getRegionWidth() * .02625f;
         float dheight = octopusTexture.getRegionHeight() * .035f;
         //FilmStrip cephInkFilm = new FilmStrip(octopusInkStrip,1,7);
-        FilmStrip cephFilm = new FilmStrip(octopusStrip,5,9);
-        cephalonaut = new CephalonautModel(startX, startY, dwidth, dheight, startInk, scale, cephFilm);
-        cephalonautController = new CephalonautController(world, cephalonaut);
-
-        addObject(cephalonaut);
-        GrappleModel grapple = cephalonaut.getGrapple();
-        grapple.setMaxLength(7.0f);
-        addObject(grapple);
+        // Racers line up side by side at the start
+        players.clear();
+        int count = InputController.configurePlayers(playerCount);
+        for (int i = 0; i < count; i++) {
+            FilmStrip cephFilm = new FilmStrip(octopusStrip,5,9);
+            CephalonautModel model = new CephalonautModel(startX + i * dwidth, startY, dwidth, dheight, startInk, scale, cephFilm);
+            addObject(model);
+            GrappleModel grapple = model.getGrapple();
+            grapple.setMaxLength(7.0f);
+            addObject(grapple);
+            players.add(new Player(i, InputController.getInstance(i), model, world));
+        }
+        cephalonaut = players.get(0).getCephalonaut();
 
         selector = new ObstacleSelector(world);
         selector.setDrawScale(scale);
         world.setGravity(Vector2.Zero);
     }
 
+    /**
+     * Puts an object of a freshly built level into the world, in its starting state.
+     *
+     * @param object The object to add
+     */
+    private void addLevelObject(GameObject object) {
+        addLevelObject(object, null);
+    }
+
+    /**
+     * Puts an object of a freshly built level into the world, just before another object.
+     *
+     * @param object The object to add
+     * @param before The object to draw it before, or null to draw it last
+     */
+    private void addLevelObject(GameObject object, GameObject before) {
+        if (object instanceof LETrigger) {
+            ((LETrigger) object).setActivated(false);
+        } else if (object instanceof LETriggerable) {
+            ((LETriggerable) object).setActivated(false);
+        } else   if(object instanceof LEGlassBarrier) {
+            ((LEGlassBarrier)object).reset();
+        }
+        object.setDrawScale(scale);
+        addObject(object, before);
+        if (LevelController.isUpdated(object)) {
+            levelUpdated.add(object);
+        }
+        if (object instanceof TileBand) {
+            streamer.add((TileBand) object);
+        } else {
+            streamer.follow(object);
+        }
+    }
+
+    /**
+     * Sets whether drawing skips the objects and chunks off screen.
+     *
+     * Only turned off to measure what culling saves.
+     *
+     * @param value Whether to cull
+     */
+    public void setCulling(boolean value) {
+        culler.setEnabled(value);
+        streamer.setCulling(value);
+    }
+
+    /**
+     * Points the camera at a place in the level, without moving the players.
+     *
+     * The chunks around the camera are streamed in, as they would be if a player
+     * were there.  Used to benchmark drawing all over the level.
+     *
+     * @param x The x-coordinate to look at, in physics units
+     * @param y The y-coordinate to look at, in physics units
+     */
+    public void lookAt(float x, float y) {
+        canvas.setCameraPos(bounds, scale, x * scale.x, y * scale.y);
+        streamer.update(world, canvas, scale, players);
+    }
+
+    /**
+     * Watches the level files, and patches the level being played when its file is saved.
+     *
+     * @param watcher The level watcher, or null to stop hot reloading
+     */
+    public void setLevelWatcher(LevelWatcher watcher) {
+        this.watcher = watcher;
+        if (watcher != null && reloader == null) {
+            reloader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "level-reload");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Patches the level in place once a copy of it saved since has been built.
+     *
+     * The copy is built from the saved file on another thread, as parsing it takes
+     * longer than a frame.  The game thread only works out and applies the changes:
+     * objects and tiles that are gone are taken out of the world, new and edited
+     * ones are put in, and moved static ones are moved.  The players are left where
+     * they are.
+     */
+    private void checkHotReload() {
+        File levelFile = loader.getLevelFile(level, checkpoint).file().getAbsoluteFile();
+        boolean changed = false;
+        for (File file = watcher.poll(); file != null; file = watcher.poll()) {
+            changed |= file.equals(levelFile);
+        }
+        if (changed) {
+            if (reloading == null) {
+                startReload();
+            } else {
+                reloadAgain = true;
+            }
+        }
+        if (reloading == null || !reloading.isDone()) return;
+
+        LevelLoader.LevelDef levelDef = takeReload();
+        if (reloadAgain) {
+            // The copy is already out of date, so build the latest save instead
+            reloadAgain = false;
+            if (levelDef != null) levelDef.dispose();
+            startReload();
+            return;
+        }
+        if (levelDef != null) patchLevel(levelDef);
+    }
+
+    /** Starts building a copy of the level from its file */
+    private void startReload() {
+        final String level = this.level;
+        final String checkpoint = this.checkpoint;
+        reloadingLevel = level;
+        reloadingCheckpoint = checkpoint;
+        reloadStart = System.nanoTime();
+        reloading = reloader.submit(new Callable<LevelLoader.LevelDef>() {
+            @Override
+            public LevelLoader.LevelDef call() {
+                return loader.loadLevel(level, checkpoint);
+            }
+        });
+    }
+
+    /**
+     * Returns the copy of the level that was built.
+     *
+     * @return the copy, or null if it could not be built or is of another level
+     */
+    private LevelLoader.LevelDef takeReload() {
+        Future<LevelLoader.LevelDef> future = reloading;
+        reloading = null;
+        LevelLoader.LevelDef levelDef;
+        try {
+            levelDef = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // Most likely saved halfway; the next save will bring us back here
+            Gdx.app.error("PlayMode", String.format("Could not hot reload %s:%s: %s", reloadingLevel,
+                    reloadingCheckpoint, e.getCause().getMessage()));
+            return null;
+        }
+        if (!reloadingLevel.equals(level) || !reloadingCheckpoint.equals(checkpoint)) {
+            // Another level was started while this one was being built
+            levelDef.dispose();
+            return null;
+        }
+        return levelDef;
+    }
+
+    /**
+     * Applies the changes between the live level and a new copy of it.
+     *
+     * The objects of the copy that are not put into the world are disposed.
+     *
+     * @param levelDef A copy of the level built since it was saved
+     */
+    private void patchLevel(LevelLoader.LevelDef levelDef) {
+        long start = System.nanoTime();
+        levelDef.prepareTextures();
+
+        LevelDiff diff = diffLevel(levelDef);
+        long diffed = System.nanoTime();
+        Set<GameObject> adopted = Collections.newSetFromMap(new IdentityHashMap<GameObject, Boolean>());
+
+        if (!diff.isEmpty()) {
+            // A grapple may be holding on to something that is about to go
+            for (int i = 0; i < players.size; i++) {
+                Player player = players.get(i);
+                player.getController().removeGrapple(player.getGrapple());
+            }
+        }
+        // Removed objects are disposed once postUpdate takes them out of the world
+        for (LevelElement element : diff.removed) {
+            element.markRemoved(true);
+        }
+        for (TileBand band : diff.removedBands) {
+            streamer.remove(band);
+            band.markRemoved(true);
+        }
+        for (int i = 0; i < diff.removedKeys.size; i++) {
+            diff.removedFrom.get(i).remove(world, diff.removedKeys.get(i));
+        }
+        for (int i = 0; i < diff.addedKeys.size; i++) {
+            diff.addedTo.get(i).add(world, diff.addedKeys.get(i));
+        }
+        for (int i = 0; i < diff.moved.size; i++) {
+            LevelElement to = diff.movedTo.get(i);
+            diff.moved.get(i).setPosition(to.getX(), to.getY());
+            diff.moved.get(i).setAngle(to.getAngle());
+            culler.update(diff.moved.get(i));
+        }
+        for (LevelElement element : diff.added) {
+            // The players stay where they are, so a new start is only remembered
+            if (!(element instanceof LEStart)) {
+                adopted.add(element);
+            }
+        }
+        for (TileBand band : diff.addedBands) {
+            adopted.add(band);
+        }
+        addInOrder(levelDef, diff, adopted);
+        for (Map.Entry<Integer, LevelElement> entry : diff.ids.entrySet()) {
+            if (entry.getValue() == null) {
+                objectMap.remove(entry.getKey());
+            } else {
+                objectMap.put(entry.getKey(), entry.getValue());
+            }
+        }
+        twoStars = levelDef.twoStars;
+        threeStars = levelDef.threeStars;
+
+        // Unchanged objects and the places of moved ones were only compared with
+        for (GameObject object : levelDef.getObjects()) {
+            if (!adopted.contains(object)) object.dispose();
+        }
+
+        double total = (System.nanoTime() - start) / 1e6;
+        Gdx.app.log("PlayMode", String.format("Hot reloaded %s:%s: %d removed, %d added, %d moved in %.1fms "
+                        + "(diff %.1fms), built in %.1fms off the game thread",
+                level, checkpoint, diff.getRemovedCount(), diff.getAddedCount(), diff.moved.size,
+                total, (diffed - start) / 1e6, (start - reloadStart) / 1e6));
+        if (total > HOT_RELOAD_BUDGET) {
+            Gdx.app.error("PlayMode", String.format("Hot reload took %.1fms, more than %.0fms",
+                    total, HOT_RELOAD_BUDGET));
+        }
+    }
+
+    /**
+     * Puts the new objects of a copy of the level into the world, in their place in the copy's order.
+     *
+     * Each goes before the next object of the copy that is already in the world,
+     * so that layers keep drawing over the layers below them.
+     *
+     * @param levelDef A copy of the level built since it was saved
+     * @param diff     The changes between the live level and the copy
+     * @param adopted  The objects of the copy to put into the world
+     */
+    private void addInOrder(LevelLoader.LevelDef levelDef, LevelDiff diff, Set<GameObject> adopted) {
+        Array<GameObject> built = new Array<>();
+        for (GameObject object : levelDef.getObjects()) {
+            built.add(object);
+        }
+        GameObject next = null;
+        for (int i = built.size - 1; i >= 0; i--) {
+            GameObject object = built.get(i);
+            if (adopted.contains(object)) {
+                addLevelObject(object, next);
+                next = object;
+            } else if (diff.live.containsKey(object)) {
+                next = diff.live.get(object);
+            }
+        }
+    }
+
+    /** Returns the changes between the live level and a new build of it */
+    private LevelDiff diffLevel(LevelLoader.LevelDef levelDef) {
+        Array<TileBand> liveBands = new Array<>();
+        Array<LevelElement> liveTiles = new Array<>();
+        collectTiles(objects, liveBands, liveTiles);
+        Array<TileBand> newBands = new Array<>();
+        Array<LevelElement> newTiles = new Array<>();
+        collectTiles(levelDef.getObjects(), newBands, newTiles);
+        return new LevelDiff(objectMap, liveBands, liveTiles, levelDef.getIdToObject(), newBands, newTiles);
+    }
+
+    /** Adds the bands of streamed tiles and the other tiles of tile layers among some level objects */
+    private static void collectTiles(Iterable<GameObject> objects, Array<TileBand> bands, Array<LevelElement> tiles) {
+        for (GameObject object : objects) {
+            if (object instanceof TileBand) {
+                bands.add((TileBand) object);
+            } else if (object instanceof LevelElement && ((LevelElement) object).getTileKey() != 0) {
+                tiles.add((LevelElement) object);
+            }
+        }
+    }
+
     public String getTimeString() {
-        return timeString;
+        return TextFormat.setClock(timeText, timer).toString();
     }
 
     public int getTimer() {
@@ -297,8 +700,8 @@ public class PlayMode extends WorldController implements Screen {
         earthTile = new TextureRegion(directory.getEntry( "earth", Texture.class ));
         octopusTexture = new TextureRegion(directory.getEntry( "octopus.png", Texture.class ));
         octopusInkStrip = directory.getEntry("octopusInk",Texture.class);
-        octopusStrip = directory.getEntry("octopus",Texture.class);
-        octopusStrip.setFilter(Texture.TextureFilter.Nearest,Texture.TextureFilter.Nearest);
+        octopusStrip = directory.getEntry("octopus",TextureRegion.class);
+        octopusStrip.getTexture().setFilter(Texture.TextureFilter.Nearest,Texture.TextureFilter.Nearest);
 //		displayFont = directory.getEntry( "retro", BitmapFont.class);
     }
 
@@ -312,7 +715,10 @@ public class PlayMode extends WorldController implements Screen {
         for (GameObject obj : objects) {
             obj.setActive(false);
         }
-        cephalonaut.setInking(false);
+        for (int i = 0; i < players.size; i++) {
+            Player player = players.get(i);
+            player.getCephalonaut().setInking(false);
+        }
     }
 
     private boolean isDialogueMode(float dt) {
@@ -350,14 +756,25 @@ public class PlayMode extends WorldController implements Screen {
     public void update(float dt) {
         // Move an object if touched
         InputController input = InputController.getInstance();
+        if (watcher != null) checkHotReload();
+        // The level is still drawn behind dialogue, so stream before pausing for it
+        streamer.update(world, canvas, scale, players);
         if (isDialogueMode(dt)) return;
         if (exiting) return;
 
-        int sparklesIdx = ThreadLocalRandom.current().nextInt(0, NUM_SPARKLES);
-        FilmStrip sparkle = sparkles[sparklesIdx];
-        sparkle.setFrame((sparkle.getFrame() + 1) % sparkle.getSize());
+        starField.update(dt);
+
+        // Player 0 was read by preUpdate
+        for (int i = 1; i < players.size; i++) {
+            players.get(i).getInput().readInput(bounds, scale);
+        }
 
-        if (cephalonaut.getHasMoved()) {
+        boolean anyMoved = false;
+        for (int i = 0; i < players.size; i++) {
+            Player player = players.get(i);
+            anyMoved |= player.getCephalonaut().getHasMoved();
+        }
+        if (anyMoved) {
             timeCount += dt;
             if (timeCount >= 1) {
                 timer += 1;
@@ -365,7 +782,7 @@ public class PlayMode extends WorldController implements Screen {
             }
         }
 
-        if (input.didReset()) {
+        if (!isRace() && input.didReset()) {
             if(cephalonaut.isAlive()) {
                 cephalonaut.setAlive(false);
                 SoundController.playSound(11,1.5f);
@@ -374,66 +791,137 @@ public class PlayMode extends WorldController implements Screen {
             }
         }
 
-        if (input.didExit()) {
-            if (listener != null) {
-                exiting = true;
-                listener.exitScreen(this, EXIT_LEVEL);
-                return;
-            } else {
-                System.err.println("No listener! Did you correctly set the listener for this playmode?");
+        for (int i = 0; i < players.size; i++) {
+            Player player = players.get(i);
+            if (player.getInput().didExit()) {
+                if (listener != null) {
+                    exportContactStats();
+                    exiting = true;
+                    listener.exitScreen(this, EXIT_LEVEL);
+                    return;
+                } else {
+                    System.err.println("No listener! Did you correctly set the listener for this playmode?");
+                }
             }
         }
 
         if (input.didTertiary()) {
             directionalGrapple = !directionalGrapple;
         }
-        cephalonaut.setForce(Vector2.Zero);
+        for (int i = 0; i < players.size; i++) {
+            Player player = players.get(i);
+            player.getCephalonaut().setForce(Vector2.Zero);
+        }
         levelController.resetBlackHoleRange();
-        for (GameObject object : objects) {
-            levelController.update(object, cephalonautController);
+        for (int i = 0; i < levelUpdated.size; i++) {
+            GameObject object = levelUpdated.get(i);
+            if (object.isRemoved()) {
+                levelUpdated.removeIndex(i--);
+                continue;
+            }
+            levelController.update(object);
+        }
+        for (int i = 0; i < players.size; i++) {
+            Player player = players.get(i);
+            levelController.update(player);
         }
         if(!levelController.blackHoleSound())
             SoundController.setBlackHoleSound(false,0);
 
-        boolean grappleButton = input.didSecondary();
-        boolean ungrappleButton = input.didTertiary();
-        if (level.equals("level_0") && checkpoint.equals("checkpoint_0")) {
-            grappleButton = false;
-            ungrappleButton = false;
+        canvas.setViewportCount(players.size);
+        for (int i = 0; i < players.size; i++) {
+            Player player = players.get(i);
+            canvas.setViewport(player.getIndex());
+            if (updatePlayer(player)) {
+                // The level was restarted or finished
+                return;
+            }
+        }
+        // Cameras and players may have moved, or teleported, before the next step
+        streamer.update(world, canvas, scale, players);
+        canvas.setViewport(0);
+
+        if (fadeInCount > 0) {
+            fadeInCount -= .05f;
         }
-        boolean inking = input.isThrusterApplied();
-        float rotation = input.getRotation();
+    }
+
+    /**
+     * Moves one player and their camera, and handles them dying or finishing.
+     *
+     * The player's viewport must be current, as the mouse crosshair is relative to it.
+     *
+     * @param player The player to update
+     *
+     * @return true if the whole level was reset or completed
+     */
+    private boolean updatePlayer(Player player) {
+        InputController input = player.getInput();
+        CephalonautModel cephalonaut = player.getCephalonaut();
 
-        Vector2 crossHair = input.getCrossHair().add(
-                (canvas.getCameraX() - canvas.getWidth() / 2f) / scale.x,
-                (canvas.getCameraY() - canvas.getHeight() / 2f) / scale.y);
+        if (isRace() && input.didReset() && cephalonaut.isAlive() && !player.isFinished()) {
+            cephalonaut.setAlive(false);
+            SoundController.playSound(11,1.5f);
+        }
 
-        if(input.xbox != null && input.xbox.isConnected() &&
-                (Math.abs(input.getStickDirec().x) > .6f || Math.abs(input.getStickDirec().y) > .6f)) {
-            crossHair.x = 100 * input.getStickDirec().x + cephalonaut.getPosition().x;
-            crossHair.y = 100 * input.getStickDirec().y + cephalonaut.getPosition().y;
+        if (cephalonaut.isAlive() && player.isTouchingFinish() && !player.isFinished()) {
+            player.finish(++finishedCount, timer);
+            if (finishedCount == players.size) {
+                exportContactStats();
+                levelController.finishLevel();
+                return true;
+            }
         }
 
-        cephalonautController.update(grappleButton, ungrappleButton, crossHair, inking, rotation);
+        if (player.isFinished()) {
+            // Finished racers wait at the line for everyone else
+            player.getController().removeGrapple(player.getGrapple());
+            cephalonaut.setInking(false);
+            cephalonaut.setLinearVelocity(Vector2.Zero);
+        } else {
+            boolean grappleButton = input.didSecondary();
+            boolean ungrappleButton = input.didTertiary();
+            if (level.equals("level_0") && checkpoint.equals("checkpoint_0")) {
+                grappleButton = false;
+                ungrappleButton = false;
+            }
+            boolean inking = input.isThrusterApplied();
+            float rotation = input.getRotation();
+
+            Vector2 crossHair = input.getCrossHair().add(
+                    (canvas.getCameraX() - canvas.getWidth() / 2f - canvas.getViewportX()) / scale.x,
+                    (canvas.getCameraY() - canvas.getHeight() / 2f - canvas.getViewportY()) / scale.y);
+
+            if(input.xbox != null && input.xbox.isConnected() &&
+                    (Math.abs(input.getStickDirec().x) > .6f || Math.abs(input.getStickDirec().y) > .6f)) {
+                crossHair.x = 100 * input.getStickDirec().x + cephalonaut.getPosition().x;
+                crossHair.y = 100 * input.getStickDirec().y + cephalonaut.getPosition().y;
+            }
+
+            player.getController().update(grappleButton, ungrappleButton, crossHair, inking, rotation);
+        }
 
         Vector2 center = cephalonaut.getBody().getWorldCenter();
         canvas.setCameraPos(bounds, scale,
                 MathUtils.roundPositive(center.x * scale.x),
                 MathUtils.roundPositive(center.y * scale.y));
 
-        if (fadeInCount > 0) {
-            fadeInCount -= .05f;
-        }
         if (!cephalonaut.isAlive()) {
             cephalonaut.setLinearVelocity(Vector2.Zero);
+            float deathRotationCount = player.getDeathRotation();
             cephalonaut.setDeathScale((float)((4 * Math.PI - deathRotationCount) / (4 * Math.PI)));
             //(float)((4 * Math.PI - deathRotationCount) / 4 * Math.PI)
 
             final float BLACK_HOLE_DEATH_SPINNY_CONSTANT = 5f;
             cephalonaut.getBody().applyTorque(BLACK_HOLE_DEATH_SPINNY_CONSTANT, false);
             deathRotationCount += Math.PI / 16;
+            player.setDeathRotation(deathRotationCount);
             if (deathRotationCount >= 4 * Math.PI) {
-                reset();
+                if (!isRace()) {
+                    reset();
+                    return true;
+                }
+                player.respawn();
             }
         }
 
@@ -445,6 +933,7 @@ public class PlayMode extends WorldController implements Screen {
                 SoundController.playSound(11,2f);
             cephalonaut.setAlive(false);
         }
+        return false;
     }
 
     @Override
@@ -453,6 +942,117 @@ public class PlayMode extends WorldController implements Screen {
         for (GameObject object : objects) {
             object.setDrawScale(scale);
         }
+        streamer.invalidate();
+    }
+
+    /**
+     * Draws per-frame engine statistics under the timer.
+     *
+     * Each line is written into its own buffer and drawn under its own label, so
+     * the overlay makes no garbage and only lays out the lines that changed.
+     */
+    private void drawDebugStats() {
+        displayFont.getData().setScale(0.3f);
+        displayFont.setColor(Color.WHITE);
+
+        StringBuilder text = debugLine(0, "UPDATES ");
+        TextFormat.appendInt(text, scheduler.getTickedCount());
+        text.append('/');
+        TextFormat.appendInt(text, scheduler.getRegisteredCount());
+        text.append("  OFFSCREEN ");
+        TextFormat.appendInt(text, scheduler.getDeferredCount());
+        text.append("  STATIC ");
+        TextFormat.appendInt(text, scheduler.getStaticCount());
+
+        ColliderCache colliders = loader.getColliderCache();
+        text = debugLine(1, "SHAPES ");
+        TextFormat.appendInt(text, colliders.getShapeCount());
+        text.append("  REUSED ");
+        TextFormat.appendInt(text, colliders.getHits());
+        text.append("  EST SAVED ");
+        TextFormat.appendFixed(text, colliders.getSavedMillis(), 1);
+        text.append("MS");
+
+        text = debugLine(2, "FIXTURES ");
+        TextFormat.appendInt(text, fixtureCount);
+        text.append(" (WAS ");
+        TextFormat.appendInt(text, triangleCount);
+        text.append(")  CHUNKS ");
+        TextFormat.appendInt(text, streamer.getLoadedCount());
+        text.append('/');
+        TextFormat.appendInt(text, streamer.getChunkCount());
+        text.append("  CACHED ");
+        TextFormat.appendInt(text, canvas.getCachedSpriteCount());
+
+        text = debugLine(3, "NATIVE SHAPE ");
+        TextFormat.appendInt(text, ResourceTracker.getLiveCount(ResourceTracker.Type.SHAPE));
+        text.append("  BODY ");
+        TextFormat.appendInt(text, ResourceTracker.getLiveCount(ResourceTracker.Type.BODY));
+        text.append("  JOINT ");
+        TextFormat.appendInt(text, ResourceTracker.getLiveCount(ResourceTracker.Type.JOINT));
+        text.append("  TEX ");
+        TextFormat.appendInt(text, ResourceTracker.getLiveCount(ResourceTracker.Type.TEXTURE));
+        text.append("  FBO ");
+        TextFormat.appendInt(text, ResourceTracker.getLiveCount(ResourceTracker.Type.FRAME_BUFFER));
+        text.append("  SHADER ");
+        TextFormat.appendInt(text, ResourceTracker.getLiveCount(ResourceTracker.Type.SHADER_PROGRAM));
+        text.append("  MESH ");
+        TextFormat.appendInt(text, ResourceTracker.getLiveCount(ResourceTracker.Type.MESH));
+
+        LevelElement.Element busiest = contactStats.getBusiestElement();
+        text = debugLine(4, "STEP ");
+        TextFormat.appendFixed(text, contactStats.getLastStepMillis(), 2);
+        text.append("MS (AVG ");
+        TextFormat.appendFixed(text, contactStats.getAverageStepMillis(), 2);
+        text.append(" MAX ");
+        TextFormat.appendFixed(text, contactStats.getMaxStepMillis(), 2);
+        text.append(")  BEGIN ");
+        TextFormat.appendInt(text, contactStats.getLastCount(ContactStats.Event.BEGIN));
+        text.append("  END ");
+        TextFormat.appendInt(text, contactStats.getLastCount(ContactStats.Event.END));
+        text.append("  PRESOLVE ");
+        TextFormat.appendInt(text, contactStats.getLastCount(ContactStats.Event.PRESOLVE));
+        text.append("  TOP ").append(busiest == null ? "-" : busiest.name());
+
+        text = debugLine(5, "CONTACTS ");
+        TextFormat.appendInt(text, contactStats.getLastContactCount());
+        text.append("  BODIES ");
+        TextFormat.appendInt(text, contactStats.getLastBodyCount());
+        text.append("  FIXTURES ");
+        TextFormat.appendInt(text, contactStats.getLastFixtureCount());
+        text.append("  PROXIES ");
+        TextFormat.appendInt(text, contactStats.getLastProxyCount());
+
+        text = debugLine(6, "DRAWN ");
+        TextFormat.appendInt(text, culler.getDrawnCount());
+        text.append("  CULLED ");
+        TextFormat.appendInt(text, culler.getCulledCount());
+        text.append("  CHUNKS DRAWN ");
+        TextFormat.appendInt(text, streamer.getDrawnCount());
+
+        for (int i = 0; i < DEBUG_LABELS.length; i++) {
+            canvas.drawTextTopRight(DEBUG_LABELS[i], debugText[i], displayFont, 600, 60 + 20 * i);
+        }
+        displayFont.getData().setScale(0.5f);
+    }
+
+    /** Empties a line of the debug overlay, starts it with a heading, and returns it */
+    private StringBuilder debugLine(int line, String heading) {
+        StringBuilder text = debugText[line];
+        text.setLength(0);
+        return text.append(heading);
+    }
+
+    /**
+     * Writes the contact statistics of this attempt to a CSV file.
+     *
+     * Only done in debug mode, so normal play never touches the disk.
+     */
+    private void exportContactStats() {
+        if (!isDebug()) return;
+        FileHandle file = Gdx.files.local("stats/contacts_" + level + "_" + checkpoint + ".csv");
+        contactStats.exportCsv(file);
+        System.out.printf("Wrote contact statistics to %s\n", file.path());
     }
 
     public int levelToInt() {
@@ -465,16 +1065,64 @@ public class PlayMode extends WorldController implements Screen {
      * Draw the physics objects together with foreground and background
      *
      * This is completely overridden to support custom background and foreground art.
+     * In a race every player gets their own viewport.  The viewports share the
+     * level and the frame buffers, and each one skips the objects outside of it,
+     * so a split screen draws about as much as a single full screen.
      *
      * @param dt Timing values from parent loop
      */
     public void draw(float dt) {
         if (exiting) return;
-      
+
         canvas.clear();
+        canvas.setViewportCount(players.size);
+        for (int i = 0; i < players.size; i++) {
+            Player player = players.get(i);
+            canvas.setViewport(player.getIndex());
+            drawViewport(player);
+        }
+        canvas.setViewportCount(1);
+    }
+
+    /**
+     * Draws a run of background images in one pass, and then the stars over each.
+     *
+     * @param start The index in visible of the first image
+     *
+     * @return the index in visible just past the last image
+     */
+    private int drawBackgrounds(int start) {
+        int end = start;
+        while (end < visible.size && visible.get(end) instanceof ImageObject) {
+            ((ImageObject) visible.get(end)).addBackground(canvas);
+            end++;
+        }
+        canvas.drawBackgrounds();
+        for (int k = start; k < end; k++) {
+            Vector2 parallaxFactor = visible.get(k).getParallaxFactor();
+            canvas.drawStars(starField, canvas.getCameraX() * parallaxFactor.x,
+                    canvas.getCameraY() * parallaxFactor.y, scale);
+        }
+        return end;
+    }
+
+    /**
+     * Draws the level as seen by one player, in the current viewport.
+     *
+     * @param viewer The player whose camera is used
+     */
+    private void drawViewport(Player viewer) {
+        visible.clear();
+        culler.query(canvas, scale, visible);
+
         canvas.begin();
 
-        for (GameObject obj : objects) {
+        for (int k = 0; k < visible.size; k++) {
+            GameObject obj = visible.get(k);
+            if (obj instanceof ImageObject) {
+                k = drawBackgrounds(k) - 1;
+                continue;
+            }
 //            if(obj instanceof  LevelElement && ((LevelElement) obj).getElement() == LevelElement.Element.FINISH) {
 //                canvas.drawLevelEndGlow(obj.getX() * scale.x, obj.getY() * scale.y);
 //            }
@@ -483,52 +1131,46 @@ public class PlayMode extends WorldController implements Screen {
                 canvas.drawBlackHoleOutline(obj.getX() * scale.x, obj.getY() * scale.y,
                         ((LEBlackHole) obj).getBlackHoleRange() * scale.x);
             }
-            if (obj instanceof ImageObject) {
-                Vector2 parallaxFactor = ((ImageObject) obj).getParallaxFactor();
-                int idx = levelToInt();
-                float offsetX = canvas.getCameraX() * parallaxFactor.x;
-                float offsetY = canvas.getCameraY() * parallaxFactor.y;
-                for (int i = 0; i < NUM_SPARKLES; i++) {
-                    for (int j = 0; j < NUM_SPARKLES; j++) {
-                        canvas.draw(sparkles[i], Color.WHITE,
-                                sparkles[i].getFwidth() / 2f, sparkles[i].getFheight() / 2f,
-                                scale.x * sparkleX[i][j] + offsetX, scale.y * sparkleY[i][j] + offsetY,
-                                0, 0.1f * scale.x, 0.1f * scale.y);
-                    }
-                }
-            }
         }
 
         selector.draw(canvas);
-        cephalonaut.draw(canvas);
+        for (int i = 0; i < players.size; i++) {
+            Player player = players.get(i);
+            player.getCephalonaut().draw(canvas);
+        }
 
         float x = canvas.getWidth() * 0.40f + canvas.getCameraX() + 56;
         float y = canvas.getHeight() * 0.47f + canvas.getCameraY() - 12;
         canvas.drawFg(clock, Color.WHITE, clock.getWidth() / 2f, clock.getHeight() / 2f, x, y, 0, 0.9f, 0.9f);
 
-        int minutes = (timer % 3600) / 60;
-        int seconds = timer % 60;
-        timeString = String.format("%02d:%02d", minutes, seconds);
+        TextFormat.setClock(timeText, timer);
         displayFont.getData().setScale(0.5f);
         displayFont.setColor(Color.ORANGE);
-        canvas.drawTextTopRight(timeString, displayFont);
+        canvas.drawTextTopRight("timer", timeText, displayFont, 0, 0);
+        if (viewer.isFinished()) {
+            canvas.drawTextTopRight(PLACES[viewer.getPlace()], displayFont, 0, 40);
+        }
         displayFont.setColor(Color.WHITE);
         canvas.drawFade(fadeInCount);
-      
-        if (!cephalonaut.isAlive()) {
-            canvas.drawFade(deathRotationCount / (float) (4 * Math.PI));
+
+        if (!viewer.getCephalonaut().isAlive()) {
+            canvas.drawFade(viewer.getDeathRotation() / (float) (4 * Math.PI));
         }
 
         if (paused) {
           dialogueMode.draw(canvas.getCameraX(), canvas.getCameraY(), dialogueFade);
         }
 
+        if (isDebug() && viewer.getIndex() == 0) {
+            drawDebugStats();
+        }
+
         canvas.end();
 
         if (isDebug()) {
             canvas.beginDebug();
-            for (GameObject obj : objects) {
-                obj.drawDebug(canvas);
+            for (int i = 0; i < visible.size; i++) {
+                visible.get(i).drawDebug(canvas);
             }
             canvas.endDebug();
         }
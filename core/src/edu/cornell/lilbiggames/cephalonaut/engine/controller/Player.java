@@ -0,0 +1,166 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.controller;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.World;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.elements.LEGlassBarrier;
+import edu.cornell.lilbiggames.cephalonaut.engine.model.CephalonautModel;
+import edu.cornell.lilbiggames.cephalonaut.engine.model.GrappleModel;
+
+/**
+ * Everything that belongs to one local player in a level.
+ *
+ * The player is attached as fixture user data to its cephalonaut, and its
+ * {@link Grapple} tag to its grapple, so the contact listener can tell whose
+ * body (and which part of it) was hit without comparing against every player.
+ */
+public class Player {
+    /** Fixture user data for a player's grapple */
+    public static class Grapple {
+        public final Player player;
+
+        private Grapple(Player player) {
+            this.player = player;
+        }
+    }
+
+    /** Index of this player, which is also its viewport */
+    private final int index;
+    /** Where this player reads input from */
+    private final InputController input;
+    /** This player's avatar */
+    private final CephalonautModel cephalonaut;
+    /** Controller that handles this player's grappling and inking */
+    private final CephalonautController controller;
+    /** Fixture user data for this player's grapple */
+    private final Grapple grappleTag;
+    /** Where this player respawns */
+    private final Vector2 start;
+
+    /** How far the death animation has spun */
+    private float deathRotation;
+    /** Number of this player's fixtures touching fixtures of the finish line */
+    private int finishContacts;
+    /** The glass barrier the grapple is anchored on, or null */
+    private LEGlassBarrier grappleGlass;
+    /** Whether the glass the grapple is anchored on just broke */
+    private boolean grappleOnBrokenGlass;
+    /** Finishing place (1 for first), or 0 if not finished */
+    private int place;
+    /** Race time when this player finished, in seconds */
+    private int finishTime;
+
+    public Player(int index, InputController input, CephalonautModel cephalonaut, World world) {
+        this.index = index;
+        this.input = input;
+        this.cephalonaut = cephalonaut;
+        this.controller = new CephalonautController(world, cephalonaut);
+        this.grappleTag = new Grapple(this);
+        this.start = new Vector2(cephalonaut.getPosition());
+
+        cephalonaut.setFixtureUserData(this);
+        cephalonaut.getGrapple().setFixtureUserData(grappleTag);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public InputController getInput() {
+        return input;
+    }
+
+    public CephalonautModel getCephalonaut() {
+        return cephalonaut;
+    }
+
+    public GrappleModel getGrapple() {
+        return cephalonaut.getGrapple();
+    }
+
+    public CephalonautController getController() {
+        return controller;
+    }
+
+    public Vector2 getStart() {
+        return start;
+    }
+
+    public float getDeathRotation() {
+        return deathRotation;
+    }
+
+    public void setDeathRotation(float value) {
+        deathRotation = value;
+    }
+
+    public boolean isTouchingFinish() {
+        return finishContacts > 0;
+    }
+
+    /**
+     * Records a contact with the finish line starting or ending.
+     *
+     * Both the player and the finish line may have several fixtures, so contacts
+     * are counted and the player touches the finish until the last one ends.
+     *
+     * @param value Whether a contact started rather than ended
+     */
+    public void setTouchingFinish(boolean value) {
+        finishContacts = value ? finishContacts + 1 : Math.max(finishContacts - 1, 0);
+    }
+
+    public LEGlassBarrier getGrappleGlass() {
+        return grappleGlass;
+    }
+
+    public void setGrappleGlass(LEGlassBarrier value) {
+        grappleGlass = value;
+    }
+
+    public boolean isGrappleOnBrokenGlass() {
+        return grappleOnBrokenGlass;
+    }
+
+    public void setGrappleOnBrokenGlass(boolean value) {
+        grappleOnBrokenGlass = value;
+    }
+
+    public boolean isFinished() {
+        return place > 0;
+    }
+
+    public int getPlace() {
+        return place;
+    }
+
+    public int getFinishTime() {
+        return finishTime;
+    }
+
+    /**
+     * Records that this player crossed the finish line.
+     *
+     * @param place The finishing place (1 for first)
+     * @param time  The race time, in seconds
+     */
+    public void finish(int place, int time) {
+        this.place = place;
+        this.finishTime = time;
+    }
+
+    /**
+     * Puts the player back at the start, alive, with the grapple retracted.
+     */
+    public void respawn() {
+        controller.removeGrapple(getGrapple());
+        cephalonaut.setAlive(true);
+        cephalonaut.setDeathScale(1);
+        cephalonaut.setLinearVelocity(Vector2.Zero);
+        cephalonaut.setAngularVelocity(0);
+        cephalonaut.setAngle(0);
+        cephalonaut.setPosition(start);
+        cephalonaut.refillInk();
+        deathRotation = 0;
+        finishContacts = 0;
+    }
+}
@@ -0,0 +1,213 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.controller;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.GameObject;
+
+/**
+ * Decides which objects get their update() called after each physics step.
+ *
+ * Objects are sorted into buckets by their {@link GameObject.UpdateTier} when they
+ * are added to the world.  NONE objects (static tiles) are only ticked once more
+ * after they are marked dirty, so that their fixtures get rebuilt.  VISIBLE
+ * objects are only ticked while they are on screen, and get all of the time they
+ * missed in one call when they come back.  TIMER objects are ticked once their
+ * interval has elapsed.
+ */
+public class UpdateScheduler implements GameObject.DirtyListener {
+    /** Objects ticked every step */
+    private final Array<GameObject> always = new Array<>();
+    /** Objects ticked while on screen */
+    private final Array<GameObject> visible = new Array<>();
+    /** Seconds each VISIBLE object has missed while off screen */
+    private final FloatArray visiblePending = new FloatArray();
+    /** Objects ticked on an interval */
+    private final Array<GameObject> timed = new Array<>();
+    /** Seconds since each TIMER object was last ticked */
+    private final FloatArray timedPending = new FloatArray();
+    /** NONE objects marked dirty since the last step, which need their fixtures rebuilt */
+    private final Array<GameObject> dirty = new Array<>();
+
+    /** Number of registered objects that are never ticked */
+    private int staticCount;
+    /** Number of update() calls made during the last step */
+    private int tickedCount;
+    /** Number of VISIBLE objects left waiting during the last step */
+    private int deferredCount;
+
+    /**
+     * Registers an object according to its update tier.
+     *
+     * @param obj The object that was just added to the world
+     */
+    public void add(GameObject obj) {
+        switch (obj.getUpdateTier()) {
+            case NONE:
+                staticCount++;
+                obj.setDirtyListener(this);
+                if (obj.isDirty()) {
+                    dirtied(obj);
+                }
+                break;
+            case VISIBLE:
+                visible.add(obj);
+                visiblePending.add(0);
+                break;
+            case TIMER:
+                timed.add(obj);
+                timedPending.add(0);
+                break;
+            default:
+                always.add(obj);
+                break;
+        }
+    }
+
+    /**
+     * Forgets every registered object.
+     */
+    public void clear() {
+        always.clear();
+        visible.clear();
+        visiblePending.clear();
+        timed.clear();
+        timedPending.clear();
+        dirty.clear();
+        staticCount = 0;
+        tickedCount = 0;
+        deferredCount = 0;
+    }
+
+    /**
+     * Queues an object that is never ticked for a single update, to rebuild its fixtures.
+     *
+     * @param obj The object that was just marked dirty
+     */
+    @Override
+    public void dirtied(GameObject obj) {
+        dirty.add(obj);
+    }
+
+    /**
+     * Ticks every object that is due this step.
+     *
+     * Objects that have been marked removed are dropped from the schedule.
+     *
+     * @param dt     Number of seconds since last animation frame
+     * @param canvas The canvas whose camera decides what is on screen
+     */
+    public void update(float dt, GameCanvas canvas) {
+        tickedCount = 0;
+        deferredCount = 0;
+
+        // An object without a body stays dirty, and gets its fixtures when it is activated
+        for (int i = 0; i < dirty.size; i++) {
+            GameObject obj = dirty.get(i);
+            if (obj.isRemoved() || !obj.isDirty()) continue;
+            obj.update(dt);
+            tickedCount++;
+        }
+        dirty.clear();
+
+        for (int i = 0; i < always.size; i++) {
+            GameObject obj = always.get(i);
+            if (obj.isRemoved()) {
+                always.removeIndex(i--);
+                continue;
+            }
+            obj.update(dt);
+            tickedCount++;
+        }
+
+        for (int i = 0; i < visible.size; i++) {
+            GameObject obj = visible.get(i);
+            if (obj.isRemoved()) {
+                visible.removeIndex(i);
+                visiblePending.removeIndex(i--);
+                continue;
+            }
+            float pending = visiblePending.get(i) + dt;
+            if (isOnScreen(obj, canvas)) {
+                obj.update(pending);
+                visiblePending.set(i, 0);
+                tickedCount++;
+            } else {
+                visiblePending.set(i, pending);
+                deferredCount++;
+            }
+        }
+
+        for (int i = 0; i < timed.size; i++) {
+            GameObject obj = timed.get(i);
+            if (obj.isRemoved()) {
+                timed.removeIndex(i);
+                timedPending.removeIndex(i--);
+                continue;
+            }
+            float pending = timedPending.get(i) + dt;
+            if (pending >= obj.getUpdateInterval()) {
+                obj.update(pending);
+                timedPending.set(i, 0);
+                tickedCount++;
+            } else {
+                timedPending.set(i, pending);
+            }
+        }
+    }
+
+    /**
+     * Returns true if any part of the object may be drawn inside any viewport.
+     *
+     * With a split screen, every viewport has its own camera.
+     */
+    static boolean isOnScreen(GameObject obj, GameCanvas canvas) {
+        float halfWidth = canvas.getWidth() / 2f;
+        float halfHeight = canvas.getHeight() / 2f;
+        for (int i = 0; i < canvas.getViewportCount(); i++) {
+            if (isOnScreen(obj, canvas.getViewportCameraX(i), canvas.getViewportCameraY(i),
+                    halfWidth, halfHeight)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if any part of the object may be drawn inside the camera view.
+     *
+     * The check mirrors SimpleObstacle.draw, which offsets the object by the camera
+     * position times its parallax factor.
+     */
+    static boolean isOnScreen(GameObject obj, float cameraX, float cameraY,
+                              float halfWidth, float halfHeight) {
+        Vector2 drawScale = obj.getDrawScale();
+        Vector2 parallax = obj.getParallaxFactor();
+        float radius = obj.getBoundingRadius();
+        float x = obj.getX() * drawScale.x + cameraX * parallax.x;
+        float y = obj.getY() * drawScale.y + cameraY * parallax.y;
+        return Math.abs(x - cameraX) <= halfWidth + radius * drawScale.x &&
+               Math.abs(y - cameraY) <= halfHeight + radius * drawScale.y;
+    }
+
+    /** Returns the number of registered objects that are never ticked */
+    public int getStaticCount() {
+        return staticCount;
+    }
+
+    /** Returns the number of update() calls made during the last step */
+    public int getTickedCount() {
+        return tickedCount;
+    }
+
+    /** Returns the number of off-screen objects that waited during the last step */
+    public int getDeferredCount() {
+        return deferredCount;
+    }
+
+    /** Returns the number of objects the scheduler knows about */
+    public int getRegisteredCount() {
+        return staticCount + always.size + visible.size + timed.size;
+    }
+}
@@ -24,11 +24,13 @@ import com.badlogic.gdx.math.*;
 import com.badlogic.gdx.graphics.*;
 import com.badlogic.gdx.graphics.g2d.*;
 import com.badlogic.gdx.physics.box2d.*;
+import com.badlogic.gdx.utils.Array;
 import edu.cornell.lilbiggames.cephalonaut.assets.AssetDirectory;
 import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.GameObject;
 import edu.cornell.lilbiggames.cephalonaut.engine.obstacle.Obstacle;
 import edu.cornell.lilbiggames.cephalonaut.util.PooledList;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
 import edu.cornell.lilbiggames.cephalonaut.util.ScreenListener;
 
 /**
@@ -45,7 +47,7 @@ import edu.cornell.lilbiggames.cephalonaut.util.ScreenListener;
  * This is the purpose of our AssetState variable; it ensures that multiple instances
  * place nicely with the static assets.
  */
-public abstract class WorldController implements Screen {
+public abstract class WorldController implements Screen, GameObject.RemovalListener {
 	/** The texture for walls and platforms */
 	protected TextureRegion earthTile;
 	/** The texture for the barriers */
@@ -84,6 +86,16 @@ public abstract class WorldController implements Screen {
 	protected PooledList<GameObject> objects  = new PooledList<GameObject>();
 	/** Queue for adding objects */
 	protected PooledList<GameObject> addQueue = new PooledList<GameObject>();
+	/** Objects marked removed since the last step, to take out of the world */
+	protected Array<GameObject> removeQueue = new Array<GameObject>();
+	/** Decides which objects need update() after each step */
+	protected UpdateScheduler scheduler = new UpdateScheduler();
+	/** Finds the objects the camera may see */
+	protected DrawCuller culler = new DrawCuller();
+	/** The objects found by the culler for the frame being drawn */
+	protected Array<GameObject> visible = new Array<GameObject>();
+	/** Contact and broadphase counts for the last few seconds */
+	protected ContactStats contactStats = new ContactStats();
 	/** Listener that will update the player mode when we are done */
 	private ScreenListener listener;
 
@@ -119,12 +131,59 @@ public abstract class WorldController implements Screen {
 	/**
 	 * Sets whether debug mode is active.
 	 *
-	 * If true, all objects will display their physics bodies.
+	 * If true, all objects will display their physics bodies, and debug messages
+	 * (such as the collider counts of each level loaded) are logged.
 	 *
 	 * @param value whether debug mode is active.
 	 */
 	public void setDebug(boolean value) {
 		debug = value;
+		Gdx.app.setLogLevel(debug ? Application.LOG_DEBUG : Application.LOG_INFO);
+	}
+
+	/**
+	 * Returns the contact and broadphase statistics of the current level.
+	 *
+	 * @return the contact and broadphase statistics of the current level.
+	 */
+	public ContactStats getContactStats() {
+		return contactStats;
+	}
+
+	/**
+	 * Returns the Box2D world for the current level.
+	 *
+	 * @return the Box2D world for the current level.
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * Returns the culler that decides which objects are drawn.
+	 *
+	 * @return the culler that decides which objects are drawn.
+	 */
+	public DrawCuller getCuller() {
+		return culler;
+	}
+
+	/**
+	 * Returns the boundary of the world, in physics units.
+	 *
+	 * @return the boundary of the world, in physics units.
+	 */
+	public Rectangle getBounds() {
+		return bounds;
+	}
+
+	/**
+	 * Returns the drawing scale, in pixels per physics unit.
+	 *
+	 * @return the drawing scale, in pixels per physics unit.
+	 */
+	public Vector2 getScale() {
+		return scale;
 	}
 
 	/**
@@ -266,12 +325,21 @@ public abstract class WorldController implements Screen {
 	public void dispose() {
 		for(GameObject obj : objects) {
 			obj.deactivatePhysics(world);
+			obj.dispose();
 		}
 		objects.clear();
 		addQueue.clear();
+		removeQueue.clear();
+		scheduler.clear();
+		culler.clear();
+		ResourceTracker.releaseWorld(world);
 		world.dispose();
 		objects = null;
 		addQueue = null;
+		removeQueue = null;
+		scheduler = null;
+		culler = null;
+		visible = null;
 		bounds = null;
 		scale  = null;
 		world  = null;
@@ -311,9 +379,43 @@ public abstract class WorldController implements Screen {
 	 * param obj The object to add
 	 */
 	protected void addObject(GameObject obj) {
+		addObject(obj, null);
+	}
+
+	/**
+	 * Immediately adds the object to the physics world, just before another object.
+	 *
+	 * Objects are updated and drawn in the order of the list, so this puts a
+	 * new object in its place among the others.
+	 *
+	 * @param obj    The object to add
+	 * @param before The object to put it before, or null to put it last
+	 */
+	protected void addObject(GameObject obj, GameObject before) {
 		assert inBounds(obj) : "Object is not in bounds";
-		objects.add(obj);
+		int index = before == null ? -1 : objects.indexOf(before);
+		if (index < 0) {
+			objects.add(obj);
+		} else {
+			objects.add(index, obj);
+		}
 		obj.activatePhysics(world);
+		scheduler.add(obj);
+		culler.add(obj, index < 0 ? null : before);
+		obj.setRemovalListener(this);
+		if (obj.isRemoved()) {
+			removeQueue.add(obj);
+		}
+	}
+
+	/**
+	 * Queues an object that was marked removed, to be taken out after the next step.
+	 *
+	 * @param obj The object that was just marked removed
+	 */
+	@Override
+	public void removed(GameObject obj) {
+		removeQueue.add(obj);
 	}
 
 	/**
@@ -355,7 +457,7 @@ public abstract class WorldController implements Screen {
 
 		// Toggle debug
 		if (input.didDebug()) {
-			debug = !debug;
+			setDebug(!debug);
 		}
 
 		// Handle resets
@@ -405,23 +507,36 @@ public abstract class WorldController implements Screen {
 		}
 		
 		// Turn the physics engine crank.
+		long stepStart = System.nanoTime();
 		world.step(WORLD_STEP,WORLD_VELOC,WORLD_POSIT);
+		contactStats.endFrame(world, System.nanoTime() - stepStart);
 
 		// Garbage collect the deleted objects.
 		// Note how we use the linked list nodes to delete O(1) in place.
-		// This is O(n) without copying.
+		// The list is only walked on steps that removed something, and only as far
+		// as the last queued object.
+		int pending = 0;
+		for (int i = 0; i < removeQueue.size; i++) {
+			// An object may have been put back since it was queued
+			if (removeQueue.get(i).isRemoved()) pending++;
+		}
+		removeQueue.clear();
 		Iterator<PooledList<GameObject>.Entry> iterator = objects.entryIterator();
-		while (iterator.hasNext()) {
+		while (pending > 0 && iterator.hasNext()) {
 			PooledList<GameObject>.Entry entry = iterator.next();
 			GameObject obj = entry.getValue();
 			if (obj.isRemoved()) {
 				obj.deactivatePhysics(world);
+				obj.dispose();
+				culler.remove(obj);
 				entry.remove();
-			} else {
-				// Note that update is called last!
-				obj.update(dt);
+				pending--;
 			}
 		}
+
+		// Note that update is called last!
+		// Only objects that asked to be ticked are visited here.
+		scheduler.update(dt, canvas);
 	}
 	
 	/**
@@ -430,23 +545,25 @@ public abstract class WorldController implements Screen {
 	 * For simple worlds, this method is enough by itself.  It will need
 	 * to be overriden if the world needs fancy backgrounds or the like.
 	 *
-	 * The method draws all objects in the order that they were added.
+	 * The method draws the objects the camera may see in the order that they were added.
 	 *
 	 * @param dt	Number of seconds since last animation frame
 	 */
 	public void draw(float dt) {
 		canvas.clear();
+		visible.clear();
+		culler.query(canvas, scale, visible);
 		
 		canvas.begin();
-		for(GameObject obj : objects) {
-			obj.draw(canvas);
+		for (int i = 0; i < visible.size; i++) {
+			visible.get(i).draw(canvas);
 		}
 		canvas.end();
 		
 		if (debug) {
 			canvas.beginDebug();
-			for(GameObject obj : objects) {
-				obj.drawDebug(canvas);
+			for (int i = 0; i < visible.size; i++) {
+				visible.get(i).drawDebug(canvas);
 			}
 			canvas.endDebug();
 		}
@@ -55,6 +55,10 @@ public abstract class GameObject {
 	private boolean toRemove;
 	/** Whether the object has changed shape and needs a new fixture */
 	private boolean isDirty;
+	/** Told when the object becomes dirty, or null */
+	private DirtyListener dirtyListener;
+	/** Told when the object is marked removed, or null */
+	private RemovalListener removalListener;
 
 	/// Caching objects
 	/** A cache value for when the user wants to access the body position */
@@ -78,6 +82,10 @@ public abstract class GameObject {
 		this.parallaxFactor = parallaxFactor;
 	}
 
+	public Vector2 getParallaxFactor() {
+		return parallaxFactor;
+	}
+
 	/// BodyDef Methods
 	/**
 	 * Returns the body type for Box2D physics
@@ -802,7 +810,11 @@ public abstract class GameObject {
 	 * @param value  whether our object has been flagged for garbage collection
 	 */
 	public void markRemoved(boolean value) {
+		boolean wasRemoved = toRemove;
 		toRemove = value;
+		if (value && !wasRemoved && removalListener != null) {
+			removalListener.removed(this);
+		}
 	}
 
 	/**
@@ -828,7 +840,59 @@ public abstract class GameObject {
 	 * @param value  whether the shape information must be updated.
 	 */
 	public void markDirty(boolean value) {
+		boolean dirtied = value && !isDirty;
 		isDirty = value;
+		if (dirtied && dirtyListener != null) {
+			dirtyListener.dirtied(this);
+		}
+	}
+
+	/**
+	 * Listener for objects that need new fixtures.
+	 *
+	 * Fixtures are rebuilt in update(), so an object that is not ticked every step
+	 * has to ask for an update when it becomes dirty.
+	 */
+	public interface DirtyListener {
+		/**
+		 * Called when an object that was clean is marked dirty.
+		 *
+		 * @param obj The object that needs new fixtures
+		 */
+		void dirtied(GameObject obj);
+	}
+
+	/**
+	 * Sets the listener told whenever this object becomes dirty.
+	 *
+	 * @param listener The listener, or null for none
+	 */
+	public void setDirtyListener(DirtyListener listener) {
+		dirtyListener = listener;
+	}
+
+	/**
+	 * Listener for objects that are flagged for garbage collection.
+	 *
+	 * This lets the world queue the objects it has to take out, instead of
+	 * looking through all of them every step.
+	 */
+	public interface RemovalListener {
+		/**
+		 * Called when an object that was not flagged is marked removed.
+		 *
+		 * @param obj The object to take out of the world
+		 */
+		void removed(GameObject obj);
+	}
+
+	/**
+	 * Sets the listener told whenever this object is marked removed.
+	 *
+	 * @param listener The listener, or null for none
+	 */
+	public void setRemovalListener(RemovalListener listener) {
+		removalListener = listener;
 	}
 
 	/**
@@ -980,6 +1044,15 @@ public abstract class GameObject {
 	 */
 	public abstract void deactivatePhysics(World world);
 
+	/**
+	 * Frees any native resources (shapes, textures) owned by this object.
+	 *
+	 * This is called once the object has been removed from the world for good,
+	 * after deactivatePhysics().  The object may not be used afterwards.
+	 */
+	public void dispose() {
+	}
+
 	/**
 	 * Updates the object's physics state (NOT GAME LOGIC).
 	 *
@@ -990,7 +1063,55 @@ public abstract class GameObject {
 	 *
 	 * @param delta Timing values from parent loop
 	 */
-	public void update(float delta) { 
+	public void update(float delta) {
+	}
+
+	/**
+	 * How often the world needs to call update() on an object.
+	 *
+	 * Objects that never change outside of physics should not be ticked at all,
+	 * and purely cosmetic objects only need to be ticked when they can be seen.
+	 */
+	public enum UpdateTier {
+		/** Never ticked; the object is only changed by physics or gameplay code */
+		NONE,
+		/** Ticked every physics step */
+		ALWAYS,
+		/** Ticked while on screen; skipped time is passed in when it reappears */
+		VISIBLE,
+		/** Ticked once every time its update interval has elapsed */
+		TIMER
+	}
+
+	/**
+	 * Returns how often this object needs to be updated.
+	 *
+	 * The tier is read once, when the object is added to the world.
+	 *
+	 * @return how often this object needs to be updated.
+	 */
+	public UpdateTier getUpdateTier() {
+		return UpdateTier.ALWAYS;
+	}
+
+	/**
+	 * Returns the number of seconds between updates for a TIMER object.
+	 *
+	 * @return the number of seconds between updates for a TIMER object.
+	 */
+	public float getUpdateInterval() {
+		return 0;
+	}
+
+	/**
+	 * Returns the radius of the area this object draws to, in physics units.
+	 *
+	 * This is used to decide whether the object is on screen.
+	 *
+	 * @return the radius of the area this object draws to, in physics units.
+	 */
+	public float getBoundingRadius() {
+		return 1;
 	}
 
 	/**
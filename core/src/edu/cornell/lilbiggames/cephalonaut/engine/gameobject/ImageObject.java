@@ -7,12 +7,13 @@ import com.badlogic.gdx.physics.box2d.World;
 import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
 
 public class ImageObject extends GameObject {
+    /** Size of a texel on screen, per pixel of image width or height and unit of draw scale */
+    private static final float TEXEL_SCALE = 1.9f / 10000;
 
     private final Texture texture;
 
     public ImageObject (Texture texture) {
         this.texture = texture;
-        texture.setWrap(Texture.TextureWrap.Repeat, Texture.TextureWrap.Repeat);
     }
     
     @Override
@@ -21,16 +22,31 @@ public class ImageObject extends GameObject {
     @Override
     public void deactivatePhysics(World world) {}
 
-    public Vector2 getParallaxFactor() {
-        return parallaxFactor;
-    }
+    @Override
+    public UpdateTier getUpdateTier() { return UpdateTier.NONE; }
 
     @Override
     public void draw(GameCanvas canvas) {
-        int offsetX = (int) (canvas.getCameraX() * parallaxFactor.x) ;
-        int offsetY = (int) (canvas.getCameraY() * parallaxFactor.y);
+        addBackground(canvas);
+        canvas.drawBackgrounds();
+    }
 
-        canvas.draw(texture, -5000 + offsetX, -5000 + offsetY, 0, 0, 10000, 10000, 1.9f * drawScale.x, 1.9f * drawScale.y);
+    /**
+     * Adds this image to the background layers the canvas draws next.
+     *
+     * The image repeats forever, and moves with the camera by the parallax factor.
+     * Several layers added in a row are drawn together by GameCanvas.drawBackgrounds.
+     *
+     * @param canvas Drawing context
+     */
+    public void addBackground(GameCanvas canvas) {
+        int offsetX = (int) (canvas.getCameraX() * parallaxFactor.x);
+        int offsetY = (int) (canvas.getCameraY() * parallaxFactor.y);
+        // The same size and place as the copies of the image the old 10000 texel wide quad repeated
+        float width = texture.getWidth() * texture.getWidth() * TEXEL_SCALE * drawScale.x;
+        float height = texture.getHeight() * texture.getHeight() * TEXEL_SCALE * drawScale.y;
+        float top = -5000 + offsetY + texture.getHeight() * 1.9f * drawScale.y;
+        canvas.addBackground(texture, -5000 + offsetX, top - height, width, height);
     }
 
     @Override
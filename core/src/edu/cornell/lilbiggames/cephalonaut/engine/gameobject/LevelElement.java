@@ -8,20 +8,32 @@ import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.physics.box2d.Shape;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonValue;
-import com.badlogic.gdx.utils.ShortArray;
 import edu.cornell.lilbiggames.cephalonaut.assets.AssetDirectory;
 import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.elements.*;
 import edu.cornell.lilbiggames.cephalonaut.engine.obstacle.SimpleObstacle;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.ColliderCache;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelBlob;
 import edu.cornell.lilbiggames.cephalonaut.engine.parsing.Properties;
 import edu.cornell.lilbiggames.cephalonaut.util.FilmStrip;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
+
+import java.util.EnumMap;
+import java.util.Map;
 
 
 public class LevelElement extends SimpleObstacle {
-    /** Triangles for this element */
-    private PolygonShape[] triangles;
+    /** Convex collider pieces for this element */
+    private PolygonShape[] colliders;
+    /** Whether the collider pieces belong to this element rather than the ColliderCache */
+    private boolean ownsColliders;
 
     protected boolean inContact = false;
+    /** Number of player and grapple fixtures touching this element */
+    private int contacts;
+
+    /** Tile and Tiled position of a tile of a tile layer, or 0 if this is not one */
+    private long tileKey;
 
     public enum Element {
         GLASS_BARRIER,
@@ -50,13 +62,18 @@ public class LevelElement extends SimpleObstacle {
 
     /** Type of element **/
     private final Element element;
+    /** The properties the element was built from, or null */
+    private final Properties properties;
 
     /** Size of element, used for texture and polygon resizing purposes **/
     protected float width;
     protected float height;
 
     public static class Def {
+        /** The debug name, or null for a tile whose name is made from the fields below */
         public String name;
+        /** Key of a tile of a tile layer, see tileKey, used for its name */
+        public long tileKey;
         public float x, y, vx, vy;
         public float width, height;
         public float angle;
@@ -70,9 +87,23 @@ public class LevelElement extends SimpleObstacle {
         public Color tint;
 
         public float[] vertices;
+        /** Prebuilt collider shapes; if set, these are used instead of vertices */
+        public PolygonShape[] shapes;
+        /** Convex pieces of a collider of this element's own; if set, these are used instead of vertices */
+        public float[][] pieces;
         public TextureRegion texture;
         public TextureRegion triggerTexture;
         public Properties properties;
+
+        /**
+         * Names this as a tile, without formatting the name until something asks for it.
+         *
+         * @param key The tile's key, see tileKey
+         */
+        public void setTileName(long key) {
+            name = null;
+            tileKey = key;
+        }
     }
 
     protected LevelElement(Def def) {
@@ -80,10 +111,14 @@ public class LevelElement extends SimpleObstacle {
         setVX(def.vx);
         setVY(def.vy);
         setName(def.name);
+        if (def.name == null) {
+            tileKey = def.tileKey;
+        }
         setSize(def.width, def.height);
         setAngle(def.angle);
 
         element = def.element;
+        properties = def.properties;
         setDensity(def.density);
         setBodyType(def.bodyType);
         setRestitution(def.restitution);
@@ -91,98 +126,185 @@ public class LevelElement extends SimpleObstacle {
         setGrapple(def.canGrapple);
         setTint(def.tint);
 
-        setVertices(def.vertices);
+        if (def.shapes != null) {
+            // Shared with other instances of this tile, so never dispose these
+            colliders = def.shapes;
+        } else if (def.pieces != null) {
+            colliders = ColliderCache.toShapes(def.pieces);
+            ownsColliders = true;
+        } else {
+            setVertices(def.vertices);
+        }
         setTexture(def.texture);
     }
 
-    private static Texture sparksTexture, glassBarrierTexture,inkPackTexture;
-    private static Texture wormholeTexture,blackHoleTexture,electricSpiketexture,boostPadTexture,spikeTexture,spikeBallTexture,engineTexture,brokenEngineTexture;
-    private static Texture[] animationCache;
-    private static Texture bigButtonTrigger;
+    @Override
+    public String getName() {
+        String name = super.getName();
+        if (name == null && tileKey != 0) {
+            // Tiles are only named when debugging asks, there are thousands of them
+            int tile = tileTile(tileKey);
+            name = String.format("Tile %s #%d (%d, %d)", LevelBlob.tiledFile(tile), LevelBlob.tileId(tile),
+                    tileColumn(tileKey), tileRow(tileKey));
+            setName(name);
+        }
+        return name;
+    }
+
+    /** The film strip of each element that is drawn from one, by asset key */
+    private static final Map<Element, String> FILM_STRIPS = new EnumMap<>(Element.class);
+    static {
+        FILM_STRIPS.put(Element.WORMHOLE, "A-wormhole-filmstrip.png");
+        FILM_STRIPS.put(Element.BLACK_HOLE, "a:blackhole");
+        FILM_STRIPS.put(Element.BOOST_PAD, "GO-boostpad-filmstrip.png");
+        FILM_STRIPS.put(Element.ESPIKE, "electric-spikes.png");
+        FILM_STRIPS.put(Element.SPIKE, "GO-spikes-film.png");
+        FILM_STRIPS.put(Element.SPIKEBALL, "GO-spikeball-film.png");
+        FILM_STRIPS.put(Element.SPARKLE, "UI-target-sparkle.png");
+        FILM_STRIPS.put(Element.SPARKLEEND, "UI-target-sparkle.png");
+        FILM_STRIPS.put(Element.ENGINE, "engine_film.png");
+        FILM_STRIPS.put(Element.BROKEN_ENGINE, "engine_broken_film.png");
+        FILM_STRIPS.put(Element.GLASS_BARRIER, "GO-glass-filmstrip.png");
+        FILM_STRIPS.put(Element.REFILL, "inkPack-film.png");
+        FILM_STRIPS.put(Element.BIG_BUTTON, "big-button2.png");
+    }
+    /** Film strips of other elements with an "animation" property, by its textureNum */
+    private static final String[] ANIMATIONS = {
+            "A-alex.png", "A-angie.png", "A-estelle.png", "A-teddy.png",
+            "A-matias.png", "A-oliver.png", "A-barry.png", "Arrow-sheet.png"
+    };
+
+    private static final Map<Element, TextureRegion> filmStrips = new EnumMap<>(Element.class);
+    private static TextureRegion[] animationCache;
 
+    /**
+     * Gets the film strips of the elements.
+     *
+     * These are regions of the sprite atlas once it has been packed, so that the
+     * elements of a level are drawn without changing texture.
+     */
     public static void collectAssets(AssetDirectory assetDirectory){
-        wormholeTexture = assetDirectory.getEntry("A-wormhole-filmstrip.png",Texture.class);
-        wormholeTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        blackHoleTexture = assetDirectory.getEntry("a:blackhole",Texture.class);
-        blackHoleTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        boostPadTexture = assetDirectory.getEntry("GO-boostpad-filmstrip.png",Texture.class);
-        boostPadTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        electricSpiketexture = assetDirectory.getEntry("electric-spikes.png",Texture.class);
-        electricSpiketexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        spikeTexture = assetDirectory.getEntry("GO-spikes-film.png",Texture.class);
-        spikeTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        spikeBallTexture = assetDirectory.getEntry("GO-spikeball-film.png",Texture.class);
-        spikeBallTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        sparksTexture = assetDirectory.getEntry("UI-target-sparkle.png",Texture.class);
-        sparksTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        engineTexture = assetDirectory.getEntry("engine_film.png",Texture.class);
-        engineTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        brokenEngineTexture = assetDirectory.getEntry("engine_broken_film.png",Texture.class);
-        brokenEngineTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        glassBarrierTexture = assetDirectory.getEntry("GO-glass-filmstrip.png",Texture.class);
-        glassBarrierTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        inkPackTexture = assetDirectory.getEntry("inkPack-film.png",Texture.class);
-        inkPackTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        bigButtonTrigger = assetDirectory.getEntry("big-button2.png",Texture.class);
-        bigButtonTrigger.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-        animationCache = new Texture[8];
-        animationCache[0] = assetDirectory.getEntry("A-alex.png",Texture.class);
-        animationCache[1] = assetDirectory.getEntry("A-angie.png",Texture.class);
-        animationCache[2] = assetDirectory.getEntry("A-estelle.png",Texture.class);
-        animationCache[3] = assetDirectory.getEntry("A-teddy.png",Texture.class);
-        animationCache[4] = assetDirectory.getEntry("A-matias.png",Texture.class);
-        animationCache[5] = assetDirectory.getEntry("A-oliver.png",Texture.class);
-        animationCache[6] = assetDirectory.getEntry("A-barry.png",Texture.class);
-        animationCache[7] = assetDirectory.getEntry("Arrow-sheet.png",Texture.class);
-        for(int i = 0;i<8;i++){
-            animationCache[i].setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+        for (Map.Entry<Element, String> entry : FILM_STRIPS.entrySet()) {
+            filmStrips.put(entry.getKey(), getSprite(assetDirectory, entry.getValue()));
+        }
+        animationCache = new TextureRegion[ANIMATIONS.length];
+        for (int i = 0; i < ANIMATIONS.length; i++) {
+            animationCache[i] = getSprite(assetDirectory, ANIMATIONS[i]);
+        }
+    }
+
+    /**
+     * Returns the asset key of the film strip an element is drawn from.
+     *
+     * This is what create() draws the element with, for tools that need to know
+     * without loading any textures.
+     *
+     * @param element    The type of element
+     * @param properties The element's properties
+     *
+     * @return the film strip's asset key, or null if the element is drawn from its tile
+     */
+    public static String getFilmStrip(Element element, Properties properties) {
+        if (FILM_STRIPS.containsKey(element)) {
+            return FILM_STRIPS.get(element);
+        }
+        switch (element) {
+            case DOOR:
+            case BUTTON:
+            case DIALOGUE_TRIGGER:
+            case START:
+                return null;
+            default:
+                if (properties.get("animation") == null) return null;
+                return ANIMATIONS[properties.getInt("animation", "textureNum", 0)];
         }
     }
 
+    private static TextureRegion getSprite(AssetDirectory assetDirectory, String key) {
+        TextureRegion sprite = assetDirectory.getEntry(key, TextureRegion.class);
+        sprite.getTexture().setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+        return sprite;
+    }
+
     public static LevelElement create(Def def) {
         switch (def.element) {
             case BLACK_HOLE:
-                return new LEBlackHole(def, new FilmStrip(blackHoleTexture, 1, 8));
+                return new LEBlackHole(def, new FilmStrip(filmStrips.get(Element.BLACK_HOLE), 1, 8));
             case BOOST_PAD:
-                return new LEBoostPad(def, new FilmStrip(boostPadTexture,1,7));
+                return new LEBoostPad(def, new FilmStrip(filmStrips.get(Element.BOOST_PAD),1,7));
             case DOOR:
                 return new LETriggerable(def);
             case BUTTON:
                 return new LETrigger(def);
             case BIG_BUTTON:
-                return new LETrigger(def,new FilmStrip(bigButtonTrigger,1,1));
+                return new LETrigger(def,new FilmStrip(filmStrips.get(Element.BIG_BUTTON),1,1));
             case WORMHOLE:
-                return new LEWormHole(def, new FilmStrip(wormholeTexture,1,24));
+                return new LEWormHole(def, new FilmStrip(filmStrips.get(Element.WORMHOLE),1,24));
             case GLASS_BARRIER:
-                return new LEGlassBarrier(def, new FilmStrip(glassBarrierTexture, 1, 13));
+                return new LEGlassBarrier(def, new FilmStrip(filmStrips.get(Element.GLASS_BARRIER), 1, 13));
             case DIALOGUE_TRIGGER:
                 return new LEDialogueTrigger(def);
             case START:
                 return new LEStart(def);
             case ESPIKE:
-                return new LEAnimated(def,new FilmStrip(electricSpiketexture,1,8),7, false);
+                return new LEAnimated(def,new FilmStrip(filmStrips.get(Element.ESPIKE),1,8),7, false);
             case SPIKE:
-                return new LEAnimated(def,new FilmStrip(spikeTexture,1,9),7, false);
+                return new LEAnimated(def,new FilmStrip(filmStrips.get(Element.SPIKE),1,9),7, false);
             case SPARKLE:
-                return new LEAnimated(def,new FilmStrip(sparksTexture,1,6),5, true);
+                return new LEAnimated(def,new FilmStrip(filmStrips.get(Element.SPARKLE),1,6),5, true);
             case SPARKLEEND:
-                return new LEAnimated(def,new FilmStrip(sparksTexture,1,6),4, false);
+                return new LEAnimated(def,new FilmStrip(filmStrips.get(Element.SPARKLEEND),1,6),4, false);
             case SPIKEBALL:
-                return new LEAnimated(def,new FilmStrip(spikeBallTexture,1,7),7, false);
+                return new LEAnimated(def,new FilmStrip(filmStrips.get(Element.SPIKEBALL),1,7),7, false);
             case ENGINE:
-                return new LEAnimated(def,new FilmStrip(engineTexture,1,6),5,false);
+                return new LEAnimated(def,new FilmStrip(filmStrips.get(Element.ENGINE),1,6),5,false);
             case BROKEN_ENGINE:
-                return new LEAnimated(def,new FilmStrip(brokenEngineTexture,1,6),5,false);
+                return new LEAnimated(def,new FilmStrip(filmStrips.get(Element.BROKEN_ENGINE),1,6),5,false);
             case REFILL:
-                return new LEInkPack(def,new FilmStrip(inkPackTexture,2,5));
+                return new LEInkPack(def,new FilmStrip(filmStrips.get(Element.REFILL),2,5));
             default:
-                JsonValue anim = def.properties.get("animation");
-                if(anim!=null)
-                    return new LEAnimated(def, new FilmStrip(animationCache[anim.getInt("textureNum",0)],anim.getInt("rows",1),anim.getInt("cols",1)),anim.getFloat("update",7f),false);
+                Properties props = def.properties;
+                if(props.get("animation")!=null)
+                    return new LEAnimated(def, new FilmStrip(animationCache[props.getInt("animation","textureNum",0)],props.getInt("animation","rows",1),props.getInt("animation","cols",1)),props.getFloat("animation","update",7f),false);
                 return new LevelElement(def);
         }
     }
 
+    /**
+     * Returns whether create() makes a plain LevelElement, with no behaviour of its own.
+     *
+     * This must agree with create(); tile layers only keep plain tiles as keys.
+     *
+     * @param element    The type of element
+     * @param properties The element's properties
+     *
+     * @return whether the element would be a plain LevelElement
+     */
+    public static boolean isPlain(Element element, Properties properties) {
+        switch (element) {
+            case BLACK_HOLE:
+            case BOOST_PAD:
+            case DOOR:
+            case BUTTON:
+            case BIG_BUTTON:
+            case WORMHOLE:
+            case GLASS_BARRIER:
+            case DIALOGUE_TRIGGER:
+            case START:
+            case ESPIKE:
+            case SPIKE:
+            case SPARKLE:
+            case SPARKLEEND:
+            case SPIKEBALL:
+            case ENGINE:
+            case BROKEN_ENGINE:
+            case REFILL:
+                return false;
+            default:
+                return properties.get("animation") == null;
+        }
+    }
+
     private void updateScale() {
         if (texture == null) return;
         setTextureScaleX(drawScale.x * width / texture.getRegionWidth());
@@ -200,9 +322,18 @@ public class LevelElement extends SimpleObstacle {
         return inContact;
     }
 
+    /**
+     * Records a contact with this element starting or ending.
+     *
+     * Contacts are counted, so that with several players the element stays in
+     * contact until the last of them has left.
+     *
+     * @param inContact Whether a contact started rather than ended
+     */
     public void setInContact(boolean inContact) {
         boolean wasInContact = this.inContact;
-        this.inContact = inContact;
+        contacts = inContact ? contacts + 1 : Math.max(contacts - 1, 0);
+        this.inContact = contacts > 0;
         if (!wasInContact && this.inContact) contacted();
     }
 
@@ -217,27 +348,110 @@ public class LevelElement extends SimpleObstacle {
         return element;
     }
 
-    final static EarClippingTriangulator triangulator = new EarClippingTriangulator();
+    /**
+     * Returns what identifies a tile of a tile layer: its tile and position.
+     *
+     * @return the tile's key, or 0 if this element is not a tile of a tile layer
+     */
+    public long getTileKey() {
+        return tileKey;
+    }
+
+    /**
+     * Packs a tile of a tile layer and its position into one value.
+     *
+     * Tile layers keep their plain tiles as these until they are needed, and hot
+     * reloading matches tiles by them.  The tile is the one of its tileset rather
+     * than its global id, so that a tile keeps its key if the level's tilesets are
+     * listed in another order.
+     *
+     * @param tile The tile, packed as in LevelBlob.pack
+     * @param x    The tile's Tiled column
+     * @param y    The tile's Tiled row
+     *
+     * @return the tile's key, which is never 0
+     */
+    public static long tileKey(int tile, int x, int y) {
+        return (long) tile << 32 | (x & 0xffffL) << 16 | (y & 0xffffL);
+    }
+
+    /** Returns the tile of a tile key, packed as in LevelBlob.pack */
+    public static int tileTile(long key) {
+        return (int) (key >>> 32);
+    }
+
+    /** Returns the Tiled column of a tile key */
+    public static int tileColumn(long key) {
+        return (int) (key >>> 16) & 0xffff;
+    }
+
+    /** Returns the Tiled row of a tile key */
+    public static int tileRow(long key) {
+        return (int) key & 0xffff;
+    }
+
+    /**
+     * Returns whether another element was built from the same definition, except
+     * for where it is.
+     *
+     * Everything else an element is made from comes from its properties, its tile
+     * and its size, and only its position and angle can be changed once it is built.
+     * Animated elements each get a film strip of their own, so those are compared
+     * by the frames they are cut from.
+     *
+     * @param other The element to compare with
+     *
+     * @return whether the other element is this one, maybe somewhere else
+     */
+    public boolean sameKind(LevelElement other) {
+        return getClass() == other.getClass() && element == other.element
+                && width == other.width && height == other.height
+                && sameTexture(texture, other.texture)
+                && (properties == null ? other.properties == null : properties.sameAs(other.properties));
+    }
+
+    private static boolean sameTexture(TextureRegion a, TextureRegion b) {
+        if (a == b) return true;
+        return a instanceof FilmStrip && b instanceof FilmStrip && ((FilmStrip) a).sameStrip((FilmStrip) b);
+    }
+
+    /**
+     * Plain level elements only change through physics, so they are never ticked.
+     * Their fixtures are built when the body is activated, and the scheduler ticks
+     * them once more whenever they are marked dirty.
+     */
+    @Override
+    public UpdateTier getUpdateTier() {
+        return UpdateTier.NONE;
+    }
+
+    @Override
+    public float getBoundingRadius() {
+        // Half the diagonal, so that rotated elements are still covered
+        return 0.5f * (float) Math.sqrt(width * width + height * height);
+    }
+
     private void setVertices(float[] vertices) {
         if (vertices == null) {
-            triangles = new PolygonShape[0];
+            colliders = new PolygonShape[0];
             return;
         }
 
-        // Triangulation of n-vertex polygons into 3-vertex triangles
+        // Decomposition of n-vertex polygons into convex pieces of at most 8 vertices
         // For performance reasons and because box2d throws a hissy fit whenever we use polygons with over 8 vertices
-        ShortArray tris = triangulator.computeTriangles(vertices);
-        triangles = new PolygonShape[tris.size / 3];
-        for (int i = 0; i < tris.size; i += 3) {
-            float[] tri_vertices = new float[] {
-                    vertices[2 * tris.get(i    )], vertices[2 * tris.get(i    ) + 1],
-                    vertices[2 * tris.get(i + 1)], vertices[2 * tris.get(i + 1) + 1],
-                    vertices[2 * tris.get(i + 2)], vertices[2 * tris.get(i + 2) + 1]
-            };
-            PolygonShape poly = new PolygonShape();
-            poly.set(tri_vertices);
-            triangles[i / 3] = poly;
+        colliders = ColliderCache.decompose(vertices);
+        ownsColliders = true;
+    }
+
+    @Override
+    public void dispose() {
+        if (!ownsColliders) return;
+        for (PolygonShape shape : colliders) {
+            ResourceTracker.release(shape);
+            shape.dispose();
         }
+        colliders = new PolygonShape[0];
+        ownsColliders = false;
     }
 
     public void setTexture(TextureRegion value) {
@@ -264,7 +478,7 @@ public class LevelElement extends SimpleObstacle {
         releaseFixtures();
 
         // Create the fixtures
-        for (Shape shape : triangles) {
+        for (Shape shape : colliders) {
             fixture.shape = shape;
             body.createFixture(fixture);
         }
@@ -292,8 +506,8 @@ public class LevelElement extends SimpleObstacle {
     public void drawDebug(GameCanvas canvas) {
         float offsetX = canvas.getCameraX() * parallaxFactor.x / drawScale.x;
         float offsetY = canvas.getCameraY() * parallaxFactor.y / drawScale.y;
-        for (PolygonShape tri : triangles) {
-            canvas.drawPhysics(tri,Color.YELLOW,getX() + offsetX,getY() + offsetY,getAngle(),drawScale.x,drawScale.y);
+        for (PolygonShape piece : colliders) {
+            canvas.drawPhysics(piece,Color.YELLOW,getX() + offsetX,getY() + offsetY,getAngle(),drawScale.x,drawScale.y);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,513 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.gameobject;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.LongArray;
+import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A band of rows of a tile layer, split into square chunks of plain tiles.
+ *
+ * A chunk is kept as the tile keys of its tiles, see LevelElement.tileKey, and
+ * its LevelElements are only built once it comes near a camera or a player; see
+ * ChunkStreamer.  They are built on the streamer's worker thread where there is
+ * time, and put into the world on the game thread.  Once the chunk is far away
+ * again its elements are dropped.  The band takes the place of its tiles in the
+ * level's draw order.
+ *
+ * The tiles never move, so each chunk is recorded into a sprite cache the first
+ * time it is drawn and then drawn from the cache.  A chunk costs a draw call per
+ * texture and nothing per tile.  The cache is given back when the chunk's tiles
+ * are dropped, so only the chunks near the players take up cache space.
+ */
+public class TileBand extends GameObject {
+    /** Width and height of a chunk, in tiles */
+    public static final int CHUNK_SIZE = 16;
+
+    /** Builds the elements of plain tiles from their keys */
+    public interface TileFactory {
+        /**
+         * Builds a plain static tile.
+         *
+         * This is called on the streamer's worker thread, so it must not touch the world.
+         *
+         * @param key The tile's key, see LevelElement.tileKey
+         *
+         * @return the tile, with no body yet
+         */
+        LevelElement create(long key);
+    }
+
+    private static class Chunk {
+        /** The key of each tile of the chunk, kept in order so it lines up with tiles */
+        final LongArray keys = new LongArray(true, 16);
+        /** The tiles built from the keys, in the same order, or null if they are not built */
+        Array<LevelElement> tiles;
+        /** The tiles being built on the worker, or null */
+        Future<Array<LevelElement>> building;
+        /** The area the chunk's tiles cover, in physics units */
+        final Rectangle bounds;
+        boolean loaded;
+        /** The chunk's sprite cache, or -1 if it has none */
+        int cache = -1;
+        /** The canvas cache generation the cache belongs to */
+        int generation;
+        /** Whether the cache must be recorded again before it is drawn */
+        boolean stale = true;
+
+        Chunk(Rectangle bounds) {
+            this.bounds = bounds;
+        }
+    }
+
+    private final Chunk[] chunks;
+    /** Chunks whose tiles are in the world */
+    private final Array<Chunk> loaded = new Array<>();
+    /** Chunks whose tiles are built or being built */
+    private final Array<Chunk> built = new Array<>();
+    /** The area the whole band covers, in physics units */
+    private final Rectangle bounds;
+    /** The layer of the level the band is from, counting from 0 */
+    private final int layer;
+    private final TileFactory factory;
+    private int tileCount;
+    /** The area the camera sees, in physics units */
+    private final Rectangle view = new Rectangle();
+    /** Whether chunks off screen are skipped */
+    private boolean culling = true;
+    private int drawnCount;
+    /** Chunks drawn tile by tile the last time the band was drawn, for want of cache room */
+    private int uncachedCount;
+    /** Told when a tile needs new fixtures, as tiles are not ticked on their own */
+    private DirtyListener tileListener;
+    /** The canvas the chunks' caches were recorded in, to give them back to */
+    private GameCanvas cacheCanvas;
+
+    /**
+     * Creates an empty band.
+     *
+     * @param layer   The layer of the level the band is from
+     * @param width   The width of the layer, in tiles
+     * @param bottom  The y coordinate of the band's lowest row, in physics units
+     * @param height  The number of rows in the band
+     * @param factory Builds the band's tiles when they are needed
+     */
+    public TileBand(int layer, int width, int bottom, int height, TileFactory factory) {
+        this.layer = layer;
+        this.factory = factory;
+        // Tiles are centered on their coordinates
+        bounds = new Rectangle(-0.5f, bottom - 0.5f, width, height);
+        chunks = new Chunk[(width + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Chunk(new Rectangle(i * CHUNK_SIZE - 0.5f, bottom - 0.5f,
+                    Math.min(CHUNK_SIZE, width - i * CHUNK_SIZE), height));
+        }
+    }
+
+    /**
+     * Adds a tile to the chunk of its column, while the level is being built.
+     *
+     * @param key The tile's key; the tile must be plain and static
+     */
+    public void add(long key) {
+        chunks[LevelElement.tileColumn(key) / CHUNK_SIZE].keys.add(key);
+        tileCount++;
+    }
+
+    /**
+     * Adds a tile to a band in play, building it at once if its chunk is built.
+     *
+     * @param world The world of the level
+     * @param key   The tile's key; the tile must be plain and static
+     */
+    public void add(World world, long key) {
+        Chunk chunk = chunks[LevelElement.tileColumn(key) / CHUNK_SIZE];
+        cancel(chunk);
+        chunk.keys.add(key);
+        if (chunk.tiles != null) {
+            LevelElement tile = prepare(factory.create(key));
+            chunk.tiles.add(tile);
+            if (chunk.loaded) tile.activatePhysics(world);
+        }
+        chunk.stale = true;
+        tileCount++;
+    }
+
+    /**
+     * Takes a tile out of the band, and out of the world if its chunk is loaded.
+     *
+     * @param world The world of the level
+     * @param key   The tile's key
+     *
+     * @return whether the tile was in this band
+     */
+    public boolean remove(World world, long key) {
+        int column = LevelElement.tileColumn(key) / CHUNK_SIZE;
+        if (column >= chunks.length) return false;
+        Chunk chunk = chunks[column];
+        int index = chunk.keys.indexOf(key);
+        if (index < 0) return false;
+
+        cancel(chunk);
+        chunk.keys.removeIndex(index);
+        if (chunk.tiles != null) {
+            LevelElement tile = chunk.tiles.removeIndex(index);
+            if (chunk.loaded) tile.deactivatePhysics(world);
+            tile.dispose();
+        }
+        chunk.stale = true;
+        tileCount--;
+        return true;
+    }
+
+    /**
+     * Returns whether another band is the same rows of the same layer.
+     *
+     * @param other The band to compare with
+     *
+     * @return whether the other band is this one, maybe with other tiles
+     */
+    public boolean sameRows(TileBand other) {
+        return layer == other.layer && bounds.equals(other.bounds);
+    }
+
+    /**
+     * Sets the listener told whenever the band or one of its tiles becomes dirty.
+     *
+     * @param listener The listener, or null for none
+     */
+    @Override
+    public void setDirtyListener(DirtyListener listener) {
+        super.setDirtyListener(listener);
+        tileListener = listener;
+        for (int i = 0; i < built.size; i++) {
+            Array<LevelElement> tiles = built.get(i).tiles;
+            if (tiles == null) continue;
+            for (int j = 0; j < tiles.size; j++) {
+                tiles.get(j).setDirtyListener(listener);
+            }
+        }
+    }
+
+    /**
+     * Adds the key of every tile of the band, built or not, to an array.
+     *
+     * @param keys The array to add to
+     */
+    public void getTileKeys(LongArray keys) {
+        for (Chunk chunk : chunks) {
+            keys.addAll(chunk.keys);
+        }
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    public int getChunkCount() {
+        return chunks.length;
+    }
+
+    public int getLoadedCount() {
+        return loaded.size;
+    }
+
+    /** Returns the number of chunks drawn the last time the band was drawn */
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+
+    /** Returns the number of chunks drawn tile by tile the last time the band was drawn */
+    public int getUncachedCount() {
+        return uncachedCount;
+    }
+
+    /**
+     * Sets whether loaded chunks off screen are skipped when drawing.
+     *
+     * Only turned off to measure what culling saves.
+     *
+     * @param value Whether to cull
+     */
+    public void setCulling(boolean value) {
+        culling = value;
+    }
+
+    /**
+     * Puts the chunks near the given areas into the world, and takes the rest out.
+     *
+     * A chunk is loaded once it overlaps one of the near areas, and unloaded once
+     * it overlaps none of the far ones, so that a chunk on the edge does not go in
+     * and out every frame.  Chunks overlapping the areas ahead, which cover the far
+     * ones, are built on the worker before they are needed; the rest are dropped.
+     * A chunk that is needed before the worker has built it is waited for.
+     *
+     * @param world    The world of the level
+     * @param near     Areas whose chunks must be loaded, in physics units
+     * @param far      The areas grown by the unload margin
+     * @param ahead    The areas whose chunks are built ahead of time
+     * @param count    The number of areas in use
+     * @param executor Builds chunks ahead of time, or null to build them when loaded
+     */
+    public void stream(World world, Array<Rectangle> near, Array<Rectangle> far, Array<Rectangle> ahead,
+                       int count, ExecutorService executor) {
+        if (built.size == 0 && !overlaps(bounds, ahead, count)) return;
+
+        for (Chunk chunk : chunks) {
+            if (chunk.keys.size == 0 && chunk.tiles == null) continue;
+            if (!overlaps(chunk.bounds, ahead, count)) {
+                if (chunk.loaded) {
+                    unload(world, chunk);
+                    loaded.removeValue(chunk, true);
+                }
+                free(chunk);
+            } else if (!chunk.loaded && overlaps(chunk.bounds, near, count)) {
+                build(chunk);
+                for (int i = 0; i < chunk.tiles.size; i++) {
+                    chunk.tiles.get(i).activatePhysics(world);
+                }
+                chunk.loaded = true;
+                loaded.add(chunk);
+            } else if (chunk.loaded && !overlaps(chunk.bounds, far, count)) {
+                unload(world, chunk);
+                loaded.removeValue(chunk, true);
+            } else if (chunk.tiles == null && chunk.building == null && executor != null) {
+                final long[] keys = chunk.keys.toArray();
+                chunk.building = executor.submit(new Callable<Array<LevelElement>>() {
+                    @Override
+                    public Array<LevelElement> call() {
+                        return create(keys);
+                    }
+                });
+                built.add(chunk);
+            }
+        }
+    }
+
+    private static boolean overlaps(Rectangle bounds, Array<Rectangle> areas, int count) {
+        for (int i = 0; i < count; i++) {
+            if (bounds.overlaps(areas.get(i))) return true;
+        }
+        return false;
+    }
+
+    /** Builds the tiles of some keys, on whichever thread asks */
+    private Array<LevelElement> create(long[] keys) {
+        Array<LevelElement> tiles = new Array<>(keys.length);
+        for (long key : keys) {
+            tiles.add(factory.create(key));
+        }
+        return tiles;
+    }
+
+    /** Sets up a tile built from its key as the other tiles of the band are */
+    private LevelElement prepare(LevelElement tile) {
+        tile.setDrawScale(drawScale);
+        tile.setActive(isActive());
+        tile.setDirtyListener(tileListener);
+        return tile;
+    }
+
+    /** Makes sure the tiles of a chunk are built, waiting for the worker if it has them */
+    private void build(Chunk chunk) {
+        if (chunk.tiles != null) return;
+
+        Array<LevelElement> tiles = null;
+        if (chunk.building != null) {
+            try {
+                tiles = chunk.building.get();
+            } catch (ExecutionException e) {
+                throw new GdxRuntimeException("Could not build chunk", e.getCause());
+            } catch (InterruptedException e) {
+                // Build it here instead; the interrupt is for whoever asked
+                Thread.currentThread().interrupt();
+            }
+            chunk.building = null;
+        } else {
+            built.add(chunk);
+        }
+        if (tiles == null) tiles = create(chunk.keys.toArray());
+
+        for (int i = 0; i < tiles.size; i++) {
+            prepare(tiles.get(i));
+        }
+        chunk.tiles = tiles;
+        chunk.stale = true;
+    }
+
+    /** Drops the tiles of a chunk that is out of the world, or stops them being built */
+    private void free(Chunk chunk) {
+        releaseCache(chunk);
+        if (chunk.tiles == null && chunk.building == null) return;
+        cancel(chunk);
+        if (chunk.tiles != null) {
+            for (int i = 0; i < chunk.tiles.size; i++) {
+                chunk.tiles.get(i).dispose();
+            }
+            chunk.tiles = null;
+        }
+        built.removeValue(chunk, true);
+    }
+
+    /** Stops building a chunk whose keys are about to change; it is built again when needed */
+    private void cancel(Chunk chunk) {
+        if (chunk.building == null) return;
+        chunk.building.cancel(false);
+        chunk.building = null;
+        if (chunk.tiles == null) built.removeValue(chunk, true);
+    }
+
+    /** Gives a chunk's cache back to the canvas, for another chunk to record over */
+    private void releaseCache(Chunk chunk) {
+        if (chunk.cache < 0) return;
+        cacheCanvas.releaseCache(chunk.cache, chunk.generation);
+        chunk.cache = -1;
+        chunk.stale = true;
+    }
+
+    private static void unload(World world, Chunk chunk) {
+        for (int i = 0; i < chunk.tiles.size; i++) {
+            chunk.tiles.get(i).deactivatePhysics(world);
+        }
+        chunk.loaded = false;
+    }
+
+    /** Chunks are put into the world by the streamer, not when the band is added */
+    @Override
+    public boolean activatePhysics(World world) {
+        return true;
+    }
+
+    @Override
+    public void deactivatePhysics(World world) {
+        for (int i = 0; i < loaded.size; i++) {
+            unload(world, loaded.get(i));
+        }
+        loaded.clear();
+        for (Chunk chunk : chunks) {
+            free(chunk);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        for (Chunk chunk : chunks) {
+            free(chunk);
+        }
+    }
+
+    @Override
+    public UpdateTier getUpdateTier() {
+        return UpdateTier.NONE;
+    }
+
+    @Override
+    public void setActive(boolean value) {
+        super.setActive(value);
+        for (int i = 0; i < built.size; i++) {
+            Array<LevelElement> tiles = built.get(i).tiles;
+            if (tiles == null) continue;
+            for (int j = 0; j < tiles.size; j++) {
+                tiles.get(j).setActive(value);
+            }
+        }
+    }
+
+    @Override
+    public void setDrawScale(float x, float y) {
+        super.setDrawScale(x, y);
+        for (Chunk chunk : chunks) {
+            if (chunk.tiles != null) {
+                for (int i = 0; i < chunk.tiles.size; i++) {
+                    chunk.tiles.get(i).setDrawScale(drawScale);
+                }
+            }
+            chunk.stale = true;
+        }
+    }
+
+    /**
+     * Draws the loaded chunks on screen, from their caches where possible.
+     *
+     * A chunk is only drawn tile by tile if the chunks near the players hold more
+     * tiles than all of the canvas's caches together.
+     */
+    @Override
+    public void draw(GameCanvas canvas) {
+        // A tile at x is drawn at x * scale + camera * parallax
+        float halfWidth = canvas.getWidth() / 2f / drawScale.x;
+        float halfHeight = canvas.getHeight() / 2f / drawScale.y;
+        view.set(canvas.getCameraX() * (1 - parallaxFactor.x) / drawScale.x - halfWidth,
+                canvas.getCameraY() * (1 - parallaxFactor.y) / drawScale.y - halfHeight,
+                2 * halfWidth, 2 * halfHeight);
+
+        float offsetX = canvas.getCameraX() * parallaxFactor.x;
+        float offsetY = canvas.getCameraY() * parallaxFactor.y;
+        boolean caching = false;
+        drawnCount = 0;
+        uncachedCount = 0;
+        for (int i = 0; i < loaded.size; i++) {
+            Chunk chunk = loaded.get(i);
+            if (culling && !chunk.bounds.overlaps(view)) continue;
+
+            if (chunk.cache >= 0 && chunk.generation != canvas.getCacheGeneration()) {
+                // The caches were cleared, and the id may now be another chunk's
+                chunk.cache = -1;
+                chunk.stale = true;
+            }
+            if (chunk.stale) {
+                if (caching) canvas.endCaches();
+                caching = false;
+                record(canvas, chunk);
+            }
+            if (chunk.cache >= 0) {
+                if (!caching) canvas.beginCaches(offsetX, offsetY);
+                caching = true;
+                canvas.drawCache(chunk.cache);
+            } else {
+                if (caching) canvas.endCaches();
+                caching = false;
+                uncachedCount++;
+                for (int j = 0; j < chunk.tiles.size; j++) {
+                    chunk.tiles.get(j).draw(canvas);
+                }
+            }
+            drawnCount++;
+        }
+        if (caching) canvas.endCaches();
+    }
+
+    private void record(GameCanvas canvas, Chunk chunk) {
+        cacheCanvas = canvas;
+        chunk.stale = false;
+        if (!canvas.beginCache(chunk.cache, chunk.tiles.size)) {
+            if (chunk.cache < 0) return;
+            // The chunk has grown past its cache, so it gets a new one
+            releaseCache(chunk);
+            chunk.stale = false;
+            if (!canvas.beginCache(-1, chunk.tiles.size)) return;
+        }
+        for (int i = 0; i < chunk.tiles.size; i++) {
+            chunk.tiles.get(i).cache(canvas);
+        }
+        chunk.cache = canvas.endCache();
+        chunk.generation = canvas.getCacheGeneration();
+    }
+
+    @Override
+    public void drawDebug(GameCanvas canvas) {
+        for (int i = 0; i < loaded.size; i++) {
+            Array<LevelElement> tiles = loaded.get(i).tiles;
+            for (int j = 0; j < tiles.size; j++) {
+                tiles.get(j).drawDebug(canvas);
+            }
+        }
+    }
+}
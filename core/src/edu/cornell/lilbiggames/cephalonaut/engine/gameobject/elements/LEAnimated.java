@@ -21,12 +21,15 @@ public class LEAnimated extends LevelElement {
         this.updateFactor = updateFactor;
     }
 
+    @Override
+    public UpdateTier getUpdateTier() {
+        return UpdateTier.VISIBLE;
+    }
+
     @Override
     public void update(float delta) {
-        frame += delta * updateFactor;
-        if (frame >= filmStrip.getSize()) {
-            frame = 0;
-        }
+        // delta may cover many frames if we were off screen, so wrap instead of reset
+        frame = (frame + delta * updateFactor) % filmStrip.getSize();
         filmStrip.setFrame((int) frame);
     }
 }
@@ -28,6 +28,22 @@ public class LEBlackHole extends LevelElement {
     public float getBlackHoleAttractFactor() { return blackHoleAttractFactor; }
     public float getBlackHoleRange() { return blackHoleRange; }
 
+    @Override
+    public float getBoundingRadius() {
+        // The outline and the warp shader reach out to the whole range
+        return Math.max(super.getBoundingRadius(), blackHoleRange);
+    }
+
+    @Override
+    public UpdateTier getUpdateTier() {
+        return UpdateTier.TIMER;
+    }
+
+    @Override
+    public float getUpdateInterval() {
+        return 1 / 7.0f;
+    }
+
     @Override
     public void update(float delta) {
         time += 7.0f * delta;
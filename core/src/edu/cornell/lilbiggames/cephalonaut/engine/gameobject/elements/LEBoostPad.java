@@ -32,11 +32,14 @@ public class LEBoostPad extends LevelElement {
     public float getBoostPadFactor() { return boostPadFactor; }
     public float getBoostPadAngle() { return boostPadAngle; }
 
+    @Override
+    public UpdateTier getUpdateTier() {
+        return UpdateTier.VISIBLE;
+    }
+
     @Override
     public void update(float delta){
-        frame += delta*7f;
-        if(frame>=filmStrip.getSize())
-            frame =0;
+        frame = (frame + delta*7f) % filmStrip.getSize();
         filmStrip.setFrame((int)frame);
     }
 
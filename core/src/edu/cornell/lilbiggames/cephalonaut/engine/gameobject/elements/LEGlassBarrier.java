@@ -41,6 +41,12 @@ public class LEGlassBarrier extends LevelElement {
         }
     }
 
+    @Override
+    public UpdateTier getUpdateTier() {
+        // The break animation removes the barrier when it ends, even off screen
+        return UpdateTier.ALWAYS;
+    }
+
     @Override
     public void update(float delta){
         if(isAnimating) {
@@ -22,13 +22,15 @@ public class LEInkPack extends LevelElement {
         this.markRemoved(true);
     }
 
+    @Override
+    public UpdateTier getUpdateTier() {
+        return UpdateTier.VISIBLE;
+    }
+
     @Override
     public void update(float delta) {
         if (frame<6f) {
-            frame += delta * updateFactor;
-            if (frame >= 6) {
-                frame = 0;
-            }
+            frame = (frame + delta * updateFactor) % 6f;
         }
         else{
             frame += delta * updateFactor;
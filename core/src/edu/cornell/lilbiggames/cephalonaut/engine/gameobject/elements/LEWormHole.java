@@ -38,11 +38,14 @@ public class LEWormHole extends LevelElement {
 
     public int getWormHoleCooldown() { return WORMHOLE_COOLDOWN; }
 
+    @Override
+    public UpdateTier getUpdateTier() {
+        return UpdateTier.VISIBLE;
+    }
+
     @Override
     public void update(float delta){
-        frame += delta*7f;
-        if(frame>=filmStrip.getSize())
-            frame =0;
+        frame = (frame + delta*7f) % filmStrip.getSize();
         filmStrip.setFrame((int)frame);
     }
 
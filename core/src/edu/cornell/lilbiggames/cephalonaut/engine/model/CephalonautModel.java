@@ -11,8 +11,6 @@
 package edu.cornell.lilbiggames.cephalonaut.engine.model;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.math.Affine2;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.World;
@@ -34,9 +32,6 @@ public class CephalonautModel extends OctopusObstacle {
 	/** The cephalonaut's grapple tentacle */
 	private GrappleModel grapple;
 
-	/** The tentacle's texture */
-	private Texture tentacleTexture;
-
 	/** The Filmstrip for the cephalonaut*/
 	private FilmStrip filmstrip;
 
@@ -176,10 +171,6 @@ public class CephalonautModel extends OctopusObstacle {
 		this.max_ink = max_ink;
 		ink = max_ink;
 		frame = 0;
-		Pixmap pixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
-		pixmap.setColor(Color.WHITE);
-		pixmap.fillRectangle(0, 0, 1, 1);
-		tentacleTexture = new Texture(pixmap);
 		deathScale = 1;
 
 		// Matias: I don't think this line of code matters bc it's being overwritten by the setTexture call
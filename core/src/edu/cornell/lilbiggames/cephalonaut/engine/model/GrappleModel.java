@@ -1,14 +1,11 @@
 package edu.cornell.lilbiggames.cephalonaut.engine.model;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
 import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
+import edu.cornell.lilbiggames.cephalonaut.engine.RopeRenderer;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.GameObject;
 import edu.cornell.lilbiggames.cephalonaut.engine.obstacle.Obstacle;
 import edu.cornell.lilbiggames.cephalonaut.engine.obstacle.WheelObstacle;
@@ -50,9 +47,17 @@ public class GrappleModel extends WheelObstacle {
      */
     public Vector2 vertex;
     /**
-     * The grapple's texture
+     * Width of the tentacle, in physics units
      */
-    private Texture texture;
+    private static final float TENTACLE_WIDTH = 0.09f;
+    /**
+     * Colour of the tentacle
+     */
+    private static final Color TENTACLE_COLOR = Color.valueOf("ff9947");
+    /**
+     * Draws the tentacle out to the grapple, and back in along the retraction vertex
+     */
+    private final RopeRenderer tentacle;
 
     public GrappleModel(float x, float y, Vector2 drawScale) {
         // The shrink factors fit the image to a tighter hitbox
@@ -64,14 +69,7 @@ public class GrappleModel extends WheelObstacle {
         setSensor(true);
         setBullet(true);
 
-        int pixDiameter = 5;
-        Pixmap pixmap = new Pixmap(pixDiameter, pixDiameter, Pixmap.Format.RGBA8888);
-        pixmap.setColor(Color.valueOf("ff9947"));
-        pixmap.fillRectangle(0,0,pixDiameter , pixDiameter);
-        texture = (new Texture(pixmap));
-        pixmap.dispose();
-        origin.set(pixDiameter / 2f, pixDiameter / 2f);
-        texture.setFilter(Texture.TextureFilter.Nearest,Texture.TextureFilter.Nearest);
+        tentacle = new RopeRenderer(TENTACLE_WIDTH, TENTACLE_COLOR);
 
         isOut = false;
         isGrappling = false;
@@ -101,6 +99,15 @@ public class GrappleModel extends WheelObstacle {
         return super.activatePhysics(world);
     }
 
+    /**
+     * Frees the tentacle along with the circle shape.
+     */
+    @Override
+    public void dispose() {
+        super.dispose();
+        tentacle.dispose();
+    }
+
     /**
      * Returns true if the grapple is out.
      *
@@ -253,44 +260,46 @@ public class GrappleModel extends WheelObstacle {
     }
 
     /**
-     * Draws the physics object.
+     * Draws the tentacle out to the grapple, or back in as it retracts.
      *
      * @param canvas Drawing context
+     * @param cephP  The position of the cephalonaut
+     * @param cephA  The angle of the cephalonaut, in degrees
      */
     public void draw(GameCanvas canvas, Vector2 cephP, float cephA) {
         if (isOut) {
-            Affine2 tr = new Affine2();
-            tr.preTranslate(cephP.x, cephP.y);
-            float angle = getPosition().sub(cephP).angleDeg();
-            tr.rotate(angle);
-            angle-=cephA;
-            float dist = getPosition().dst(cephP);
-            for (float i = 0; i < getPosition().dst(cephP) / 2; i += (canvas.getWidth()/1920f)*2.4f / drawScale.x) {
-                Vector2 t = new Vector2(i * 2, (float) (-Math.sin(i * 5) - Math.cos(i * 4)) / (dist + 0.3f) / 2f * (float) Math.sqrt(Math.sqrt(1 - i * 2 / dist)));
-                if (isLocked > 0)
-                    t.set(t.x, t.y * (8 - isLocked) / 8);
-                t.y = (angle>=270||angle<90)?t.y:-t.y;
-                tr.applyTo(t);
-                canvas.draw(texture, Color.WHITE, 3f, 3f, t.x * drawScale.x, t.y * drawScale.y,
-                        getAngle(), 0.018f*drawScale.x, 0.018f*drawScale.y);
-            }
+            Vector2 end = getPosition();
+            float amplitude = waveAmplitude(cephP, end.x, end.y, cephA, 0.3f);
+            if (isLocked > 0)
+                amplitude *= (8 - isLocked) / 8;
+            tentacle.draw(canvas, cephP.x, cephP.y, end.x, end.y, amplitude, drawScale);
         }
-        if (vertex != null ) {
-            Affine2 tr = new Affine2();
-            tr.preTranslate(cephP.x, cephP.y);
-            float angle = vertex.cpy().sub(cephP).angleDeg();
-            tr.rotate(angle);
-            angle-=cephA;
-            float dist = vertex.dst(cephP);
-            for (float i = 0; i < vertex.dst(cephP) / 2; i += (canvas.getWidth()/1920f)*2.4f / drawScale.x) {
-                Vector2 t = new Vector2(i * 2, (float) (-Math.sin(i * 5) - Math.cos(i * 4)) / (dist + 0.7f) / 2f * (float) Math.sqrt(Math.sqrt(1 - i * 2 / dist)));
-                t.y = (angle>=270||angle<90)?t.y:-t.y;
-                tr.applyTo(t);
-                canvas.draw(texture, Color.WHITE, 3f, 3f, t.x * drawScale.x, t.y * drawScale.y,
-                        getAngle(), 0.018f*drawScale.x, 0.018f*drawScale.y);
-            }
+        if (vertex != null) {
+            float amplitude = waveAmplitude(cephP, vertex.x, vertex.y, cephA, 0.7f);
+            tentacle.draw(canvas, cephP.x, cephP.y, vertex.x, vertex.y, amplitude, drawScale);
         }
+    }
 
+    /**
+     * Returns the height of the tentacle's wave, which settles down as it gets longer.
+     *
+     * The wave is turned over when the tentacle points back from the cephalonaut,
+     * so that it always curls the same way as seen from the cephalonaut.
+     *
+     * @param cephP    The position of the cephalonaut
+     * @param x        The x-coordinate of the end of the tentacle
+     * @param y        The y-coordinate of the end of the tentacle
+     * @param cephA    The angle of the cephalonaut, in degrees
+     * @param slack    Added to the length, to calm the wave of a short tentacle
+     */
+    private static float waveAmplitude(Vector2 cephP, float x, float y, float cephA, float slack) {
+        float dx = x - cephP.x;
+        float dy = y - cephP.y;
+        float angle = MathUtils.atan2(dy, dx) * MathUtils.radiansToDegrees;
+        if (angle < 0) angle += 360;
+        angle -= cephA;
+        float amplitude = 1 / ((float) Math.sqrt(dx * dx + dy * dy) + slack) / 2f;
+        return (angle >= 270 || angle < 90) ? amplitude : -amplitude;
     }
 
     /**
@@ -22,6 +22,7 @@ import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.physics.box2d.BodyDef.BodyType;
 
 import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
 
 /**
  * Composite model class to support collisions.
@@ -990,6 +991,7 @@ public abstract class ComplexObstacle extends Obstacle {
 		if (bodyinfo.active) {
 			// Should be good for most (simple) applications.
 			for (Joint joint : joints) {
+				ResourceTracker.release(joint);
 				world.destroyJoint(joint);
 			}
 			joints.clear();
@@ -21,6 +21,7 @@ import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.physics.box2d.joints.*;
 
 import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
 
 /**
  * Selection tool to move and drag physics obstacles
@@ -216,12 +217,15 @@ public class ObstacleSelector implements QueryCallback  {
 		groundShape.setRadius(pointer.width);
 		ground = world.createBody(groundDef);
 		ground.createFixture(groundShape,0);
+		ResourceTracker.track(ResourceTracker.Type.BODY, ground);
 
 	    if (ground != null) {
 	        FixtureDef groundFixture = new FixtureDef();
         	groundFixture.shape = groundShape;
         	ground.createFixture(groundFixture);
     	}
+		// The fixtures keep their own copy of the shape
+		groundShape.dispose();
 	    
 	    drawScale = new Vector2(1,1);
     }
@@ -279,6 +283,7 @@ public class ObstacleSelector implements QueryCallback  {
 			mouseJointDef.dampingRatio = 0.7f;
 			mouseJointDef.maxForce = 1000 * body.getMass();
 			mouseJoint = (MouseJoint)world.createJoint(mouseJointDef);
+			ResourceTracker.track(ResourceTracker.Type.JOINT, mouseJoint);
 			body.setAwake(true);
 		}
 	    return selection != null; 
@@ -306,6 +311,7 @@ public class ObstacleSelector implements QueryCallback  {
      */
     public void deselect() {
         if (selection != null) {
+    		ResourceTracker.release(mouseJoint);
     		world.destroyJoint(mouseJoint);
     	    selection = null;
     	    mouseJoint = null;
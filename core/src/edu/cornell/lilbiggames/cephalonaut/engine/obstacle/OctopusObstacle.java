@@ -19,6 +19,7 @@ import com.badlogic.gdx.physics.box2d.Fixture;
 import com.badlogic.gdx.physics.box2d.FixtureDef;
 import com.badlogic.gdx.physics.box2d.PolygonShape;
 import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
 
 import javax.xml.validation.Validator;
 
@@ -151,8 +152,8 @@ public class OctopusObstacle extends SimpleObstacle {
         fixtureTri = new FixtureDef();
         dimension = new Vector2(width,height);
         sizeCache = new Vector2();
-        circleShape = new CircleShape();
-        triangleShape = new PolygonShape();
+        circleShape = ResourceTracker.track(ResourceTracker.Type.SHAPE, new CircleShape());
+        triangleShape = ResourceTracker.track(ResourceTracker.Type.SHAPE, new PolygonShape());
         vertices = new float[6];
         geometry = null;
 
@@ -240,6 +241,17 @@ public class OctopusObstacle extends SimpleObstacle {
         }
     }
 
+    /**
+     * Frees the circle and triangle shapes.
+     */
+    @Override
+    public void dispose() {
+        ResourceTracker.release(circleShape);
+        ResourceTracker.release(triangleShape);
+        circleShape.dispose();
+        triangleShape.dispose();
+    }
+
 
     /**
      * Draws the outline of the physics body.
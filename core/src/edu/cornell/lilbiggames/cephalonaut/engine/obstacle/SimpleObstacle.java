@@ -24,6 +24,7 @@ import com.badlogic.gdx.physics.box2d.BodyDef.BodyType;
 
 import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.GameObject;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
 
 /**
  * Base model class to support collisions.
@@ -45,6 +46,8 @@ public abstract class SimpleObstacle extends GameObject {
 
 	protected Color tint;
 	protected float sx = 1, sy = 1;
+	/** Attached to every fixture of this body (e.g. the player that owns it) */
+	private Object fixtureUserData;
 
 	public float getTextureScaleX() { return sx; }
 	public float getTextureScaleY() { return sy; }
@@ -801,6 +804,20 @@ public abstract class SimpleObstacle extends GameObject {
 		}
 	}
 	
+	/**
+	 * Adds the physics object to the sprite cache being recorded.
+	 *
+	 * The parallax offset is left out, as the whole cache is moved when drawn.
+	 *
+	 * @param canvas Drawing context
+	 */
+	public void cache(GameCanvas canvas) {
+		if (texture != null) {
+			canvas.addToCache(texture, tint, origin.x, origin.y,
+					getX() * drawScale.x, getY() * drawScale.y, getAngle(), sx, sy);
+		}
+	}
+
 	/**
 	 * Returns the Box2D body for this object.
 	 *
@@ -852,7 +869,9 @@ public abstract class SimpleObstacle extends GameObject {
 		
 		// Only initialize if a body was created.
 		if (body != null) {
+			ResourceTracker.track(ResourceTracker.Type.BODY, body);
 			createFixtures();
+			applyFixtureUserData();
 			return true;
 		} 
 		
@@ -871,6 +890,7 @@ public abstract class SimpleObstacle extends GameObject {
 		if (body != null) {
 			// Snapshot the values
 			setBodyState(body);
+			ResourceTracker.releaseBody(body);
 			world.destroyBody(body);
 			body = null;
 			bodyinfo.active = false;
@@ -905,6 +925,42 @@ public abstract class SimpleObstacle extends GameObject {
 		// Recreate the fixture object if dimensions changed.
 		if (isDirty()) {
 			createFixtures();
+			applyFixtureUserData();
+		}
+	}
+
+	/**
+	 * Sets the user data attached to every fixture of this body.
+	 *
+	 * Unlike the body user data (which is always this object), this can be used
+	 * to tell apart the parts of a body, or to find the owner of a body quickly
+	 * in a contact listener.  It survives fixtures being recreated.
+	 *
+	 * @param value the user data attached to every fixture of this body
+	 */
+	public void setFixtureUserData(Object value) {
+		fixtureUserData = value;
+		applyFixtureUserData();
+	}
+
+	/**
+	 * Returns the user data attached to every fixture of this body.
+	 *
+	 * @return the user data attached to every fixture of this body
+	 */
+	public Object getFixtureUserData() {
+		return fixtureUserData;
+	}
+
+	/**
+	 * Copies the fixture user data onto the current fixtures.
+	 */
+	private void applyFixtureUserData() {
+		if (body == null) {
+			return;
+		}
+		for (Fixture fixture : body.getFixtureList()) {
+			fixture.setUserData(fixtureUserData);
 		}
 	}
 }
\ No newline at end of file
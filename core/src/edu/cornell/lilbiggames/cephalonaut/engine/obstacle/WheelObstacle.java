@@ -15,6 +15,7 @@ import com.badlogic.gdx.graphics.*;
 import com.badlogic.gdx.physics.box2d.*;
 
 import edu.cornell.lilbiggames.cephalonaut.engine.GameCanvas;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
 
 /**
  * Circle-shaped model to support collisions.
@@ -72,9 +73,18 @@ public class WheelObstacle extends SimpleObstacle {
 	 */
 	public WheelObstacle(float x, float y, float radius) {
 		super(x,y);
-		shape = new CircleShape();
+		shape = ResourceTracker.track(ResourceTracker.Type.SHAPE, new CircleShape());
 		shape.setRadius(radius);
 	}
+
+	/**
+	 * Frees the circle shape.
+	 */
+	@Override
+	public void dispose() {
+		ResourceTracker.release(shape);
+		shape.dispose();
+	}
 	
 	/**
 	 * Create new fixtures for this body, defining the shape
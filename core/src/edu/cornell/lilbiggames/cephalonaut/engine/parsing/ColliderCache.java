@@ -0,0 +1,482 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
+
+import com.badlogic.gdx.math.EarClippingTriangulator;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ShortArray;
+import edu.cornell.lilbiggames.cephalonaut.util.ResourceTracker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared collider shapes for tileset tiles.
+ *
+ * Every instance of a tile has the same collider polygon in local space, so we only
+ * decompose it once and hand every instance the same PolygonShapes.  This is safe
+ * because Box2D copies the shape into each fixture when the fixture is created.
+ *
+ * Polygons are split into as few convex pieces as we can manage rather than into
+ * triangles.  Fewer fixtures means fewer contacts, and the player no longer catches
+ * on the internal edges between triangles.
+ *
+ * The shapes are owned by this cache, NOT by the level elements using them, and are
+ * only freed by {@link #dispose()}.
+ *
+ * Levels are built by several threads at once, so every method that touches the
+ * cache is synchronized.  The static decomposition methods are called without the
+ * lock, so each thread triangulates with its own triangulator.
+ *
+ * Only a tile's own collider is cached.  A Tiled object that overrides its tile's
+ * collider gets shapes of its own, which are not shared with anything.
+ */
+public class ColliderCache {
+    /** Lookup key: which tile, and the size it is stretched to */
+    private static class Key {
+        LevelLoader.TiledFile tiledFile;
+        int id;
+        float width, height;
+
+        Key set(LevelLoader.TiledFile tiledFile, int id, float width, float height) {
+            this.tiledFile = tiledFile;
+            this.id = id;
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return tiledFile == key.tiledFile && id == key.id &&
+                    width == key.width && height == key.height;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = tiledFile.hashCode();
+            result = 31 * result + id;
+            result = 31 * result + Float.floatToIntBits(width);
+            result = 31 * result + Float.floatToIntBits(height);
+            return result;
+        }
+    }
+
+    /** The most vertices box2d allows in a single polygon (b2_maxPolygonVertices) */
+    public static final int MAX_POLYGON_VERTICES = 8;
+    /** Tolerance when deciding if a corner is convex */
+    private static final float CONVEX_EPSILON = 1e-6f;
+
+    /** One per thread, as a triangulator reuses its arrays, including the one it returns */
+    private static final ThreadLocal<EarClippingTriangulator> triangulator = new ThreadLocal<EarClippingTriangulator>() {
+        @Override
+        protected EarClippingTriangulator initialValue() {
+            return new EarClippingTriangulator();
+        }
+    };
+
+    private final Map<Key, PolygonShape[]> shapes = new HashMap<>();
+    /** Reused so that a lookup does not allocate */
+    private final Key lookup = new Key();
+
+    /** Number of native shapes this cache has allocated */
+    private int shapeCount;
+    /** Number of lookups served from the cache */
+    private int hits;
+    /** Number of lookups that had to decompose a polygon */
+    private int misses;
+    /** Total time spent building shapes, in nanoseconds */
+    private long buildNanos;
+    /** Number of triangles each cached tile would have cost before decomposition */
+    private final Map<Key, Integer> triangleCounts = new HashMap<>();
+    /** Fixtures handed out since the last call to beginLevel() */
+    private int levelFixtures;
+    /** Fixtures the same colliders would have needed as plain triangles */
+    private int levelTriangles;
+
+    /**
+     * Resets the per level fixture counts.
+     */
+    public synchronized void beginLevel() {
+        levelFixtures = 0;
+        levelTriangles = 0;
+    }
+
+    /**
+     * Returns the cached shapes for a tile, or null if there are none yet.
+     *
+     * @param tiledFile The tileset the tile comes from
+     * @param id        The tile id local to that tileset
+     * @param width     The width the tile is stretched to, in physics units
+     * @param height    The height the tile is stretched to, in physics units
+     *
+     * @return the cached shapes for a tile, or null if there are none yet.
+     */
+    public synchronized PolygonShape[] get(LevelLoader.TiledFile tiledFile, int id, float width, float height) {
+        PolygonShape[] cached = shapes.get(lookup.set(tiledFile, id, width, height));
+        if (cached != null) {
+            hits++;
+            levelFixtures += cached.length;
+            levelTriangles += triangleCounts.get(lookup);
+        }
+        return cached;
+    }
+
+    /**
+     * Returns whether a tile has cached shapes, without counting it for this level.
+     *
+     * @param tiledFile The tileset the tile comes from
+     * @param id        The tile id local to that tileset
+     * @param width     The width the tile is stretched to, in physics units
+     * @param height    The height the tile is stretched to, in physics units
+     *
+     * @return whether a tile has cached shapes
+     */
+    public synchronized boolean contains(LevelLoader.TiledFile tiledFile, int id, float width, float height) {
+        return shapes.containsKey(lookup.set(tiledFile, id, width, height));
+    }
+
+    /**
+     * Returns the cached shapes for a tile without counting them for this level.
+     *
+     * @param tiledFile The tileset the tile comes from
+     * @param id        The tile id local to that tileset
+     * @param width     The width the tile is stretched to, in physics units
+     * @param height    The height the tile is stretched to, in physics units
+     *
+     * @return the cached shapes for a tile, or null if there are none yet.
+     */
+    public synchronized PolygonShape[] peek(LevelLoader.TiledFile tiledFile, int id, float width, float height) {
+        return shapes.get(lookup.set(tiledFile, id, width, height));
+    }
+
+    /**
+     * Returns the number of triangles a cached tile would have cost before decomposition.
+     *
+     * @param tiledFile The tileset the tile comes from
+     * @param id        The tile id local to that tileset
+     * @param width     The width the tile is stretched to, in physics units
+     * @param height    The height the tile is stretched to, in physics units
+     *
+     * @return the number of triangles, or 0 if the tile is not cached
+     */
+    public synchronized int getTriangles(LevelLoader.TiledFile tiledFile, int id, float width, float height) {
+        Integer triangles = triangleCounts.get(lookup.set(tiledFile, id, width, height));
+        return triangles == null ? 0 : triangles;
+    }
+
+    /**
+     * Returns the shapes for a tile, decomposing them if they are not cached yet.
+     *
+     * Unlike {@link #get} and {@link #put} this does not count the shapes for this
+     * level.  It is for callers that hold on to the shapes and hand them out
+     * themselves, who report the use with {@link #count}.
+     *
+     * @param tiledFile The tileset the tile comes from
+     * @param id        The tile id local to that tileset
+     * @param width     The width the tile is stretched to, in physics units
+     * @param height    The height the tile is stretched to, in physics units
+     * @param vertices  The collider polygon in local (body) space
+     *
+     * @return the shapes for this tile
+     */
+    public synchronized PolygonShape[] share(LevelLoader.TiledFile tiledFile, int id, float width, float height,
+                                             float[] vertices) {
+        PolygonShape[] cached = shapes.get(lookup.set(tiledFile, id, width, height));
+        return cached != null ? cached : build(tiledFile, id, width, height, vertices);
+    }
+
+    /**
+     * Counts shapes handed out without a lookup for this level.
+     *
+     * @param uses      The number of elements given the shapes
+     * @param fixtures  The number of fixtures those elements will create
+     * @param triangles The number of fixtures they would need as plain triangles
+     */
+    public synchronized void count(int uses, int fixtures, int triangles) {
+        hits += uses;
+        levelFixtures += fixtures;
+        levelTriangles += triangles;
+    }
+
+    /**
+     * Decomposes a collider polygon and caches the result for the given tile.
+     *
+     * @param tiledFile The tileset the tile comes from
+     * @param id        The tile id local to that tileset
+     * @param width     The width the tile is stretched to, in physics units
+     * @param height    The height the tile is stretched to, in physics units
+     * @param vertices  The collider polygon in local (body) space
+     *
+     * @return the new shapes for this tile
+     */
+    public synchronized PolygonShape[] put(LevelLoader.TiledFile tiledFile, int id, float width, float height,
+                                           float[] vertices) {
+        // Another thread may have cached the tile since the caller's get()
+        PolygonShape[] built = shapes.get(lookup.set(tiledFile, id, width, height));
+        if (built == null) {
+            built = build(tiledFile, id, width, height, vertices);
+        }
+        levelFixtures += built.length;
+        levelTriangles += triangleCounts.get(lookup);
+        return built;
+    }
+
+    /**
+     * Caches shapes for a tile from pieces that were decomposed ahead of time.
+     *
+     * This is how baked levels skip triangulation entirely.  Tiles that are
+     * already cached are left alone.
+     *
+     * @param tiledFile The tileset the tile comes from
+     * @param id        The tile id local to that tileset
+     * @param width     The width the tile is stretched to, in physics units
+     * @param height    The height the tile is stretched to, in physics units
+     * @param pieces    The convex pieces, as returned by {@link #decomposeVertices}
+     * @param triangles The number of triangles the polygon triangulates into
+     */
+    public synchronized void putDecomposed(LevelLoader.TiledFile tiledFile, int id, float width, float height,
+                              float[][] pieces, int triangles) {
+        if (shapes.containsKey(lookup.set(tiledFile, id, width, height))) return;
+        PolygonShape[] built = toShapes(pieces);
+        Key key = new Key().set(tiledFile, id, width, height);
+        shapes.put(key, built);
+        triangleCounts.put(key, triangles);
+        shapeCount += built.length;
+    }
+
+    /** Decomposes a polygon and adds the shapes to the cache; leaves lookup set to the tile */
+    private PolygonShape[] build(LevelLoader.TiledFile tiledFile, int id, float width, float height,
+                                 float[] vertices) {
+        long start = System.nanoTime();
+        ShortArray tris = triangulator.get().computeTriangles(vertices);
+        int triangles = tris.size / 3;
+        PolygonShape[] built = toShapes(toPieces(vertices, mergeTriangles(vertices, tris)));
+        buildNanos += System.nanoTime() - start;
+        misses++;
+        shapeCount += built.length;
+
+        Key key = new Key().set(tiledFile, id, width, height);
+        shapes.put(key, built);
+        triangleCounts.put(key, triangles);
+        lookup.set(tiledFile, id, width, height);
+        return built;
+    }
+
+    /**
+     * Splits a polygon into convex pieces of at most 8 vertices, as box2d does not
+     * accept concave polygons or polygons with more vertices than that.
+     *
+     * @param vertices The polygon vertices
+     *
+     * @return one PolygonShape per convex piece
+     */
+    public static PolygonShape[] decompose(float[] vertices) {
+        return toShapes(decomposeVertices(vertices));
+    }
+
+    /**
+     * Splits a polygon into convex pieces of at most 8 vertices, without creating
+     * any native shapes.
+     *
+     * @param vertices The polygon vertices
+     *
+     * @return the vertices of each convex piece
+     */
+    public static float[][] decomposeVertices(float[] vertices) {
+        return toPieces(vertices, mergeTriangles(vertices, triangulator.get().computeTriangles(vertices)));
+    }
+
+    /**
+     * Returns the number of triangles a polygon triangulates into.
+     *
+     * @param vertices The polygon vertices
+     *
+     * @return the number of triangles a polygon triangulates into
+     */
+    public static int countTriangles(float[] vertices) {
+        return triangulator.get().computeTriangles(vertices).size / 3;
+    }
+
+    /**
+     * Greedily merges triangles across shared edges while the result stays convex
+     * and within the box2d vertex limit (Hertel-Mehlhorn).
+     *
+     * Pieces are lists of indices into the vertex array, in counter-clockwise order.
+     *
+     * @param vertices The polygon vertices
+     * @param tris     The triangle indices from the triangulator
+     *
+     * @return the convex pieces
+     */
+    private static Array<IntArray> mergeTriangles(float[] vertices, ShortArray tris) {
+        Array<IntArray> pieces = new Array<>(tris.size / 3);
+        for (int i = 0; i < tris.size; i += 3) {
+            IntArray tri = new IntArray(MAX_POLYGON_VERTICES);
+            tri.add(tris.get(i), tris.get(i + 1), tris.get(i + 2));
+            if (signedArea(vertices, tri) < 0) tri.reverse();
+            pieces.add(tri);
+        }
+
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < pieces.size; i++) {
+                for (int j = i + 1; j < pieces.size; j++) {
+                    IntArray union = merge(vertices, pieces.get(i), pieces.get(j));
+                    if (union != null) {
+                        pieces.set(i, union);
+                        pieces.removeIndex(j);
+                        // Piece i grew, so it may now share an edge with earlier pieces
+                        j = i;
+                        merged = true;
+                    }
+                }
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * Returns the union of two pieces if they share an edge and the union is a
+     * valid box2d polygon, or null otherwise.
+     */
+    private static IntArray merge(float[] vertices, IntArray p, IntArray q) {
+        if (p.size + q.size - 2 > MAX_POLYGON_VERTICES) return null;
+
+        for (int k = 0; k < p.size; k++) {
+            int a = p.get(k);
+            int b = p.get((k + 1) % p.size);
+            for (int m = 0; m < q.size; m++) {
+                // Both pieces are counter-clockwise, so q walks the shared edge backwards
+                if (q.get(m) != b || q.get((m + 1) % q.size) != a) continue;
+
+                IntArray union = new IntArray(MAX_POLYGON_VERTICES);
+                // p from b all the way around to a ...
+                for (int n = 0; n < p.size; n++) {
+                    union.add(p.get((k + 1 + n) % p.size));
+                }
+                // ... then q strictly between a and b
+                for (int n = 2; n < q.size; n++) {
+                    union.add(q.get((m + n) % q.size));
+                }
+                return isConvex(vertices, union) ? union : null;
+            }
+        }
+        return null;
+    }
+
+    /** Returns true if every corner of the (counter-clockwise) piece is convex */
+    private static boolean isConvex(float[] vertices, IntArray piece) {
+        for (int i = 0; i < piece.size; i++) {
+            int v0 = 2 * piece.get(i);
+            int v1 = 2 * piece.get((i + 1) % piece.size);
+            int v2 = 2 * piece.get((i + 2) % piece.size);
+            float cross = (vertices[v1] - vertices[v0]) * (vertices[v2 + 1] - vertices[v1 + 1]) -
+                          (vertices[v1 + 1] - vertices[v0 + 1]) * (vertices[v2] - vertices[v1]);
+            if (cross < -CONVEX_EPSILON) return false;
+        }
+        return true;
+    }
+
+    /** Returns twice the signed area of the piece (positive if counter-clockwise) */
+    private static float signedArea(float[] vertices, IntArray piece) {
+        float area = 0;
+        for (int i = 0; i < piece.size; i++) {
+            int v0 = 2 * piece.get(i);
+            int v1 = 2 * piece.get((i + 1) % piece.size);
+            area += vertices[v0] * vertices[v1 + 1] - vertices[v1] * vertices[v0 + 1];
+        }
+        return area;
+    }
+
+    /** Copies out the vertices of each piece */
+    private static float[][] toPieces(float[] vertices, Array<IntArray> pieces) {
+        float[][] result = new float[pieces.size][];
+        for (int i = 0; i < pieces.size; i++) {
+            IntArray piece = pieces.get(i);
+            float[] piece_vertices = new float[2 * piece.size];
+            for (int j = 0; j < piece.size; j++) {
+                piece_vertices[2 * j]     = vertices[2 * piece.get(j)];
+                piece_vertices[2 * j + 1] = vertices[2 * piece.get(j) + 1];
+            }
+            result[i] = piece_vertices;
+        }
+        return result;
+    }
+
+    /**
+     * Builds a box2d shape for each convex piece.
+     *
+     * The caller owns the shapes, and must dispose them.
+     *
+     * @param pieces The vertices of each piece, as returned by {@link #decomposeVertices}
+     *
+     * @return one PolygonShape per piece
+     */
+    public static PolygonShape[] toShapes(float[][] pieces) {
+        PolygonShape[] result = new PolygonShape[pieces.length];
+        for (int i = 0; i < pieces.length; i++) {
+            PolygonShape poly = ResourceTracker.track(ResourceTracker.Type.SHAPE, new PolygonShape());
+            poly.set(pieces[i]);
+            result[i] = poly;
+        }
+        return result;
+    }
+
+    /** Returns the number of native shapes this cache has allocated */
+    public int getShapeCount() {
+        return shapeCount;
+    }
+
+    /** Returns the number of lookups served from the cache */
+    public int getHits() {
+        return hits;
+    }
+
+    /** Returns the number of lookups that had to decompose a polygon */
+    public int getMisses() {
+        return misses;
+    }
+
+    /** Returns the number of fixtures handed out since beginLevel() */
+    public int getLevelFixtures() {
+        return levelFixtures;
+    }
+
+    /** Returns the number of fixtures plain triangulation would have needed since beginLevel() */
+    public int getLevelTriangles() {
+        return levelTriangles;
+    }
+
+    /**
+     * Returns an estimate of the load time saved by the cache, in milliseconds.
+     *
+     * Each hit is assumed to have cost as much as an average miss.
+     *
+     * @return an estimate of the load time saved by the cache, in milliseconds.
+     */
+    public float getSavedMillis() {
+        if (misses == 0) return 0;
+        return hits * (buildNanos / (float) misses) / 1e6f;
+    }
+
+    /**
+     * Frees every cached shape.
+     *
+     * No fixture may be created from these shapes afterwards.
+     */
+    public synchronized void dispose() {
+        for (PolygonShape[] cached : shapes.values()) {
+            for (PolygonShape shape : cached) {
+                ResourceTracker.release(shape);
+                shape.dispose();
+            }
+        }
+        shapes.clear();
+        triangleCounts.clear();
+        shapeCount = 0;
+    }
+}
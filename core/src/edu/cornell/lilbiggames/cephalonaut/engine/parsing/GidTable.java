@@ -0,0 +1,64 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
+
+import com.badlogic.gdx.utils.JsonValue;
+
+import java.util.Map;
+
+/**
+ * Everything a level needs to know about its tiles, indexed by global id.
+ *
+ * Built once per level, so that resolving a tile is array indexing rather
+ * than a search through the level's tilesets.  Entries a tileset does not
+ * define are null.  LevelLoader, the level baker and the level budget all
+ * resolve global ids through this.
+ */
+public class GidTable {
+    /** The tileset of each global id, or null if no tileset covers it */
+    public final LevelLoader.TiledFile[] files;
+    /** The id local to its tileset of each global id */
+    public final int[] ids;
+    /** The tile JSON of each global id, or null if its tileset does not define it */
+    public final JsonValue[] tiles;
+
+    /**
+     * Builds the table of a level.
+     *
+     * @param level    The level, with its tileset references
+     * @param tilesets The tilesets a level can use
+     */
+    public GidTable(TiledLevel level, Map<LevelLoader.TiledFile, Tileset> tilesets) {
+        int size = 1;
+        for (JsonValue tileset : level.tilesets) {
+            LevelLoader.TiledFile tiledFile = LevelLoader.stringToTiledFile(tileset.getString("source"));
+            size = Math.max(size, tileset.getInt("firstgid") + tilesets.get(tiledFile).getCount());
+        }
+        files = new LevelLoader.TiledFile[size];
+        ids = new int[size];
+        tiles = new JsonValue[size];
+
+        // Tilesets are in firstgid order, and each covers the gids up to the next one
+        for (int i = 0; i < level.tilesets.size; i++) {
+            JsonValue tileset = level.tilesets.get(i);
+            LevelLoader.TiledFile tiledFile = LevelLoader.stringToTiledFile(tileset.getString("source"));
+            int firstgid = tileset.getInt("firstgid");
+            int end = i + 1 < level.tilesets.size ? level.tilesets.get(i + 1).getInt("firstgid") : size;
+            Tileset source = tilesets.get(tiledFile);
+            for (int gid = firstgid; gid < end; gid++) {
+                int id = gid - firstgid;
+                files[gid] = tiledFile;
+                ids[gid] = id;
+                tiles[gid] = source.getTile(id);
+            }
+        }
+    }
+
+    /** Returns whether a gid belongs to one of the level's tilesets */
+    public boolean contains(int gid) {
+        return gid > 0 && gid < files.length && files[gid] != null;
+    }
+
+    /** Returns a gid as a tileset and local id packed together, see LevelBlob.pack */
+    public int pack(int gid) {
+        return LevelBlob.pack(files[gid], ids[gid]);
+    }
+}
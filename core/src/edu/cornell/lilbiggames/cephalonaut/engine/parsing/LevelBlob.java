@@ -0,0 +1,653 @@
+/*
+ * LevelBlob.java
+ *
+ * The binary form of a level checkpoint, baked from its Tiled JSON at build time.
+ * LevelLoader builds a level from its blob when there is an up to date one, which
+ * skips parsing JSON, searching tilesets and decomposing colliders at load time.
+ */
+package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
+
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.files.FileHandle;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A level checkpoint compiled ahead of time by the bakeLevels task.
+ *
+ * A blob holds everything LevelLoader needs from a Tiled .tmj file, already
+ * resolved: tile layers are packed int arrays of (tileset, local id), objects are
+ * fixed-layout records, every distinct string is stored once and referred to by
+ * index, and the collider of every tile the level uses is already split into
+ * convex pieces.  An object's own properties are stored as JSON text, to be
+ * layered over its tile's when it is loaded.
+ *
+ * A LevelBlob is a read-only view over the file, which is memory mapped when it
+ * is on disk.  Opening a blob only walks the section headers; tiles and object
+ * fields are read straight out of the buffer when asked for, and strings are
+ * decoded the first time they are used.  The bakeLevels task writes blobs
+ * through a {@link Def}.
+ *
+ * All multi-byte values are big endian:
+ *
+ * <pre>
+ * int    MAGIC, VERSION
+ * int    width, height, tileSize, music, twoStars, threeStars
+ * int    packed tile of the first finish line, or 0
+ * int    string count, then (int byte length, UTF-8 bytes) for each
+ * int    tileset count, then (int tiled file, int firstgid, long hash) for each,
+ *        where the hash is LevelIndex.hash of the tileset the blob was baked from
+ * int    layer count, then for each layer:
+ *          int type, float parallax x, float parallax y
+ *          TILE_LAYER:   int width, int height, width * height packed tiles
+ *          OBJECT_LAYER: int count, then count records of OBJECT_SIZE bytes:
+ *                        int id, int packed tile, int name, int x, int y,
+ *                        float width, float height, float rotation, int properties,
+ *                        int collider (its own, or NO_COLLIDER to use its tile's)
+ *          IMAGE_LAYER:  int image
+ * int    collider count, then for each collider:
+ *          int packed tile, float width, float height, int triangles,
+ *          int owner (the object id for an object's own collider, or NO_OWNER),
+ *          int piece count, then (int float count, floats) for each piece
+ * </pre>
+ */
+public class LevelBlob {
+    /** "CPLV" */
+    public static final int MAGIC = 0x43504C56;
+    /** Bump whenever the layout changes; stale blobs are ignored */
+    public static final int VERSION = 5;
+    /** File extension of a blob, which sits next to its .tmj file */
+    public static final String EXTENSION = ".lvl";
+
+    public static final int TILE_LAYER = 0;
+    public static final int OBJECT_LAYER = 1;
+    public static final int IMAGE_LAYER = 2;
+
+    /** String index meaning "no string" */
+    public static final int NO_STRING = -1;
+
+    /** Collider index meaning the object uses its tile's collider */
+    public static final int NO_COLLIDER = -1;
+    /** Collider owner meaning it is the collider of its tile, shared by every instance */
+    public static final int NO_OWNER = -1;
+
+    /** Size of an object record, in bytes */
+    public static final int OBJECT_SIZE = 40;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Everything needed to write a blob */
+    public static class Def {
+        public int width, height, tileSize;
+        public int music, twoStars, threeStars;
+        /** Packed tile of the first finish line, or 0 if there is none */
+        public int finishTile;
+        public String[] strings;
+        /** Tileset of each entry, as a TiledFile ordinal */
+        public int[] tilesetFiles;
+        /** First global id of each entry */
+        public int[] tilesetFirstGids;
+        /** Hash of each entry's tileset file, so that editing a tileset makes the blob stale */
+        public long[] tilesetHashes;
+        public LayerDef[] layers;
+        public ColliderDef[] colliders;
+
+        /**
+         * Writes the blob.
+         *
+         * @param out The stream to write to
+         *
+         * @throws IOException if the stream cannot be written
+         */
+        public void write(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(tileSize);
+            out.writeInt(music);
+            out.writeInt(twoStars);
+            out.writeInt(threeStars);
+            out.writeInt(finishTile);
+
+            out.writeInt(strings.length);
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(UTF8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(tilesetFiles.length);
+            for (int i = 0; i < tilesetFiles.length; i++) {
+                out.writeInt(tilesetFiles[i]);
+                out.writeInt(tilesetFirstGids[i]);
+                out.writeLong(tilesetHashes[i]);
+            }
+
+            out.writeInt(layers.length);
+            for (LayerDef layer : layers) {
+                out.writeInt(layer.type);
+                out.writeFloat(layer.parallaxX);
+                out.writeFloat(layer.parallaxY);
+                switch (layer.type) {
+                    case TILE_LAYER:
+                        out.writeInt(layer.width);
+                        out.writeInt(layer.height);
+                        for (int tile : layer.tiles) {
+                            out.writeInt(tile);
+                        }
+                        break;
+                    case OBJECT_LAYER:
+                        out.writeInt(layer.objects.length);
+                        for (ObjectDef object : layer.objects) {
+                            out.writeInt(object.id);
+                            out.writeInt(object.tile);
+                            out.writeInt(object.name);
+                            out.writeInt(object.x);
+                            out.writeInt(object.y);
+                            out.writeFloat(object.width);
+                            out.writeFloat(object.height);
+                            out.writeFloat(object.rotation);
+                            out.writeInt(object.properties);
+                            out.writeInt(object.collider);
+                        }
+                        break;
+                    case IMAGE_LAYER:
+                        out.writeInt(layer.image);
+                        break;
+                }
+            }
+
+            out.writeInt(colliders.length);
+            for (ColliderDef collider : colliders) {
+                out.writeInt(collider.tile);
+                out.writeFloat(collider.width);
+                out.writeFloat(collider.height);
+                out.writeInt(collider.triangles);
+                out.writeInt(collider.owner);
+                out.writeInt(collider.pieces.length);
+                for (float[] piece : collider.pieces) {
+                    out.writeInt(piece.length);
+                    for (float value : piece) {
+                        out.writeFloat(value);
+                    }
+                }
+            }
+        }
+    }
+
+    /** A layer to write */
+    public static class LayerDef {
+        public int type;
+        /** Parallax offset factors, already converted from Tiled's (1 - factor) */
+        public float parallaxX, parallaxY;
+
+        /** TILE_LAYER: size in tiles, and packed tiles in row order (0 is empty) */
+        public int width, height;
+        public int[] tiles;
+
+        /** OBJECT_LAYER: the objects in this layer */
+        public ObjectDef[] objects;
+
+        /** IMAGE_LAYER: the image file name */
+        public int image;
+    }
+
+    /** A Tiled object to write, with Tiled coordinates in pixels */
+    public static class ObjectDef {
+        public int id;
+        public int tile;
+        public int name;
+        /** Tiled position, truncated to whole pixels as the JSON loader does */
+        public int x, y;
+        public float width, height;
+        /** Tiled rotation in degrees */
+        public float rotation;
+        /** The object's own properties as JSON, or NO_STRING if it has none */
+        public int properties;
+        /** The index of the object's own collider, or NO_COLLIDER if it uses its tile's */
+        public int collider;
+    }
+
+    /** The collider of a tile at the size it is used in a level */
+    public static class ColliderDef {
+        public int tile;
+        public float width, height;
+        /** Number of triangles the polygon would have been split into */
+        public int triangles;
+        /** The id of the object this is the own collider of, or NO_OWNER for the tile's */
+        public int owner;
+        /** Vertices of each convex piece */
+        public float[][] pieces;
+    }
+
+    /** The file contents */
+    private final ByteBuffer buffer;
+    /** When the file was last modified, to tell if it was rebaked */
+    private final long lastModified;
+
+    private final int width, height, tileSize;
+    private final int music, twoStars, threeStars;
+    private final int finishTile;
+
+    /** Offset of each string's length, and the strings decoded so far */
+    private final int[] stringOffsets;
+    private final String[] strings;
+
+    private final int[] tilesetFiles;
+    private final long[] tilesetHashes;
+
+    /** Type of each layer */
+    private final int[] layerTypes;
+    /** Offset of each layer's header (its type) */
+    private final int[] layerOffsets;
+
+    /** Offset of each collider */
+    private final int[] colliderOffsets;
+
+    /**
+     * Opens a blob, memory mapping it if it is a file on disk.
+     *
+     * @param file The blob
+     *
+     * @return the blob
+     *
+     * @throws IOException if the file is not a blob of this version
+     */
+    public static LevelBlob open(FileHandle file) throws IOException {
+        ByteBuffer buffer;
+        if (file.type() != Files.FileType.Classpath && file.file().exists()) {
+            // The mapping stays valid after the channel is closed
+            RandomAccessFile raf = new RandomAccessFile(file.file(), "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                raf.close();
+            }
+        } else {
+            // Packaged in a jar, so there is nothing to map
+            buffer = ByteBuffer.wrap(file.readBytes());
+        }
+        return new LevelBlob(buffer, file.lastModified());
+    }
+
+    /**
+     * Creates a view over the contents of a blob, walking its section headers.
+     *
+     * @param buffer       The contents of the blob
+     * @param lastModified When the file was last modified
+     *
+     * @throws IOException if the buffer is not a blob of this version
+     */
+    public LevelBlob(ByteBuffer buffer, long lastModified) throws IOException {
+        this.buffer = buffer;
+        this.lastModified = lastModified;
+        try {
+            int offset = 0;
+            if (buffer.getInt(offset) != MAGIC) throw new IOException("Not a level blob");
+            int version = buffer.getInt(offset + 4);
+            if (version != VERSION) throw new IOException("Level blob version " + version + ", expected " + VERSION);
+            offset += 8;
+
+            width = buffer.getInt(offset);
+            height = buffer.getInt(offset + 4);
+            tileSize = buffer.getInt(offset + 8);
+            music = buffer.getInt(offset + 12);
+            twoStars = buffer.getInt(offset + 16);
+            threeStars = buffer.getInt(offset + 20);
+            finishTile = buffer.getInt(offset + 24);
+            offset += 28;
+
+            int stringCount = buffer.getInt(offset);
+            offset += 4;
+            stringOffsets = new int[stringCount];
+            strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                stringOffsets[i] = offset;
+                offset += 4 + buffer.getInt(offset);
+            }
+
+            int tilesets = buffer.getInt(offset);
+            offset += 4;
+            tilesetFiles = new int[tilesets];
+            tilesetHashes = new long[tilesets];
+            for (int i = 0; i < tilesets; i++) {
+                // Followed by the firstgid, which only the baker needs
+                tilesetFiles[i] = buffer.getInt(offset);
+                tilesetHashes[i] = buffer.getLong(offset + 8);
+                offset += 16;
+            }
+
+            int layers = buffer.getInt(offset);
+            offset += 4;
+            layerTypes = new int[layers];
+            layerOffsets = new int[layers];
+            for (int i = 0; i < layers; i++) {
+                layerOffsets[i] = offset;
+                layerTypes[i] = buffer.getInt(offset);
+                offset += 12;
+                switch (layerTypes[i]) {
+                    case TILE_LAYER:
+                        offset += 8 + 4 * buffer.getInt(offset) * buffer.getInt(offset + 4);
+                        break;
+                    case OBJECT_LAYER:
+                        offset += 4 + OBJECT_SIZE * buffer.getInt(offset);
+                        break;
+                    case IMAGE_LAYER:
+                        offset += 4;
+                        break;
+                    default:
+                        throw new IOException("Unknown layer type " + layerTypes[i]);
+                }
+            }
+
+            int colliders = buffer.getInt(offset);
+            offset += 4;
+            colliderOffsets = new int[colliders];
+            for (int i = 0; i < colliders; i++) {
+                colliderOffsets[i] = offset;
+                int pieces = buffer.getInt(offset + 20);
+                offset += 24;
+                for (int j = 0; j < pieces; j++) {
+                    offset += 4 + 4 * buffer.getInt(offset);
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated level blob");
+        }
+    }
+
+    /**
+     * Makes a bigger copy of this level, with its tile layers repeated to fill it.
+     *
+     * Objects and image layers are kept as they are, so the objects all end up in
+     * the top left copy.  This is only for measuring how the game copes with
+     * levels bigger than any that ship; the copy is built in memory.
+     *
+     * @param width  The width of the copy, in tiles
+     * @param height The height of the copy, in tiles
+     *
+     * @return the copy
+     */
+    public LevelBlob repeat(int width, int height) {
+        // Each tile layer grows by its new tiles; the colliders section follows the last layer
+        int colliders = (colliderOffsets.length > 0 ? colliderOffsets[0] : buffer.limit()) - 4;
+        int size = buffer.limit();
+        for (int layer = 0; layer < layerTypes.length; layer++) {
+            if (layerTypes[layer] == TILE_LAYER) {
+                size += 4 * (width * height - getLayerWidth(layer) * getLayerHeight(layer));
+            }
+        }
+
+        ByteBuffer copy = ByteBuffer.allocate(size);
+        ByteBuffer source = buffer.duplicate();
+        source.limit(layerOffsets.length > 0 ? layerOffsets[0] : colliders).position(0);
+        copy.put(source);
+        copy.putInt(8, width);
+        copy.putInt(12, height);
+        for (int layer = 0; layer < layerTypes.length; layer++) {
+            int end = layer + 1 < layerOffsets.length ? layerOffsets[layer + 1] : colliders;
+            if (layerTypes[layer] != TILE_LAYER) {
+                source.limit(end).position(layerOffsets[layer]);
+                copy.put(source);
+                continue;
+            }
+            int layerWidth = getLayerWidth(layer);
+            int layerHeight = getLayerHeight(layer);
+            source.limit(layerOffsets[layer] + 12).position(layerOffsets[layer]);
+            copy.put(source);
+            copy.putInt(width);
+            copy.putInt(height);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    boolean empty = layerWidth == 0 || layerHeight == 0;
+                    copy.putInt(empty ? 0 : getTile(layer, (y % layerHeight) * layerWidth + x % layerWidth));
+                }
+            }
+        }
+        source.limit(buffer.limit()).position(colliders);
+        copy.put(source);
+        copy.flip();
+        try {
+            return new LevelBlob(copy, lastModified);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not repeat a level blob", e);
+        }
+    }
+
+    /**
+     * Packs a tile reference into an int.
+     *
+     * @param tiledFile The tileset
+     * @param id        The tile id local to that tileset
+     *
+     * @return the packed reference, which is never 0
+     */
+    public static int pack(LevelLoader.TiledFile tiledFile, int id) {
+        return ((tiledFile.ordinal() + 1) << 24) | id;
+    }
+
+    /** Returns the tileset of a packed tile */
+    public static LevelLoader.TiledFile tiledFile(int packed) {
+        return LevelLoader.TiledFile.values()[(packed >>> 24) - 1];
+    }
+
+    /** Returns the local tile id of a packed tile */
+    public static int tileId(int packed) {
+        return packed & 0xFFFFFF;
+    }
+
+    public int getTilesetCount() {
+        return tilesetFiles.length;
+    }
+
+    /** Returns the tileset of an entry of the level's tileset list */
+    public LevelLoader.TiledFile getTilesetFile(int tileset) {
+        return LevelLoader.TiledFile.values()[tilesetFiles[tileset]];
+    }
+
+    /** Returns the hash of the tileset file an entry was baked from */
+    public long getTilesetHash(int tileset) {
+        return tilesetHashes[tileset];
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getMusic() {
+        return music;
+    }
+
+    public int getTwoStars() {
+        return twoStars;
+    }
+
+    public int getThreeStars() {
+        return threeStars;
+    }
+
+    /** Returns the packed tile of the first finish line, or 0 if there is none */
+    public int getFinishTile() {
+        return finishTile;
+    }
+
+    public int getStringCount() {
+        return strings.length;
+    }
+
+    /** Returns the string at an index, or null for NO_STRING */
+    public String getString(int index) {
+        if (index == NO_STRING) return null;
+        if (strings[index] == null) {
+            int offset = stringOffsets[index];
+            byte[] bytes = new byte[buffer.getInt(offset)];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + 4);
+            view.get(bytes);
+            strings[index] = new String(bytes, UTF8);
+        }
+        return strings[index];
+    }
+
+    public int getLayerCount() {
+        return layerTypes.length;
+    }
+
+    public int getLayerType(int layer) {
+        return layerTypes[layer];
+    }
+
+    public float getParallaxX(int layer) {
+        return buffer.getFloat(layerOffsets[layer] + 4);
+    }
+
+    public float getParallaxY(int layer) {
+        return buffer.getFloat(layerOffsets[layer] + 8);
+    }
+
+    /** Returns the width in tiles of a tile layer */
+    public int getLayerWidth(int layer) {
+        return buffer.getInt(layerOffsets[layer] + 12);
+    }
+
+    /** Returns the height in tiles of a tile layer */
+    public int getLayerHeight(int layer) {
+        return buffer.getInt(layerOffsets[layer] + 16);
+    }
+
+    /**
+     * Returns a packed tile of a tile layer.
+     *
+     * @param layer The tile layer
+     * @param index The tile's index in row order
+     *
+     * @return the packed tile, or 0 if there is none
+     */
+    public int getTile(int layer, int index) {
+        return buffer.getInt(layerOffsets[layer] + 20 + 4 * index);
+    }
+
+    /** Returns the number of objects in an object layer */
+    public int getObjectCount(int layer) {
+        return buffer.getInt(layerOffsets[layer] + 12);
+    }
+
+    /** Returns the offset of a field of an object record */
+    private int object(int layer, int index, int field) {
+        return layerOffsets[layer] + 16 + OBJECT_SIZE * index + field;
+    }
+
+    public int getObjectId(int layer, int index) {
+        return buffer.getInt(object(layer, index, 0));
+    }
+
+    public int getObjectTile(int layer, int index) {
+        return buffer.getInt(object(layer, index, 4));
+    }
+
+    public int getObjectName(int layer, int index) {
+        return buffer.getInt(object(layer, index, 8));
+    }
+
+    public int getObjectX(int layer, int index) {
+        return buffer.getInt(object(layer, index, 12));
+    }
+
+    public int getObjectY(int layer, int index) {
+        return buffer.getInt(object(layer, index, 16));
+    }
+
+    public float getObjectWidth(int layer, int index) {
+        return buffer.getFloat(object(layer, index, 20));
+    }
+
+    public float getObjectHeight(int layer, int index) {
+        return buffer.getFloat(object(layer, index, 24));
+    }
+
+    public float getObjectRotation(int layer, int index) {
+        return buffer.getFloat(object(layer, index, 28));
+    }
+
+    /** Returns the string of the object's own properties, or NO_STRING if it has none */
+    public int getObjectProperties(int layer, int index) {
+        return buffer.getInt(object(layer, index, 32));
+    }
+
+    /** Returns the index of the object's own collider, or NO_COLLIDER if it uses its tile's */
+    public int getObjectCollider(int layer, int index) {
+        return buffer.getInt(object(layer, index, 36));
+    }
+
+    /** Returns the image file name of an image layer */
+    public int getLayerImage(int layer) {
+        return buffer.getInt(layerOffsets[layer] + 12);
+    }
+
+    public int getColliderCount() {
+        return colliderOffsets.length;
+    }
+
+    public int getColliderTile(int collider) {
+        return buffer.getInt(colliderOffsets[collider]);
+    }
+
+    public float getColliderWidth(int collider) {
+        return buffer.getFloat(colliderOffsets[collider] + 4);
+    }
+
+    public float getColliderHeight(int collider) {
+        return buffer.getFloat(colliderOffsets[collider] + 8);
+    }
+
+    public int getColliderTriangles(int collider) {
+        return buffer.getInt(colliderOffsets[collider] + 12);
+    }
+
+    /** Returns the id of the object this is the own collider of, or NO_OWNER for a tile's */
+    public int getColliderOwner(int collider) {
+        return buffer.getInt(colliderOffsets[collider] + 16);
+    }
+
+    /**
+     * Copies out the convex pieces of a collider.
+     *
+     * @param collider The collider
+     *
+     * @return the vertices of each piece
+     */
+    public float[][] getColliderPieces(int collider) {
+        int offset = colliderOffsets[collider] + 20;
+        float[][] pieces = new float[buffer.getInt(offset)][];
+        offset += 4;
+        for (int i = 0; i < pieces.length; i++) {
+            float[] piece = new float[buffer.getInt(offset)];
+            offset += 4;
+            for (int j = 0; j < piece.length; j++) {
+                piece[j] = buffer.getFloat(offset);
+                offset += 4;
+            }
+            pieces[i] = piece;
+        }
+        return pieces;
+    }
+}
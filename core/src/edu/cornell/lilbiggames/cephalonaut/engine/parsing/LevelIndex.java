@@ -0,0 +1,136 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+import com.badlogic.gdx.utils.SerializationException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * What the menus need to know about every level checkpoint, without loading it.
+ *
+ * The index is written by the level baker, and kept up to date by the loader
+ * when a level changes.  Each entry records a hash of the .tmj it was made
+ * from, so an entry for a level that has been edited since is never used.
+ */
+public class LevelIndex {
+    /** Where the index lives, relative to the assets directory */
+    public static final String FILE = "levels/index.json";
+    /** Bump this when entries change meaning; older indices are ignored */
+    private static final int VERSION = 1;
+
+    /** A level checkpoint */
+    public static class Entry {
+        /** Hash of the .tmj file this entry was made from */
+        public long hash;
+        /** The finish line's tile, packed as in {@link LevelBlob#pack}, or 0 if there is none */
+        public int finishTile;
+        public int music;
+        public int twoStars, threeStars;
+    }
+
+    /** Entries by "level:checkpoint"; sorted so the written file is stable */
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * Reads an index.
+     *
+     * @param file The index file
+     *
+     * @return the index, which is empty if the file is missing or unreadable
+     */
+    public static LevelIndex read(FileHandle file) {
+        LevelIndex index = new LevelIndex();
+        if (!file.exists()) return index;
+
+        JsonValue json;
+        try {
+            json = new JsonReader().parse(file);
+        } catch (SerializationException e) {
+            System.out.printf("WARNING: Ignoring unreadable level index %s: %s\n", file.path(), e.getMessage());
+            return index;
+        }
+        if (json == null || json.getInt("version", 0) != VERSION) return index;
+
+        for (JsonValue level : json.get("levels")) {
+            Entry entry = new Entry();
+            entry.hash = level.getLong("hash");
+            entry.finishTile = level.getInt("finish");
+            entry.music = level.getInt("music");
+            entry.twoStars = level.getInt("twoStars");
+            entry.threeStars = level.getInt("threeStars");
+            index.entries.put(level.name, entry);
+        }
+        return index;
+    }
+
+    /**
+     * Writes this index.
+     *
+     * @param file The index file
+     */
+    public void write(FileHandle file) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.setOutputType(JsonWriter.OutputType.json);
+        writer.object();
+        writer.set("version", VERSION);
+        writer.object("levels");
+        for (Map.Entry<String, Entry> level : entries.entrySet()) {
+            Entry entry = level.getValue();
+            writer.object(level.getKey());
+            writer.set("hash", entry.hash);
+            writer.set("finish", entry.finishTile);
+            writer.set("music", entry.music);
+            writer.set("twoStars", entry.twoStars);
+            writer.set("threeStars", entry.threeStars);
+            writer.pop();
+        }
+        writer.pop();
+        writer.pop();
+        writer.close();
+
+        try {
+            file.writeString(out.toString(), false, "UTF-8");
+        } catch (GdxRuntimeException e) {
+            throw new IOException("Could not write " + file.path(), e);
+        }
+    }
+
+    /**
+     * Returns the entry for a checkpoint, if it was made from the given file contents.
+     *
+     * @param key  The checkpoint, as "level:checkpoint"
+     * @param hash The hash of the checkpoint's .tmj, from {@link #hash}
+     *
+     * @return the entry, or null if there is none or it is out of date
+     */
+    public Entry get(String key, long hash) {
+        Entry entry = entries.get(key);
+        return entry == null || entry.hash != hash ? null : entry;
+    }
+
+    public void put(String key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    /**
+     * Returns the hash the index uses for a level file.
+     *
+     * @param file The level's .tmj file
+     *
+     * @return the CRC-32 of the file's contents
+     */
+    public static long hash(FileHandle file) {
+        CRC32 crc = new CRC32();
+        crc.update(file.readBytes());
+        return crc.getValue();
+    }
+}
@@ -1,32 +1,54 @@
 package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
 
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonReader;
 import com.badlogic.gdx.utils.JsonValue;
 import com.badlogic.gdx.utils.Queue;
 import edu.cornell.lilbiggames.cephalonaut.assets.AssetDirectory;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.GameObject;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.ImageObject;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.LevelElement;
+import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.TileBand;
 import edu.cornell.lilbiggames.cephalonaut.engine.gameobject.elements.LEAnimated;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 public class LevelLoader {
 
-    enum TiledFile {
-        METEOR_TILESET,
-        SPACESHIP_TILESET,
-        OBJECTS
+    public enum TiledFile {
+        METEOR_TILESET("tile-tileset"),
+        SPACESHIP_TILESET("space-tileset"),
+        OBJECTS("object-tileset");
+
+        /** The key of the tileset in assets.json, under "jsons" */
+        public final String asset;
+
+        TiledFile(String asset) {
+            this.asset = asset;
+        }
     }
 
-    private TiledFile stringToTiledFile(String str) {
+    public static TiledFile stringToTiledFile(String str) {
         if (str.contains("space")) {
             return TiledFile.SPACESHIP_TILESET;
         } else if (str.contains("objects")) {
@@ -39,58 +61,112 @@ public class LevelLoader {
     }
 
     final private AssetDirectory assetDirectory;
-    final private Map<TiledFile, Map<Integer, JsonValue>> map = new HashMap<>();
+    final private Map<TiledFile, Tileset> tilesets = new HashMap<>();
     final private Map<TiledFile, Map<Integer, TextureRegion>> textures = new HashMap<>();
+    /** Hash of each tileset file as loaded, to tell blobs baked from an older one */
+    final private long[] tilesetHashes = new long[TiledFile.values().length];
+    /** Tile prototypes by tileset ordinal and local id, built on first use */
+    final private TilePrototype[][] prototypes = new TilePrototype[TiledFile.values().length][];
+    /** Collider shapes shared by every instance of a tile */
+    final private ColliderCache colliders = new ColliderCache();
+    /** Path of the .tmj file for each "level:checkpoint" key */
+    final private Map<String, String> levelPaths = new HashMap<>();
+    /** Blobs opened so far; they are mapped, so keeping them costs little heap */
+    final private Map<String, LevelBlob> blobs = new HashMap<>();
+    /** Finish tiles and level properties of every checkpoint */
+    final private FileHandle indexFile;
+    final private LevelIndex index;
+    /** Whether the index has entries that are not on disk yet */
+    private boolean indexChanged;
+
+    /** Rows of a tile layer built as one part, which is one band of streamed chunks */
+    private static final int CHUNK_ROWS = TileBand.CHUNK_SIZE;
+    /** Objects of an object layer built as one part */
+    private static final int CHUNK_OBJECTS = 32;
+    /**
+     * Threads building levels by default.  Building in parallel has not been shown to
+     * pay for itself on any machine yet (see LoadBenchmark), so levels are built on
+     * the calling thread unless asked otherwise.
+     */
+    public static final int DEFAULT_WORKERS = 1;
+    /** Builds the parts of a level in parallel, or null to build them on the calling thread */
+    private ForkJoinPool pool;
+    /** Whether pool was made by setWorkers, and so is shut down by this loader */
+    private boolean ownsPool;
 
     public LevelLoader(AssetDirectory assetDirectory) {
         this.assetDirectory = assetDirectory;
+        // Levels are not loaded up front by the asset directory; baked blobs make that unnecessary
+        JsonValue directory = new JsonReader().parse(assetDirectory.getFileHandleResolver().resolve(assetDirectory.getDirectory()));
+        JsonValue levels = directory.get("levels");
+        for (JsonValue level : levels) {
+            levelPaths.put(level.name, level.asString());
+        }
+        indexFile = assetDirectory.getFileHandleResolver().resolve(LevelIndex.FILE);
+        index = LevelIndex.read(indexFile);
         LevelElement.collectAssets(assetDirectory);
-        loadTileset("tile-tileset", TiledFile.METEOR_TILESET);
-        loadTileset("space-tileset", TiledFile.SPACESHIP_TILESET);
-        loadTileset("object-tileset", TiledFile.OBJECTS);
+        setWorkers(DEFAULT_WORKERS);
+        JsonValue jsons = directory.get("jsons");
+        for (TiledFile tiledFile : TiledFile.values()) {
+            loadTileset(tiledFile);
+            hashTileset(jsons.getString(tiledFile.asset), tiledFile);
+        }
     }
 
-    private void loadTileset(String asset, TiledFile tiledFile) {
-        JsonValue tileset = assetDirectory.getEntry(asset, JsonValue.class);
-        Map<Integer, JsonValue> fileMap = new HashMap<>();
-        Map<Integer, TextureRegion> textureMap = new HashMap<>();
+    private void hashTileset(String path, TiledFile tiledFile) {
+        tilesetHashes[tiledFile.ordinal()] = LevelIndex.hash(assetDirectory.getFileHandleResolver().resolve(path));
+    }
 
-        for (JsonValue tile : tileset.get("tiles")) {
-            fileMap.put(tile.getInt("id"), tile);
-        }
+    private void loadTileset(TiledFile tiledFile) {
+        Tileset tileset = new Tileset(assetDirectory.getEntry(tiledFile.asset, JsonValue.class));
+        Map<Integer, TextureRegion> textureMap = new HashMap<>();
 
-        if (tileset.has("image")) {
-            // Get atlas and set up texture regions
-            Texture atlas = new Texture(tileset.getString("image"));
-            atlas.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+        if (tileset.getAtlas() != null) {
+            // Get atlas and set up texture regions; the image may itself be packed into the sprite atlas
+            TextureRegion atlas = assetDirectory.getEntry(tileset.getAtlas(), TextureRegion.class);
+            if (atlas == null) {
+                throw new GdxRuntimeException("Tileset image " + tileset.getAtlas() + " is not in the asset directory");
+            }
 
-            int tileSize = tileset.getInt("tilewidth");
-            int columns = tileset.getInt("columns");
-            for (JsonValue tile : tileset.get("tiles")) {
-                int id = tile.getInt("id");
-                int x = (id % columns)*tileSize;
-                int y = (id / columns)*tileSize;
-                textureMap.put(id, new TextureRegion(atlas, x, y, tileSize, tileSize));
+            int tileSize = tileset.getTileSize();
+            for (int id : tileset.getIds()) {
+                textureMap.put(id, new TextureRegion(atlas, tileset.getAtlasX(id), tileset.getAtlasY(id), tileSize, tileSize));
             }
         } else {
             // Get each tile's individual textures at set up regions
-            for (JsonValue tile : tileset.get("tiles")) {
-                Texture fullTexture = assetDirectory.getEntry(tile.getString("image"), Texture.class);
-                if (fullTexture == null) continue;
-                fullTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-                textureMap.put(tile.getInt("id"), new TextureRegion(fullTexture));
+            for (int id : tileset.getIds()) {
+                String image = tileset.getImage(id);
+                TextureRegion region = image == null ? null : assetDirectory.getEntry(image, TextureRegion.class);
+                if (region == null) continue;
+                region.getTexture().setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+                textureMap.put(id, new TextureRegion(region));
             }
         }
 
-        map.put(tiledFile, fileMap);
+        tilesets.put(tiledFile, tileset);
         textures.put(tiledFile, textureMap);
+        prototypes[tiledFile.ordinal()] = new TilePrototype[tileset.getCount()];
     }
 
     public AssetDirectory getAssetDirectory() {
         return assetDirectory;
     }
 
-    private LevelElement.Element stringToElementType(String element) {
+    public ColliderCache getColliderCache() {
+        return colliders;
+    }
+
+    /**
+     * Frees the shared collider shapes.
+     *
+     * This must not be called while any level built by this loader is still in use.
+     */
+    public synchronized void dispose() {
+        setWorkers(1);
+        colliders.dispose();
+    }
+
+    public static LevelElement.Element stringToElementType(String element) {
         if (element == null) return LevelElement.Element.MISC;
 
         switch (element) {
@@ -138,7 +214,7 @@ public class LevelLoader {
         }
     }
 
-    private BodyDef.BodyType stringToBodyType(String bodyType) {
+    public static BodyDef.BodyType stringToBodyType(String bodyType) {
         if (bodyType == null) return BodyDef.BodyType.StaticBody;
 
         switch (bodyType) {
@@ -164,120 +240,370 @@ public class LevelLoader {
         return color;
     }
 
-    private JsonValue mergeProperties(JsonValue a, JsonValue b) {
-        for (JsonValue bChild : b) {
-            String bName = bChild.getString("name");
-
-            boolean merged = false;
-            for (JsonValue aChild : a) {
-                merged = bName.equals(aChild.getString("name"));
-                if (merged) {
-                    mergeJsons(aChild.get("value"), bChild.get("value"));
-                    break;
-                }
-            }
-
-            if (!merged) {
-                a.addChild(bChild);
-            }
+    /**
+     * Returns the Tiled file of a level checkpoint.
+     *
+     * @param levelName      The level, e.g. "level_1"
+     * @param checkpointName The checkpoint, e.g. "checkpoint_0"
+     *
+     * @return the Tiled file of a level checkpoint
+     */
+    public FileHandle getLevelFile(String levelName, String checkpointName) {
+        String path = levelPaths.get(levelName + ":" + checkpointName);
+        if (path == null) {
+            throw new IllegalArgumentException("Unknown level '" + levelName + ":" + checkpointName + "'");
         }
+        return assetDirectory.getFileHandleResolver().resolve(path);
+    }
 
-        return a;
+    /**
+     * Streams the Tiled JSON of a level checkpoint.
+     *
+     * This is the slow path, used when there is no up to date blob.
+     */
+    private TiledLevel readLevelJson(String levelName, String checkpointName) {
+        return TiledLevel.read(getLevelFile(levelName, checkpointName));
     }
 
-    /** Merges json [b] into json [a]. **/
-    private JsonValue mergeJsons(JsonValue a, JsonValue b) {
-        if (a == null) return b;
-        if (b == null) return a;
-        if (!a.isObject() || !b.isObject()) return a;
+    /**
+     * Opens the baked blob of a level checkpoint.
+     *
+     * Returns null if there is no blob, if it is from another version of the
+     * format, if the .tmj file has been saved since it was baked, or if one of its
+     * tilesets differs from the one it was baked from, so that levels and tilesets
+     * being edited in Tiled are picked up without rebaking.  A blob stays open
+     * until it is rebaked.
+     */
+    private LevelBlob readLevelBlob(String levelName, String checkpointName) {
+        FileHandle json = getLevelFile(levelName, checkpointName);
+        FileHandle file = json.sibling(json.nameWithoutExtension() + LevelBlob.EXTENSION);
+        if (!file.exists()) return null;
+        long modified = file.lastModified();
+        if (json.exists() && json.lastModified() > modified) {
+            Gdx.app.log("LevelLoader", json.path() + " is newer than its blob, loading the JSON");
+            return null;
+        }
 
-        for (JsonValue bChild : b) {
-            JsonValue aChild = a.get(bChild.name);
-            if (aChild != null) {
-                if (aChild.name.equals("properties")) {
-                    mergeProperties(aChild, bChild);
-                } else {
-                    mergeJsons(aChild, bChild);
-                }
-            } else {
-                a.addChild(bChild);
+        String key = levelName + ":" + checkpointName;
+        LevelBlob blob = blobs.get(key);
+        if (blob == null || blob.getLastModified() != modified) {
+            try {
+                blob = LevelBlob.open(file);
+            } catch (IOException e) {
+                System.out.printf("WARNING: Cannot read %s (%s), loading the JSON\n", file.path(), e.getMessage());
+                blobs.remove(key);
+                return null;
+            }
+            blobs.put(key, blob);
+        }
+        for (int i = 0; i < blob.getTilesetCount(); i++) {
+            TiledFile tiledFile = blob.getTilesetFile(i);
+            if (blob.getTilesetHash(i) != tilesetHashes[tiledFile.ordinal()]) {
+                Gdx.app.log("LevelLoader", file.path() + " was baked from an older " + tiledFile
+                        + " tileset, loading the JSON");
+                return null;
             }
         }
+        return blob;
+    }
 
-        return a;
+    private void loadCollider(LevelElement.Def def, JsonValue json, TiledFile tiledFile, int id) {
+        // Every instance of a tile at a given size has the same collider
+        PolygonShape[] cached = colliders.get(tiledFile, id, def.width, def.height);
+        if (cached != null) {
+            def.vertices = null;
+            def.shapes = cached;
+            return;
+        }
+
+        def.vertices = colliderVertices(json, def.width, def.height,
+                def.texture.getRegionWidth(), def.texture.getRegionHeight());
+        def.shapes = colliders.put(tiledFile, id, def.width, def.height, def.vertices);
     }
 
-    private void loadCollider(LevelElement.Def def, JsonValue json) {
+    /**
+     * Converts a Tiled collider object into a polygon in body space.
+     *
+     * @param json         The first object of the tile's 'objectgroup'
+     * @param width        The width the tile is stretched to, in physics units
+     * @param height       The height the tile is stretched to, in physics units
+     * @param regionWidth  The width of the tile's texture, in pixels
+     * @param regionHeight The height of the tile's texture, in pixels
+     *
+     * @return the polygon vertices, centered on the body
+     */
+    public static float[] colliderVertices(JsonValue json, float width, float height,
+                                           float regionWidth, float regionHeight) {
         float ox = json.getFloat("x");
         float oy = json.getFloat("y");
 
-        float scaleX = def.width / def.texture.getRegionWidth();
-        float scaleY = def.height / def.texture.getRegionHeight();
+        float scaleX = width / regionWidth;
+        float scaleY = height / regionHeight;
 
+        float[] vertices;
         if (json.has("polygon")) {
             // Create PolygonShape from Tiled polygon
             JsonValue polygon = json.get("polygon");
 
-            def.vertices = new float[2 * polygon.size];
+            vertices = new float[2 * polygon.size];
             for (int i = 0; i < polygon.size; i++) {
-                def.vertices[2 * i]     = polygon.get(i).getFloat("x");
-                def.vertices[2 * i + 1] = polygon.get(i).getFloat("y");
+                vertices[2 * i]     = polygon.get(i).getFloat("x");
+                vertices[2 * i + 1] = polygon.get(i).getFloat("y");
             }
         } else {
             // Create PolygonShape from Tiled rectangle
-            float width  = json.getFloat("width");
-            float height = json.getFloat("height");
-            def.vertices = new float[] {0, 0, width, 0, height, width, 0, height};
+            float rectWidth  = json.getFloat("width");
+            float rectHeight = json.getFloat("height");
+            vertices = new float[] {0, 0, rectWidth, 0, rectHeight, rectWidth, 0, rectHeight};
         }
 
-        for (int i = 0; i < def.vertices.length; i += 2) {
-            def.vertices[i] = scaleX * (ox + def.vertices[i]) - def.width / 2;
-            def.vertices[i + 1] = def.height / 2 - scaleY * (oy + def.vertices[i + 1]);
+        for (int i = 0; i < vertices.length; i += 2) {
+            vertices[i] = scaleX * (ox + vertices[i]) - width / 2;
+            vertices[i + 1] = height / 2 - scaleY * (oy + vertices[i + 1]);
         }
+        return vertices;
     }
 
-    private void loadTile(LevelElement.Def def, JsonValue json) {
-        Properties properties = new Properties(json.get("properties"));
-        JsonValue body = properties.get("body");
-        if (body == null) body = new JsonValue(JsonValue.ValueType.object);
+    /**
+     * Returns the collider object of a tile, or null if it has none.
+     *
+     * Currently the collider is just the first object in 'objectgroup'. We can change this later if we end up
+     * having multiple objects in 'objectgroup'.
+     *
+     * @param tile The tile's JSON from its tileset
+     *
+     * @return the collider object of a tile, or null if it has none
+     */
+    public static JsonValue getCollider(JsonValue tile) {
+        return tile.has("objectgroup") ? tile.get("objectgroup").get("objects").child : null;
+    }
 
+    /**
+     * Sets up a tile or object from its properties and collider.
+     *
+     * @param shared Whether the collider is its tile's, which every instance shares
+     */
+    private void loadTile(LevelElement.Def def, Properties properties, JsonValue collider, boolean shared,
+                          TiledFile tiledFile, int id) {
         def.x += def.width  / 2 - 0.5f;
         def.y += def.height / 2 - 0.5f;
-        def.vx = body.getFloat("vx", 0);
-        def.vy = body.getFloat("vy", 0);
+        def.vx = properties.getFloat("body", "vx", 0);
+        def.vy = properties.getFloat("body", "vy", 0);
 
         def.angle = 0;
-        def.element = stringToElementType(body.getString("type", null));
-        def.canGrapple = body.getBoolean("canGrappleOn", true);
-        def.density = body.getFloat("density", 0);
-        def.restitution = body.getFloat("restitution", 0.3f);
-        def.isSensor = body.getBoolean("isSensor", false);
-        def.bodyType = stringToBodyType(body.getString("bodyType", null));
-        def.tint = argbToColor(body.getString("tint", null), new Color());
+        def.element = stringToElementType(properties.getString("body", "type", null));
+        def.canGrapple = properties.getBoolean("body", "canGrappleOn", true);
+        def.density = properties.getFloat("body", "density", 0);
+        def.restitution = properties.getFloat("body", "restitution", 0.3f);
+        def.isSensor = properties.getBoolean("body", "isSensor", false);
+        def.bodyType = stringToBodyType(properties.getString("body", "bodyType", null));
+        def.tint = argbToColor(properties.getString("body", "tint", null), new Color());
 
         def.properties = properties;
 
-        // Currently the collider is just the first object in 'objectgroup'. We can change this later if we end up
-        // having multiple objects in 'objectgroup'.
-        if (json.has("objectgroup")) {
-            loadCollider(def, json.get("objectgroup").get("objects").child);
-        } else {
+        def.pieces = null;
+        if (collider == null) {
             def.vertices = null;
+            def.shapes = null;
+        } else if (shared) {
+            loadCollider(def, collider, tiledFile, id);
+        } else {
+            // An object's own collider is not its tile's, so it must not be cached under the tile
+            def.vertices = colliderVertices(collider, def.width, def.height,
+                    def.texture.getRegionWidth(), def.texture.getRegionHeight());
+            def.shapes = null;
         }
     }
 
-    private void loadObject(LevelElement.Def def, JsonValue json, float tileSize, int levelHeight) {
-        def.name = json.getString("name");
-        float x = json.getInt("x") / tileSize;
-        float y = levelHeight - json.getInt("y") / tileSize;
+    /**
+     * What every instance of a tileset tile has in common.
+     *
+     * A level has thousands of tiles but only a few dozen distinct ones, so the
+     * body settings are read out of the tile's properties once, and a tile
+     * instance only adds its position.
+     *
+     * Prototypes are shared by the threads building a level, so they never change
+     * once built.
+     */
+    private class TilePrototype {
+        final LevelElement.Element element;
+        final BodyDef.BodyType bodyType;
+        final float vx, vy;
+        final float density, restitution;
+        final boolean isSensor, canGrapple;
+        final Color tint;
+        final Properties properties;
+        final TextureRegion texture;
+        /** Collider shapes of a 1x1 instance, or null if the tile has no collider */
+        final PolygonShape[] shapes;
+        /** Fixtures the collider would need as plain triangles */
+        final int triangles;
+        /** Whether instances are plain static tiles, which tile layers keep as keys */
+        final boolean plain;
+
+        TilePrototype(JsonValue tile, TiledFile tiledFile, int id) {
+            properties = getTileProperties(tiledFile, id);
+            vx = properties.getFloat("body", "vx", 0);
+            vy = properties.getFloat("body", "vy", 0);
+            element = stringToElementType(properties.getString("body", "type", null));
+            canGrapple = properties.getBoolean("body", "canGrappleOn", true);
+            density = properties.getFloat("body", "density", 0);
+            restitution = properties.getFloat("body", "restitution", 0.3f);
+            isSensor = properties.getBoolean("body", "isSensor", false);
+            bodyType = stringToBodyType(properties.getString("body", "bodyType", null));
+            // Shared by every instance; elements replace their tint rather than change it
+            tint = argbToColor(properties.getString("body", "tint", null), new Color());
+            texture = textures.get(tiledFile).get(id);
+            plain = bodyType == BodyDef.BodyType.StaticBody && LevelElement.isPlain(element, properties);
+
+            JsonValue collider = getCollider(tile);
+            if (collider == null) {
+                shapes = null;
+                triangles = 0;
+                return;
+            }
+            // Baked levels have already put these in the cache
+            PolygonShape[] cached = colliders.peek(tiledFile, id, 1, 1);
+            shapes = cached != null ? cached : colliders.share(tiledFile, id, 1, 1,
+                    colliderVertices(collider, 1, 1, texture.getRegionWidth(), texture.getRegionHeight()));
+            triangles = colliders.getTriangles(tiledFile, id, 1, 1);
+        }
+    }
+
+    /**
+     * Returns the prototype of a tileset tile, building it on first use.
+     *
+     * This may be called by several threads at once.  Two of them may both build
+     * a missing prototype, but they build the same thing, and its final fields
+     * make it safe to publish without a lock.
+     *
+     * @param tiledFile The tileset the tile comes from
+     * @param id        The tile id local to that tileset
+     *
+     * @return the prototype of the tile, or null if the tileset does not define it
+     */
+    private TilePrototype getTilePrototype(TiledFile tiledFile, int id) {
+        TilePrototype[] cache = prototypes[tiledFile.ordinal()];
+        if (id < 0 || id >= cache.length) return null;
+        TilePrototype prototype = cache[id];
+        if (prototype != null) return prototype;
+
+        JsonValue tile = tilesets.get(tiledFile).getTile(id);
+        if (tile == null) return null;
+        prototype = new TilePrototype(tile, tiledFile, id);
+        cache[id] = prototype;
+        return prototype;
+    }
+
+    /**
+     * Sets up a 1x1 tile from its prototype.
+     *
+     * @param def       The definition to fill, with its position already set
+     * @param prototype The tile's prototype
+     */
+    private static void loadTile(LevelElement.Def def, TilePrototype prototype) {
+        def.angle = 0;
+        def.vx = prototype.vx;
+        def.vy = prototype.vy;
+        def.element = prototype.element;
+        def.canGrapple = prototype.canGrapple;
+        def.density = prototype.density;
+        def.restitution = prototype.restitution;
+        def.isSensor = prototype.isSensor;
+        def.bodyType = prototype.bodyType;
+        def.tint = prototype.tint;
+        def.properties = prototype.properties;
+        def.texture = prototype.texture;
+        def.vertices = null;
+        def.shapes = prototype.shapes;
+    }
+
+    /** Counts the prototype collider shapes a tile of a part uses, built yet or not */
+    private static void countTile(TilePrototype prototype, LevelDef part) {
+        if (prototype.shapes != null) {
+            part.tileColliders++;
+            part.tileFixtures += prototype.shapes.length;
+            part.tileTriangles += prototype.triangles;
+        }
+    }
+
+    /**
+     * Builds the plain tiles of a tile layer from their keys, when their chunk is needed.
+     *
+     * Every tile a key is made for has its prototype built while the level loads,
+     * so the worker thread only reads prototypes.
+     */
+    private class LayerTiles implements TileBand.TileFactory {
+        private final int layerHeight;
+
+        LayerTiles(int layerHeight) {
+            this.layerHeight = layerHeight;
+        }
+
+        @Override
+        public LevelElement create(long key) {
+            int tile = LevelElement.tileTile(key);
+            LevelElement.Def def = new LevelElement.Def();
+            def.setTileName(key);
+            def.width = 1;
+            def.height = 1;
+            def.x = LevelElement.tileColumn(key);
+            def.y = layerHeight - LevelElement.tileRow(key) - 1;
+            loadTile(def, getTilePrototype(LevelBlob.tiledFile(tile), LevelBlob.tileId(tile)));
+            return LevelElement.create(def);
+        }
+    }
+
+    /** Returns the compiled properties of a tileset tile, or null if the tileset does not define it */
+    private Properties getTileProperties(TiledFile tiledFile, int id) {
+        return tilesets.get(tiledFile).getProperties(id);
+    }
+
+    /**
+     * Returns the properties of a Tiled object, layered over those of its tile.
+     *
+     * @param json      The object's own JSON properties, or null if it has none
+     * @param tiledFile The tileset of the object's tile
+     * @param id        The object's tile id local to that tileset
+     *
+     * @return the properties of a Tiled object
+     */
+    private Properties objectProperties(JsonValue json, TiledFile tiledFile, int id) {
+        Properties defaults = getTileProperties(tiledFile, id);
+        return json == null && defaults != null ? defaults : new Properties(json, defaults);
+    }
+
+    /**
+     * Returns the collider of a Tiled object, which is its tile's unless it overrides it.
+     */
+    public static JsonValue objectCollider(JsonValue json, JsonValue tile) {
+        if (json.has("objectgroup")) return getCollider(json);
+        return tile == null ? null : getCollider(tile);
+    }
+
+    private void loadObject(LevelElement.Def def, JsonValue json, JsonValue tile, TiledFile tiledFile, int id,
+                            float tileSize, int levelHeight) {
+        loadObject(def, json.getString("name"), json.getInt("x"), json.getInt("y"),
+                json.getFloat("width"), json.getFloat("height"), json.getFloat("rotation", 0),
+                objectProperties(json.get("properties"), tiledFile, id), objectCollider(json, tile),
+                !json.has("objectgroup"), tiledFile, id, tileSize, levelHeight);
+    }
+
+    private void loadObject(LevelElement.Def def, String name, int tiledX, int tiledY,
+                            float width, float height, float rotation,
+                            Properties properties, JsonValue collider, boolean shared,
+                            TiledFile tiledFile, int id, float tileSize, int levelHeight) {
+        def.name = name;
+        float x = tiledX / tileSize;
+        float y = levelHeight - tiledY / tileSize;
         def.x = x;
         def.y = y;
-        def.width = json.getFloat("width") / tileSize;
-        def.height = json.getFloat("height") / tileSize;
-        loadTile(def, json);
+        def.width = width / tileSize;
+        def.height = height / tileSize;
+        loadTile(def, properties, collider, shared, tiledFile, id);
 
         // Need to account that rotation is around the bottom-left origin in Tiled instead of the center origin here
-        def.angle = -MathUtils.degreesToRadians * json.getFloat("rotation", 0);
+        def.angle = -MathUtils.degreesToRadians * rotation;
         //Vector2 pos = new Vector2(def.x, def.y).rotateAroundRad(new Vector2(x-def.width/2f, y-def.height/2f), def.angle);
         Vector2 pos = new Vector2(def.x, def.y).rotateAroundRad(new Vector2(x-0.5f, y-0.5f), def.angle);
         def.x = pos.x;
@@ -288,11 +614,18 @@ public class LevelLoader {
         // TODO: GameObject/LevelElement separation is kinda gross
         private final Queue<GameObject> objects;
         private final Map<Integer, LevelElement> idToObject;
+        /** Image layer textures, whose GL state is set up when the level is used */
+        private final Array<Texture> images = new Array<>();
 
         final public int width, height;
         final public int music;
         final public int twoStars, threeStars;
 
+        /** Collider fixtures in this level, and what plain triangulation would have cost */
+        private int fixtureCount, triangleCount;
+        /** Prototype collider shapes handed out to tiles, counted in the cache on merge */
+        private int tileColliders, tileFixtures, tileTriangles;
+
         public LevelDef(int width, int height, int music, int twoStars, int threeStars) {
             objects = new Queue<>();
             idToObject = new HashMap<>();
@@ -319,200 +652,648 @@ public class LevelLoader {
         public Map<Integer, LevelElement> getIdToObject() {
             return idToObject;
         }
-    }
 
-    static class Pair {
-        public TiledFile tiledFile;
-        public int firstgid;
-        public Pair(TiledFile tiledFile, int firstgid) {
-            this.tiledFile = tiledFile;
-            this.firstgid = firstgid;
+        /** Appends the objects of a part of this level, in order */
+        private void merge(LevelDef part) {
+            for (GameObject object : part.objects) {
+                objects.addLast(object);
+            }
+            idToObject.putAll(part.idToObject);
+            images.addAll(part.images);
+        }
+
+        public int getFixtureCount() {
+            return fixtureCount;
+        }
+
+        public int getTriangleCount() {
+            return triangleCount;
+        }
+
+        /**
+         * Sets up the GL state of the level's image layer textures.
+         *
+         * Levels may be built on a background thread, which has no GL context,
+         * so this must be called on the GL thread before the level is drawn.
+         */
+        public void prepareTextures() {
+            for (Texture image : images) {
+                image.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+                image.setWrap(Texture.TextureWrap.Repeat, Texture.TextureWrap.Repeat);
+            }
+        }
+
+        /**
+         * Disposes the objects of a level that is not going to be played.
+         *
+         * Only call this if none of the objects were put into a world.
+         */
+        public void dispose() {
+            for (GameObject object : objects) {
+                object.dispose();
+            }
+            objects.clear();
+            idToObject.clear();
         }
     }
 
-    private Pair getTileset(JsonValue level, int gid) {
-        JsonValue ret = null;
-        for (JsonValue tileset : level.get("tilesets")) {
-            if (gid < tileset.getInt("firstgid")) {
-                break;
-            } else {
-                ret = tileset;
+    /**
+     * Returns what the menus need to know about a level checkpoint.
+     *
+     * This comes from the level index when it is up to date, so the level itself is
+     * only read if it changed since the index was written.
+     *
+     * @param levelName      The level, e.g. "level_1"
+     * @param checkpointName The checkpoint, e.g. "checkpoint_0"
+     *
+     * @return the checkpoint's index entry
+     */
+    public synchronized LevelIndex.Entry getLevelInfo(String levelName, String checkpointName) {
+        String key = levelName + ":" + checkpointName;
+        long hash = LevelIndex.hash(getLevelFile(levelName, checkpointName));
+        LevelIndex.Entry entry = index.get(key, hash);
+        if (entry != null) return entry;
+
+        entry = indexLevel(levelName, checkpointName);
+        entry.hash = hash;
+        index.put(key, entry);
+        indexChanged = true;
+        return entry;
+    }
+
+    /** Reads a level to make its index entry; the hash is left for the caller */
+    private LevelIndex.Entry indexLevel(String levelName, String checkpointName) {
+        LevelIndex.Entry entry = new LevelIndex.Entry();
+        LevelBlob blob = readLevelBlob(levelName, checkpointName);
+        if (blob != null) {
+            entry.finishTile = blob.getFinishTile();
+            entry.music = blob.getMusic();
+            entry.twoStars = blob.getTwoStars();
+            entry.threeStars = blob.getThreeStars();
+            return entry;
+        }
+
+        TiledLevel level = readLevelJson(levelName, checkpointName);
+        Properties levelProperties = new Properties(level.properties);
+        entry.music = levelProperties.getInt("music", 1);
+        entry.twoStars = levelProperties.getInt("twoStars", 1);
+        entry.threeStars = levelProperties.getInt("threeStars", 1);
+
+        GidTable table = new GidTable(level, tilesets);
+        for (TiledLevel.Layer layer : level.layers) {
+            if(layer.type.equals("objectgroup")){
+                for (JsonValue jsonObject : layer.objects) {
+                    int gid = jsonObject.getInt("gid");
+                    if (!table.contains(gid)) continue;
+                    Properties properties = objectProperties(jsonObject.get("properties"), table.files[gid], table.ids[gid]);
+                    if(stringToElementType(properties.getString("body", "type", null)) == LevelElement.Element.FINISH){
+                        entry.finishTile = LevelBlob.pack(table.files[gid], table.ids[gid]);
+                        return entry;
+                    }
+                }
             }
         }
-        return new Pair(stringToTiledFile(ret.getString("source")), ret.getInt("firstgid"));
+        return entry;
     }
 
-    private JsonValue getTiledObj(JsonValue level, int gid) {
-        Pair tileset = getTileset(level, gid);
-        return map.get(tileset.tiledFile).get(gid - tileset.firstgid);
+    /**
+     * Writes the level index back to disk if any entry was out of date.
+     *
+     * Failing to write it only costs time on the next start, so that is not an error.
+     */
+    public synchronized void saveLevelIndex() {
+        if (!indexChanged) return;
+        try {
+            index.write(indexFile);
+            indexChanged = false;
+        } catch (IOException e) {
+            System.out.printf("WARNING: Could not save the level index: %s\n", e.getMessage());
+        }
     }
 
-    private TextureRegion getTexture(JsonValue level, int gid) {
-        Pair tileset = getTileset(level, gid);
-        return textures.get(tileset.tiledFile).get(gid - tileset.firstgid);
+    public synchronized TextureRegion getWinTexture(String levelName, String checkpointName){
+        int finish = getLevelInfo(levelName, checkpointName).finishTile;
+        return finish == 0 ? null : textures.get(LevelBlob.tiledFile(finish)).get(LevelBlob.tileId(finish));
     }
 
-    public TextureRegion getWinTexture(String levelName, String checkpointName){
-        JsonValue level = assetDirectory.getEntry(levelName+":"+checkpointName, JsonValue.class);
-        LevelElement.Def levelElementDef = new LevelElement.Def();
+    /**
+     * Returns the properties of a baked object, parsing each distinct JSON string once.
+     *
+     * @param blob   The level
+     * @param layer  The object layer
+     * @param index  The object
+     * @param parsed Properties already compiled, by string index
+     *
+     * @return the properties of a baked object
+     */
+    private Properties getBlobProperties(LevelBlob blob, int layer, int index, Properties[] parsed) {
+        int tile = blob.getObjectTile(layer, index);
+        Properties defaults = getTileProperties(LevelBlob.tiledFile(tile), LevelBlob.tileId(tile));
+        int properties = blob.getObjectProperties(layer, index);
+        if (properties == LevelBlob.NO_STRING) {
+            return defaults;
+        }
+        if (parsed[properties] == null) {
+            parsed[properties] = new Properties(new JsonReader().parse(blob.getString(properties)));
+        }
+        return parsed[properties].layer(defaults);
+    }
 
-        int levelWidth = level.getInt("width");
-        int levelHeight = level.getInt("height");
-        int tileSize = level.getInt("tilewidth");
-        assert tileSize == level.getInt("tileheight");
+    /**
+     * Builds a level checkpoint.
+     *
+     * This may be called from a {@link LevelPrefetcher} thread or the hot reload
+     * thread of PlayMode.  The loader's caches are not thread safe, so only one
+     * level is built at a time.
+     *
+     * @param levelName      The level, e.g. "level_1"
+     * @param checkpointName The checkpoint, e.g. "checkpoint_0"
+     *
+     * @return the level's objects, ready to be added to a world
+     */
+    public synchronized LevelDef loadLevel(String levelName, String checkpointName) {
+        LevelBlob blob = readLevelBlob(levelName, checkpointName);
+        LevelDef levelDef;
+        if (blob != null) {
+            levelDef = loadLevel(blob);
+        } else {
+            Gdx.app.log("LevelLoader", "No baked blob for " + levelName + ":" + checkpointName + ", parsing the JSON");
+            levelDef = loadLevel(readLevelJson(levelName, checkpointName));
+        }
 
-        Properties levelProperties = new Properties(level.get("properties"));
+        levelDef.fixtureCount = colliders.getLevelFixtures();
+        levelDef.triangleCount = colliders.getLevelTriangles();
+        // The debug overlay shows these too; this is for levels that are never played
+        if (Gdx.app.getLogLevel() >= Application.LOG_DEBUG) {
+            Gdx.app.debug("LevelLoader", String.format("Loaded %s:%s with %d collider fixtures (%d as triangles)",
+                    levelName, checkpointName, levelDef.fixtureCount, levelDef.triangleCount));
+        }
+        return levelDef;
+    }
 
-        LevelDef levelDef = new LevelDef(levelWidth, levelHeight, levelProperties.getInt("music", 1),
-                levelProperties.getInt("twoStars", 1), levelProperties.getInt("threeStars", 1));
+    /**
+     * Builds a level checkpoint with its tile layers repeated to a bigger size.
+     *
+     * This is for benchmarking levels bigger than any that ship.  The checkpoint
+     * must have an up to date blob.
+     *
+     * @param levelName      The level, e.g. "level_2"
+     * @param checkpointName The checkpoint, e.g. "checkpoint_5"
+     * @param width          The width to repeat the tiles to, in tiles
+     * @param height         The height to repeat the tiles to, in tiles
+     *
+     * @return the level's objects, ready to be added to a world
+     */
+    public synchronized LevelDef loadRepeatedLevel(String levelName, String checkpointName, int width, int height) {
+        LevelBlob blob = readLevelBlob(levelName, checkpointName);
+        if (blob == null) {
+            throw new GdxRuntimeException("No baked blob for " + levelName + ":" + checkpointName + " to repeat");
+        }
+        LevelDef levelDef = loadLevel(blob.repeat(width, height));
+        levelDef.fixtureCount = colliders.getLevelFixtures();
+        levelDef.triangleCount = colliders.getLevelTriangles();
+        return levelDef;
+    }
 
-        for (JsonValue layer : level.get("layers")) {
-            if(layer.getString("type").equals("objectgroup")){
-                for (JsonValue jsonObject : layer.get("objects")) {
-                    int gid = jsonObject.getInt("gid");
-                    mergeJsons(jsonObject, getTiledObj(level, gid));
-                    levelElementDef.texture = getTexture(level, gid);
-                    loadObject(levelElementDef, jsonObject, tileSize, levelHeight);
+    /**
+     * Sets how many threads build the parts of a level.
+     *
+     * With one worker, levels are built on the calling thread.  Only the CPU side
+     * of a level is built in parallel; bodies are created later, when PlayMode
+     * adds the objects to its world.
+     *
+     * @param workers The number of worker threads
+     */
+    public synchronized void setWorkers(int workers) {
+        setPool(workers > 1 ? new ForkJoinPool(workers) : null);
+        ownsPool = pool != null;
+    }
 
-                    if(levelElementDef.element == LevelElement.Element.FINISH){
-                        return levelElementDef.texture;
-                    }
+    /**
+     * Sets the pool that builds the parts of a level.
+     *
+     * The pool stays the caller's, and is not shut down by this loader.  This lets
+     * a benchmark switch between pools that are already running.
+     *
+     * @param pool The pool to build on, or null to build on the calling thread
+     */
+    public synchronized void setPool(ForkJoinPool pool) {
+        if (this.pool != null && ownsPool) this.pool.shutdown();
+        this.pool = pool;
+        ownsPool = false;
+    }
+
+    /** Returns an empty LevelDef to build one part of a level into */
+    private static LevelDef newPart() {
+        return new LevelDef(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Builds the parts of a level and merges them, in order, into the level.
+     *
+     * @param parts    The parts, in the order their objects belong in the level
+     * @param levelDef The level to merge them into
+     */
+    private void buildParts(Array<Callable<LevelDef>> parts, LevelDef levelDef) {
+        try {
+            if (pool == null) {
+                for (Callable<LevelDef> part : parts) {
+                    mergePart(levelDef, part.call());
                 }
+                return;
             }
+            List<Callable<LevelDef>> tasks = new ArrayList<>(parts.size);
+            for (Callable<LevelDef> part : parts) {
+                tasks.add(part);
+            }
+            for (Future<LevelDef> future : pool.invokeAll(tasks)) {
+                mergePart(levelDef, future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new GdxRuntimeException("Could not build level", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while building level", e);
+        } catch (Exception e) {
+            throw new GdxRuntimeException("Could not build level", e);
         }
-        return null;
     }
 
-    public LevelDef loadLevel(String levelName, String checkpointName) {
-        JsonValue level = assetDirectory.getEntry(levelName+":"+checkpointName, JsonValue.class);
+    private void mergePart(LevelDef levelDef, LevelDef part) {
+        levelDef.merge(part);
+        colliders.count(part.tileColliders, part.tileFixtures, part.tileTriangles);
+    }
+
+    /**
+     * Builds a level from its baked blob.
+     *
+     * Nothing here searches tilesets or merges JSON: tiles are already resolved to
+     * their tileset, and colliders are already decomposed.  Tile layers are built
+     * in chunks of rows, and object layers in runs of objects, on the worker pool.
+     */
+    private LevelDef loadLevel(final LevelBlob blob) {
+        LevelDef levelDef = new LevelDef(blob.getWidth(), blob.getHeight(), blob.getMusic(),
+                blob.getTwoStars(), blob.getThreeStars());
+        colliders.beginLevel();
+        for (int i = 0; i < blob.getColliderCount(); i++) {
+            int tile = blob.getColliderTile(i);
+            TiledFile tiledFile = LevelBlob.tiledFile(tile);
+            int id = LevelBlob.tileId(tile);
+            float width = blob.getColliderWidth(i);
+            float height = blob.getColliderHeight(i);
+            // Objects' own colliders are built by their objects
+            if (blob.getColliderOwner(i) != LevelBlob.NO_OWNER) continue;
+            // Shapes outlive levels, so only copy out pieces we have not seen before
+            if (!colliders.contains(tiledFile, id, width, height)) {
+                colliders.putDecomposed(tiledFile, id, width, height,
+                        blob.getColliderPieces(i), blob.getColliderTriangles(i));
+            }
+        }
+
+        // Filled in by whichever part gets to an object first; Properties never change once built
+        final Properties[] parsed = new Properties[blob.getStringCount()];
+        Array<Callable<LevelDef>> parts = new Array<>();
+        for (int layer = 0; layer < blob.getLayerCount(); layer++) {
+            final int layerIndex = layer;
+            final Vector2 parallax = new Vector2(blob.getParallaxX(layer), blob.getParallaxY(layer));
+
+            switch (blob.getLayerType(layer)) {
+                case LevelBlob.TILE_LAYER:
+                    final LayerTiles tiles = new LayerTiles(blob.getLayerHeight(layer));
+                    for (int row = 0; row < blob.getLayerHeight(layer); row += CHUNK_ROWS) {
+                        final int start = row;
+                        final int end = Math.min(row + CHUNK_ROWS, blob.getLayerHeight(layer));
+                        parts.add(new Callable<LevelDef>() {
+                            @Override
+                            public LevelDef call() {
+                                return loadTiles(blob, layerIndex, start, end, parallax, tiles);
+                            }
+                        });
+                    }
+                    break;
+                case LevelBlob.OBJECT_LAYER:
+                    for (int i = 0; i < blob.getObjectCount(layer); i += CHUNK_OBJECTS) {
+                        final int start = i;
+                        final int end = Math.min(i + CHUNK_OBJECTS, blob.getObjectCount(layer));
+                        parts.add(new Callable<LevelDef>() {
+                            @Override
+                            public LevelDef call() {
+                                return loadObjects(blob, layerIndex, start, end, parsed, parallax);
+                            }
+                        });
+                    }
+                    break;
+                case LevelBlob.IMAGE_LAYER:
+                    final String image = blob.getString(blob.getLayerImage(layer));
+                    parts.add(new Callable<LevelDef>() {
+                        @Override
+                        public LevelDef call() {
+                            LevelDef part = newPart();
+                            addImage(part, image, parallax);
+                            return part;
+                        }
+                    });
+                    break;
+            }
+        }
+        buildParts(parts, levelDef);
+        return levelDef;
+    }
+
+    /** Builds rows [start, end) of a baked tile layer */
+    private LevelDef loadTiles(LevelBlob blob, int layer, int start, int end, Vector2 parallax,
+                               LayerTiles tiles) {
+        LevelDef part = newPart();
         LevelElement.Def levelElementDef = new LevelElement.Def();
+        int layerWidth = blob.getLayerWidth(layer);
+        int layerHeight = blob.getLayerHeight(layer);
+        TileBand band = new TileBand(layer, layerWidth, layerHeight - end, end - start, tiles);
+
+        // Tiles by definition have a width and height of 1
+        levelElementDef.width = 1;
+        levelElementDef.height = 1;
+
+        for (int i = start * layerWidth; i < end * layerWidth; i++) {
+            int packed = blob.getTile(layer, i);
+            if (packed == 0) continue;
+            TilePrototype prototype = getTilePrototype(LevelBlob.tiledFile(packed), LevelBlob.tileId(packed));
+            if (prototype == null) continue;
+            int tiledX = i % layerWidth;
+            int tiledY = i / layerWidth;
+            addTile(part, band, levelElementDef, prototype, LevelElement.tileKey(packed, tiledX, tiledY),
+                    layerHeight, parallax);
+        }
+        addBand(part, band);
+        return part;
+    }
 
-        int levelWidth = level.getInt("width");
-        int levelHeight = level.getInt("height");
-        int tileSize = level.getInt("tilewidth");
-        assert tileSize == level.getInt("tileheight");
+    /** Builds objects [start, end) of a baked object layer */
+    private LevelDef loadObjects(LevelBlob blob, int layer, int start, int end, Properties[] parsed,
+                                 Vector2 parallax) {
+        LevelDef part = newPart();
+        LevelElement.Def levelElementDef = new LevelElement.Def();
+        for (int i = start; i < end; i++) {
+            int packed = blob.getObjectTile(layer, i);
+            TiledFile tiledFile = LevelBlob.tiledFile(packed);
+            int id = LevelBlob.tileId(packed);
+            JsonValue tile = tilesets.get(tiledFile).getTile(id);
+
+            levelElementDef.texture = textures.get(tiledFile).get(id);
+            levelElementDef.triggerTexture = textures.get(TiledFile.SPACESHIP_TILESET).get(57);
+
+            int own = blob.getObjectCollider(layer, i);
+            loadObject(levelElementDef, blob.getString(blob.getObjectName(layer, i)),
+                    blob.getObjectX(layer, i), blob.getObjectY(layer, i),
+                    blob.getObjectWidth(layer, i), blob.getObjectHeight(layer, i),
+                    blob.getObjectRotation(layer, i), getBlobProperties(blob, layer, i, parsed),
+                    own == LevelBlob.NO_COLLIDER ? getCollider(tile) : null, true,
+                    tiledFile, id, blob.getTileSize(), blob.getHeight());
+            if (own != LevelBlob.NO_COLLIDER) {
+                levelElementDef.pieces = blob.getColliderPieces(own);
+            }
+            LevelElement newObject = LevelElement.create(levelElementDef);
+            if (newObject.getElement() == LevelElement.Element.FINISH) {
+                addFinishSparkles(part, levelElementDef, parallax);
+            }
+            newObject.setParallaxFactor(parallax);
+            part.addObject(blob.getObjectId(layer, i), newObject);
+        }
+        return part;
+    }
+
+    /**
+     * Builds a level by walking its Tiled JSON.
+     *
+     * This is the path for levels that have not been baked, or that were edited since.
+     * It is split into parts the same way as a baked level.
+     */
+    private LevelDef loadLevel(TiledLevel level) {
+        int levelWidth = level.width;
+        final int levelHeight = level.height;
+        final int tileSize = level.tileWidth;
+        assert tileSize == level.tileHeight;
 
-        Properties levelProperties = new Properties(level.get("properties"));
+        Properties levelProperties = new Properties(level.properties);
 
         LevelDef levelDef = new LevelDef(levelWidth, levelHeight, levelProperties.getInt("music", 1),
                 levelProperties.getInt("twoStars", 1), levelProperties.getInt("threeStars", 1));
-
-        for (JsonValue layer : level.get("layers")) {
-            String type = layer.getString("type");
+        colliders.beginLevel();
+        final GidTable table = new GidTable(level, tilesets);
+
+        Array<Callable<LevelDef>> parts = new Array<>();
+        for (int index = 0; index < level.layers.size; index++) {
+            final TiledLevel.Layer layer = level.layers.get(index);
+            final int layerIndex = index;
+            String type = layer.type;
             // TODO: Transfer coordinates from parallaxed layers from Tiled more accurately
-            Vector2 parallax = new Vector2(
-                    1 - layer.getFloat("parallaxx", 1),
-                    1 - layer.getFloat("parallaxy", 1));
+            final Vector2 parallax = new Vector2(1 - layer.parallaxX, 1 - layer.parallaxY);
 
             switch (type) {
                 case "tilelayer":
-                    int[] data = layer.get("data").asIntArray();
-                    int layerWidth = layer.getInt("width");
-                    int layerHeight = layer.getInt("height");
-
-                    // Tiles by definition have a width and height of 1
-                    levelElementDef.width = 1;
-                    levelElementDef.height = 1;
-
-                    // NOTE: ID's in data array is 1-index, so subtract 1 to match tileset 0-index
-                    for (int i = 0; i < data.length; i++) {
-                        // need to convert to game object, for now, its JsonValue object
-                        int id = data[i];
-                        if (id == 0) continue;
-                        JsonValue tile = getTiledObj(level, id);
-                        if (tile == null) continue;
-                        int tiledX = i % layerWidth;
-                        int tiledY = i / layerWidth;
-                        levelElementDef.name = String.format("Tile #%d (%d, %d)", id, tiledX, tiledY);
-                        levelElementDef.x = tiledX;
-                        levelElementDef.y = layerHeight - tiledY - 1;
-                        levelElementDef.texture = getTexture(level, id);
-                        loadTile(levelElementDef, tile);
-                        LevelElement element = LevelElement.create(levelElementDef);
-
-                        element.setParallaxFactor(parallax);
-                        levelDef.addObject(element);
+                    final LayerTiles tiles = new LayerTiles(layer.height);
+                    for (int row = 0; row < layer.height; row += CHUNK_ROWS) {
+                        final int start = row;
+                        final int end = Math.min(row + CHUNK_ROWS, layer.height);
+                        parts.add(new Callable<LevelDef>() {
+                            @Override
+                            public LevelDef call() {
+                                return loadTiles(table, layer, layerIndex, start, end, parallax, tiles);
+                            }
+                        });
                     }
                     break;
                 case "objectgroup":
-                    for (JsonValue jsonObject : layer.get("objects")) {
-                        int gid = jsonObject.getInt("gid");
-                        mergeJsons(jsonObject, getTiledObj(level, gid));
-
-                        levelElementDef.texture = getTexture(level, gid);
-                        // TODO: Can we do this cleaner? Maybe in tiled?
-                        levelElementDef.triggerTexture = textures.get(TiledFile.SPACESHIP_TILESET).get(57);
-
-                        loadObject(levelElementDef, jsonObject, tileSize, levelHeight);
-                        LevelElement newObject = LevelElement.create(levelElementDef);
-                        if(newObject.getElement() == LevelElement.Element.FINISH){
-                            LevelElement.Def levelElementDef2 = new LevelElement.Def();
-                            levelElementDef2.name = "sparkle";
-                            float x = (levelElementDef.x + levelElementDef.width/4);
-                            float y = (levelElementDef.y + levelElementDef.height/2 + .2f);
-                            levelElementDef2.x = x;
-                            levelElementDef2.y = y;
-                            levelElementDef2.width = .4f;
-                            levelElementDef2.height = .4f;
-
-                            levelElementDef2.vx = 0;
-                            levelElementDef2.vy = 0;
-
-                            levelElementDef2.angle = 0;
-                            levelElementDef2.element = LevelElement.Element.SPARKLE;
-                            levelElementDef2.canGrapple = false;
-                            levelElementDef2.density = 0;
-                            levelElementDef2.restitution = 0;
-                            levelElementDef2.isSensor = true;
-                            levelElementDef2.bodyType = BodyDef.BodyType.StaticBody;
-                            levelElementDef2.tint = Color.WHITE;
-                            levelElementDef2.texture = getTexture(level, gid);
-
-                            levelElementDef2.properties = null;
-                            levelElementDef2.vertices = null;
-                            LevelElement newObject2 = LevelElement.create(levelElementDef2);
-                            newObject2.setParallaxFactor(parallax);
-                            levelDef.addObject(newObject2);
-                            levelElementDef2.x = (levelElementDef.x - levelElementDef.width/2 - .2f);
-                            levelElementDef2.y = (levelElementDef.y - levelElementDef.height/2 - .1f);
-                            LevelElement newObject3 = LevelElement.create(levelElementDef2);
-                            newObject3.setParallaxFactor(parallax);
-                            levelDef.addObject(newObject3);
-                            levelElementDef2.x = (levelElementDef.x - levelElementDef.width/2 - .3f);
-                            levelElementDef2.y = (levelElementDef.y + levelElementDef.height/4);
-                            LevelElement newObject4 = LevelElement.create(levelElementDef2);
-                            newObject4.setParallaxFactor(parallax);
-                            levelDef.addObject(newObject4);
-                            levelElementDef2.x = (levelElementDef.x + levelElementDef.width/2 + .15f);
-                            levelElementDef2.y = (levelElementDef.y - levelElementDef.height/2 - .2f);
-                            LevelElement newObject5 = LevelElement.create(levelElementDef2);
-                            newObject5.setParallaxFactor(parallax);
-                            levelDef.addObject(newObject5);
-                            levelElementDef2.x = (levelElementDef.x + levelElementDef.width/2 + .5f);
-                            levelElementDef2.y = (levelElementDef.y);
-                            LevelElement newObject6 = LevelElement.create(levelElementDef2);
-                            newObject6.setParallaxFactor(parallax);
-                            levelDef.addObject(newObject6);
-                        }
-                        newObject.setParallaxFactor(parallax);
-                        levelDef.addObject(jsonObject.getInt("id"), newObject);
+                    for (int i = 0; i < layer.objects.size; i += CHUNK_OBJECTS) {
+                        final int start = i;
+                        final int end = Math.min(i + CHUNK_OBJECTS, layer.objects.size);
+                        parts.add(new Callable<LevelDef>() {
+                            @Override
+                            public LevelDef call() {
+                                return loadObjects(table, layer, start, end, tileSize, levelHeight, parallax);
+                            }
+                        });
                     }
                     break;
                 case "imagelayer":
-                    String path = layer.getString("image");
-                    String filename = path.substring(path.lastIndexOf("/") + 1);
-                    Texture image = assetDirectory.getEntry(filename, Texture.class);
-                    image.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
-                    ImageObject imageObject = new ImageObject(image);
-                    imageObject.setParallaxFactor(parallax);
-                    levelDef.addObject(imageObject);
+                    String path = layer.image;
+                    final String image = path.substring(path.lastIndexOf("/") + 1);
+                    parts.add(new Callable<LevelDef>() {
+                        @Override
+                        public LevelDef call() {
+                            LevelDef part = newPart();
+                            addImage(part, image, parallax);
+                            return part;
+                        }
+                    });
                     break;
                 default:
                     System.out.printf("ERROR: Cannot parse layer type '%s'\n", type);
                     break;
             }
         }
-
+        buildParts(parts, levelDef);
         return levelDef;
     }
+
+    /** Builds rows [start, end) of a Tiled tile layer */
+    private LevelDef loadTiles(GidTable table, TiledLevel.Layer layer, int layerIndex, int start, int end,
+                               Vector2 parallax, LayerTiles tiles) {
+        LevelDef part = newPart();
+        LevelElement.Def levelElementDef = new LevelElement.Def();
+        int[] data = layer.data.items;
+        int layerWidth = layer.width;
+        int layerHeight = layer.height;
+        TileBand band = new TileBand(layerIndex, layerWidth, layerHeight - end, end - start, tiles);
+
+        // Tiles by definition have a width and height of 1
+        levelElementDef.width = 1;
+        levelElementDef.height = 1;
+
+        for (int i = start * layerWidth; i < Math.min(end * layerWidth, layer.data.size); i++) {
+            int id = data[i];
+            if (!table.contains(id)) continue;
+            TilePrototype prototype = getTilePrototype(table.files[id], table.ids[id]);
+            if (prototype == null) continue;
+            int tiledX = i % layerWidth;
+            int tiledY = i / layerWidth;
+            addTile(part, band, levelElementDef, prototype, LevelElement.tileKey(table.pack(id), tiledX, tiledY),
+                    layerHeight, parallax);
+        }
+        addBand(part, band);
+        return part;
+    }
+
+    /** Builds objects [start, end) of a Tiled object layer */
+    private LevelDef loadObjects(GidTable table, TiledLevel.Layer layer, int start, int end,
+                                 int tileSize, int levelHeight, Vector2 parallax) {
+        LevelDef part = newPart();
+        LevelElement.Def levelElementDef = new LevelElement.Def();
+        for (int i = start; i < end; i++) {
+            JsonValue jsonObject = layer.objects.get(i);
+            int gid = jsonObject.getInt("gid");
+            if (!table.contains(gid)) {
+                System.out.printf("WARNING: Object %d has unknown tile %d\n", jsonObject.getInt("id"), gid);
+                continue;
+            }
+            JsonValue tile = table.tiles[gid];
+
+            levelElementDef.texture = textures.get(table.files[gid]).get(table.ids[gid]);
+            // TODO: Can we do this cleaner? Maybe in tiled?
+            levelElementDef.triggerTexture = textures.get(TiledFile.SPACESHIP_TILESET).get(57);
+
+            loadObject(levelElementDef, jsonObject, tile, table.files[gid], table.ids[gid],
+                    tileSize, levelHeight);
+            LevelElement newObject = LevelElement.create(levelElementDef);
+            if(newObject.getElement() == LevelElement.Element.FINISH){
+                addFinishSparkles(part, levelElementDef, parallax);
+            }
+            newObject.setParallaxFactor(parallax);
+            part.addObject(jsonObject.getInt("id"), newObject);
+        }
+        return part;
+    }
+
+    /**
+     * Adds a tile to the chunk of its column if it can be streamed, or builds it into a part.
+     *
+     * Only plain static tiles that move with the world are streamed, and they are
+     * kept as their keys until their chunk is needed.  Anything with behaviour or
+     * parallax is built now, and stays in the world for as long as the level does.
+     *
+     * @param part      The part of the level being built
+     * @param band      The band of the part's rows
+     * @param def       A definition to build the tile with
+     * @param prototype The tile's prototype
+     * @param key       The tile's key
+     * @param height    The height of the tile's layer
+     * @param parallax  The parallax factor of the tile's layer
+     */
+    private static void addTile(LevelDef part, TileBand band, LevelElement.Def def, TilePrototype prototype,
+                                long key, int height, Vector2 parallax) {
+        countTile(prototype, part);
+        if (prototype.plain && parallax.isZero()) {
+            band.add(key);
+            return;
+        }
+        def.setTileName(key);
+        def.x = LevelElement.tileColumn(key);
+        def.y = height - LevelElement.tileRow(key) - 1;
+        loadTile(def, prototype);
+        LevelElement tile = LevelElement.create(def);
+        tile.setParallaxFactor(parallax);
+        part.addObject(tile);
+    }
+
+    /** Puts a band under the rest of its part's tiles, unless nothing was streamed */
+    private static void addBand(LevelDef part, TileBand band) {
+        if (band.getTileCount() > 0) {
+            part.objects.addFirst(band);
+        }
+    }
+
+    private void addImage(LevelDef levelDef, String filename, Vector2 parallax) {
+        Texture image = assetDirectory.getEntry(filename, Texture.class);
+        levelDef.images.add(image);
+        ImageObject imageObject = new ImageObject(image);
+        imageObject.setParallaxFactor(parallax);
+        levelDef.addObject(imageObject);
+    }
+
+    /**
+     * Scatters sparkles around a finish line.
+     *
+     * @param levelDef The level being built
+     * @param finish   The finish line's definition
+     * @param parallax The parallax factor of the finish line's layer
+     */
+    private void addFinishSparkles(LevelDef levelDef, LevelElement.Def finish, Vector2 parallax) {
+        LevelElement.Def levelElementDef2 = new LevelElement.Def();
+        levelElementDef2.name = "sparkle";
+        float x = (finish.x + finish.width/4);
+        float y = (finish.y + finish.height/2 + .2f);
+        levelElementDef2.x = x;
+        levelElementDef2.y = y;
+        levelElementDef2.width = .4f;
+        levelElementDef2.height = .4f;
+
+        levelElementDef2.vx = 0;
+        levelElementDef2.vy = 0;
+
+        levelElementDef2.angle = 0;
+        levelElementDef2.element = LevelElement.Element.SPARKLE;
+        levelElementDef2.canGrapple = false;
+        levelElementDef2.density = 0;
+        levelElementDef2.restitution = 0;
+        levelElementDef2.isSensor = true;
+        levelElementDef2.bodyType = BodyDef.BodyType.StaticBody;
+        levelElementDef2.tint = Color.WHITE;
+        levelElementDef2.texture = finish.texture;
+
+        levelElementDef2.properties = null;
+        levelElementDef2.vertices = null;
+        levelElementDef2.shapes = null;
+        LevelElement newObject2 = LevelElement.create(levelElementDef2);
+        newObject2.setParallaxFactor(parallax);
+        levelDef.addObject(newObject2);
+        levelElementDef2.x = (finish.x - finish.width/2 - .2f);
+        levelElementDef2.y = (finish.y - finish.height/2 - .1f);
+        LevelElement newObject3 = LevelElement.create(levelElementDef2);
+        newObject3.setParallaxFactor(parallax);
+        levelDef.addObject(newObject3);
+        levelElementDef2.x = (finish.x - finish.width/2 - .3f);
+        levelElementDef2.y = (finish.y + finish.height/4);
+        LevelElement newObject4 = LevelElement.create(levelElementDef2);
+        newObject4.setParallaxFactor(parallax);
+        levelDef.addObject(newObject4);
+        levelElementDef2.x = (finish.x + finish.width/2 + .15f);
+        levelElementDef2.y = (finish.y - finish.height/2 - .2f);
+        LevelElement newObject5 = LevelElement.create(levelElementDef2);
+        newObject5.setParallaxFactor(parallax);
+        levelDef.addObject(newObject5);
+        levelElementDef2.x = (finish.x + finish.width/2 + .5f);
+        levelElementDef2.y = (finish.y);
+        LevelElement newObject6 = LevelElement.create(levelElementDef2);
+        newObject6.setParallaxFactor(parallax);
+        levelDef.addObject(newObject6);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+/*
+ * LevelPrefetcher.java
+ *
+ * Loads the checkpoint the player is most likely to play next while they are
+ * still on the level complete and loading screens, so that starting it does not
+ * stall the render thread on parsing and collider decomposition.
+ */
+package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
+
+import com.badlogic.gdx.Gdx;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the next level checkpoint on a background thread.
+ *
+ * While the player looks at the level complete screen and the loading screen,
+ * the checkpoint they will most likely play next is loaded ahead of time, so
+ * that continuing does not stall the render thread.  Building a level only
+ * reads assets that are already loaded and creates Box2D shapes.  The one bit
+ * of GL work, setting up image layer textures, is left to
+ * {@link LevelLoader.LevelDef#prepareTextures}, which runs when the level is used.
+ *
+ * At most one checkpoint is prefetched at a time.  A prefetched level that is
+ * replaced or never taken is disposed, since objects with a collider of their
+ * own hold shapes the collider cache does not.  Its objects have no bodies yet.
+ */
+public class LevelPrefetcher {
+    private final LevelLoader loader;
+    private final ExecutorService executor;
+
+    /** The checkpoint being prefetched, as "level:checkpoint", or null */
+    private String pendingKey;
+    private Prefetch pendingPrefetch;
+    private Future<LevelLoader.LevelDef> pending;
+
+    /** Builds one checkpoint, and disposes it if it is dropped while being built */
+    private class Prefetch implements Callable<LevelLoader.LevelDef> {
+        private final String levelName, checkpointName;
+        /** Whether the level will not be taken, and whether it was handed to the future */
+        private boolean dropped, built;
+
+        Prefetch(String levelName, String checkpointName) {
+            this.levelName = levelName;
+            this.checkpointName = checkpointName;
+        }
+
+        @Override
+        public LevelLoader.LevelDef call() {
+            synchronized (this) {
+                if (dropped) return null;
+            }
+            LevelLoader.LevelDef levelDef = loader.loadLevel(levelName, checkpointName);
+            synchronized (this) {
+                if (dropped) {
+                    levelDef.dispose();
+                    return null;
+                }
+                built = true;
+            }
+            return levelDef;
+        }
+
+        /**
+         * Makes sure the level is disposed, now if it is built and otherwise by call().
+         *
+         * @param future The future of this prefetch
+         */
+        void drop(Future<LevelLoader.LevelDef> future) {
+            synchronized (this) {
+                dropped = true;
+                if (!built) return;
+            }
+            try {
+                future.get().dispose();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // Nothing was built, so there is nothing to dispose
+            }
+        }
+    }
+
+    public LevelPrefetcher(LevelLoader loader) {
+        this.loader = loader;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "level-prefetch");
+                // Never keep the game alive just to finish a level nobody will play
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts building a checkpoint in the background, unless it already is.
+     *
+     * @param levelName      The level, e.g. "level_1"
+     * @param checkpointName The checkpoint, e.g. "checkpoint_0"
+     */
+    public void prefetch(final String levelName, final String checkpointName) {
+        String key = levelName + ":" + checkpointName;
+        if (key.equals(pendingKey)) return;
+
+        drop();
+        pendingKey = key;
+        pendingPrefetch = new Prefetch(levelName, checkpointName);
+        pending = executor.submit(pendingPrefetch);
+    }
+
+    /**
+     * Returns the prefetched checkpoint, waiting for it if it is not finished.
+     *
+     * Anything else that was prefetched is dropped and disposed, so a level is never
+     * taken twice.
+     *
+     * @param levelName      The level, e.g. "level_1"
+     * @param checkpointName The checkpoint, e.g. "checkpoint_0"
+     *
+     * @return the prefetched level, or null if this checkpoint was not prefetched
+     */
+    public LevelLoader.LevelDef take(String levelName, String checkpointName) {
+        String key = levelName + ":" + checkpointName;
+        if (!key.equals(pendingKey)) {
+            drop();
+            return null;
+        }
+        Future<LevelLoader.LevelDef> future = pending;
+        pending = null;
+        pendingPrefetch = null;
+        pendingKey = null;
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Gdx.app.error("LevelPrefetcher", "Could not prefetch " + key, e.getCause());
+            return null;
+        }
+    }
+
+    /** Drops and disposes the level being prefetched, if any */
+    private void drop() {
+        if (pending != null) {
+            pendingPrefetch.drop(pending);
+        }
+        pending = null;
+        pendingPrefetch = null;
+        pendingKey = null;
+    }
+
+    /**
+     * Stops the prefetch thread, waiting for a level it is building.
+     *
+     * This must be called before the loader is disposed.
+     */
+    public void dispose() {
+        drop();
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
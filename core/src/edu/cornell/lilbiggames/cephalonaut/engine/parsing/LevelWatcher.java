@@ -0,0 +1,153 @@
+/*
+ * LevelWatcher.java
+ *
+ * Reports the Tiled levels a designer saves while the game runs with
+ * --hot-reload, so that PlayMode can patch the level being played instead of
+ * restarting it.
+ */
+package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
+
+import com.badlogic.gdx.Gdx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Watches the levels directory for .tmj files saved by Tiled.
+ *
+ * This is a development tool: PlayMode polls it every frame and patches the
+ * level being played when its file changes.  Events come in on a daemon thread.
+ * Tiled may write a file in several steps, so a file is only reported once it
+ * has been quiet for a moment.
+ */
+public class LevelWatcher {
+    /** How long a file must go without events before it is reported, in milliseconds */
+    private static final long SETTLE_MILLIS = 100;
+
+    private final WatchService service;
+    /** The directory each key watches */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    /** Changed files, and when they last changed; guarded by itself */
+    private final Map<File, Long> changed = new HashMap<>();
+
+    /**
+     * Starts watching a directory and every directory in it.
+     *
+     * @param directory The levels directory
+     *
+     * @return the watcher, or null if the directory cannot be watched
+     */
+    public static LevelWatcher watch(File directory) {
+        if (!directory.isDirectory()) {
+            Gdx.app.error("LevelWatcher", "Cannot hot reload levels, " + directory.getPath() + " is not a directory");
+            return null;
+        }
+        try {
+            return new LevelWatcher(directory);
+        } catch (IOException e) {
+            Gdx.app.error("LevelWatcher", "Cannot hot reload levels", e);
+            return null;
+        }
+    }
+
+    private LevelWatcher(File directory) throws IOException {
+        service = FileSystems.getDefault().newWatchService();
+        register(directory);
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        handle(service.take());
+                    }
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    // Disposed
+                }
+            }
+        }, "level-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        Gdx.app.log("LevelWatcher", "Hot reloading levels in " + directory.getPath());
+    }
+
+    private void register(File directory) throws IOException {
+        Path path = directory.toPath();
+        WatchKey key = path.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        synchronized (directories) {
+            directories.put(key, path);
+        }
+        File[] children = directory.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            if (child.isDirectory()) register(child);
+        }
+    }
+
+    private void handle(WatchKey key) {
+        Path directory;
+        synchronized (directories) {
+            directory = directories.get(key);
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+
+            File file = directory.resolve((Path) event.context()).toFile();
+            if (file.isDirectory() && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                try {
+                    register(file);
+                } catch (IOException e) {
+                    Gdx.app.error("LevelWatcher", "Cannot watch " + file.getPath(), e);
+                }
+            } else if (file.getName().endsWith(".tmj")) {
+                synchronized (changed) {
+                    changed.put(file.getAbsoluteFile(), System.currentTimeMillis());
+                }
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * Returns a level file that has changed since it was last returned.
+     *
+     * @return the absolute path of a changed .tmj file, or null if none has settled
+     */
+    public File poll() {
+        long now = System.currentTimeMillis();
+        synchronized (changed) {
+            if (changed.isEmpty()) return null;
+            Iterator<Map.Entry<File, Long>> entries = changed.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<File, Long> entry = entries.next();
+                if (now - entry.getValue() >= SETTLE_MILLIS) {
+                    entries.remove();
+                    return entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stops watching.
+     */
+    public void dispose() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            // Nothing left to clean up
+        }
+    }
+}
@@ -1,44 +1,233 @@
 package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
 
 import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.ObjectMap;
 
+/**
+ * Tiled custom properties.
+ *
+ * The JSON property array is compiled once into a hash table from name to a
+ * typed slot, so every lookup is O(1) and numbers and booleans are converted
+ * only once.  Class properties are compiled into a nested table of fields.
+ * Property names are almost always string literals, which are interned, so
+ * the table's equals checks are usually a reference comparison.
+ *
+ * Properties may be layered over defaults, which is how an object's own
+ * properties override those of its tile without merging or copying either
+ * table.  A class property is layered field by field, so an object can override
+ * one field of its tile's "body" and keep the rest.
+ */
 public class Properties {
-    private final JsonValue properties;
+    /** A compiled property value */
+    private static class Value {
+        final JsonValue json;
+        /** Whether the slots below hold the value (it is a number or boolean) */
+        final boolean primitive;
+        final int intValue;
+        final float floatValue;
+        final boolean booleanValue;
+        final String stringValue;
+        /** The fields of a class value, or null */
+        final ObjectMap<String, Value> fields;
+
+        Value(JsonValue json) {
+            this.json = json;
+            primitive = json.isNumber() || json.isBoolean();
+            intValue = primitive ? json.asInt() : 0;
+            floatValue = primitive ? json.asFloat() : 0;
+            booleanValue = primitive && json.asBoolean();
+            stringValue = json.isValue() ? json.asString() : null;
+            fields = json.isObject() ? compileFields(json) : null;
+        }
+
+        int asInt() {
+            return primitive ? intValue : json.asInt();
+        }
+
+        float asFloat() {
+            return primitive ? floatValue : json.asFloat();
+        }
+
+        boolean asBoolean() {
+            return primitive ? booleanValue : json.asBoolean();
+        }
+    }
+
+    private static final ObjectMap<String, Value> EMPTY = new ObjectMap<>(0);
+
+    private final ObjectMap<String, Value> values;
+    /** Looked up when this layer does not set a property, or null */
+    private final Properties defaults;
 
     public Properties(JsonValue properties) {
-        assert properties.isArray();
-        this.properties = properties;
+        this(properties, null);
     }
 
-    public JsonValue get(String name) {
-        if (properties == null) return null;
+    public Properties(JsonValue properties, Properties defaults) {
+        assert properties == null || properties.isArray();
+        this.values = compile(properties);
+        this.defaults = defaults;
+    }
+
+    private Properties(ObjectMap<String, Value> values, Properties defaults) {
+        this.values = values;
+        this.defaults = defaults;
+    }
+
+    /**
+     * Returns these properties layered over defaults.
+     *
+     * The table is shared, not copied, so one compiled set of object properties
+     * can be layered over many tiles.
+     *
+     * @param defaults The properties to fall back to
+     *
+     * @return these properties layered over defaults
+     */
+    public Properties layer(Properties defaults) {
+        return new Properties(values, defaults);
+    }
+
+    /** Compiles a Tiled property array; the first property of a name wins */
+    private static ObjectMap<String, Value> compile(JsonValue properties) {
+        if (properties == null || properties.size == 0) return EMPTY;
 
+        ObjectMap<String, Value> values = new ObjectMap<>(properties.size);
         for (JsonValue property : properties) {
-            if (property.getString("name").equals(name)) {
-                return property.require("value");
+            String name = property.getString("name");
+            if (!values.containsKey(name)) {
+                values.put(name, new Value(property.require("value")));
             }
         }
+        return values;
+    }
+
+    /** Compiles the fields of a class value */
+    private static ObjectMap<String, Value> compileFields(JsonValue object) {
+        ObjectMap<String, Value> fields = new ObjectMap<>(Math.max(object.size, 1));
+        for (JsonValue field : object) {
+            fields.put(field.name, new Value(field));
+        }
+        return fields;
+    }
+
+    private Value find(String name) {
+        Value value = values.get(name);
+        if (value == null && defaults != null) return defaults.find(name);
+        return value;
+    }
+
+    private Value find(String name, String field) {
+        Value value = values.get(name);
+        Value fieldValue = value == null || value.fields == null ? null : value.fields.get(field);
+        if (fieldValue == null && defaults != null) return defaults.find(name, field);
+        return fieldValue;
+    }
+
+    /**
+     * Returns the value of a property.
+     *
+     * For a class property set by both layers this is this layer's value; use
+     * the field getters to see the fields it inherits.
+     */
+    public JsonValue get(String name) {
+        Value value = find(name);
+        return value == null ? null : value.json;
+    }
 
-        return null;
+    /**
+     * Returns a field of a class property, from the first layer that sets it.
+     *
+     * @param name  The class property
+     * @param field The field
+     *
+     * @return the field's value, or null if no layer sets it
+     */
+    public JsonValue get(String name, String field) {
+        Value value = find(name, field);
+        return value == null ? null : value.json;
     }
 
     public int getInt(String name, int defaultValue) {
-        JsonValue value = get(name);
+        Value value = find(name);
         return value == null ? defaultValue : value.asInt();
     }
 
     public float getFloat(String name, float defaultValue) {
-        JsonValue value = get(name);
+        Value value = find(name);
         return value == null ? defaultValue : value.asFloat();
     }
 
     public String getString(String name, String defaultValue) {
-        JsonValue value = get(name);
-        return value == null ? defaultValue : value.asString();
+        Value value = find(name);
+        return value == null ? defaultValue : value.stringValue;
     }
 
     public boolean getBoolean(String name, boolean defaultValue) {
-        JsonValue value = get(name);
+        Value value = find(name);
         return value == null ? defaultValue : value.asBoolean();
     }
+
+    public int getInt(String name, String field, int defaultValue) {
+        Value value = find(name, field);
+        return value == null ? defaultValue : value.asInt();
+    }
+
+    public float getFloat(String name, String field, float defaultValue) {
+        Value value = find(name, field);
+        return value == null ? defaultValue : value.asFloat();
+    }
+
+    public String getString(String name, String field, String defaultValue) {
+        Value value = find(name, field);
+        return value == null ? defaultValue : value.stringValue;
+    }
+
+    public boolean getBoolean(String name, String field, boolean defaultValue) {
+        Value value = find(name, field);
+        return value == null ? defaultValue : value.asBoolean();
+    }
+
+    /**
+     * Returns whether two sets of properties set the same values, layer by layer.
+     *
+     * This walks the JSON of every value, so it is only meant for tools such as
+     * hot reloading, not for gameplay.
+     *
+     * @param other The properties to compare with, or null
+     *
+     * @return whether the two sets of properties are the same
+     */
+    public boolean sameAs(Properties other) {
+        if (this == other) return true;
+        if (other == null || values.size != other.values.size) return false;
+        for (ObjectMap.Entry<String, Value> entry : values) {
+            Value value = other.values.get(entry.key);
+            if (value == null || !sameJson(value.json, entry.value.json)) return false;
+        }
+        return defaults == null ? other.defaults == null : defaults.sameAs(other.defaults);
+    }
+
+    /** Returns whether two JSON values are the same, without writing either out */
+    private static boolean sameJson(JsonValue a, JsonValue b) {
+        if (a.type() != b.type() || a.size != b.size) return false;
+        switch (a.type()) {
+            case stringValue:
+                return a.asString().equals(b.asString());
+            case doubleValue:
+                return a.asDouble() == b.asDouble();
+            case longValue:
+                return a.asLong() == b.asLong();
+            case booleanValue:
+                return a.asBoolean() == b.asBoolean();
+            case nullValue:
+                return true;
+            default:
+                for (JsonValue x = a.child, y = b.child; x != null; x = x.next, y = y.next) {
+                    boolean sameName = x.name == null ? y.name == null : x.name.equals(y.name);
+                    if (!sameName || !sameJson(x, y)) return false;
+                }
+                return true;
+        }
+    }
 }
@@ -0,0 +1,230 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+
+/**
+ * A Tiled .tmj level, read without building a DOM for the whole file.
+ *
+ * The file is streamed through JsonReader's parse events.  Tile layer data goes
+ * straight into an int array, and only the small parts we need as JSON (level
+ * properties, tileset references and each object) are built as JsonValues.
+ * Everything else, such as layer properties, is skipped.
+ *
+ * Layers are kept until the whole file is read, because Tiled writes the
+ * tilesets (and a layer's type) after the data that refers to them.
+ */
+public class TiledLevel {
+    /** A layer of the level */
+    public static class Layer {
+        /** "tilelayer", "objectgroup" or "imagelayer" */
+        public String type;
+        /** Tiled parallax factors */
+        public float parallaxX = 1, parallaxY = 1;
+
+        /** tilelayer: size in tiles and global tile ids in row order */
+        public int width, height;
+        public final IntArray data = new IntArray();
+
+        /** objectgroup: the objects, as Tiled wrote them */
+        public final Array<JsonValue> objects = new Array<>();
+
+        /** imagelayer: the image path */
+        public String image;
+    }
+
+    public int width, height;
+    public int tileWidth, tileHeight;
+    /** The level's custom properties, or null if there are none */
+    public JsonValue properties;
+    /** Tileset references, each with 'firstgid' and 'source', in file order */
+    public final Array<JsonValue> tilesets = new Array<>();
+    public final Array<Layer> layers = new Array<>();
+
+    /**
+     * Reads a level.
+     *
+     * @param file The .tmj file
+     *
+     * @return the level
+     */
+    public static TiledLevel read(FileHandle file) {
+        Reader reader = new Reader();
+        reader.parse(file);
+        return reader.level;
+    }
+
+    /** Where the parser is in the file */
+    private enum Context {
+        ROOT, LAYERS, LAYER, DATA, OBJECTS, TILESETS, SKIP
+    }
+
+    /** What a JSON value being built is for */
+    private enum Capture {
+        PROPERTIES, TILESET, OBJECT
+    }
+
+    private static class Reader extends JsonReader {
+        private final TiledLevel level = new TiledLevel();
+        private final Array<Context> contexts = new Array<>();
+        private Layer layer;
+
+        /** Values being built, innermost last, and what the outermost is for */
+        private final Array<JsonValue> building = new Array<>();
+        private Capture capture;
+
+        private Context context() {
+            return contexts.size == 0 ? null : contexts.peek();
+        }
+
+        private void beginCapture(Capture capture, JsonValue value) {
+            this.capture = capture;
+            building.add(value);
+        }
+
+        /** Adds a value to the JSON being built; returns false if nothing is being built */
+        private boolean captured(String name, JsonValue value) {
+            if (building.size == 0) return false;
+            value.setName(name);
+            building.peek().addChild(value);
+            return true;
+        }
+
+        @Override
+        protected void startObject(String name) {
+            if (building.size > 0) {
+                JsonValue value = new JsonValue(JsonValue.ValueType.object);
+                captured(name, value);
+                building.add(value);
+                return;
+            }
+
+            Context context = context();
+            if (context == null) {
+                contexts.add(Context.ROOT);
+            } else if (context == Context.LAYERS) {
+                layer = new Layer();
+                contexts.add(Context.LAYER);
+            } else if (context == Context.TILESETS) {
+                beginCapture(Capture.TILESET, new JsonValue(JsonValue.ValueType.object));
+            } else if (context == Context.OBJECTS) {
+                beginCapture(Capture.OBJECT, new JsonValue(JsonValue.ValueType.object));
+            } else {
+                contexts.add(Context.SKIP);
+            }
+        }
+
+        @Override
+        protected void startArray(String name) {
+            if (building.size > 0) {
+                JsonValue value = new JsonValue(JsonValue.ValueType.array);
+                captured(name, value);
+                building.add(value);
+                return;
+            }
+
+            Context context = context();
+            if (context == Context.ROOT && "layers".equals(name)) {
+                contexts.add(Context.LAYERS);
+            } else if (context == Context.ROOT && "tilesets".equals(name)) {
+                contexts.add(Context.TILESETS);
+            } else if (context == Context.ROOT && "properties".equals(name)) {
+                beginCapture(Capture.PROPERTIES, new JsonValue(JsonValue.ValueType.array));
+            } else if (context == Context.LAYER && "data".equals(name)) {
+                contexts.add(Context.DATA);
+            } else if (context == Context.LAYER && "objects".equals(name)) {
+                contexts.add(Context.OBJECTS);
+            } else {
+                contexts.add(Context.SKIP);
+            }
+        }
+
+        @Override
+        protected void pop() {
+            if (building.size > 0) {
+                JsonValue value = building.pop();
+                if (building.size == 0) {
+                    switch (capture) {
+                        case PROPERTIES:
+                            level.properties = value;
+                            break;
+                        case TILESET:
+                            level.tilesets.add(value);
+                            break;
+                        case OBJECT:
+                            layer.objects.add(value);
+                            break;
+                    }
+                }
+                return;
+            }
+
+            if (contexts.pop() == Context.LAYER) {
+                level.layers.add(layer);
+                layer = null;
+            }
+        }
+
+        @Override
+        protected void string(String name, String value) {
+            if (captured(name, new JsonValue(value))) return;
+            if (context() != Context.LAYER) return;
+            if ("type".equals(name)) {
+                layer.type = value;
+            } else if ("image".equals(name)) {
+                layer.image = value;
+            }
+        }
+
+        @Override
+        protected void number(String name, double value, String stringValue) {
+            if (captured(name, new JsonValue(value, stringValue))) return;
+            number(name, value);
+        }
+
+        @Override
+        protected void number(String name, long value, String stringValue) {
+            if (captured(name, new JsonValue(value, stringValue))) return;
+            if (context() == Context.DATA) {
+                // Tiled stores flip flags in the high bits, as the DOM loader did we keep them
+                layer.data.add((int) value);
+                return;
+            }
+            number(name, value);
+        }
+
+        /** A number outside of any captured JSON */
+        private void number(String name, double value) {
+            Context context = context();
+            if (context == Context.ROOT) {
+                if ("width".equals(name)) {
+                    level.width = (int) value;
+                } else if ("height".equals(name)) {
+                    level.height = (int) value;
+                } else if ("tilewidth".equals(name)) {
+                    level.tileWidth = (int) value;
+                } else if ("tileheight".equals(name)) {
+                    level.tileHeight = (int) value;
+                }
+            } else if (context == Context.LAYER) {
+                if ("width".equals(name)) {
+                    layer.width = (int) value;
+                } else if ("height".equals(name)) {
+                    layer.height = (int) value;
+                } else if ("parallaxx".equals(name)) {
+                    layer.parallaxX = (float) value;
+                } else if ("parallaxy".equals(name)) {
+                    layer.parallaxY = (float) value;
+                }
+            }
+        }
+
+        @Override
+        protected void bool(String name, boolean value) {
+            captured(name, new JsonValue(value));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
+
+import com.badlogic.gdx.utils.JsonValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A Tiled .tsj tileset, as far as levels need it.
+ *
+ * This is everything about a tileset that does not need OpenGL: the tiles, their
+ * compiled properties, and the image and size each one is drawn from.  LevelLoader
+ * makes texture regions from it, and the build tools read it as it is, so that
+ * they all see the same tiles.
+ */
+public class Tileset {
+    /** Tile JSON by local id */
+    private final Map<Integer, JsonValue> tiles = new HashMap<>();
+    /** Properties of each tile, compiled once */
+    private final Map<Integer, Properties> properties = new HashMap<>();
+    /** The image each tile is drawn from, by local id */
+    private final Map<Integer, String> images = new HashMap<>();
+    /** Texture size of each tile by local id, in pixels */
+    private final Map<Integer, float[]> sizes = new HashMap<>();
+    /** Number of local ids the tileset spans */
+    private final int count;
+    /** The image all tiles are cut from, or null for a collection of images */
+    private final String atlas;
+    private final int tileSize, columns;
+
+    /**
+     * Reads a tileset.
+     *
+     * @param json The parsed .tsj file
+     */
+    public Tileset(JsonValue json) {
+        atlas = json.getString("image", null);
+        tileSize = json.getInt("tilewidth");
+        columns = json.getInt("columns", 0);
+        // Image collections can have gaps, so tilecount alone may not cover every id
+        int count = json.getInt("tilecount", 0);
+        for (JsonValue tile : json.get("tiles")) {
+            int id = tile.getInt("id");
+            tiles.put(id, tile);
+            properties.put(id, new Properties(tile.get("properties")));
+            count = Math.max(count, id + 1);
+            if (atlas != null) {
+                images.put(id, atlas);
+                sizes.put(id, new float[] {tileSize, tileSize});
+            } else if (tile.has("image")) {
+                images.put(id, tile.getString("image"));
+                if (tile.has("imagewidth")) {
+                    sizes.put(id, new float[] {tile.getFloat("imagewidth"), tile.getFloat("imageheight")});
+                }
+            }
+        }
+        this.count = count;
+    }
+
+    /** Returns the JSON of a tile, or null if the tileset does not define it */
+    public JsonValue getTile(int id) {
+        return tiles.get(id);
+    }
+
+    /** Returns the compiled properties of a tile, or null if the tileset does not define it */
+    public Properties getProperties(int id) {
+        return properties.get(id);
+    }
+
+    /** Returns the image a tile is drawn from, or null if it has none */
+    public String getImage(int id) {
+        return images.get(id);
+    }
+
+    /** Returns the width and height of a tile's image in pixels, or null if unknown */
+    public float[] getSize(int id) {
+        return sizes.get(id);
+    }
+
+    /** Returns the number of local ids the tileset spans */
+    public int getCount() {
+        return count;
+    }
+
+    /** Returns the image all tiles are cut from, or null for a collection of images */
+    public String getAtlas() {
+        return atlas;
+    }
+
+    /** Returns the left edge of a tile in the atlas image, in pixels */
+    public int getAtlasX(int id) {
+        return (id % columns) * tileSize;
+    }
+
+    /** Returns the top edge of a tile in the atlas image, in pixels */
+    public int getAtlasY(int id) {
+        return (id / columns) * tileSize;
+    }
+
+    /** Returns the width and height of a tile in the atlas image, in pixels */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /** Returns the ids of every tile the tileset defines */
+    public Iterable<Integer> getIds() {
+        return tiles.keySet();
+    }
+}
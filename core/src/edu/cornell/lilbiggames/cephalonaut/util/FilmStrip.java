@@ -89,6 +89,21 @@ public class FilmStrip extends TextureRegion {
 		this(texture,rows,cols,size,0,0, texture.getWidth(), texture.getHeight() );
 	}
 
+	/**
+	 * Creates a new filmstrip from the given texture region.
+	 *
+	 * The filmstrip will use the entire region, such as a sprite packed into
+	 * an atlas page.
+	 * 
+	 * @param region The texture region to use
+	 * @param rows The number of rows in the filmstrip
+	 * @param cols The number of columns in the filmstrip
+	 */
+	public FilmStrip(TextureRegion region, int rows, int cols) {
+		this(region.getTexture(),rows,cols,rows*cols,region.getRegionX(),region.getRegionY(),
+			 region.getRegionWidth(),region.getRegionHeight());
+	}
+
 	/**
 	 * Creates a new filmstrip from the given texture.
 	 * 
@@ -118,6 +133,10 @@ public class FilmStrip extends TextureRegion {
 		this.rows = rows;
 		this.cols = cols;
 		this.size = size;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
 		fwidth  = width/cols;
 		fheight = height/rows;
 		setFrame(0);
@@ -191,7 +210,23 @@ public class FilmStrip extends TextureRegion {
 	 * @return a copy of this filmstrip
 	 */
 	public FilmStrip copy() {
-		return new FilmStrip( getTexture(), rows, cols, size );
+		return new FilmStrip( getTexture(), rows, cols, size, x, y, width, height );
+	}
+
+	/**
+	 * Returns whether another filmstrip is cut from the same frames as this one.
+	 *
+	 * The active frame is not compared, so a copy is the same strip whatever
+	 * frame either one is on.
+	 *
+	 * @param other The filmstrip to compare with
+	 *
+	 * @return whether the other filmstrip has the same frames
+	 */
+	public boolean sameStrip(FilmStrip other) {
+		return getTexture() == other.getTexture() && rows == other.rows && cols == other.cols
+				&& size == other.size && x == other.x && y == other.y
+				&& width == other.width && height == other.height;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,222 @@
+/*
+ * ResourceTracker.java
+ *
+ * Static bookkeeping for native (off-heap) resources.
+ *
+ * Box2D shapes, bodies and joints, and OpenGL textures, frame buffers, shaders and
+ * meshes all live outside of the Java heap.  The garbage collector never frees them, so
+ * forgetting a dispose() leaks memory that no heap profiler will show you.  Every
+ * place in the game that allocates one of these directly registers it here, and
+ * unregisters it when it is freed, so that leaks show up as counts that grow.
+ *
+ * Resources loaded through the AssetDirectory are owned by the asset manager and
+ * are not tracked here.
+ */
+package edu.cornell.lilbiggames.cephalonaut.util;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.Joint;
+import com.badlogic.gdx.physics.box2d.JointEdge;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Static class counting live native resources by type and call site.
+ */
+public class ResourceTracker {
+	/** The kinds of native resource we track */
+	public enum Type {
+		SHAPE, BODY, JOINT, TEXTURE, FRAME_BUFFER, SHADER_PROGRAM, MESH
+	}
+
+	/** A live resource and where it was allocated */
+	private static class Entry {
+		final Type type;
+		final String site;
+
+		Entry(Type type, String site) {
+			this.type = type;
+			this.site = site;
+		}
+	}
+
+	/** Every live resource we know about */
+	private static final Map<Object, Entry> live = new IdentityHashMap<>();
+	/** Live resources of each type */
+	private static final int[] liveCounts = new int[Type.values().length];
+	/** Resources of each type allocated since startup */
+	private static final int[] allocCounts = new int[Type.values().length];
+	/** Live resources per "TYPE at call site" */
+	private static final Map<String, Integer> siteCounts = new TreeMap<>();
+
+	/** Whether to record call sites (this walks the stack on every allocation) */
+	private static boolean recordSites = false;
+
+	/** Reused when untracking a whole world */
+	private static final Array<Body> bodyScratch = new Array<>();
+	private static final Array<Joint> jointScratch = new Array<>();
+
+	/**
+	 * Sets whether allocations should remember their call site.
+	 *
+	 * This is off by default, as capturing a stack trace for every body in a level
+	 * is noticeably slow.  Resources tracked while it is off are reported under an
+	 * unknown call site.
+	 *
+	 * @param value whether allocations should remember their call site
+	 */
+	public static synchronized void setRecordSites(boolean value) {
+		recordSites = value;
+	}
+
+	/**
+	 * Registers a newly allocated native resource.
+	 *
+	 * @param type     The kind of resource
+	 * @param resource The resource that was just allocated
+	 *
+	 * @return the resource, for convenience
+	 */
+	public static synchronized <T> T track(Type type, T resource) {
+		if (resource == null || live.containsKey(resource)) {
+			return resource;
+		}
+		String site = type + " at " + (recordSites ? callSite() : "?");
+		live.put(resource, new Entry(type, site));
+		liveCounts[type.ordinal()]++;
+		allocCounts[type.ordinal()]++;
+		Integer count = siteCounts.get(site);
+		siteCounts.put(site, count == null ? 1 : count + 1);
+		return resource;
+	}
+
+	/**
+	 * Unregisters a native resource that has been (or is about to be) freed.
+	 *
+	 * Releasing something that was never tracked does nothing.
+	 *
+	 * @param resource The resource being freed
+	 */
+	public static synchronized void release(Object resource) {
+		if (resource == null) {
+			return;
+		}
+		Entry entry = live.remove(resource);
+		if (entry == null) {
+			return;
+		}
+		liveCounts[entry.type.ordinal()]--;
+		int count = siteCounts.get(entry.site) - 1;
+		if (count == 0) {
+			siteCounts.remove(entry.site);
+		} else {
+			siteCounts.put(entry.site, count);
+		}
+	}
+
+	/**
+	 * Unregisters a body along with every joint attached to it.
+	 *
+	 * Box2D silently destroys the joints of a body when the body is destroyed,
+	 * so this must be called instead of release() before World.destroyBody().
+	 *
+	 * @param body The body being destroyed
+	 */
+	public static synchronized void releaseBody(Body body) {
+		for (JointEdge edge : body.getJointList()) {
+			release(edge.joint);
+		}
+		release(body);
+	}
+
+	/**
+	 * Unregisters every body and joint in a world.
+	 *
+	 * Call this right before World.dispose(), which frees them all at once.
+	 *
+	 * @param world The world being disposed
+	 */
+	public static synchronized void releaseWorld(World world) {
+		world.getJoints(jointScratch);
+		for (Joint joint : jointScratch) {
+			release(joint);
+		}
+		world.getBodies(bodyScratch);
+		for (Body body : bodyScratch) {
+			release(body);
+		}
+		jointScratch.clear();
+		bodyScratch.clear();
+	}
+
+	/**
+	 * Returns the number of live resources of the given type.
+	 *
+	 * @param type The kind of resource
+	 *
+	 * @return the number of live resources of the given type.
+	 */
+	public static synchronized int getLiveCount(Type type) {
+		return liveCounts[type.ordinal()];
+	}
+
+	/**
+	 * Returns the number of resources of the given type allocated since startup.
+	 *
+	 * @param type The kind of resource
+	 *
+	 * @return the number of resources of the given type allocated since startup.
+	 */
+	public static synchronized int getAllocatedCount(Type type) {
+		return allocCounts[type.ordinal()];
+	}
+
+	/**
+	 * Returns the number of live resources of every type.
+	 *
+	 * @return the number of live resources of every type.
+	 */
+	public static synchronized int getTotalLiveCount() {
+		return live.size();
+	}
+
+	/**
+	 * Returns a copy of the live resource counts, keyed by type and call site.
+	 *
+	 * @return a copy of the live resource counts, keyed by type and call site.
+	 */
+	public static synchronized Map<String, Integer> getSiteCounts() {
+		return new TreeMap<>(siteCounts);
+	}
+
+	/**
+	 * Prints the live resource counts by type and call site.
+	 */
+	public static synchronized void printReport() {
+		System.out.printf("Native resources: %d live\n", live.size());
+		for (Type type : Type.values()) {
+			System.out.printf("  %-14s %6d live %8d allocated\n", type,
+					liveCounts[type.ordinal()], allocCounts[type.ordinal()]);
+		}
+		for (Map.Entry<String, Integer> site : siteCounts.entrySet()) {
+			System.out.printf("  %6d  %s\n", site.getValue(), site.getKey());
+		}
+	}
+
+	/**
+	 * Returns the first stack frame outside of this class.
+	 */
+	private static String callSite() {
+		StackTraceElement[] stack = new Throwable().getStackTrace();
+		for (StackTraceElement frame : stack) {
+			if (!frame.getClassName().equals(ResourceTracker.class.getName())) {
+				return frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+			}
+		}
+		return "?";
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * TextFormat.java
+ *
+ * Formats numbers for text that is drawn every frame.
+ *
+ * String.format and string concatenation make new strings, and the garbage they
+ * leave every frame adds up to collector pauses.  These write into a StringBuilder
+ * the caller keeps instead, which allocates nothing once it is big enough.  Draw
+ * the builder with a label through GameCanvas, so that its layout is only redone
+ * when the text changes.
+ */
+package edu.cornell.lilbiggames.cephalonaut.util;
+
+/**
+ * Static class writing numbers into reusable character buffers.
+ */
+public class TextFormat {
+	/**
+	 * Replaces the text with a clock, as "%02d:%02d" of the minutes and seconds.
+	 *
+	 * Minutes wrap around after an hour.
+	 *
+	 * @param text		The buffer to write into
+	 * @param seconds	The time to show, in seconds
+	 *
+	 * @return the buffer, for chaining
+	 */
+	public static StringBuilder setClock(StringBuilder text, int seconds) {
+		text.setLength(0);
+		appendTwoDigits(text, (seconds % 3600) / 60);
+		text.append(':');
+		appendTwoDigits(text, seconds % 60);
+		return text;
+	}
+
+	/**
+	 * Replaces the text with a prefix followed by a number, such as "WORLD 2".
+	 *
+	 * @param text		The buffer to write into
+	 * @param prefix	The text before the number
+	 * @param number	The number to write after the prefix
+	 *
+	 * @return the buffer, for chaining
+	 */
+	public static StringBuilder setNumbered(StringBuilder text, String prefix, int number) {
+		text.setLength(0);
+		text.append(prefix);
+		appendInt(text, number);
+		return text;
+	}
+
+	/** Appends a number from 0 to 99, with a leading zero below 10 */
+	private static void appendTwoDigits(StringBuilder text, int value) {
+		text.append((char) ('0' + value / 10 % 10));
+		text.append((char) ('0' + value % 10));
+	}
+
+	/**
+	 * Appends a whole number in decimal, digit by digit.
+	 *
+	 * @param text		The buffer to write into
+	 * @param value		The number to append
+	 */
+	public static void appendInt(StringBuilder text, int value) {
+		appendLong(text, value);
+	}
+
+	/**
+	 * Appends a whole number in decimal, digit by digit.
+	 *
+	 * @param text		The buffer to write into
+	 * @param value		The number to append
+	 */
+	public static void appendLong(StringBuilder text, long value) {
+		if (value < 0) {
+			text.append('-');
+			if (value == Long.MIN_VALUE) {
+				// Its negation does not fit in a long
+				text.append("9223372036854775808");
+				return;
+			}
+			value = -value;
+		}
+		int start = text.length();
+		do {
+			text.append((char) ('0' + value % 10));
+			value /= 10;
+		} while (value > 0);
+		// The digits went in backwards
+		for (int i = start, j = text.length() - 1; i < j; i++, j--) {
+			char swap = text.charAt(i);
+			text.setCharAt(i, text.charAt(j));
+			text.setCharAt(j, swap);
+		}
+	}
+
+	/**
+	 * Appends a number with a fixed number of decimals, as "%.nf" would.
+	 *
+	 * The number is rounded half up, and never written as "-0".  It must be less
+	 * than 10^18 once scaled by its decimals, which is far more than anything
+	 * drawn on screen.
+	 *
+	 * @param text		The buffer to write into
+	 * @param value		The number to append
+	 * @param decimals	The number of digits after the point, from 0 to 9
+	 */
+	public static void appendFixed(StringBuilder text, float value, int decimals) {
+		long scale = 1;
+		for (int i = 0; i < decimals; i++) {
+			scale *= 10;
+		}
+		long scaled = Math.round(Math.abs((double) value) * scale);
+		if (value < 0 && scaled != 0) {
+			text.append('-');
+		}
+		appendLong(text, scaled / scale);
+		if (decimals == 0) {
+			return;
+		}
+		text.append('.');
+		long fraction = scaled % scale;
+		for (long digit = scale / 10; digit > 0; digit /= 10) {
+			text.append((char) ('0' + fraction / digit % 10));
+		}
+	}
+}
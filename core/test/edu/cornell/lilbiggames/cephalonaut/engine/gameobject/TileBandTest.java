@@ -0,0 +1,107 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.gameobject;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TileBandTest {
+    private World world;
+    /** Every tile the band has built, by key */
+    private final Map<Long, LevelElement> created = new HashMap<>();
+
+    private final TileBand.TileFactory factory = new TileBand.TileFactory() {
+        @Override
+        public LevelElement create(long key) {
+            LevelElement.Def def = new LevelElement.Def();
+            def.setTileName(key);
+            def.x = LevelElement.tileColumn(key);
+            def.y = -LevelElement.tileRow(key);
+            def.width = 1;
+            def.height = 1;
+            def.element = LevelElement.Element.WALL;
+            def.bodyType = BodyDef.BodyType.StaticBody;
+            def.tint = new Color(Color.WHITE);
+            def.texture = new TextureRegion();
+            LevelElement tile = new LevelElement(def);
+            created.put(key, tile);
+            return tile;
+        }
+    };
+
+    @BeforeClass
+    public static void loadBox2D() {
+        Box2D.init();
+    }
+
+    @Before
+    public void createWorld() {
+        world = new World(new Vector2(), true);
+    }
+
+    @After
+    public void disposeWorld() {
+        world.dispose();
+    }
+
+    /** Loads every chunk of a band, so that its tiles are built and in the world */
+    private void loadAll(TileBand band) {
+        Array<Rectangle> everywhere = new Array<>();
+        everywhere.add(new Rectangle(-100, -100, 200, 200));
+        band.stream(world, everywhere, everywhere, everywhere, 1, null);
+    }
+
+    @Test
+    public void removingTwoTilesOfABuiltChunkRemovesThoseTiles() {
+        TileBand band = new TileBand(0, TileBand.CHUNK_SIZE, 0, 1, factory);
+        long[] keys = new long[4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = LevelElement.tileKey(1 << 24, i, 0);
+            band.add(keys[i]);
+        }
+        loadAll(band);
+        assertEquals(1, band.getLoadedCount());
+        assertEquals(keys.length, world.getBodyCount());
+
+        assertTrue(band.remove(world, keys[0]));
+        assertTrue(band.remove(world, keys[2]));
+
+        assertNull(created.get(keys[0]).getBody());
+        assertNull(created.get(keys[2]).getBody());
+        assertNotNull(created.get(keys[1]).getBody());
+        assertNotNull(created.get(keys[3]).getBody());
+        assertEquals(2, world.getBodyCount());
+        assertEquals(2, band.getTileCount());
+
+        LongArray left = new LongArray();
+        band.getTileKeys(left);
+        assertEquals(2, left.size);
+        assertTrue(left.contains(keys[1]));
+        assertTrue(left.contains(keys[3]));
+    }
+
+    @Test
+    public void removingATileThatIsNotInTheBandChangesNothing() {
+        TileBand band = new TileBand(0, TileBand.CHUNK_SIZE, 0, 1, factory);
+        band.add(LevelElement.tileKey(1 << 24, 0, 0));
+        loadAll(band);
+
+        assertFalse(band.remove(world, LevelElement.tileKey(1 << 24, 1, 0)));
+        assertEquals(1, band.getTileCount());
+        assertEquals(1, world.getBodyCount());
+    }
+}
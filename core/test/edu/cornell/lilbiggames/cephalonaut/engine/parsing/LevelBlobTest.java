@@ -0,0 +1,100 @@
+package edu.cornell.lilbiggames.cephalonaut.engine.parsing;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class LevelBlobTest {
+    private LevelBlob blob;
+
+    /** Returns a packed tile whose id is its index in a 3x2 layer */
+    private static int tile(int index) {
+        return LevelBlob.pack(LevelLoader.TiledFile.values()[0], index + 1);
+    }
+
+    @Before
+    public void writeBlob() throws IOException {
+        LevelBlob.Def def = new LevelBlob.Def();
+        def.width = 3;
+        def.height = 2;
+        def.tileSize = 32;
+        def.strings = new String[] { "background.png", "{}" };
+        def.tilesetFiles = new int[] { 0 };
+        def.tilesetFirstGids = new int[] { 1 };
+        def.tilesetHashes = new long[] { 42 };
+
+        LevelBlob.LayerDef image = new LevelBlob.LayerDef();
+        image.type = LevelBlob.IMAGE_LAYER;
+        image.image = 0;
+        LevelBlob.LayerDef tiles = new LevelBlob.LayerDef();
+        tiles.type = LevelBlob.TILE_LAYER;
+        tiles.parallaxX = 1;
+        tiles.parallaxY = 0.5f;
+        tiles.width = 3;
+        tiles.height = 2;
+        tiles.tiles = new int[6];
+        for (int i = 0; i < tiles.tiles.length; i++) {
+            tiles.tiles[i] = tile(i);
+        }
+        LevelBlob.ObjectDef object = new LevelBlob.ObjectDef();
+        object.id = 7;
+        object.tile = tile(0);
+        object.name = LevelBlob.NO_STRING;
+        object.x = 1;
+        object.y = 1;
+        object.width = 1;
+        object.height = 1;
+        object.properties = 1;
+        object.collider = LevelBlob.NO_COLLIDER;
+        LevelBlob.LayerDef objects = new LevelBlob.LayerDef();
+        objects.type = LevelBlob.OBJECT_LAYER;
+        objects.objects = new LevelBlob.ObjectDef[] { object };
+        def.layers = new LevelBlob.LayerDef[] { image, tiles, objects };
+
+        LevelBlob.ColliderDef collider = new LevelBlob.ColliderDef();
+        collider.tile = tile(0);
+        collider.width = 1;
+        collider.height = 1;
+        collider.owner = LevelBlob.NO_OWNER;
+        collider.pieces = new float[][] { { 0, 0, 1, 0, 1, 1 } };
+        def.colliders = new LevelBlob.ColliderDef[] { collider };
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        def.write(new DataOutputStream(bytes));
+        blob = new LevelBlob(ByteBuffer.wrap(bytes.toByteArray()), 0);
+    }
+
+    @Test
+    public void repeatFillsTileLayers() {
+        LevelBlob repeated = blob.repeat(7, 5);
+        assertEquals(7, repeated.getWidth());
+        assertEquals(5, repeated.getHeight());
+        assertEquals(7, repeated.getLayerWidth(1));
+        assertEquals(5, repeated.getLayerHeight(1));
+        assertEquals(0.5f, repeated.getParallaxY(1), 0);
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 7; x++) {
+                assertEquals(tile((y % 2) * 3 + x % 3), repeated.getTile(1, y * 7 + x));
+            }
+        }
+    }
+
+    @Test
+    public void repeatKeepsEverythingElse() {
+        LevelBlob repeated = blob.repeat(7, 5);
+        assertEquals(32, repeated.getTileSize());
+        assertEquals(42, repeated.getTilesetHash(0));
+        assertEquals("background.png", repeated.getString(repeated.getLayerImage(0)));
+        assertEquals(1, repeated.getObjectCount(2));
+        assertEquals(7, repeated.getObjectId(2, 0));
+        assertEquals("{}", repeated.getString(repeated.getObjectProperties(2, 0)));
+        assertEquals(1, repeated.getColliderCount());
+        assertArrayEquals(new float[] { 0, 0, 1, 0, 1, 1 }, repeated.getColliderPieces(0)[0], 0);
+    }
+}
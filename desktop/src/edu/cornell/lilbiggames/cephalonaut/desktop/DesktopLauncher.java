@@ -15,7 +15,10 @@ package edu.cornell.lilbiggames.cephalonaut.desktop;
 import com.badlogic.gdx.Files;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+import edu.cornell.lilbiggames.cephalonaut.engine.DrawBenchmark;
 import edu.cornell.lilbiggames.cephalonaut.engine.GDXRoot;
+import edu.cornell.lilbiggames.cephalonaut.engine.LoadBenchmark;
+import edu.cornell.lilbiggames.cephalonaut.engine.ResourceSoak;
 
 /**
  * The main class of the game.
@@ -31,6 +34,20 @@ public class DesktopLauncher {
 	 * This method simply exists to start a new LwjglApplication.  For desktop games,
 	 * LibGDX is built on top of LWJGL (this is not the case for Android).
 	 * 
+	 * Passing "--soak [restarts] [level] [checkpoint]" restarts a level over and over
+	 * instead of starting the game, and exits with status 1 if native resources leak.
+	 * Passing "--bench-load [loads] [level] [checkpoint]" times building a level with
+	 * 1, 2, 4 and 8 loader threads instead of starting the game.
+	 * Passing "--bench-draw [frames] [level] [checkpoint] [size]" times drawing a level with
+	 * and without culling, and then the menus, instead of starting the game, and
+	 * exits with status 1 if drawing allocates once warm.  Given a size, the level's
+	 * tiles are repeated to a level that wide and high first, and it also exits with
+	 * status 1 if drawing it costs more at the end of the sweep than at the start.
+	 * Passing "--race players" starts a local race with up to 4 players, one on the
+	 * keyboard and the rest on X-Box controllers.
+	 * Passing "--hot-reload" starts the game normally, but patches the level being
+	 * played whenever Tiled saves it.
+	 *
 	 * @param arg Command line arguments
 	 */
 	public static void main (String[] arg) {
@@ -43,6 +60,32 @@ public class DesktopLauncher {
 //		config.vSyncEnabled = false;
 		config.foregroundFPS = 60;
 		config.useHDPI = true;
-		new LwjglApplication(new GDXRoot(), config);
+		if (arg.length > 0 && arg[0].equals("--soak")) {
+			int restarts = arg.length > 1 ? Integer.parseInt(arg[1]) : 1000;
+			String level = arg.length > 2 ? arg[2] : "level_1";
+			String checkpoint = arg.length > 3 ? arg[3] : "checkpoint_0";
+			new LwjglApplication(new GDXRoot(new ResourceSoak(level, checkpoint, restarts)), config);
+		} else if (arg.length > 0 && arg[0].equals("--bench-load")) {
+			int loads = arg.length > 1 ? Integer.parseInt(arg[1]) : 20;
+			String level = arg.length > 2 ? arg[2] : "level_6";
+			String checkpoint = arg.length > 3 ? arg[3] : "checkpoint_3";
+			new LwjglApplication(new GDXRoot(new LoadBenchmark(level, checkpoint, loads)), config);
+		} else if (arg.length > 0 && arg[0].equals("--bench-draw")) {
+			int frames = arg.length > 1 ? Integer.parseInt(arg[1]) : 600;
+			String level = arg.length > 2 ? arg[2] : "level_2";
+			String checkpoint = arg.length > 3 ? arg[3] : "checkpoint_5";
+			int size = arg.length > 4 ? Integer.parseInt(arg[4]) : 0;
+			new LwjglApplication(new GDXRoot(new DrawBenchmark(level, checkpoint, frames, size)), config);
+		} else if (arg.length > 0 && arg[0].equals("--race")) {
+			GDXRoot root = new GDXRoot();
+			root.setRacePlayers(arg.length > 1 ? Integer.parseInt(arg[1]) : 2);
+			new LwjglApplication(root, config);
+		} else if (arg.length > 0 && arg[0].equals("--hot-reload")) {
+			GDXRoot root = new GDXRoot();
+			root.setHotReload(true);
+			new LwjglApplication(root, config);
+		} else {
+			new LwjglApplication(new GDXRoot(), config);
+		}
 	}
 }
@@ -0,0 +1,126 @@
+/*
+ * GidTableBenchmark.java
+ *
+ * Compares resolving every tile of a level through a GidTable with the search
+ * LevelLoader used to do for each tile.  The old search walked the level's
+ * tileset list, made a Pair and matched the tileset's source string, and did it
+ * twice per tile, once for the tile's JSON and once for its texture.  It is kept
+ * here only as the baseline.  The table's time includes building it, since that
+ * is done once per level load.
+ *
+ * Run it with gradle jmh, which runs from the assets directory.
+ */
+package edu.cornell.lilbiggames.cephalonaut.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.GidTable;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelLoader;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.TiledLevel;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.Tileset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tile lookups of a whole level, by table and by search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GidTableBenchmark {
+    /** The level checkpoints with the most tiles in level_2 and level_5 */
+    @Param({"level_2:checkpoint_5", "level_5:checkpoint_5"})
+    public String level;
+
+    private TiledLevel tiledLevel;
+    private final Map<LevelLoader.TiledFile, Tileset> tilesets = new EnumMap<>(LevelLoader.TiledFile.class);
+    /** The gid of every tile and tile object in the level, in load order */
+    private final IntArray gids = new IntArray();
+
+    @Setup
+    public void setup() {
+        JsonReader reader = new JsonReader();
+        JsonValue assets = reader.parse(new FileHandle(new File("assets.json")));
+        for (LevelLoader.TiledFile tiledFile : LevelLoader.TiledFile.values()) {
+            File file = new File(assets.get("jsons").getString(tiledFile.asset));
+            tilesets.put(tiledFile, new Tileset(reader.parse(new FileHandle(file))));
+        }
+        tiledLevel = TiledLevel.read(new FileHandle(new File(assets.get("levels").getString(level))));
+
+        // Gids outside every tileset are skipped by the loader, and the search got them wrong
+        GidTable table = new GidTable(tiledLevel, tilesets);
+        for (TiledLevel.Layer layer : tiledLevel.layers) {
+            for (int i = 0; i < layer.data.size; i++) {
+                if (table.contains(layer.data.get(i))) gids.add(layer.data.get(i));
+            }
+            for (JsonValue object : layer.objects) {
+                if (table.contains(object.getInt("gid", 0))) gids.add(object.getInt("gid"));
+            }
+        }
+    }
+
+    @Benchmark
+    public void table(Blackhole blackhole) {
+        GidTable table = new GidTable(tiledLevel, tilesets);
+        for (int i = 0; i < gids.size; i++) {
+            int gid = gids.get(i);
+            blackhole.consume(table.tiles[gid]);
+            blackhole.consume(tilesets.get(table.files[gid]).getImage(table.ids[gid]));
+        }
+    }
+
+    @Benchmark
+    public void search(Blackhole blackhole) {
+        for (int i = 0; i < gids.size; i++) {
+            int gid = gids.get(i);
+            Pair tileset = getTileset(gid);
+            blackhole.consume(tilesets.get(tileset.tiledFile).getTile(gid - tileset.firstgid));
+            tileset = getTileset(gid);
+            blackhole.consume(tilesets.get(tileset.tiledFile).getImage(gid - tileset.firstgid));
+        }
+    }
+
+    /** A tileset and the first gid it covers, as the search returned them */
+    private static class Pair {
+        final LevelLoader.TiledFile tiledFile;
+        final int firstgid;
+
+        Pair(LevelLoader.TiledFile tiledFile, int firstgid) {
+            this.tiledFile = tiledFile;
+            this.firstgid = firstgid;
+        }
+    }
+
+    /** The search LevelLoader did for each tile before it had a GidTable */
+    private Pair getTileset(int gid) {
+        JsonValue ret = null;
+        for (JsonValue tileset : tiledLevel.tilesets) {
+            if (gid < tileset.getInt("firstgid")) {
+                break;
+            } else {
+                ret = tileset;
+            }
+        }
+        return new Pair(LevelLoader.stringToTiledFile(ret.getString("source")), ret.getInt("firstgid"));
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * BakeLevels.java
+ *
+ * Compiles every level listed in assets.json from Tiled JSON into a LevelBlob,
+ * written next to its .tmj file, and writes the LevelIndex the menus read at
+ * startup.  This runs at build time (gradle bakeLevels),
+ * with the assets directory as the working directory, and needs no OpenGL or
+ * Box2D natives.
+ */
+package edu.cornell.lilbiggames.cephalonaut.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.ColliderCache;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.GidTable;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelBlob;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelIndex;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.LevelLoader;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.Properties;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.TiledLevel;
+import edu.cornell.lilbiggames.cephalonaut.engine.parsing.Tileset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bakes Tiled levels into blobs.
+ */
+public class BakeLevels {
+    private final JsonReader reader = new JsonReader();
+    private final Map<LevelLoader.TiledFile, Tileset> tilesets = new HashMap<>();
+    /** Hash of each tileset file, recorded in the blobs */
+    private final Map<LevelLoader.TiledFile, Long> tilesetHashes = new HashMap<>();
+
+    /** Strings of the level being baked, in index order */
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    /** Colliders of the level being baked, by packed tile and size */
+    private final Map<String, LevelBlob.ColliderDef> colliders = new LinkedHashMap<>();
+    /** Index entries of the levels baked so far */
+    private final LevelIndex index = new LevelIndex();
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "assets.json");
+        new BakeLevels().bake(directory);
+    }
+
+    /**
+     * Bakes every level of an asset directory.
+     *
+     * @param directory The asset directory file (assets.json)
+     */
+    public void bake(File directory) throws IOException {
+        File root = directory.getAbsoluteFile().getParentFile();
+        JsonValue assets = reader.parse(new FileHandle(directory));
+        JsonValue jsons = assets.get("jsons");
+        for (LevelLoader.TiledFile tiledFile : LevelLoader.TiledFile.values()) {
+            loadTileset(new File(root, jsons.getString(tiledFile.asset)), tiledFile);
+        }
+
+        int count = 0;
+        long bytes = 0;
+        for (JsonValue level : assets.get("levels")) {
+            File json = new File(root, level.asString());
+            String name = json.getName();
+            File blob = new File(json.getParentFile(), name.substring(0, name.lastIndexOf('.')) + LevelBlob.EXTENSION);
+            bytes += bakeLevel(level.name, json, blob);
+            count++;
+        }
+        index.write(new FileHandle(new File(root, LevelIndex.FILE)));
+        System.out.printf("Baked %d levels into %d bytes\n", count, bytes);
+    }
+
+    private void loadTileset(File file, LevelLoader.TiledFile tiledFile) {
+        tilesets.put(tiledFile, new Tileset(reader.parse(new FileHandle(file))));
+        tilesetHashes.put(tiledFile, LevelIndex.hash(new FileHandle(file)));
+    }
+
+    /**
+     * Bakes one level.
+     *
+     * @param key  The level's "level:checkpoint" key
+     * @param json The .tmj file
+     * @param file The blob to write
+     *
+     * @return the size of the blob, in bytes
+     */
+    private long bakeLevel(String key, File json, File file) throws IOException {
+        TiledLevel level = TiledLevel.read(new FileHandle(json));
+        strings.clear();
+        colliders.clear();
+
+        LevelBlob.Def blob = new LevelBlob.Def();
+        blob.width = level.width;
+        blob.height = level.height;
+        blob.tileSize = level.tileWidth;
+        Properties levelProperties = new Properties(level.properties);
+        blob.music = levelProperties.getInt("music", 1);
+        blob.twoStars = levelProperties.getInt("twoStars", 1);
+        blob.threeStars = levelProperties.getInt("threeStars", 1);
+
+        blob.tilesetFiles = new int[level.tilesets.size];
+        blob.tilesetFirstGids = new int[level.tilesets.size];
+        blob.tilesetHashes = new long[level.tilesets.size];
+        for (int i = 0; i < level.tilesets.size; i++) {
+            JsonValue tileset = level.tilesets.get(i);
+            LevelLoader.TiledFile tiledFile = LevelLoader.stringToTiledFile(tileset.getString("source"));
+            blob.tilesetFiles[i] = tiledFile.ordinal();
+            blob.tilesetFirstGids[i] = tileset.getInt("firstgid");
+            blob.tilesetHashes[i] = tilesetHashes.get(tiledFile);
+        }
+
+        GidTable table = new GidTable(level, tilesets);
+        Array<LevelBlob.LayerDef> layers = new Array<>();
+        for (TiledLevel.Layer tiledLayer : level.layers) {
+            LevelBlob.LayerDef layer = new LevelBlob.LayerDef();
+            layer.parallaxX = 1 - tiledLayer.parallaxX;
+            layer.parallaxY = 1 - tiledLayer.parallaxY;
+
+            String type = tiledLayer.type;
+            switch (type) {
+                case "tilelayer":
+                    layer.type = LevelBlob.TILE_LAYER;
+                    bakeTiles(layer, tiledLayer, table);
+                    break;
+                case "objectgroup":
+                    layer.type = LevelBlob.OBJECT_LAYER;
+                    bakeObjects(layer, tiledLayer, table, blob);
+                    break;
+                case "imagelayer":
+                    layer.type = LevelBlob.IMAGE_LAYER;
+                    String path = tiledLayer.image;
+                    layer.image = intern(path.substring(path.lastIndexOf("/") + 1));
+                    break;
+                default:
+                    System.out.printf("WARNING: %s: skipping layer type '%s'\n", json.getPath(), type);
+                    continue;
+            }
+            layers.add(layer);
+        }
+        blob.layers = layers.toArray(LevelBlob.LayerDef.class);
+        blob.colliders = colliders.values().toArray(new LevelBlob.ColliderDef[colliders.size()]);
+        blob.strings = strings.keySet().toArray(new String[strings.size()]);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            blob.write(out);
+        } finally {
+            out.close();
+        }
+
+        LevelIndex.Entry entry = new LevelIndex.Entry();
+        entry.hash = LevelIndex.hash(new FileHandle(json));
+        entry.finishTile = blob.finishTile;
+        entry.music = blob.music;
+        entry.twoStars = blob.twoStars;
+        entry.threeStars = blob.threeStars;
+        index.put(key, entry);
+        return file.length();
+    }
+
+    private void bakeTiles(LevelBlob.LayerDef layer, TiledLevel.Layer tiledLayer, GidTable table) {
+        int[] data = tiledLayer.data.toArray();
+        layer.width = tiledLayer.width;
+        layer.height = tiledLayer.height;
+        layer.tiles = new int[data.length];
+        for (int i = 0; i < data.length; i++) {
+            // The loader skips tiles its tilesets do not define
+            if (!table.contains(data[i]) || table.tiles[data[i]] == null) continue;
+            int packed = table.pack(data[i]);
+            JsonValue tile = table.tiles[data[i]];
+            layer.tiles[i] = packed;
+            addCollider(packed, 1, 1, LevelLoader.getCollider(tile));
+        }
+    }
+
+    private void bakeObjects(LevelBlob.LayerDef layer, TiledLevel.Layer tiledLayer, GidTable table,
+                             LevelBlob.Def blob) {
+        Array<LevelBlob.ObjectDef> records = new Array<>();
+        for (JsonValue object : tiledLayer.objects) {
+            int gid = object.getInt("gid");
+            JsonValue tile = table.contains(gid) ? table.tiles[gid] : null;
+            if (tile == null) {
+                System.out.printf("WARNING: skipping object %d, its tile is not in the tileset\n", object.getInt("id"));
+                continue;
+            }
+            int packed = table.pack(gid);
+
+            LevelBlob.ObjectDef record = new LevelBlob.ObjectDef();
+            record.id = object.getInt("id");
+            record.tile = packed;
+            record.name = intern(object.getString("name"));
+            record.x = object.getInt("x");
+            record.y = object.getInt("y");
+            record.width = object.getFloat("width");
+            record.height = object.getFloat("height");
+            record.rotation = object.getFloat("rotation", 0);
+
+            // Only the object's own properties are kept; the loader layers them over the tile's
+            JsonValue own = object.get("properties");
+            record.properties = own == null ? LevelBlob.NO_STRING : intern(own.toJson(JsonWriter.OutputType.json));
+
+            // The finish line's texture is looked up for every level at startup
+            Properties properties = new Properties(own, new Properties(tile.get("properties")));
+            if (blob.finishTile == 0 && "Finish".equals(properties.getString("body", "type", null))) {
+                blob.finishTile = packed;
+            }
+
+            float width = record.width / blob.tileSize;
+            float height = record.height / blob.tileSize;
+            record.collider = LevelBlob.NO_COLLIDER;
+            if (object.has("objectgroup")) {
+                // The object's own collider, which is never shared with its tile's
+                LevelBlob.ColliderDef collider = bakeCollider(packed, width, height, LevelLoader.getCollider(object));
+                if (collider != null) {
+                    collider.owner = record.id;
+                    record.collider = colliders.size();
+                    colliders.put("object:" + record.id, collider);
+                }
+            } else {
+                addCollider(packed, width, height, LevelLoader.getCollider(tile));
+            }
+            records.add(record);
+        }
+        layer.objects = records.toArray(LevelBlob.ObjectDef.class);
+    }
+
+    /**
+     * Decomposes the collider of a tile at a size, unless it was already.
+     *
+     * @param packed   The packed tile
+     * @param width    The width of the tile, in physics units
+     * @param height   The height of the tile, in physics units
+     * @param collider The collider object, or null if the tile has none
+     */
+    private void addCollider(int packed, float width, float height, JsonValue collider) {
+        String key = packed + ":" + width + ":" + height;
+        if (colliders.containsKey(key)) return;
+        LevelBlob.ColliderDef baked = bakeCollider(packed, width, height, collider);
+        if (baked != null) {
+            colliders.put(key, baked);
+        }
+    }
+
+    /**
+     * Decomposes a collider of a tile at a size.
+     *
+     * @return the baked collider, or null if there is none
+     */
+    private LevelBlob.ColliderDef bakeCollider(int packed, float width, float height, JsonValue collider) {
+        if (collider == null) return null;
+        float[] region = tilesets.get(LevelBlob.tiledFile(packed)).getSize(LevelBlob.tileId(packed));
+        if (region == null) return null;
+        float[] vertices = LevelLoader.colliderVertices(collider, width, height, region[0], region[1]);
+
+        LevelBlob.ColliderDef baked = new LevelBlob.ColliderDef();
+        baked.tile = packed;
+        baked.width = width;
+        baked.height = height;
+        baked.triangles = ColliderCache.countTriangles(vertices);
+        baked.owner = LevelBlob.NO_OWNER;
+        baked.pieces = ColliderCache.decomposeVertices(vertices);
+        return baked;
+    }
+
+    private int intern(String string) {
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * PackAtlases.java
+ *
+ * Packs the textures listed in the "atlases" section of assets.json into atlas
+ * pages, and writes each atlas in the libGDX .atlas format.  The game then draws
+ * the packed sprites from a few pages rather than from a texture each.  This
+ * runs at build time (gradle packAtlases), with the assets directory as the
+ * working directory, and needs no OpenGL.
+ */
+package edu.cornell.lilbiggames.cephalonaut.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs textures into atlases.
+ */
+public class PackAtlases {
+    /** Smallest and largest width and height of a page, in pixels */
+    private static final int MIN_SIZE = 256;
+    private static final int MAX_SIZE = 2048;
+    /**
+     * Pixels around each sprite, filled with copies of its edge.  Nearest filtering
+     * can still sample just past a sprite when it is drawn at a fractional position,
+     * and then picks up the edge rather than the next sprite.
+     */
+    private static final int PADDING = 2;
+
+    /** A sprite to pack, named by its image file */
+    private static class Sprite {
+        final String name;
+        final BufferedImage image;
+        /** Position of the padded sprite on its page */
+        int x, y;
+
+        Sprite(String name, BufferedImage image) {
+            this.name = name;
+            this.image = image;
+        }
+
+        int width() {
+            return image.getWidth() + 2 * PADDING;
+        }
+
+        int height() {
+            return image.getHeight() + 2 * PADDING;
+        }
+    }
+
+    /** Tallest first, so that each shelf wastes little space */
+    private static final Comparator<Sprite> TALLEST = new Comparator<Sprite>() {
+        @Override
+        public int compare(Sprite a, Sprite b) {
+            int order = Integer.compare(b.height(), a.height());
+            return order != 0 ? order : Integer.compare(b.width(), a.width());
+        }
+    };
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        File directory = new File(args.length > 0 ? args[0] : "assets.json");
+        new PackAtlases().pack(directory);
+    }
+
+    /**
+     * Packs every atlas of an asset directory.
+     *
+     * @param directory The asset directory file (assets.json)
+     */
+    public void pack(File directory) throws IOException {
+        File root = directory.getAbsoluteFile().getParentFile();
+        JsonValue assets = new JsonReader().parse(new FileHandle(directory));
+        JsonValue atlases = assets.get("atlases");
+        if (atlases == null) return;
+
+        JsonValue textures = assets.get("textures");
+        for (JsonValue atlas : atlases) {
+            // Keys of the same file share a region
+            Map<String, Sprite> sprites = new LinkedHashMap<>();
+            for (JsonValue key : atlas.get("textures")) {
+                JsonValue texture = textures.get(key.asString());
+                if (texture == null) {
+                    System.out.printf("WARNING: atlas %s: unknown texture '%s'\n", atlas.name, key.asString());
+                    continue;
+                }
+                String file = texture.isString() ? texture.asString() : texture.getString("file");
+                if (file.indexOf(':') >= 0) {
+                    // The .atlas format reads a line with a colon as a field, not as a region
+                    throw new GdxRuntimeException("Cannot pack '" + file + "', its name has a colon");
+                }
+                if (sprites.containsKey(file)) continue;
+
+                BufferedImage image = ImageIO.read(new File(root, file));
+                if (image == null) throw new GdxRuntimeException("Cannot read image " + file);
+                sprites.put(file, new Sprite(file, image));
+            }
+            write(new File(root, atlas.getString("file")), new ArrayList<>(sprites.values()));
+        }
+    }
+
+    /**
+     * Packs sprites into pages and writes them next to the atlas file.
+     *
+     * @param file    The .atlas file to write
+     * @param sprites The sprites to pack
+     */
+    private void write(File file, List<Sprite> sprites) throws IOException {
+        Collections.sort(sprites, TALLEST);
+        File folder = file.getParentFile();
+        folder.mkdirs();
+        String name = file.getName();
+        String base = name.substring(0, name.lastIndexOf('.'));
+
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        try {
+            int pageCount = 0;
+            long used = 0, total = 0;
+            for (int start = 0; start < sprites.size(); pageCount++) {
+                List<Sprite> rest = sprites.subList(start, sprites.size());
+                int size = MIN_SIZE;
+                while (size < MAX_SIZE && shelve(rest, size) < rest.size()) {
+                    size *= 2;
+                }
+                int count = shelve(rest, size);
+                if (count == 0) {
+                    Sprite sprite = rest.get(0);
+                    throw new GdxRuntimeException("Sprite " + sprite.name + " is bigger than a page");
+                }
+
+                BufferedImage page = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                String pageName = base + (pageCount == 0 ? "" : String.valueOf(pageCount + 1)) + ".png";
+                out.printf("\n%s\nsize: %d,%d\nformat: RGBA8888\nfilter: Nearest,Nearest\nrepeat: none\n",
+                        pageName, size, size);
+                for (Sprite sprite : rest.subList(0, count)) {
+                    blit(page, sprite);
+                    int width = sprite.image.getWidth();
+                    int height = sprite.image.getHeight();
+                    out.printf("%s\n  rotate: false\n  xy: %d, %d\n  size: %d, %d\n"
+                                    + "  orig: %d, %d\n  offset: 0, 0\n  index: -1\n",
+                            sprite.name, sprite.x + PADDING, sprite.y + PADDING, width, height, width, height);
+                    used += (long) width * height;
+                }
+                ImageIO.write(page, "png", new File(folder, pageName));
+                total += (long) size * size;
+                start += count;
+            }
+            System.out.printf("Packed %d sprites into %d pages of %s (%.0f%% used)\n",
+                    sprites.size(), pageCount, name, 100.0 * used / total);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Places sprites in rows, top to bottom, on a square page.
+     *
+     * @param sprites The sprites, tallest first
+     * @param size    The width and height of the page
+     *
+     * @return how many of the sprites, from the first, fit on the page
+     */
+    private static int shelve(List<Sprite> sprites, int size) {
+        int x = 0, y = 0, shelf = 0;
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite sprite = sprites.get(i);
+            if (x + sprite.width() > size) {
+                x = 0;
+                y += shelf;
+                shelf = 0;
+            }
+            if (x + sprite.width() > size || y + sprite.height() > size) return i;
+            sprite.x = x;
+            sprite.y = y;
+            x += sprite.width();
+            shelf = Math.max(shelf, sprite.height());
+        }
+        return sprites.size();
+    }
+
+    /** Copies a sprite onto its page, repeating its edge pixels into the padding */
+    private static void blit(BufferedImage page, Sprite sprite) {
+        BufferedImage image = sprite.image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        for (int y = 0; y < sprite.height(); y++) {
+            int sy = Math.min(Math.max(y - PADDING, 0), height - 1);
+            for (int x = 0; x < sprite.width(); x++) {
+                int sx = Math.min(Math.max(x - PADDING, 0), width - 1);
+                page.setRGB(sprite.x + x, sprite.y + y, image.getRGB(sx, sy));
+            }
+        }
+    }
+}